@@ -10,7 +10,8 @@ public interface GielinorGainsConfig extends Config
 	@ConfigItem(
 		keyName = "refreshInterval",
 		name = "Refresh Interval",
-		description = "How often to refresh data from Gielinor Gains API (seconds)"
+		description = "How often to refresh data from Gielinor Gains API. Alert rules are also checked this often "
+			+ "while the panel is closed (seconds, at least 30)"
 	)
 	default int refreshInterval()
 	{
@@ -27,6 +28,16 @@ public interface GielinorGainsConfig extends Config
 		return 0.0;
 	}
 
+	@ConfigItem(
+		keyName = "maxItems",
+		name = "Maximum Items",
+		description = "How many items to load. Above 200 the catalog is fetched in parallel pages"
+	)
+	default int maxItems()
+	{
+		return 200;
+	}
+
 	@ConfigItem(
 		keyName = "showIcons",
 		name = "Show Item Icons",
@@ -36,4 +47,131 @@ public interface GielinorGainsConfig extends Config
 	{
 		return true;
 	}
+
+	@ConfigItem(
+		keyName = "edtStallThreshold",
+		name = "Freeze Detection (ms)",
+		description = "Log when the sidebar is frozen by plugin code for longer than this (0 disables)"
+	)
+	default int edtStallThreshold()
+	{
+		return 250;
+	}
+
+	@ConfigItem(
+		keyName = "historyRetentionDays",
+		name = "History Retention (days)",
+		description = "How long to keep the local price history recorded on each refresh (0 stops recording)"
+	)
+	default int historyRetentionDays()
+	{
+		return 30;
+	}
+
+	@ConfigItem(
+		keyName = "rankingExpression",
+		name = "Custom Ranking",
+		description = "Formula for the Custom sort, e.g. if(volume >= 500, profit * min(quantity, limit) / sqrt(price), 0). "
+			+ "Fields: score, profit, roi, volume, quantity, limit, price, buy, sell, low, high, rsi, roc, "
+			+ "buysupport, sellsupport, hourlyvolume, completeness"
+	)
+	default String rankingExpression()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+		keyName = "pinnedItems",
+		name = "Pinned Items",
+		description = "Item ids or names, comma separated, shown first in the list and checked by 'pinned:' alert rules"
+	)
+	default String pinnedItems()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+		keyName = "alertRules",
+		name = "Alert Rules",
+		description = "One rule per line, e.g. 'profit >= 50k and roi >= 3%', '4151: sell <= 1.4m' or 'pinned: score >= 4'. "
+			+ "A notification is sent when a rule starts matching an item"
+	)
+	default String alertRules()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+		keyName = "geSlots",
+		name = "GE Slots",
+		description = "Grand Exchange slots the gold planner may use (3 on free-to-play worlds, 8 on members)"
+	)
+	default int geSlots()
+	{
+		return 8;
+	}
+
+	@ConfigItem(
+		keyName = "showItemTooltips",
+		name = "Item Tooltips",
+		description = "Show margin and score when hovering an item in the inventory or the Grand Exchange"
+	)
+	default boolean showItemTooltips()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "pushUpdates",
+		name = "Live Prices",
+		description = "Keep a connection open for pushed price updates instead of waiting for the next refresh"
+	)
+	default boolean pushUpdates()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "sharedCache",
+		name = "Share Between Clients",
+		description = "Let RuneLite clients on this computer share fetched items and icons, so only one of them calls the API"
+	)
+	default boolean sharedCache()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "lazyStartup",
+		name = "Load On First Open",
+		description = "Wait until the sidebar panel is first opened before building it and fetching items, "
+			+ "so the plugin adds almost nothing to client startup. Alert rules still fetch in the background. "
+			+ "Takes effect when the plugin is restarted"
+	)
+	default boolean lazyStartup()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "prefetchDelaySeconds",
+		name = "Prefetch After (s)",
+		description = "With Load On First Open, build the panel and fetch items this many seconds after startup "
+			+ "even if it has not been opened, so it is ready when it is. 0 waits for the first open"
+	)
+	default int prefetchDelaySeconds()
+	{
+		return 0;
+	}
+
+	@ConfigItem(
+		keyName = "releaseAfterMinutes",
+		name = "Release After (min)",
+		description = "With Load On First Open, free the panel and its icons after it has been closed this long. "
+			+ "0 keeps it until the plugin stops"
+	)
+	default int releaseAfterMinutes()
+	{
+		return 15;
+	}
 }
@@ -1,19 +1,58 @@
 package com.gielinorgains;
 
+import com.gielinorgains.alerts.AlertEngine;
+import com.gielinorgains.alerts.AlertEvent;
+import com.gielinorgains.alerts.AlertRule;
 import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.api.SharedSnapshotCache;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.EdtWatchdog;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.history.PriceHistoryStore;
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import com.gielinorgains.overlay.ItemHoverOverlay;
+import com.gielinorgains.trading.BuyLimitTracker;
+import com.gielinorgains.trading.FlipJournal;
+import com.gielinorgains.trading.OfferFill;
 import com.gielinorgains.ui.GainsPanel;
+import com.gielinorgains.ui.LazyPluginPanel;
+import com.gielinorgains.ui.SharedIconStore;
 import com.google.inject.Provides;
 import javax.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GrandExchangeOfferChanged;
+import net.runelite.client.Notifier;
+import net.runelite.client.RuneLite;
 import net.runelite.client.config.ConfigManager;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.game.ItemManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
+import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.ui.overlay.tooltip.TooltipManager;
 
 import java.awt.image.BufferedImage;
-import java.util.concurrent.ScheduledExecutorService;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import java.util.function.Consumer;
 
 @Slf4j
 @PluginDescriptor(
@@ -23,6 +62,17 @@ import java.util.concurrent.ScheduledExecutorService;
 )
 public class GielinorGainsPlugin extends Plugin
 {
+	private static final int MAX_ALERTS_PER_REFRESH = 3;
+	// Same as the client's own cache TTL, so a shared snapshot is served exactly as long as a local one
+	private static final long SHARED_SNAPSHOT_MAX_AGE_MS = 90_000;
+	private static final long SHARED_REQUEST_WAIT_MS = 3_000;
+	private static final File SHARED_DIR = new File(RuneLite.RUNELITE_DIR, "gielinor-gains/shared");
+	private static final File ACCOUNTS_DIR = new File(RuneLite.RUNELITE_DIR, "gielinor-gains/accounts");
+	private static final long NO_ACCOUNT = -1;
+	// Lets the client finish starting before the first background fetch
+	private static final long BACKGROUND_REFRESH_DELAY_SECONDS = 10;
+	private static final long MIN_REFRESH_INTERVAL_SECONDS = 30;
+
 	@Inject
 	private Client client;
 
@@ -36,20 +86,108 @@ public class GielinorGainsPlugin extends Plugin
 	private GainsApiClient apiClient;
 
 	@Inject
-	private ScheduledExecutorService executorService;
+	private GainsExecutors executors;
+
+	@Inject
+	private MetricsRegistry metrics;
+
+	@Inject
+	private EdtWatchdog edtWatchdog;
+
+	@Inject
+	private MemoryPressureMonitor memoryPressure;
+
+	@Inject
+	private Notifier notifier;
+
+	@Inject
+	private OverlayManager overlayManager;
+
+	@Inject
+	private TooltipManager tooltipManager;
+
+	@Inject
+	private ItemManager itemManager;
 
-	private GainsPanel panel;
+	private LazyPluginPanel<GainsPanel> panel;
+	private ScheduledFuture<?> panelPrefetch;
+	private ScheduledFuture<?> backgroundRefresh;
 	private NavigationButton navButton;
+	private PriceHistoryStore historyStore;
+	private BuyLimitTracker buyLimitTracker;
+	private FlipJournal flipJournal;
+	// Account whose trading state is loaded, guarded by this
+	private long account = NO_ACCOUNT;
+	private SharedSnapshotCache sharedCache;
+	private volatile ItemIndex itemIndex = ItemIndex.EMPTY;
+	private final Consumer<List<GainsItem>> snapshotIndexer = this::indexSnapshot;
+	private final GainsApiClient.PriceUpdateListener priceIndexer = new GainsApiClient.PriceUpdateListener()
+	{
+		@Override
+		public void onPricesUpdated(List<GainsItem> changed)
+		{
+			indexPrices(changed);
+		}
+		
+		@Override
+		public void onResyncRequired()
+		{
+			// The refetched snapshot is indexed as usual
+		}
+	};
+	private ItemHoverOverlay hoverOverlay;
+	private Consumer<List<GainsItem>> historyRecorder;
+	private volatile AlertEngine alertEngine;
+	private final Consumer<List<GainsItem>> alertChecker = items -> sendAlerts(alertEngine.onSnapshot(items));
+	private final Consumer<MemoryPressureMonitor.Level> snapshotDemoter = level -> apiClient.onMemoryPressure(level);
 
 	@Override
 	protected void startUp() throws Exception
 	{
 		log.debug("Gielinor Gains plugin started!");
+		long startedAt = System.nanoTime();
 		
-		// Create the panel
-		log.debug("Creating Gielinor Gains panel...");
-		panel = new GainsPanel(apiClient, config, executorService);
-		log.debug("Gielinor Gains panel created successfully");
+		executors.start();
+		edtWatchdog.start(config.edtStallThreshold());
+		memoryPressure.start();
+		memoryPressure.addListener(snapshotDemoter);
+		
+		historyStore = new PriceHistoryStore(new File(RuneLite.RUNELITE_DIR, "gielinor-gains/history"),
+			config.historyRetentionDays());
+		historyStore.start();
+		historyRecorder = historyStore::record;
+		applyHistoryRetention();
+		
+		rebuildAlertEngine();
+		apiClient.addSnapshotListener(alertChecker);
+		
+		// Both are loaded for the account once one is logged in
+		buyLimitTracker = new BuyLimitTracker(null);
+		flipJournal = new FlipJournal(null);
+		flipJournal.start();
+		useAccount(client.getAccountHash());
+		apiClient.addSnapshotListener(snapshotIndexer);
+		apiClient.addPriceUpdateListener(priceIndexer);
+		
+		hoverOverlay = new ItemHoverOverlay(client, itemManager, tooltipManager, config, () -> itemIndex);
+		overlayManager.add(hoverOverlay);
+		
+		// In lazy mode the panel and its icon cache wait until the sidebar is opened
+		boolean lazy = config.lazyStartup();
+		panel = new LazyPluginPanel<>(this::createPanel, this::releasePanel, executors,
+			lazy ? TimeUnit.MINUTES.toMillis(config.releaseAfterMinutes()) : 0,
+			metrics.histogram(MetricsRegistry.PANEL_BUILD_TIME)::recordNanos);
+		if (!lazy)
+		{
+			panel.ensureBuilt();
+		}
+		else if (config.prefetchDelaySeconds() > 0)
+		{
+			panelPrefetch = executors.scheduler().schedule(panel::prefetch, config.prefetchDelaySeconds(),
+				TimeUnit.SECONDS);
+		}
+		// Alert rules are the only thing that needs snapshots while the panel is closed
+		scheduleBackgroundRefresh(BACKGROUND_REFRESH_DELAY_SECONDS);
 		
 		// Create navigation button
 		BufferedImage icon = null;
@@ -86,6 +224,44 @@ public class GielinorGainsPlugin extends Plugin
 		// Add to toolbar
 		clientToolbar.addNavigation(navButton);
 		log.debug("Gielinor Gains navigation button added successfully");
+		
+		long startupNanos = System.nanoTime() - startedAt;
+		metrics.histogram(MetricsRegistry.PLUGIN_STARTUP_TIME).recordNanos(startupNanos);
+		log.debug("Gielinor Gains started in {}ms ({})", TimeUnit.NANOSECONDS.toMillis(startupNanos),
+			lazy ? "panel deferred" : "panel built");
+	}
+
+	/**
+	 * Builds the panel when the sidebar is first opened (or prefetched), starting the services
+	 * only it needs. Called on the EDT.
+	 */
+	private GainsPanel createPanel()
+	{
+		if (config.sharedCache())
+		{
+			startSharedCache();
+		}
+		if (config.pushUpdates())
+		{
+			apiClient.startPriceStream();
+		}
+		
+		log.debug("Creating Gielinor Gains panel...");
+		GainsPanel created = new GainsPanel(apiClient, config, executors, metrics, historyStore, buyLimitTracker,
+			flipJournal, config.sharedCache() ? new SharedIconStore(new File(SHARED_DIR, "icons")) : null,
+			memoryPressure);
+		log.debug("Gielinor Gains panel created successfully");
+		return created;
+	}
+
+	/**
+	 * Frees a panel that has been hidden for a long time, or on shutdown. The price stream only
+	 * feeds the panel, so it stops too; the shared cache stays up for the other clients.
+	 */
+	private void releasePanel(GainsPanel released)
+	{
+		apiClient.stopPriceStream();
+		released.shutdown();
 	}
 
 	@Override
@@ -99,10 +275,359 @@ public class GielinorGainsPlugin extends Plugin
 		}
 		
 		// Cleanup
+		if (panelPrefetch != null)
+		{
+			panelPrefetch.cancel(false);
+			panelPrefetch = null;
+		}
+		if (backgroundRefresh != null)
+		{
+			backgroundRefresh.cancel(false);
+			backgroundRefresh = null;
+		}
+		apiClient.stopPriceStream();
+		stopSharedCache();
 		if (panel != null) {
 			panel.shutdown();
 			panel = null;
 		}
+		
+		apiClient.removeSnapshotListener(alertChecker);
+		
+		if (buyLimitTracker != null)
+		{
+			buyLimitTracker.save();
+			buyLimitTracker = null;
+		}
+		synchronized (this)
+		{
+			account = NO_ACCOUNT;
+		}
+		
+		overlayManager.remove(hoverOverlay);
+		apiClient.removeSnapshotListener(snapshotIndexer);
+		apiClient.removePriceUpdateListener(priceIndexer);
+		itemIndex = ItemIndex.EMPTY;
+		
+		if (flipJournal != null)
+		{
+			flipJournal.close();
+			flipJournal = null;
+		}
+		
+		if (historyStore != null) {
+			apiClient.removeSnapshotListener(historyRecorder);
+			historyStore.close();
+			historyStore = null;
+		}
+		
+		memoryPressure.removeListener(snapshotDemoter);
+		memoryPressure.stop();
+		edtWatchdog.stop();
+		
+		// Last, once nothing is left to hand work to the pools; waits for queued saves to finish
+		executors.stop();
+	}
+
+	/**
+	 * Starts, restarts or stops the background refresh. It only runs while alert rules are set;
+	 * history and tooltips make do with what the panel fetches, so by default nothing is polled
+	 * until the sidebar is opened.
+	 */
+	private synchronized void scheduleBackgroundRefresh(long initialDelaySeconds)
+	{
+		if (backgroundRefresh != null)
+		{
+			backgroundRefresh.cancel(false);
+			backgroundRefresh = null;
+		}
+		if (config.alertRules().trim().isEmpty())
+		{
+			return;
+		}
+		long interval = Math.max(MIN_REFRESH_INTERVAL_SECONDS, config.refreshInterval());
+		backgroundRefresh = executors.scheduler().scheduleWithFixedDelay(() ->
+		{
+			// An exception would cancel the schedule
+			try
+			{
+				refreshInBackground();
+			}
+			catch (RuntimeException e)
+			{
+				log.warn("Background refresh failed", e);
+			}
+		}, initialDelaySeconds, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Fetches the panel's query if the cached snapshot has gone stale, so alert rules keep being
+	 * checked while the panel is unopened or released. While the panel or the price stream keeps
+	 * the cache fresh this is answered from the cache and fetches nothing.
+	 */
+	private void refreshInBackground()
+	{
+		if (config.sharedCache())
+		{
+			startSharedCache();
+		}
+		
+		int maxItems = Math.max(1, config.maxItems());
+		CompletableFuture<ApiResponse> refresh;
+		if (maxItems <= GainsApiClient.PAGE_SIZE)
+		{
+			refresh = apiClient.fetchItems(maxItems, config.minScore(), false);
+		}
+		else
+		{
+			ItemsQuery query = ItemsQuery.builder()
+				.minScore(config.minScore())
+				.build();
+			refresh = apiClient.fetchAllItems(query, maxItems, false, page -> { });
+		}
+		refresh.whenComplete((response, error) ->
+		{
+			if (error != null || !response.isSuccess())
+			{
+				log.debug("Background refresh failed: {}", error != null ? error.getMessage() : response.getError());
+			}
+		});
+	}
+
+	/**
+	 * Records refreshes into the price history while retention is above 0, and keeps them for
+	 * that many days. Setting it to 0 stops recording but leaves what was recorded.
+	 */
+	private synchronized void applyHistoryRetention()
+	{
+		PriceHistoryStore store = historyStore;
+		if (store == null)
+		{
+			return;
+		}
+		// Removed first so it is never registered twice
+		apiClient.removeSnapshotListener(historyRecorder);
+		int days = config.historyRetentionDays();
+		if (days > 0)
+		{
+			store.setRetentionDays(days);
+			apiClient.addSnapshotListener(historyRecorder);
+		}
+	}
+
+	private synchronized void startSharedCache()
+	{
+		if (sharedCache != null)
+		{
+			return;
+		}
+		SharedSnapshotCache cache = new SharedSnapshotCache(SHARED_DIR, SHARED_SNAPSHOT_MAX_AGE_MS,
+			SHARED_REQUEST_WAIT_MS);
+		try
+		{
+			apiClient.attachSharedCache(cache);
+			sharedCache = cache;
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not share snapshots between clients", e);
+			cache.close();
+		}
+	}
+
+	private synchronized void stopSharedCache()
+	{
+		if (sharedCache != null)
+		{
+			apiClient.detachSharedCache();
+			sharedCache.close();
+			sharedCache = null;
+		}
+	}
+
+	@Subscribe
+	public void onConfigChanged(ConfigChanged event)
+	{
+		if (!"gielinorgains".equals(event.getGroup()) || panel == null)
+		{
+			return;
+		}
+		
+		LazyPluginPanel<GainsPanel> current = panel;
+		switch (event.getKey())
+		{
+			case "rankingExpression":
+				SwingUtilities.invokeLater(() -> current.ifBuilt(GainsPanel::applyRankingExpression));
+				break;
+			case "pinnedItems":
+				rebuildAlertEngine();
+				SwingUtilities.invokeLater(() -> current.ifBuilt(GainsPanel::applyPinnedItems));
+				break;
+			case "alertRules":
+				rebuildAlertEngine();
+				// Checks new rules right away; answered from the cache while it is fresh
+				scheduleBackgroundRefresh(0);
+				break;
+			case "historyRetentionDays":
+				applyHistoryRetention();
+				break;
+			case "refreshInterval":
+				scheduleBackgroundRefresh(config.refreshInterval());
+				break;
+			case "edtStallThreshold":
+				edtWatchdog.start(config.edtStallThreshold());
+				break;
+			case "pushUpdates":
+				// Otherwise started with the panel
+				if (config.pushUpdates() && current.isBuilt())
+				{
+					apiClient.startPriceStream();
+				}
+				else
+				{
+					apiClient.stopPriceStream();
+				}
+				break;
+			case "sharedCache":
+				if (config.sharedCache() && current.isBuilt())
+				{
+					startSharedCache();
+				}
+				else
+				{
+					stopSharedCache();
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	@Subscribe
+	public void onGameStateChanged(GameStateChanged event)
+	{
+		if (event.getGameState() == GameState.LOGGED_IN)
+		{
+			useAccount(client.getAccountHash());
+		}
+		else if (event.getGameState() == GameState.LOGIN_SCREEN)
+		{
+			useAccount(NO_ACCOUNT);
+		}
+	}
+
+	/**
+	 * Switches the buy limit tracker and the flip journal to the logged in account's state. Limits
+	 * and results are per account and other clients on this machine may be logged into other
+	 * accounts, so each account has its own files, and logging out lets go of them for whichever
+	 * client logs in next. Called at startup and then on the client thread, before that account's
+	 * offers are counted.
+	 */
+	private synchronized void useAccount(long accountHash)
+	{
+		BuyLimitTracker tracker = buyLimitTracker;
+		FlipJournal journal = flipJournal;
+		if (accountHash == account || tracker == null || journal == null)
+		{
+			return;
+		}
+		account = accountHash;
+		File directory = accountHash != NO_ACCOUNT ? new File(ACCOUNTS_DIR, Long.toString(accountHash)) : null;
+		tracker.setFile(directory != null ? new File(directory, "buy-limits") : null, System.currentTimeMillis());
+		journal.setFile(directory != null ? new File(directory, "journal.bin") : null);
+		log.debug("Trading state switched to {}", accountHash != NO_ACCOUNT ? "the logged in account" : "none");
+	}
+
+	@Subscribe
+	public void onGrandExchangeOfferChanged(GrandExchangeOfferChanged event)
+	{
+		// Offers are sent on login, possibly before the login state change reaches this plugin
+		useAccount(client.getAccountHash());
+		BuyLimitTracker tracker = buyLimitTracker;
+		FlipJournal journal = flipJournal;
+		GrandExchangeOffer offer = event.getOffer();
+		if (tracker == null || journal == null || offer == null)
+		{
+			return;
+		}
+		
+		GrandExchangeOfferState state = offer.getState();
+		boolean buying = state == GrandExchangeOfferState.BUYING || state == GrandExchangeOfferState.BOUGHT
+			|| state == GrandExchangeOfferState.CANCELLED_BUY;
+		int itemId = state == GrandExchangeOfferState.EMPTY ? 0 : offer.getItemId();
+		OfferFill fill = tracker.onOffer(event.getSlot(), itemId, buying, offer.getPrice(), offer.getTotalQuantity(),
+			offer.getQuantitySold(), offer.getSpent(), System.currentTimeMillis());
+		if (fill != null)
+		{
+			journal.record(fill);
+		}
+		// Events arrive on the client thread; keep the file write off it. Saving is a no-op when nothing changed
+		executors.network().execute(tracker::save);
+	}
+
+	/**
+	 * Rebuilds the item id index for the hover tooltips and the flip journal. Readers keep using
+	 * the previous index until the new one is published.
+	 */
+	private void indexSnapshot(List<GainsItem> items)
+	{
+		ItemIndex index = ItemIndex.build(items);
+		synchronized (this)
+		{
+			itemIndex = index;
+		}
+		FlipJournal journal = flipJournal;
+		if (journal != null)
+		{
+			journal.setRecommendations(index);
+		}
+		log.debug("Indexed {} items by id", index.size());
+	}
+
+	/**
+	 * Swaps the price stream's updated copies into the hover index, so tooltips show live prices
+	 */
+	private synchronized void indexPrices(List<GainsItem> changed)
+	{
+		itemIndex = itemIndex.with(changed);
+	}
+
+	/**
+	 * Replaces the alert engine after the rules or pinned items changed. Rule states start over,
+	 * so rules that already match notify again on the next refresh.
+	 */
+	private void rebuildAlertEngine()
+	{
+		List<String> errors = new ArrayList<>();
+		List<AlertRule> rules = AlertRule.parseAll(config.alertRules(), errors);
+		for (String error : errors)
+		{
+			log.warn("Ignoring alert rule: {}", error);
+		}
+		alertEngine = new AlertEngine(rules, AlertEngine.parseItemKeys(config.pinnedItems()), metrics);
+		log.debug("Loaded {} alert rules", rules.size());
+	}
+
+	private void sendAlerts(List<AlertEvent> events)
+	{
+		// Only rules that start matching notify; cap the burst, e.g. on the first refresh
+		List<AlertEvent> matched = new ArrayList<>();
+		for (AlertEvent event : events)
+		{
+			if (event.isMatched())
+			{
+				matched.add(event);
+			}
+		}
+		
+		for (int i = 0; i < Math.min(MAX_ALERTS_PER_REFRESH, matched.size()); i++)
+		{
+			notifier.notify("Gielinor Gains - " + matched.get(i).describe());
+		}
+		if (matched.size() > MAX_ALERTS_PER_REFRESH)
+		{
+			notifier.notify("Gielinor Gains - " + (matched.size() - MAX_ALERTS_PER_REFRESH) + " more items match your alert rules");
+		}
 	}
 
 	@Provides
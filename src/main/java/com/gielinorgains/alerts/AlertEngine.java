@@ -0,0 +1,253 @@
+package com.gielinorgains.alerts;
+
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates alert rules against each refresh and reports the rules that flipped.
+ *
+ * Evaluation is incremental. The engine remembers the values of the fields any rule reads for
+ * every item, and rules are indexed by the fields they test. On a refresh an item whose relevant
+ * fields are unchanged costs one comparison per field; otherwise only the rules that test a
+ * changed field (and apply to the item) are re-checked.
+ *
+ * Rules and pinned items are fixed per engine; build a new engine when they change.
+ */
+@Slf4j
+public class AlertEngine {
+    private static final int FIELD_COUNT = AlertField.values().length;
+    
+    private final List<AlertRule> rules;
+    private final Set<String> pinned;
+    private final RuleIndex globalRules = new RuleIndex();
+    private final RuleIndex pinnedRules = new RuleIndex();
+    private final Map<String, RuleIndex> itemRules = new HashMap<>();
+    private final AlertField[] usedFields;
+    private final int usedFieldMask;
+    private final LongAdder ruleChecks;
+    private final LongAdder fired;
+    
+    // Reused across refreshes; only touched while holding the engine lock
+    private Map<String, ItemState> states = new HashMap<>();
+    private final double[] scratch = new double[FIELD_COUNT];
+    private final int[] checkedStamp;
+    private int stamp;
+    private int lastItemsRechecked;
+    private int lastRuleChecks;
+    
+    /**
+     * @param pinned lower-cased item ids or names the "pinned:" rules apply to
+     */
+    public AlertEngine(List<AlertRule> rules, Collection<String> pinned, MetricsRegistry metrics) {
+        this.rules = new ArrayList<>(rules);
+        this.pinned = new HashSet<>();
+        for (String key : pinned) {
+            this.pinned.add(key.trim().toLowerCase(Locale.ROOT));
+        }
+        this.ruleChecks = metrics.counter(MetricsRegistry.ALERT_RULE_CHECKS);
+        this.fired = metrics.counter(MetricsRegistry.ALERTS_FIRED);
+        this.checkedStamp = new int[this.rules.size()];
+        
+        int mask = 0;
+        for (int id = 0; id < this.rules.size(); id++) {
+            AlertRule rule = this.rules.get(id);
+            String scope = rule.getScope();
+            RuleIndex index = scope == null ? globalRules
+                : scope.equals(AlertRule.PINNED_SCOPE) ? pinnedRules
+                : itemRules.computeIfAbsent(scope, k -> new RuleIndex());
+            for (AlertField field : rule.getFields()) {
+                index.add(field, id);
+                mask |= 1 << field.ordinal();
+            }
+        }
+        this.usedFieldMask = mask;
+        
+        List<AlertField> used = new ArrayList<>();
+        for (AlertField field : AlertField.values()) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                used.add(field);
+            }
+        }
+        this.usedFields = used.toArray(new AlertField[0]);
+    }
+    
+    /**
+     * Splits a comma or newline separated list of item ids or names into lower-cased keys
+     */
+    public static Set<String> parseItemKeys(String text) {
+        Set<String> keys = new HashSet<>();
+        if (text != null) {
+            for (String part : text.split("[,\\n]")) {
+                String key = part.trim().toLowerCase(Locale.ROOT);
+                if (!key.isEmpty()) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+    
+    public int getRuleCount() {
+        return rules.size();
+    }
+    
+    /**
+     * Checks a new snapshot and returns the rule/item pairs that started or stopped matching.
+     * Items that left the snapshot are forgotten without an event.
+     */
+    public synchronized List<AlertEvent> onSnapshot(List<GainsItem> items) {
+        if (rules.isEmpty() || items == null) {
+            return Collections.emptyList();
+        }
+        
+        long start = System.nanoTime();
+        List<AlertEvent> events = new ArrayList<>();
+        Map<String, ItemState> next = new HashMap<>(Math.max(16, items.size() * 4 / 3));
+        int rechecked = 0;
+        int checks = 0;
+        boolean byName = !pinned.isEmpty() || !itemRules.isEmpty();
+        
+        for (GainsItem item : items) {
+            String id = item.getId();
+            if (id == null) {
+                continue;
+            }
+            
+            ItemState previous = states.get(id);
+            int changed = readFields(item, previous);
+            ItemState state = previous != null ? previous : new ItemState();
+            next.put(id, state);
+            if (changed == 0) {
+                continue;
+            }
+            System.arraycopy(scratch, 0, state.values, 0, FIELD_COUNT);
+            rechecked++;
+            
+            // Stamp marks rules already checked for this item, so a rule reading two changed fields runs once
+            stamp++;
+            checks += checkRules(globalRules, changed, item, state, events);
+            if (byName) {
+                String name = item.getName() != null ? item.getName().toLowerCase(Locale.ROOT) : "";
+                if (pinned.contains(id) || pinned.contains(name)) {
+                    checks += checkRules(pinnedRules, changed, item, state, events);
+                }
+                RuleIndex byId = itemRules.get(id);
+                if (byId != null) {
+                    checks += checkRules(byId, changed, item, state, events);
+                }
+                RuleIndex byItemName = itemRules.get(name);
+                if (byItemName != null) {
+                    checks += checkRules(byItemName, changed, item, state, events);
+                }
+            }
+        }
+        
+        states = next;
+        lastItemsRechecked = rechecked;
+        lastRuleChecks = checks;
+        ruleChecks.add(checks);
+        fired.add(events.size());
+        log.debug("Alert check: {} of {} items changed, {} rule checks, {} flips in {}us", rechecked, items.size(),
+            checks, events.size(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return events;
+    }
+    
+    /**
+     * Number of items whose relevant fields changed on the last snapshot
+     */
+    public synchronized int getLastItemsRechecked() {
+        return lastItemsRechecked;
+    }
+    
+    /**
+     * Number of rule evaluations done for the last snapshot
+     */
+    public synchronized int getLastRuleChecks() {
+        return lastRuleChecks;
+    }
+    
+    /**
+     * Reads the used fields into {@link #scratch} and returns a bit mask of those that changed.
+     */
+    private int readFields(GainsItem item, ItemState previous) {
+        int changed = 0;
+        for (AlertField field : usedFields) {
+            int ordinal = field.ordinal();
+            double value = field.read(item);
+            scratch[ordinal] = value;
+            if (previous == null || Double.compare(previous.values[ordinal], value) != 0) {
+                changed |= 1 << ordinal;
+            }
+        }
+        return previous == null ? usedFieldMask : changed;
+    }
+    
+    private int checkRules(RuleIndex index, int changedMask, GainsItem item, ItemState state, List<AlertEvent> events) {
+        int checks = 0;
+        for (AlertField field : usedFields) {
+            if ((changedMask & (1 << field.ordinal())) == 0) {
+                continue;
+            }
+            int[] ids = index.rulesFor(field);
+            for (int id : ids) {
+                if (checkedStamp[id] == stamp) {
+                    continue;
+                }
+                checkedStamp[id] = stamp;
+                checks++;
+                
+                boolean now = rules.get(id).matches(state.values);
+                if (now != state.matched.get(id)) {
+                    state.matched.set(id, now);
+                    events.add(new AlertEvent(rules.get(id), item, now));
+                }
+            }
+        }
+        return checks;
+    }
+    
+    /**
+     * Rule ids per field
+     */
+    private static final class RuleIndex {
+        private static final int[] NONE = new int[0];
+        private final Map<AlertField, int[]> byField = new EnumMap<>(AlertField.class);
+        
+        void add(AlertField field, int ruleId) {
+            int[] ids = byField.getOrDefault(field, NONE);
+            for (int id : ids) {
+                if (id == ruleId) {
+                    return;
+                }
+            }
+            int[] grown = Arrays.copyOf(ids, ids.length + 1);
+            grown[ids.length] = ruleId;
+            byField.put(field, grown);
+        }
+        
+        int[] rulesFor(AlertField field) {
+            return byField.getOrDefault(field, NONE);
+        }
+    }
+    
+    private static final class ItemState {
+        final double[] values = new double[FIELD_COUNT];
+        final BitSet matched = new BitSet();
+    }
+}
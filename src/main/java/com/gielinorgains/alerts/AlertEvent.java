@@ -0,0 +1,40 @@
+package com.gielinorgains.alerts;
+
+import com.gielinorgains.model.GainsItem;
+
+/**
+ * A rule that started or stopped matching an item on the latest refresh.
+ */
+public final class AlertEvent {
+    private final AlertRule rule;
+    private final GainsItem item;
+    private final boolean matched;
+    
+    AlertEvent(AlertRule rule, GainsItem item, boolean matched) {
+        this.rule = rule;
+        this.item = item;
+        this.matched = matched;
+    }
+    
+    public AlertRule getRule() {
+        return rule;
+    }
+    
+    public GainsItem getItem() {
+        return item;
+    }
+    
+    /**
+     * True if the rule now matches, false if it stopped matching.
+     */
+    public boolean isMatched() {
+        return matched;
+    }
+    
+    /**
+     * Short text for a notification, e.g. "Abyssal whip: profit >= 50k"
+     */
+    public String describe() {
+        return item.getName() + (matched ? ": " : " no longer matches: ") + rule.getSource();
+    }
+}
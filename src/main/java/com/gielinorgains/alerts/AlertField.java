@@ -0,0 +1,54 @@
+package com.gielinorgains.alerts;
+
+import com.gielinorgains.model.GainsItem;
+
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Item fields an alert rule can test. Missing optional values read as NaN, which fails every
+ * comparison.
+ */
+public enum AlertField {
+    PROFIT("profit", GainsItem::getProfit),
+    ROI("roi", GainsItem::getAdjustedRoi),
+    SCORE("score", GainsItem::getScore),
+    VOLUME("volume", GainsItem::getDailyVolume),
+    QUANTITY("quantity", GainsItem::getQuantity),
+    BUY("buy", GainsItem::getAdjustedLowPrice),
+    SELL("sell", GainsItem::getAdjustedHighPrice),
+    RSI("rsi", item -> item.getRsi() != null ? item.getRsi() : Double.NaN),
+    ROC("roc", item -> item.getRoc() != null ? item.getRoc() : Double.NaN);
+    
+    private final String key;
+    private final ToDoubleFunction<GainsItem> getter;
+    
+    AlertField(String key, ToDoubleFunction<GainsItem> getter) {
+        this.key = key;
+        this.getter = getter;
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public double read(GainsItem item) {
+        return getter.applyAsDouble(item);
+    }
+    
+    /**
+     * Looks a field up by its rule name ("price" is accepted for buy), or returns null.
+     */
+    public static AlertField byKey(String key) {
+        String lower = key.toLowerCase(Locale.ROOT);
+        if (lower.equals("price")) {
+            return BUY;
+        }
+        for (AlertField field : values()) {
+            if (field.key.equals(lower)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,157 @@
+package com.gielinorgains.alerts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A threshold rule: one or more field comparisons joined by "and", optionally scoped to one item
+ * or to the pinned items. Written as text, one rule per line:
+ *
+ * <pre>
+ * profit &gt;= 50k and roi &gt;= 3%
+ * 4151: sell &lt;= 1.4m
+ * Abyssal whip: profit &gt; 100k
+ * pinned: score &gt;= 4
+ * </pre>
+ *
+ * A rule without a scope applies to every item in the snapshot.
+ */
+public final class AlertRule {
+    public static final String PINNED_SCOPE = "pinned";
+    
+    private static final Pattern CONDITION = Pattern.compile(
+        "\\s*([a-zA-Z]+)\\s*(>=|<=|>|<|≥|≤)\\s*(-?[0-9]+(?:\\.[0-9]+)?)\\s*([kKmM%]?)\\s*");
+    private static final Pattern AND = Pattern.compile("(?i)\\s+and\\s+|\\s*&&\\s*");
+    
+    private final String source;
+    private final String scope;
+    private final AlertField[] fields;
+    private final boolean[] greater;
+    private final boolean[] inclusive;
+    private final double[] thresholds;
+    
+    private AlertRule(String source, String scope, AlertField[] fields, boolean[] greater, boolean[] inclusive,
+                      double[] thresholds) {
+        this.source = source;
+        this.scope = scope;
+        this.fields = fields;
+        this.greater = greater;
+        this.inclusive = inclusive;
+        this.thresholds = thresholds;
+    }
+    
+    /**
+     * Parses one rule.
+     *
+     * @throws IllegalArgumentException if the rule is malformed
+     */
+    public static AlertRule parse(String text) {
+        String source = text.trim();
+        String body = source;
+        String scope = null;
+        int colon = source.indexOf(':');
+        if (colon >= 0) {
+            scope = source.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            body = source.substring(colon + 1);
+            if (scope.isEmpty()) {
+                throw new IllegalArgumentException("Empty item before ':' in rule: " + source);
+            }
+        }
+        
+        String[] parts = AND.split(body.trim());
+        int count = parts.length;
+        AlertField[] fields = new AlertField[count];
+        boolean[] greater = new boolean[count];
+        boolean[] inclusive = new boolean[count];
+        double[] thresholds = new double[count];
+        for (int i = 0; i < count; i++) {
+            Matcher matcher = CONDITION.matcher(parts[i]);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Expected e.g. 'profit >= 50k' but got '" + parts[i].trim() + "'");
+            }
+            fields[i] = AlertField.byKey(matcher.group(1));
+            if (fields[i] == null) {
+                throw new IllegalArgumentException("Unknown field '" + matcher.group(1) + "'");
+            }
+            String op = matcher.group(2);
+            greater[i] = op.startsWith(">") || op.equals("≥");
+            inclusive[i] = op.length() == 2 || op.equals("≥") || op.equals("≤");
+            thresholds[i] = Double.parseDouble(matcher.group(3)) * multiplier(matcher.group(4));
+        }
+        return new AlertRule(source, scope, fields, greater, inclusive, thresholds);
+    }
+    
+    /**
+     * Parses rules separated by new lines or semicolons, skipping blank ones. Malformed rules are
+     * left out and described in {@code errors}.
+     */
+    public static List<AlertRule> parseAll(String text, List<String> errors) {
+        List<AlertRule> rules = new ArrayList<>();
+        if (text == null) {
+            return rules;
+        }
+        for (String line : text.split("[\\n;]")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(parse(line));
+            } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        return rules;
+    }
+    
+    private static double multiplier(String suffix) {
+        switch (suffix.toLowerCase(Locale.ROOT)) {
+            case "k":
+                return 1_000;
+            case "m":
+                return 1_000_000;
+            default:
+                // "%" is just a unit; ROI is already stored in percent
+                return 1;
+        }
+    }
+    
+    /**
+     * Tests the rule against field values indexed by {@link AlertField#ordinal()}
+     */
+    boolean matches(double[] values) {
+        for (int i = 0; i < fields.length; i++) {
+            double value = values[fields[i].ordinal()];
+            double threshold = thresholds[i];
+            boolean pass = greater[i]
+                ? (inclusive[i] ? value >= threshold : value > threshold)
+                : (inclusive[i] ? value <= threshold : value < threshold);
+            if (!pass) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    AlertField[] getFields() {
+        return fields;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    /**
+     * Lower-cased item id or name, {@link #PINNED_SCOPE}, or null for every item.
+     */
+    public String getScope() {
+        return scope;
+    }
+    
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,82 @@
+package com.gielinorgains.api;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consecutive-failure circuit breaker. Closed, it lets everything through; after
+ * {@code failureThreshold} failures in a row it opens and rejects requests for
+ * {@code openMillis}; then a single trial request is let through, whose outcome closes or
+ * reopens it.
+ */
+@Slf4j
+final class CircuitBreaker {
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final int failureThreshold;
+    private final long openNanos;
+    
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+    
+    /**
+     * Whether a request may be sent now. Moves an open circuit whose wait is over to half open,
+     * and lets exactly one request through until that one's outcome is recorded.
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                log.debug("Circuit half open, letting a trial request through");
+                state = State.HALF_OPEN;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.debug("API recovered, closing circuit");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+    
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.debug("Opening circuit after {} consecutive failures", consecutiveFailures);
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+    
+    synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * Time until an open circuit lets a trial through, 0 if it is not open
+     */
+    synchronized long getRetryInMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (System.nanoTime() - openedAt)));
+    }
+}
@@ -1,46 +1,147 @@
 package com.gielinorgains.api;
 
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.ApiFetchEvent;
+import com.gielinorgains.diagnostics.LatencyHistogram;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
 import com.gielinorgains.model.ApiResponse;
 import com.gielinorgains.model.GainsItem;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.lang.ref.SoftReference;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Singleton
 public class GainsApiClient {
+    public static final int PAGE_SIZE = 200;
+    
     private static final String API_BASE_URL = "https://gielinorgains.com/api";
     private static final String ITEMS_ENDPOINT = "/items";
+    private static final String STREAM_ENDPOINT = "/items/stream";
+    private static final String ICON_BUNDLE_ENDPOINT = "/icons/bundle";
+    private static final MediaType URL_LIST = MediaType.parse("text/plain; charset=utf-8");
+    // How long to stop asking for bundles once the API has said it has none
+    private static final long BUNDLE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Response header with the price stream position a snapshot reflects
+    private static final String SEQUENCE_HEADER = "X-Price-Sequence";
+    // About two minutes of batches at the usual tick rate
+    private static final int RETAINED_BATCHES = 512;
     private static final int CACHE_TTL_SECONDS = 90;
+    private static final int MAX_CONCURRENT_PAGES = 4;
+    // Fewer timed fetches than this give too rough a p95 to hedge on
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    // CBOR when the server offers it; JSON otherwise
+    private static final String ACCEPT = ItemsCborDecoder.MEDIA_TYPE + ", application/json;q=0.9";
     
     private final OkHttpClient httpClient;
-    private final Gson gson;
+    private final String baseUrl;
+    private final LatencyHistogram fetchLatency;
+    private final LatencyHistogram decodeTime;
+    private final LongAdder hedgedRequests;
+    private final LongAdder hedgeWins;
+    private final LongAdder deadlineExceeded;
+    private final LongAdder circuitRejected;
+    private final ResiliencePolicy policy;
+    private final CircuitBreaker circuitBreaker;
+    private final GainsExecutors executors;
+    private final List<Consumer<List<GainsItem>>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private final List<PriceUpdateListener> priceUpdateListeners = new CopyOnWriteArrayList<>();
+    private final LiveSnapshot liveSnapshot = new LiveSnapshot(RETAINED_BATCHES);
+    private PriceStream priceStream; // Guarded by this
+    private volatile boolean resyncRequired;
+    private volatile SharedSnapshotCache sharedCache;
+    private volatile long bundlesUnavailableUntil;
+    // Guarded by this, together with the live snapshot they are kept in step with
     private ApiResponse cachedResponse;
+    // The cached snapshot while memory is tight; the GC may clear it
+    private SoftReference<ApiResponse> softResponse;
+    private ItemsQuery cachedQuery;
     private long lastFetchTime;
     private boolean lastRequestWasCached;
     
+    /**
+     * Receives the updates of the price stream, on the stream's thread.
+     */
+    public interface PriceUpdateListener {
+        /**
+         * New copies of the items whose prices were just updated. Each replaces the item with
+         * the same id, which is left as it was.
+         */
+        void onPricesUpdated(List<GainsItem> changed);
+        
+        /**
+         * Updates were missed and the cache has been expired; the items should be fetched again
+         */
+        void onResyncRequired();
+        
+        default void onStreamConnectionChanged(boolean connected) {
+        }
+    }
+    
+    public GainsApiClient(OkHttpClient httpClient) {
+        this(httpClient, new MetricsRegistry());
+    }
+    
+    public GainsApiClient(OkHttpClient httpClient, MetricsRegistry metrics) {
+        this(httpClient, metrics, API_BASE_URL);
+    }
+    
     @Inject
-    public GainsApiClient(OkHttpClient httpClient, Gson gson) {
+    public GainsApiClient(OkHttpClient httpClient, MetricsRegistry metrics, GainsExecutors executors) {
+        this(httpClient, metrics, API_BASE_URL, ResiliencePolicy.defaults(), executors);
+    }
+    
+    /**
+     * Creates a client against a different API root, e.g. a local stub server in tests.
+     */
+    public GainsApiClient(OkHttpClient httpClient, MetricsRegistry metrics, String baseUrl) {
+        this(httpClient, metrics, baseUrl, ResiliencePolicy.defaults());
+    }
+    
+    public GainsApiClient(OkHttpClient httpClient, MetricsRegistry metrics, String baseUrl,
+                          ResiliencePolicy policy) {
+        this(httpClient, metrics, baseUrl, policy, new GainsExecutors(metrics));
+    }
+    
+    public GainsApiClient(OkHttpClient httpClient, MetricsRegistry metrics, String baseUrl,
+                          ResiliencePolicy policy, GainsExecutors executors) {
         this.httpClient = httpClient.newBuilder()
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(45, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
             .retryOnConnectionFailure(true)
             .build();
-            
-        this.gson = gson.newBuilder()
-            .setLenient()
-            .create();
+        
+        this.baseUrl = baseUrl;
+        this.fetchLatency = metrics.histogram(MetricsRegistry.FETCH_LATENCY);
+        this.decodeTime = metrics.histogram(MetricsRegistry.DECODE_TIME);
+        this.hedgedRequests = metrics.counter(MetricsRegistry.HEDGED_REQUESTS);
+        this.hedgeWins = metrics.counter(MetricsRegistry.HEDGE_WINS);
+        this.deadlineExceeded = metrics.counter(MetricsRegistry.DEADLINE_EXCEEDED);
+        this.circuitRejected = metrics.counter(MetricsRegistry.CIRCUIT_REJECTED);
+        this.policy = policy;
+        this.circuitBreaker = new CircuitBreaker(policy.getFailureThreshold(), policy.getOpenMillis());
+        // Its scheduler only arms deadlines and hedges; the requests themselves run on OkHttp's dispatcher
+        this.executors = executors;
     }
     
     public CompletableFuture<ApiResponse> fetchItems(int limit, double minScore) {
@@ -48,91 +149,404 @@ public class GainsApiClient {
     }
     
     public CompletableFuture<ApiResponse> fetchItems(int limit, double minScore, boolean forceRefresh) {
+        return fetchItems(ItemsQuery.builder().limit(limit).minScore(minScore).build(), forceRefresh);
+    }
+    
+    /**
+     * Fetches a single request's worth of items. For more than {@link #PAGE_SIZE} items use
+     * {@link #fetchAllItems}.
+     */
+    public CompletableFuture<ApiResponse> fetchItems(ItemsQuery query, boolean forceRefresh) {
         // Check cache first (unless force refresh is requested)
-        if (!forceRefresh && isCacheValid()) {
+        ApiResponse cached = cached();
+        if (!forceRefresh && isCacheValid(cached, query, query.getLimit())) {
             log.debug("Returning cached items data");
             lastRequestWasCached = true;
-            return CompletableFuture.completedFuture(filterResponse(cachedResponse, limit, minScore));
+            return CompletableFuture.completedFuture(filterResponse(cached, query, query.getLimit(), true, forceRefresh));
+        }
+        // The deadline also covers waiting for another client's snapshot
+        RefreshScope scope = new RefreshScope(hedgeDelayMillis());
+        SharedSnapshotCache shared = sharedCache;
+        CompletableFuture<ApiResponse> refresh;
+        if (shared != null) {
+            refresh = findShared(shared, query, query.getLimit(), forceRefresh).thenCompose(response -> response != null
+                ? CompletableFuture.completedFuture(response)
+                : fetchFromApi(query, forceRefresh, scope));
+        } else {
+            refresh = fetchFromApi(query, forceRefresh, scope);
+        }
+        return withDeadline(refresh, scope, query, query.getLimit(), forceRefresh);
+    }
+    
+    private CompletableFuture<ApiResponse> fetchFromApi(ItemsQuery query, boolean forceRefresh, RefreshScope scope) {
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(rejectRequest(query, query.getLimit(), forceRefresh));
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String url = API_BASE_URL + ITEMS_ENDPOINT + "?limit=" + limit;
-                
-                Request request = new Request.Builder()
-                    .url(url)
-                    .addHeader("User-Agent", "Gielinor-Gains-RuneLite-Plugin/1.0.0")
-                    .addHeader("Accept", "application/json")
-                    .build();
-                
-                log.debug("Fetching items from: {}", url);
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        log.error("API request failed with status: {}", response.code());
-                        return createErrorResponse("API request failed: " + response.code());
-                    }
-                    
-                    String responseBody = response.body().string();
-                    log.debug("Received response: {} chars", responseBody.length());
-                    
-                    // Parse the response - it should be an object with 'data' and 'totalItems'
-                    Type responseType = new TypeToken<ApiResponseDto>(){}.getType();
-                    ApiResponseDto dto = gson.fromJson(responseBody, responseType);
-                    
-                    if (dto == null || dto.data == null) {
-                        log.error("Invalid response structure");
-                        return createErrorResponse("Invalid response structure");
-                    }
-                    
-                    ApiResponse apiResponse = new ApiResponse();
-                    apiResponse.setData(dto.data);
-                    apiResponse.setTotalItems(dto.totalItems);
-                    apiResponse.setSuccess(true);
-                    
-                    // Cache the response
-                    cachedResponse = apiResponse;
-                    lastFetchTime = System.currentTimeMillis();
-                    lastRequestWasCached = false;
-                    
-                    log.debug("Successfully fetched {} items", dto.data.size());
-                    return filterResponse(apiResponse, limit, minScore);
-                    
-                } catch (IOException e) {
-                    log.error("Network error fetching items from {}: {}", url, e.getMessage(), e);
-                    return createErrorResponse("Network error: " + e.getMessage());
+        return enqueueQuery(query, forceRefresh, scope).handle((apiResponse, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                log.error("Network error fetching items for {}: {}", query, cause.getMessage(), cause);
+                return fallbackResponse(query, query.getLimit(), forceRefresh, "Network error: " + cause.getMessage());
+            }
+            if (!apiResponse.isSuccess()) {
+                return fallbackResponse(query, query.getLimit(), forceRefresh, apiResponse.getError());
+            }
+            
+            // Cache the response
+            ApiResponse current = cacheResponse(query, apiResponse);
+            publishShared(query, apiResponse);
+            
+            log.debug("Successfully fetched {} items", apiResponse.getData().size());
+            return filterResponse(current, query, query.getLimit(), false, forceRefresh);
+        });
+    }
+    
+    /**
+     * Fetches up to {@code maxItems} items matching the query in pages of {@link #PAGE_SIZE}.
+     * After the first page, several pages are requested concurrently over the pooled connection.
+     * Pages are passed to {@code onPage} in catalog order as soon as all earlier pages have
+     * arrived; the returned future completes with the merged result once every page is in.
+     */
+    public CompletableFuture<ApiResponse> fetchAllItems(ItemsQuery query, int maxItems, boolean forceRefresh,
+                                                        Consumer<List<GainsItem>> onPage) {
+        ApiResponse cached = cached();
+        if (!forceRefresh && isCacheValid(cached, query, maxItems)) {
+            log.debug("Returning cached catalog data");
+            lastRequestWasCached = true;
+            ApiResponse filtered = filterResponse(cached, query, maxItems, true, forceRefresh);
+            onPage.accept(filtered.getData());
+            return CompletableFuture.completedFuture(filtered);
+        }
+        RefreshScope scope = new RefreshScope(hedgeDelayMillis());
+        SharedSnapshotCache shared = sharedCache;
+        CompletableFuture<ApiResponse> refresh;
+        if (shared != null) {
+            refresh = findShared(shared, query, maxItems, forceRefresh).thenCompose(response -> {
+                if (response == null) {
+                    return fetchAllFromApi(query, maxItems, forceRefresh, onPage, scope);
                 }
-                
-            } catch (Exception e) {
-                log.error("Unexpected error fetching items", e);
-                return createErrorResponse("Unexpected error: " + e.getMessage());
+                onPage.accept(response.getData());
+                return CompletableFuture.completedFuture(response);
+            });
+        } else {
+            refresh = fetchAllFromApi(query, maxItems, forceRefresh, onPage, scope);
+        }
+        return withDeadline(refresh, scope, query, maxItems, forceRefresh);
+    }
+    
+    private CompletableFuture<ApiResponse> fetchAllFromApi(ItemsQuery query, int maxItems, boolean forceRefresh,
+                                                           Consumer<List<GainsItem>> onPage, RefreshScope scope) {
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(rejectRequest(query, maxItems, forceRefresh));
+        }
+        
+        double minScore = query.getMinScore();
+        PagedFetch fetch = new PagedFetch(query, PAGE_SIZE, maxItems, MAX_CONCURRENT_PAGES,
+            page -> enqueueQuery(page, forceRefresh, scope),
+            page -> onPage.accept(page.stream()
+                .filter(item -> item.getScore() >= minScore)
+                .collect(Collectors.toList())));
+        
+        return fetch.start().thenApply(response -> {
+            if (!response.isSuccess()) {
+                return fallbackResponse(query, maxItems, forceRefresh, response.getError());
             }
+            // The merged catalog answers any later query it covers, whatever its limit
+            ItemsQuery fetched = query.toBuilder().limit(Math.max(1, maxItems)).build();
+            ApiResponse current = cacheResponse(fetched, response);
+            publishShared(fetched, response);
+            log.debug("Successfully fetched {} items across pages", response.getData().size());
+            return filterResponse(current, query, maxItems, false, forceRefresh);
         });
     }
     
-    private boolean isCacheValid() {
-        return cachedResponse != null && 
-               (System.currentTimeMillis() - lastFetchTime) < (CACHE_TTL_SECONDS * 1000);
+    /**
+     * Looks for a snapshot another client published, or has the leading client fetch one. A
+     * forced refresh only takes a snapshot published after it was asked for. Completes with
+     * null when this client should call the API itself; waits at most half the refresh
+     * deadline for the leader, leaving the rest for that.
+     */
+    private CompletableFuture<ApiResponse> findShared(SharedSnapshotCache shared, ItemsQuery query, int limit,
+                                                      boolean forceRefresh) {
+        long minPublishedAt = forceRefresh ? System.currentTimeMillis() : 0;
+        // Ask the leader for as many rows as this client wants, which may be more than one page
+        return shared.find(query.toBuilder().limit(Math.max(1, limit)).build(), minPublishedAt,
+                policy.getRefreshDeadlineMillis() / 2,
+                snapshot -> answers(snapshot.getQuery(), snapshot.getResponse(), query, limit))
+            .thenApply(snapshot -> {
+                if (snapshot == null) {
+                    return null;
+                }
+                log.debug("Serving {} from shared snapshot {}", query, snapshot.getGeneration());
+                ApiResponse current = cacheResponse(snapshot.getQuery(), snapshot.getResponse());
+                lastFetchTime = snapshot.getPublishedAt();
+                lastRequestWasCached = true;
+                return filterResponse(current, query, limit, true, forceRefresh);
+            });
     }
     
-    private ApiResponse filterResponse(ApiResponse response, int limit, double minScore) {
+    private void publishShared(ItemsQuery query, ApiResponse response) {
+        SharedSnapshotCache shared = sharedCache;
+        if (shared != null) {
+            shared.publish(query, response);
+        }
+    }
+    
+    /**
+     * Completes the refresh with cached data or an error if it is still running when the
+     * deadline passes, and cancels whatever requests it still has in flight.
+     */
+    private CompletableFuture<ApiResponse> withDeadline(CompletableFuture<ApiResponse> refresh, RefreshScope scope,
+                                                        ItemsQuery query, int limit, boolean forceRefresh) {
+        long deadline = policy.getRefreshDeadlineMillis();
+        ScheduledFuture<?> timeout = executors.scheduler().schedule(() -> {
+            if (refresh.isDone()) {
+                return;
+            }
+            log.warn("Refresh of {} exceeded its {}ms deadline", query, deadline);
+            deadlineExceeded.increment();
+            // Counted once for the refresh, however many of its requests were cut short
+            circuitBreaker.recordFailure();
+            refresh.complete(fallbackResponse(query, limit, forceRefresh,
+                String.format("Timed out after %.1fs", deadline / 1000.0)));
+            // Only now, so the cancelled requests can't complete the refresh with their own error
+            scope.expire();
+        }, deadline, TimeUnit.MILLISECONDS);
+        refresh.whenComplete((response, error) -> timeout.cancel(false));
+        return refresh;
+    }
+    
+    /**
+     * Runs a query on OkHttp's dispatcher so several pages can share the connection pool concurrently.
+     * If it has not been answered after the scope's hedge delay an identical request is sent
+     * alongside it; the first answer is used and the other request cancelled.
+     */
+    private CompletableFuture<ApiResponse> enqueueQuery(ItemsQuery query, boolean forceRefresh, RefreshScope scope) {
+        HedgedQuery hedged = new HedgedQuery(query, forceRefresh, scope);
+        hedged.send(false);
+        if (policy.isHedging()) {
+            ScheduledFuture<?> hedge = executors.scheduler().schedule(() -> {
+                if (!hedged.answered.get() && !scope.isExpired()) {
+                    log.debug("No response to {} after {}ms, hedging", query, scope.hedgeDelayMillis);
+                    hedgedRequests.increment();
+                    hedged.send(true);
+                }
+            }, scope.hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            hedged.result.whenComplete((response, error) -> hedge.cancel(false));
+        }
+        return hedged.result;
+    }
+    
+    /**
+     * Delay before hedging: the p95 of recent fetches, so about one request in twenty is hedged
+     */
+    private long hedgeDelayMillis() {
+        LatencyHistogram.Snapshot latency = fetchLatency.snapshot();
+        if (latency.getCount() < MIN_HEDGE_SAMPLES) {
+            return policy.getDefaultHedgeDelayMillis();
+        }
+        return Math.max(policy.getMinHedgeDelayMillis(), (long) latency.getPercentileMillis(95));
+    }
+    
+    /**
+     * Answer for a refresh the open circuit did not let through
+     */
+    private ApiResponse rejectRequest(ItemsQuery query, int limit, boolean forceRefresh) {
+        circuitRejected.increment();
+        long retryIn = circuitBreaker.getRetryInMillis();
+        log.debug("Circuit open, not calling the API for another {}ms", retryIn);
+        return fallbackResponse(query, limit, forceRefresh,
+            String.format("API unavailable, retrying in %ds", TimeUnit.MILLISECONDS.toSeconds(retryIn) + 1));
+    }
+    
+    /**
+     * Cached data for a refresh that failed, however old, if the cache covers the query; the error otherwise.
+     */
+    private ApiResponse fallbackResponse(ItemsQuery query, int limit, boolean forceRefresh, String error) {
+        ApiResponse cached = cached();
+        ItemsQuery cachedFor = cachedQuery;
+        if (cached == null || cachedFor == null || !cachedFor.covers(query)) {
+            return createErrorResponse(error);
+        }
+        log.debug("Serving cached items after failed refresh: {}", error);
+        lastRequestWasCached = true;
+        return filterResponse(cached, query, limit, true, forceRefresh);
+    }
+    
+    private Request buildRequest(ItemsQuery query) {
+        return new Request.Builder()
+            .url(query.toUrl(baseUrl + ITEMS_ENDPOINT))
+            .addHeader("User-Agent", "Gielinor-Gains-RuneLite-Plugin/1.0.0")
+            .addHeader("Accept", ACCEPT)
+            .build();
+    }
+    
+    private ApiResponse handleResponse(Response response, ItemsQuery query, boolean forceRefresh,
+                                       ApiFetchEvent networkEvent, long networkStart) throws IOException {
+        int limit = query.getLimit();
+        if (!response.isSuccessful()) {
+            commitPhase(networkEvent, ApiFetchEvent.PHASE_NETWORK, limit, 0, 0, forceRefresh, false);
+            log.error("API request failed with status: {}", response.code());
+            return createErrorResponse("API request failed: " + response.code());
+        }
+        
+        byte[] responseBytes = response.body().bytes();
+        fetchLatency.recordNanos(System.nanoTime() - networkStart);
+        commitPhase(networkEvent, ApiFetchEvent.PHASE_NETWORK, limit, 0, responseBytes.length, forceRefresh, true);
+        boolean cbor = isCbor(response.body().contentType());
+        log.debug("Received response: {} bytes of {}", responseBytes.length, cbor ? "CBOR" : "JSON");
+        
+        // Parse the response - it should be an object with 'data' and 'totalItems'
+        ApiFetchEvent decodeEvent = new ApiFetchEvent();
+        decodeEvent.begin();
+        long decodeStart = System.nanoTime();
+        ApiResponse apiResponse;
+        try {
+            apiResponse = cbor ? ItemsCborDecoder.decode(responseBytes) : ItemsResponseDecoder.decode(responseBytes);
+        } catch (IOException e) {
+            log.error("Failed to decode items response: {}", e.getMessage());
+            apiResponse = null;
+        }
+        decodeTime.recordNanos(System.nanoTime() - decodeStart);
+        boolean valid = apiResponse != null;
+        commitPhase(decodeEvent, ApiFetchEvent.PHASE_DECODE, limit,
+            valid ? apiResponse.getData().size() : 0, responseBytes.length, forceRefresh, valid);
+        
+        if (!valid) {
+            log.error("Invalid response structure");
+            return createErrorResponse("Invalid response structure");
+        }
+        apiResponse.setSequence(parseSequence(response.header(SEQUENCE_HEADER)));
+        return apiResponse;
+    }
+    
+    private static long parseSequence(String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed {} header '{}'", SEQUENCE_HEADER, header);
+            return 0;
+        }
+    }
+    
+    /**
+     * Server errors and throttling count against the circuit; anything else shows the API is answering.
+     */
+    private void recordOutcome(int status) {
+        if (status >= 500 || status == 429) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+    
+    private static boolean isCbor(MediaType contentType) {
+        return contentType != null && "cbor".equalsIgnoreCase(contentType.subtype());
+    }
+    
+    /**
+     * Makes a fetched snapshot the cached one. Returns it caught up with the price updates that
+     * arrived while it was being fetched.
+     */
+    private ApiResponse cacheResponse(ItemsQuery query, ApiResponse response) {
+        ApiResponse current;
+        synchronized (this) {
+            current = liveSnapshot.reset(response);
+            cachedResponse = current;
+            softResponse = null;
+            cachedQuery = query;
+            lastFetchTime = System.currentTimeMillis();
+            lastRequestWasCached = false;
+            resyncRequired = false;
+        }
+        
+        for (Consumer<List<GainsItem>> listener : snapshotListeners) {
+            try {
+                listener.accept(current.getData());
+            } catch (Exception e) {
+                log.warn("Snapshot listener failed", e);
+            }
+        }
+        return current;
+    }
+    
+    private boolean isCacheValid(ApiResponse cached, ItemsQuery query, int limit) {
+        // While the price stream is connected it keeps the cache current, unless it lost its place
+        // or the snapshot was let go to save memory
+        boolean kept;
+        synchronized (this) {
+            kept = cached == cachedResponse;
+        }
+        return answers(cachedQuery, cached, query, limit) && !resyncRequired && ((kept && isPriceStreamLive())
+            || (System.currentTimeMillis() - lastFetchTime) < (CACHE_TTL_SECONDS * 1000));
+    }
+    
+    /**
+     * Whether a response fetched for {@code fetchedFor} holds every row {@code query} would return
+     */
+    private static boolean answers(ItemsQuery fetchedFor, ApiResponse response, ItemsQuery query, int limit) {
+        if (response == null || fetchedFor == null || !fetchedFor.covers(query)) {
+            return false;
+        }
+        // A response holding fewer rows than were asked for only answers if the server had no more
+        return fetchedFor.getLimit() >= limit || response.getData().size() < fetchedFor.getLimit();
+    }
+    
+    private ApiResponse filterResponse(ApiResponse response, ItemsQuery query, int limit,
+                                       boolean cacheHit, boolean forceRefresh) {
         if (response == null || response.getData() == null) {
             return response;
         }
         
+        ApiFetchEvent filterEvent = new ApiFetchEvent();
+        filterEvent.begin();
+        
+        double minScore = query.getMinScore();
         List<GainsItem> filteredItems = response.getData().stream()
             .filter(item -> item.getScore() >= minScore)
             .limit(limit)
-            .collect(java.util.stream.Collectors.toList());
+            .collect(Collectors.toList());
             
         ApiResponse filtered = new ApiResponse();
         filtered.setData(filteredItems);
         filtered.setTotalItems(filteredItems.size());
         filtered.setSuccess(true);
         
+        filterEvent.end();
+        if (filterEvent.shouldCommit()) {
+            filterEvent.phase = ApiFetchEvent.PHASE_FILTER;
+            filterEvent.limit = limit;
+            filterEvent.itemCount = filteredItems.size();
+            filterEvent.cacheHit = cacheHit;
+            filterEvent.forceRefresh = forceRefresh;
+            filterEvent.success = true;
+            filterEvent.commit();
+        }
+        
         return filtered;
     }
     
+    /**
+     * Ends and commits a fetch phase event. Field assignment is skipped entirely when JFR is not recording.
+     */
+    private static void commitPhase(ApiFetchEvent event, String phase, int limit, int itemCount,
+                                    long bytes, boolean forceRefresh, boolean success) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.limit = limit;
+            event.itemCount = itemCount;
+            event.bytes = bytes;
+            event.forceRefresh = forceRefresh;
+            event.success = success;
+            event.commit();
+        }
+    }
+    
     private ApiResponse createErrorResponse(String error) {
         ApiResponse response = new ApiResponse();
         response.setSuccess(false);
@@ -140,18 +554,213 @@ public class GainsApiClient {
         return response;
     }
     
-    // DTO class for parsing the API response
-    private static class ApiResponseDto {
-        public List<GainsItem> data;
-        public int totalItems;
+    /**
+     * Registers a callback for every freshly fetched (never cached) item list. Called on the
+     * fetching thread, so listeners must hand off any slow work.
+     */
+    public void addSnapshotListener(Consumer<List<GainsItem>> listener) {
+        snapshotListeners.add(listener);
+    }
+    
+    public void removeSnapshotListener(Consumer<List<GainsItem>> listener) {
+        snapshotListeners.remove(listener);
+    }
+    
+    /**
+     * Registers a callback for the price stream. Called on the stream's thread, so listeners must
+     * hand off any slow work.
+     */
+    public void addPriceUpdateListener(PriceUpdateListener listener) {
+        priceUpdateListeners.add(listener);
+    }
+    
+    public void removePriceUpdateListener(PriceUpdateListener listener) {
+        priceUpdateListeners.remove(listener);
+    }
+    
+    /**
+     * Starts applying pushed price updates to the cached items. Does nothing if already started.
+     */
+    public synchronized void startPriceStream() {
+        if (priceStream != null) {
+            return;
+        }
+        priceStream = new PriceStream(httpClient, baseUrl + STREAM_ENDPOINT, new PriceStream.Listener() {
+            @Override
+            public void onDeltas(long sequence, List<PriceDelta> deltas) {
+                List<GainsItem> changed;
+                synchronized (GainsApiClient.this) {
+                    changed = liveSnapshot.apply(sequence, deltas);
+                    if (!changed.isEmpty() && cachedResponse != null) {
+                        cachedResponse = liveSnapshot.getSnapshot();
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    notifyPriceListeners(listener -> listener.onPricesUpdated(changed));
+                }
+            }
+            
+            @Override
+            public void onResync() {
+                resyncRequired = true;
+                notifyPriceListeners(PriceUpdateListener::onResyncRequired);
+            }
+            
+            @Override
+            public void onConnectionChanged(boolean connected) {
+                log.debug("Price stream {}", connected ? "connected" : "disconnected");
+                notifyPriceListeners(listener -> listener.onStreamConnectionChanged(connected));
+            }
+        });
+        priceStream.start();
+        log.debug("Started price stream");
+    }
+    
+    public void stopPriceStream() {
+        PriceStream stream;
+        synchronized (this) {
+            stream = priceStream;
+            priceStream = null;
+        }
+        if (stream != null) {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Whether pushed price updates are currently arriving
+     */
+    public synchronized boolean isPriceStreamLive() {
+        return priceStream != null && priceStream.isConnected();
+    }
+    
+    private void notifyPriceListeners(Consumer<PriceUpdateListener> call) {
+        for (PriceUpdateListener listener : priceUpdateListeners) {
+            try {
+                call.accept(listener);
+            } catch (Exception e) {
+                log.warn("Price update listener failed", e);
+            }
+        }
+    }
+    
+    /**
+     * False for a while after the API said it has no icon bundles
+     */
+    public boolean isIconBundleAvailable() {
+        return System.currentTimeMillis() >= bundlesUnavailableUntil;
+    }
+    
+    /**
+     * Fetches the source bytes of many icons in one request, handing each icon to
+     * {@code onIcon} on the calling thread as soon as it is read off the response. Blocks until
+     * the whole bundle is in, so call it off the EDT.
+     *
+     * @return false if the API offers no bundles or the request failed, possibly after some icons
+     *         were handed over. Either way the icons not handed over should be fetched one by one.
+     */
+    public boolean fetchIconBundle(List<String> iconUrls, BiConsumer<String, byte[]> onIcon) {
+        if (!isIconBundleAvailable()) {
+            return false;
+        }
+        Request request = new Request.Builder()
+            .url(baseUrl + ICON_BUNDLE_ENDPOINT)
+            .addHeader("User-Agent", "Gielinor-Gains-RuneLite-Plugin/1.0.0")
+            .addHeader("Accept", IconBundle.MEDIA_TYPE)
+            .post(RequestBody.create(URL_LIST, IconBundle.encodeRequest(iconUrls)))
+            .build();
+        
+        try (Response response = httpClient.newCall(request).execute()) {
+            int status = response.code();
+            if (status == 404 || status == 405 || status == 501) {
+                log.debug("API has no icon bundles ({}), fetching icons one by one", status);
+                bundlesUnavailableUntil = System.currentTimeMillis() + BUNDLE_RETRY_MILLIS;
+                return false;
+            }
+            if (!response.isSuccessful()) {
+                log.debug("Icon bundle request failed with status: {}", status);
+                return false;
+            }
+            int count = IconBundle.read(response.body().byteStream(), new HashSet<>(iconUrls), onIcon);
+            log.debug("Icon bundle held {} of {} icons", count, iconUrls.size());
+            return true;
+        } catch (IOException e) {
+            log.debug("Icon bundle request failed: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Shares fetched snapshots with other clients on this machine through {@code cache}, and
+     * starts competing to be the client that fetches for them.
+     */
+    public void attachSharedCache(SharedSnapshotCache cache) throws IOException {
+        cache.start(query -> {
+            RefreshScope scope = new RefreshScope(hedgeDelayMillis());
+            withDeadline(fetchAllFromApi(query, query.getLimit(), true, page -> { }, scope), scope, query,
+                query.getLimit(), true);
+        });
+        sharedCache = cache;
+    }
+    
+    public void detachSharedCache() {
+        sharedCache = null;
+    }
+    
+    /**
+     * The cached snapshot, whether held strongly or softly; null if there is none or the GC took it
+     */
+    private synchronized ApiResponse cached() {
+        ApiResponse response = cachedResponse;
+        SoftReference<ApiResponse> soft = softResponse;
+        if (response == null && soft != null) {
+            response = soft.get();
+        }
+        return response;
+    }
+    
+    /**
+     * Holds the cached snapshot softly while memory is tight, so the GC can take it rather than
+     * the client running short, and holds it strongly again once memory frees up if it is still
+     * there. A snapshot the price stream is keeping current stays, since the panel shows it.
+     */
+    public synchronized void onMemoryPressure(MemoryPressureMonitor.Level level) {
+        if (level == MemoryPressureMonitor.Level.NORMAL) {
+            ApiResponse kept = cached();
+            if (cachedResponse == null && kept != null) {
+                log.debug("Memory pressure eased, keeping the cached snapshot again");
+                cachedResponse = liveSnapshot.reset(kept);
+                softResponse = null;
+            }
+            return;
+        }
+        ApiResponse response = cachedResponse;
+        if (response == null || isPriceStreamLive()) {
+            return;
+        }
+        log.debug("Memory pressure {}, holding the cached snapshot of {} items softly", level, response.getData().size());
+        softResponse = new SoftReference<>(response);
+        cachedResponse = null;
+        // The index holds the items too
+        liveSnapshot.clear();
     }
     
-    public void clearCache() {
+    public synchronized void clearCache() {
+        liveSnapshot.clear();
         cachedResponse = null;
+        softResponse = null;
+        cachedQuery = null;
         lastFetchTime = 0;
         lastRequestWasCached = false;
     }
     
+    /**
+     * False while the circuit is open or on trial after repeated failures
+     */
+    public boolean isApiHealthy() {
+        return circuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+    
     public boolean wasLastRequestCached() {
         return lastRequestWasCached;
     }
@@ -161,6 +770,132 @@ public class GainsApiClient {
     }
     
     public boolean hasCachedData() {
-        return cachedResponse != null;
+        return cached() != null;
+    }
+    
+    /**
+     * The requests of one refresh, so they can all be cancelled when its deadline passes
+     */
+    private static final class RefreshScope {
+        private final long hedgeDelayMillis;
+        private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+        private volatile boolean expired;
+        
+        RefreshScope(long hedgeDelayMillis) {
+            this.hedgeDelayMillis = hedgeDelayMillis;
+        }
+        
+        void register(Call call) {
+            calls.add(call);
+            if (expired) {
+                call.cancel();
+            }
+        }
+        
+        void unregister(Call call) {
+            calls.remove(call);
+        }
+        
+        boolean isExpired() {
+            return expired;
+        }
+        
+        void expire() {
+            expired = true;
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+    }
+    
+    /**
+     * One query and the requests sent for it: the original and possibly a hedge. The first
+     * response completes {@link #result}; the circuit breaker hears only about that one, and
+     * about a failure only once every request has failed.
+     */
+    private final class HedgedQuery {
+        private final ItemsQuery query;
+        private final boolean forceRefresh;
+        private final RefreshScope scope;
+        private final CompletableFuture<ApiResponse> result = new CompletableFuture<>();
+        private final List<Call> attempts = new CopyOnWriteArrayList<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean answered = new AtomicBoolean();
+        
+        HedgedQuery(ItemsQuery query, boolean forceRefresh, RefreshScope scope) {
+            this.query = query;
+            this.forceRefresh = forceRefresh;
+            this.scope = scope;
+        }
+        
+        void send(boolean hedge) {
+            Request request = buildRequest(query);
+            log.debug("Fetching items from: {}", request.url());
+            
+            ApiFetchEvent networkEvent = new ApiFetchEvent();
+            networkEvent.begin();
+            long networkStart = System.nanoTime();
+            pending.incrementAndGet();
+            Call call = httpClient.newCall(request);
+            attempts.add(call);
+            scope.register(call);
+            
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    scope.unregister(call);
+                    commitPhase(networkEvent, ApiFetchEvent.PHASE_NETWORK, query.getLimit(), 0, 0, forceRefresh, false);
+                    fail(e);
+                }
+                
+                @Override
+                public void onResponse(Call call, Response response) {
+                    scope.unregister(call);
+                    try (Response body = response) {
+                        ApiResponse apiResponse = handleResponse(body, query, forceRefresh, networkEvent, networkStart);
+                        // Bookkeeping first: completing runs the caller's stages on this thread
+                        if (answered.compareAndSet(false, true)) {
+                            recordOutcome(body.code());
+                            if (hedge) {
+                                hedgeWins.increment();
+                            }
+                            cancelOthers(call);
+                            result.complete(apiResponse);
+                        }
+                    } catch (IOException e) {
+                        commitPhase(networkEvent, ApiFetchEvent.PHASE_NETWORK, query.getLimit(), 0, 0, forceRefresh, false);
+                        fail(e);
+                    } catch (RuntimeException e) {
+                        if (answered.compareAndSet(false, true)) {
+                            // Counted like any failed request, or a half-open trial would never end
+                            circuitBreaker.recordFailure();
+                            cancelOthers(call);
+                            result.completeExceptionally(e);
+                        }
+                    }
+                }
+            });
+        }
+        
+        /**
+         * Fails the query once every request sent for it has failed. Requests cut short by the
+         * deadline were already counted against the circuit.
+         */
+        private void fail(IOException e) {
+            if (pending.decrementAndGet() == 0 && answered.compareAndSet(false, true)) {
+                if (!scope.isExpired()) {
+                    circuitBreaker.recordFailure();
+                }
+                result.completeExceptionally(e);
+            }
+        }
+        
+        private void cancelOthers(Call winner) {
+            for (Call attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.cancel();
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapter for {@link GainsItem}.
+ *
+ * Reads the stream directly instead of going through Gson's reflective adapter: properties are
+ * matched with a string switch, numbers go straight into primitives and unknown properties are
+ * skipped without being materialized. Accepts the same input as the reflective adapter did,
+ * including nulls for primitive fields (left at their default) and numbers or booleans where a
+ * string is expected. Keep the property list in step with the fields of {@link GainsItem}.
+ */
+public final class GainsItemTypeAdapter extends TypeAdapter<GainsItem> {
+    @Override
+    public GainsItem read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        
+        GainsItem.GainsItemBuilder item = GainsItem.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id": item.id(readString(in)); break;
+                case "name": item.name(readString(in)); break;
+                case "icon": item.icon(readString(in)); break;
+                case "detailIcon": item.detailIcon(readString(in)); break;
+                case "quantity": item.quantity(in.nextInt()); break;
+                case "limit": item.limit(in.nextInt()); break;
+                case "dailyVolume": item.dailyVolume(in.nextLong()); break;
+                case "latestLowPrice": item.latestLowPrice(in.nextInt()); break;
+                case "latestHighPrice": item.latestHighPrice(in.nextInt()); break;
+                case "adjustedLowPrice": item.adjustedLowPrice(in.nextInt()); break;
+                case "adjustedHighPrice": item.adjustedHighPrice(in.nextInt()); break;
+                case "profit": item.profit(in.nextInt()); break;
+                case "adjustedRoi": item.adjustedRoi(in.nextDouble()); break;
+                case "score": item.score(in.nextDouble()); break;
+                case "rsi": item.rsi(in.nextDouble()); break;
+                case "roc": item.roc(in.nextDouble()); break;
+                case "timeframe": item.timeframe(readString(in)); break;
+                case "sparklineData": item.sparklineData(readDoubles(in)); break;
+                case "quantityConfidence": item.quantityConfidence(readString(in)); break;
+                case "quantityReasoning": item.quantityReasoning(readString(in)); break;
+                case "buyVolumeSupport": item.buyVolumeSupport(in.nextDouble()); break;
+                case "sellVolumeSupport": item.sellVolumeSupport(in.nextDouble()); break;
+                case "limitingFactor": item.limitingFactor(readString(in)); break;
+                case "sDataCompleteness": item.sDataCompleteness(in.nextDouble()); break;
+                case "medianHourlyVolume": item.medianHourlyVolume(in.nextDouble()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return item.build();
+    }
+    
+    @Override
+    public void write(JsonWriter out, GainsItem item) throws IOException {
+        if (item == null) {
+            out.nullValue();
+            return;
+        }
+        
+        out.beginObject();
+        out.name("id").value(item.getId());
+        out.name("name").value(item.getName());
+        out.name("icon").value(item.getIcon());
+        out.name("detailIcon").value(item.getDetailIcon());
+        out.name("quantity").value(item.getQuantity());
+        out.name("limit").value(item.getLimit());
+        out.name("dailyVolume").value(item.getDailyVolume());
+        out.name("latestLowPrice").value(item.getLatestLowPrice());
+        out.name("latestHighPrice").value(item.getLatestHighPrice());
+        out.name("adjustedLowPrice").value(item.getAdjustedLowPrice());
+        out.name("adjustedHighPrice").value(item.getAdjustedHighPrice());
+        out.name("profit").value(item.getProfit());
+        out.name("adjustedRoi").value(item.getAdjustedRoi());
+        out.name("score").value(item.getScore());
+        out.name("rsi").value(item.getRsi());
+        out.name("roc").value(item.getRoc());
+        out.name("timeframe").value(item.getTimeframe());
+        out.name("sparklineData");
+        if (item.getSparklineData() == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (Double value : item.getSparklineData()) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+        out.name("quantityConfidence").value(item.getQuantityConfidence());
+        out.name("quantityReasoning").value(item.getQuantityReasoning());
+        out.name("buyVolumeSupport").value(item.getBuyVolumeSupport());
+        out.name("sellVolumeSupport").value(item.getSellVolumeSupport());
+        out.name("limitingFactor").value(item.getLimitingFactor());
+        out.name("sDataCompleteness").value(item.getSDataCompleteness());
+        out.name("medianHourlyVolume").value(item.getMedianHourlyVolume());
+        out.endObject();
+    }
+    
+    private static String readString(JsonReader in) throws IOException {
+        // Gson's string adapter also takes unquoted numbers and booleans
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+    
+    private static List<Double> readDoubles(JsonReader in) throws IOException {
+        List<Double> values = new ArrayList<>(32);
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                values.add(null);
+            } else {
+                values.add(in.nextDouble());
+            }
+        }
+        in.endArray();
+        return values;
+    }
+}
@@ -0,0 +1,104 @@
+package com.gielinorgains.api;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The body of an {@code /icons/bundle} exchange. The request lists one icon URL per line; the
+ * response concatenates the icons the server could get, in any order:
+ * <pre>
+ * int magic, int count, then per icon: UTF url, int length, length bytes
+ * </pre>
+ * Icons the server could not get are left out, and should be fetched one by one.
+ */
+public final class IconBundle {
+    public static final String MEDIA_TYPE = "application/vnd.gielinorgains.icon-bundle";
+    
+    private static final int MAGIC = 0x47474942; // "GGIB"
+    // Far above any item sprite; guards against a corrupt length
+    private static final int MAX_ICON_BYTES = 1 << 20;
+    
+    private IconBundle() {
+    }
+    
+    public static byte[] encodeRequest(Collection<String> urls) {
+        return String.join("\n", urls).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    public static List<String> decodeRequest(byte[] body) {
+        return List.of(new String(body, StandardCharsets.UTF_8).split("\n"));
+    }
+    
+    public static void write(OutputStream out, Map<String, byte[]> icons) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(icons.size());
+        for (Map.Entry<String, byte[]> icon : icons.entrySet()) {
+            data.writeUTF(icon.getKey());
+            data.writeInt(icon.getValue().length);
+            data.write(icon.getValue());
+        }
+        data.flush();
+    }
+    
+    /**
+     * Reads a whole response, keeping only the icons that were asked for
+     *
+     * @throws IOException if the body is truncated or not a bundle
+     */
+    public static Map<String, byte[]> read(InputStream in, Set<String> requested) throws IOException {
+        Map<String, byte[]> icons = new LinkedHashMap<>();
+        read(in, requested, icons::put);
+        return icons;
+    }
+    
+    /**
+     * Reads a response as it streams in, handing each icon that was asked for to {@code onIcon}
+     * as soon as its bytes are read, so the caller can start on it before the rest arrives. An
+     * icon listed twice is handed over once.
+     *
+     * @return how many icons were handed over
+     * @throws IOException if the body is truncated or not a bundle; icons read before the
+     *                     problem have already been handed over
+     */
+    public static int read(InputStream in, Set<String> requested, BiConsumer<String, byte[]> onIcon) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an icon bundle");
+        }
+        int count = data.readInt();
+        if (count < 0 || count > requested.size()) {
+            throw new IOException("Icon bundle claims " + count + " icons for " + requested.size() + " requested");
+        }
+        Set<String> handed = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String url = data.readUTF();
+            int length = data.readInt();
+            if (length < 0 || length > MAX_ICON_BYTES) {
+                throw new IOException("Icon bundle entry of " + length + " bytes");
+            }
+            byte[] bytes = new byte[length];
+            try {
+                data.readFully(bytes);
+            } catch (EOFException e) {
+                throw new IOException("Icon bundle truncated after " + i + " of " + count + " icons", e);
+            }
+            if (requested.contains(url) && handed.add(url)) {
+                onIcon.accept(url, bytes);
+            }
+        }
+        return handed.size();
+    }
+}
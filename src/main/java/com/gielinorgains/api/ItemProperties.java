@@ -0,0 +1,103 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.GainsItem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The wire properties of {@link GainsItem}, shared by the binary and JSON decoders so a new field
+ * only has to be added in one place (and in {@link GainsItemTypeAdapter}).
+ */
+final class ItemProperties {
+    // In the order the API writes them
+    private static final String[] NAMES = {
+        "id", "name", "icon", "detailIcon", "quantity", "limit", "dailyVolume", "latestLowPrice",
+        "latestHighPrice", "adjustedLowPrice", "adjustedHighPrice", "profit", "adjustedRoi", "score", "rsi",
+        "roc", "timeframe", "sparklineData", "quantityConfidence", "quantityReasoning", "buyVolumeSupport",
+        "sellVolumeSupport", "limitingFactor", "sDataCompleteness", "medianHourlyVolume"
+    };
+    private static final byte[][] NAME_BYTES = new byte[NAMES.length][];
+    
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAME_BYTES[i] = NAMES[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    
+    private ItemProperties() {
+    }
+    
+    /**
+     * Values of one item, read in place from the encoded body
+     */
+    interface ValueReader {
+        String readText() throws IOException;
+        
+        int readInt() throws IOException;
+        
+        long readLong() throws IOException;
+        
+        double readDouble() throws IOException;
+        
+        List<Double> readDoubles() throws IOException;
+        
+        void skipValue() throws IOException;
+    }
+    
+    /**
+     * Index of the property whose UTF-8 name is {@code in[start, end)}, or -1 if it is unknown.
+     * Tries {@code expected} first, normally the one after the previous property.
+     */
+    static int find(byte[] in, int start, int end, int expected) {
+        if (expected >= 0 && expected < NAME_BYTES.length && matches(in, start, end, NAME_BYTES[expected])) {
+            return expected;
+        }
+        for (int i = 0; i < NAME_BYTES.length; i++) {
+            if (matches(in, start, end, NAME_BYTES[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    static boolean matches(byte[] in, int start, int end, byte[] name) {
+        return end - start == name.length && Arrays.equals(in, start, end, name, 0, name.length);
+    }
+    
+    /**
+     * Reads the value of a property found by {@link #find} into the builder; unknown ones are skipped.
+     */
+    static void read(GainsItem.GainsItemBuilder item, int property, ValueReader in) throws IOException {
+        switch (property) {
+            case 0: item.id(in.readText()); break;
+            case 1: item.name(in.readText()); break;
+            case 2: item.icon(in.readText()); break;
+            case 3: item.detailIcon(in.readText()); break;
+            case 4: item.quantity(in.readInt()); break;
+            case 5: item.limit(in.readInt()); break;
+            case 6: item.dailyVolume(in.readLong()); break;
+            case 7: item.latestLowPrice(in.readInt()); break;
+            case 8: item.latestHighPrice(in.readInt()); break;
+            case 9: item.adjustedLowPrice(in.readInt()); break;
+            case 10: item.adjustedHighPrice(in.readInt()); break;
+            case 11: item.profit(in.readInt()); break;
+            case 12: item.adjustedRoi(in.readDouble()); break;
+            case 13: item.score(in.readDouble()); break;
+            case 14: item.rsi(in.readDouble()); break;
+            case 15: item.roc(in.readDouble()); break;
+            case 16: item.timeframe(in.readText()); break;
+            case 17: item.sparklineData(in.readDoubles()); break;
+            case 18: item.quantityConfidence(in.readText()); break;
+            case 19: item.quantityReasoning(in.readText()); break;
+            case 20: item.buyVolumeSupport(in.readDouble()); break;
+            case 21: item.sellVolumeSupport(in.readDouble()); break;
+            case 22: item.limitingFactor(in.readText()); break;
+            case 23: item.sDataCompleteness(in.readDouble()); break;
+            case 24: item.medianHourlyVolume(in.readDouble()); break;
+            default: in.skipValue(); break;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes an {@code /items} response encoded as CBOR (RFC 8949): a map with the same
+ * {@code data} and {@code totalItems} keys as the JSON body, into the same model.
+ *
+ * Keys are matched in place against {@link ItemProperties} and values are read straight into
+ * primitives. Accepts definite and indefinite lengths, every float width, tags (ignored) and both
+ * null and undefined as null. Integers where a string is expected are taken as their text, and
+ * whole floats are accepted for integer fields, as the JSON decoder does.
+ */
+public final class ItemsCborDecoder {
+    public static final String MEDIA_TYPE = "application/cbor";
+    
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int UNDEFINED = 0xf7;
+    private static final int HALF = 0xf9;
+    private static final int SINGLE = 0xfa;
+    private static final int DOUBLE = 0xfb;
+    private static final int BREAK = 0xff;
+    private static final int INDEFINITE = -1;
+    private static final int MAX_DEPTH = 64;
+    
+    private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOTAL_ITEMS = "totalItems".getBytes(StandardCharsets.US_ASCII);
+    
+    private ItemsCborDecoder() {
+    }
+    
+    /**
+     * @return a successful response, or null if the body has no {@code data} array
+     * @throws IOException if the body is not well-formed CBOR or a value has the wrong type
+     */
+    public static ApiResponse decode(byte[] body) throws IOException {
+        return new Reader(body).readResponse();
+    }
+    
+    /**
+     * Single-use reader over one body
+     */
+    private static final class Reader implements ItemProperties.ValueReader {
+        private final byte[] in;
+        private int pos;
+        private int depth;
+        private int keyStart; // Start of the key last read by readKey
+        
+        Reader(byte[] in) {
+            this.in = in;
+        }
+        
+        ApiResponse readResponse() throws IOException {
+            skipTags();
+            if (peekMajor() != MAJOR_MAP) {
+                return null;
+            }
+            List<GainsItem> data = null;
+            int totalItems = 0;
+            int entries = readLength(MAJOR_MAP);
+            for (int i = 0; entries == INDEFINITE ? !atBreak() : i < entries; i++) {
+                int keyEnd = readKey();
+                if (isNull()) {
+                    continue;
+                }
+                if (ItemProperties.matches(in, keyStart, keyEnd, DATA)) {
+                    data = readItems();
+                } else if (ItemProperties.matches(in, keyStart, keyEnd, TOTAL_ITEMS)) {
+                    totalItems = readInt();
+                } else {
+                    skipValue();
+                }
+            }
+            if (entries == INDEFINITE) {
+                pos++;
+            }
+            if (data == null) {
+                return null;
+            }
+            ApiResponse response = new ApiResponse();
+            response.setData(data);
+            response.setTotalItems(totalItems);
+            response.setSuccess(true);
+            return response;
+        }
+        
+        private List<GainsItem> readItems() throws IOException {
+            skipTags();
+            int count = readLength(MAJOR_ARRAY);
+            List<GainsItem> items = new ArrayList<>(count == INDEFINITE ? GainsApiClient.PAGE_SIZE
+                : Math.min(count, 4096));
+            for (int i = 0; count == INDEFINITE ? !atBreak() : i < count; i++) {
+                items.add(isNull() ? null : readItem());
+            }
+            if (count == INDEFINITE) {
+                pos++;
+            }
+            return items;
+        }
+        
+        private GainsItem readItem() throws IOException {
+            skipTags();
+            int entries = readLength(MAJOR_MAP);
+            GainsItem.GainsItemBuilder item = GainsItem.builder();
+            int expected = 0;
+            for (int i = 0; entries == INDEFINITE ? !atBreak() : i < entries; i++) {
+                int keyEnd = readKey();
+                int property = ItemProperties.find(in, keyStart, keyEnd, expected);
+                expected = property + 1;
+                if (isNull()) {
+                    continue;
+                }
+                ItemProperties.read(item, property, this);
+            }
+            if (entries == INDEFINITE) {
+                pos++;
+            }
+            return item.build();
+        }
+        
+        /**
+         * Reads a definite-length text key; returns its end and sets {@link #keyStart}.
+         */
+        private int readKey() throws IOException {
+            skipTags();
+            int length = readLength(MAJOR_TEXT);
+            if (length == INDEFINITE) {
+                throw new IOException("Unsupported indefinite-length CBOR key at byte " + pos);
+            }
+            require(length);
+            keyStart = pos;
+            pos += length;
+            return pos;
+        }
+        
+        @Override
+        public String readText() throws IOException {
+            skipTags();
+            int major = peekMajor();
+            if (major == MAJOR_UNSIGNED || major == MAJOR_NEGATIVE) {
+                return Long.toString(readLong());
+            }
+            if (major == MAJOR_SIMPLE) {
+                int b = in[pos] & 0xff;
+                if (b == TRUE || b == FALSE) {
+                    pos++;
+                    return Boolean.toString(b == TRUE);
+                }
+                return Double.toString(readDouble());
+            }
+            
+            int length = readLength(MAJOR_TEXT);
+            if (length != INDEFINITE) {
+                require(length);
+                String text = new String(in, pos, length, StandardCharsets.UTF_8);
+                pos += length;
+                return text;
+            }
+            // Chunked: concatenate the definite-length chunks up to the break
+            StringBuilder text = new StringBuilder();
+            while (!atBreak()) {
+                int chunk = readLength(MAJOR_TEXT);
+                if (chunk == INDEFINITE) {
+                    throw new IOException("Nested indefinite-length CBOR string at byte " + pos);
+                }
+                require(chunk);
+                text.append(new String(in, pos, chunk, StandardCharsets.UTF_8));
+                pos += chunk;
+            }
+            pos++;
+            return text.toString();
+        }
+        
+        @Override
+        public int readInt() throws IOException {
+            long value = readLong();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new IOException("CBOR integer " + value + " out of range at byte " + pos);
+            }
+            return (int) value;
+        }
+        
+        @Override
+        public long readLong() throws IOException {
+            skipTags();
+            int major = peekMajor();
+            if (major == MAJOR_SIMPLE) {
+                double value = readDouble();
+                if (value != Math.rint(value) || Math.abs(value) > 9.007199254740992E15) {
+                    throw new IOException("Expected an integer but was " + value + " at byte " + pos);
+                }
+                return (long) value;
+            }
+            if (major != MAJOR_UNSIGNED && major != MAJOR_NEGATIVE) {
+                throw unexpected("an integer");
+            }
+            pos++;
+            long argument = readArgument(in[pos - 1] & 0x1f);
+            if (argument < 0) {
+                throw new IOException("CBOR integer out of range at byte " + pos);
+            }
+            return major == MAJOR_UNSIGNED ? argument : -1 - argument;
+        }
+        
+        @Override
+        public double readDouble() throws IOException {
+            skipTags();
+            int major = peekMajor();
+            if (major == MAJOR_UNSIGNED || major == MAJOR_NEGATIVE) {
+                return readLong();
+            }
+            int b = in[pos] & 0xff;
+            switch (b) {
+                case HALF:
+                    require(3);
+                    pos += 3;
+                    return halfToDouble(((in[pos - 2] & 0xff) << 8) | (in[pos - 1] & 0xff));
+                case SINGLE:
+                    require(5);
+                    pos += 5;
+                    return Float.intBitsToFloat((int) bigEndian(pos - 4, 4));
+                case DOUBLE:
+                    require(9);
+                    pos += 9;
+                    return Double.longBitsToDouble(bigEndian(pos - 8, 8));
+                default:
+                    throw unexpected("a number");
+            }
+        }
+        
+        @Override
+        public List<Double> readDoubles() throws IOException {
+            skipTags();
+            int count = readLength(MAJOR_ARRAY);
+            List<Double> values = new ArrayList<>(count == INDEFINITE ? 32 : Math.min(count, 4096));
+            for (int i = 0; count == INDEFINITE ? !atBreak() : i < count; i++) {
+                values.add(isNull() ? null : readDouble());
+            }
+            if (count == INDEFINITE) {
+                pos++;
+            }
+            return values;
+        }
+        
+        @Override
+        public void skipValue() throws IOException {
+            if (++depth > MAX_DEPTH) {
+                throw new IOException("CBOR nested too deeply at byte " + pos);
+            }
+            require(1);
+            int b = in[pos++] & 0xff;
+            int major = b >>> 5;
+            int info = b & 0x1f;
+            switch (major) {
+                case MAJOR_UNSIGNED:
+                case MAJOR_NEGATIVE:
+                    readArgument(info);
+                    break;
+                case MAJOR_BYTES:
+                case MAJOR_TEXT:
+                    if (info == 31) {
+                        while (!atBreak()) {
+                            skipValue();
+                        }
+                        pos++;
+                    } else {
+                        long length = readArgument(info);
+                        if (length < 0 || length > in.length - pos) {
+                            throw new IOException("Truncated CBOR string at byte " + pos);
+                        }
+                        pos += (int) length;
+                    }
+                    break;
+                case MAJOR_ARRAY:
+                case MAJOR_MAP:
+                    int perEntry = major == MAJOR_MAP ? 2 : 1;
+                    if (info == 31) {
+                        while (!atBreak()) {
+                            skipValue();
+                        }
+                        pos++;
+                    } else {
+                        long count = readArgument(info);
+                        if (count < 0 || count > in.length - pos) {
+                            throw new IOException("Truncated CBOR container at byte " + pos);
+                        }
+                        for (long i = 0; i < count * perEntry; i++) {
+                            skipValue();
+                        }
+                    }
+                    break;
+                case MAJOR_TAG:
+                    readArgument(info);
+                    skipValue();
+                    break;
+                default:
+                    if (info == 31) {
+                        throw new IOException("Unexpected CBOR break at byte " + (pos - 1));
+                    }
+                    readArgument(info);
+                    break;
+            }
+            depth--;
+        }
+        
+        /**
+         * Reads the length of a text string, array or map; {@link #INDEFINITE} for indefinite lengths.
+         */
+        private int readLength(int expectedMajor) throws IOException {
+            if (peekMajor() != expectedMajor) {
+                throw unexpected(expectedMajor == MAJOR_MAP ? "a map" : expectedMajor == MAJOR_ARRAY ? "an array" : "text");
+            }
+            int info = in[pos++] & 0x1f;
+            if (info == 31) {
+                return INDEFINITE;
+            }
+            long length = readArgument(info);
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("CBOR length out of range at byte " + pos);
+            }
+            return (int) length;
+        }
+        
+        /**
+         * The argument following an initial byte; negative if it does not fit in a long.
+         */
+        private long readArgument(int info) throws IOException {
+            if (info < 24) {
+                return info;
+            }
+            int bytes;
+            switch (info) {
+                case 24: bytes = 1; break;
+                case 25: bytes = 2; break;
+                case 26: bytes = 4; break;
+                case 27: bytes = 8; break;
+                default: throw new IOException("Malformed CBOR argument at byte " + (pos - 1));
+            }
+            require(bytes);
+            pos += bytes;
+            return bigEndian(pos - bytes, bytes);
+        }
+        
+        private long bigEndian(int offset, int bytes) {
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | (in[offset + i] & 0xff);
+            }
+            return value;
+        }
+        
+        private void skipTags() throws IOException {
+            while (peekMajor() == MAJOR_TAG) {
+                pos++;
+                readArgument(in[pos - 1] & 0x1f);
+            }
+        }
+        
+        private boolean isNull() throws IOException {
+            skipTags();
+            int b = in[pos] & 0xff;
+            if (b == NULL || b == UNDEFINED) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean atBreak() throws IOException {
+            require(1);
+            return (in[pos] & 0xff) == BREAK;
+        }
+        
+        private int peekMajor() throws IOException {
+            require(1);
+            return (in[pos] & 0xff) >>> 5;
+        }
+        
+        private void require(int bytes) throws IOException {
+            if (bytes > in.length - pos) {
+                throw new IOException("Truncated CBOR at byte " + pos);
+            }
+        }
+        
+        private IOException unexpected(String expected) {
+            return new IOException("Expected " + expected + " in CBOR at byte " + pos);
+        }
+        
+        private static double halfToDouble(int half) {
+            int exponent = (half >>> 10) & 0x1f;
+            int mantissa = half & 0x3ff;
+            double value;
+            if (exponent == 0) {
+                value = mantissa * 0x1p-24;
+            } else if (exponent == 31) {
+                value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+            } else {
+                value = Math.scalb((double) (1024 + mantissa), exponent - 25);
+            }
+            return (half & 0x8000) != 0 ? -value : value;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.gielinorgains.api;
+
+import okhttp3.HttpUrl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable description of an {@code /items} request. Every filter is pushed to the API as a
+ * query parameter so the server only sends rows we will show; {@link GainsApiClient} still
+ * re-applies {@code minScore} locally in case the server ignores it.
+ */
+public final class ItemsQuery {
+    private final int limit;
+    private final int offset;
+    private final double minScore;
+    private final Map<String, String> filters;
+    
+    private ItemsQuery(Builder builder) {
+        this.limit = builder.limit;
+        this.offset = builder.offset;
+        this.minScore = builder.minScore;
+        this.filters = Collections.unmodifiableMap(new LinkedHashMap<>(builder.filters));
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+            .limit(limit)
+            .offset(offset)
+            .minScore(minScore);
+        builder.filters.putAll(filters);
+        return builder;
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    public double getMinScore() {
+        return minScore;
+    }
+    
+    public Map<String, String> getFilters() {
+        return filters;
+    }
+    
+    /**
+     * Returns the query for one page of this query's result set.
+     */
+    public ItemsQuery page(int pageOffset, int pageLimit) {
+        return toBuilder()
+            .offset(pageOffset)
+            .limit(pageLimit)
+            .build();
+    }
+    
+    /**
+     * True if rows fetched for this query are a superset of the rows {@code other} would return,
+     * ignoring the limit and offset. Used to decide whether cached data can answer {@code other}.
+     */
+    public boolean covers(ItemsQuery other) {
+        return minScore <= other.minScore && filters.equals(other.filters);
+    }
+    
+    public HttpUrl toUrl(String endpointUrl) {
+        HttpUrl.Builder url = HttpUrl.get(endpointUrl).newBuilder()
+            .addQueryParameter("limit", String.valueOf(limit));
+        if (offset > 0) {
+            url.addQueryParameter("offset", String.valueOf(offset));
+        }
+        if (minScore > 0) {
+            url.addQueryParameter("minScore", String.valueOf(minScore));
+        }
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            url.addQueryParameter(filter.getKey(), filter.getValue());
+        }
+        return url.build();
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ItemsQuery)) {
+            return false;
+        }
+        ItemsQuery that = (ItemsQuery) o;
+        return limit == that.limit && offset == that.offset
+            && Double.compare(minScore, that.minScore) == 0 && filters.equals(that.filters);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(limit, offset, minScore, filters);
+    }
+    
+    @Override
+    public String toString() {
+        return "ItemsQuery(limit=" + limit + ", offset=" + offset + ", minScore=" + minScore + ", filters=" + filters + ")";
+    }
+    
+    public static final class Builder {
+        private int limit = GainsApiClient.PAGE_SIZE;
+        private int offset;
+        private double minScore;
+        private final Map<String, String> filters = new LinkedHashMap<>();
+        
+        private Builder() {
+        }
+        
+        public Builder limit(int limit) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("limit must be positive: " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+        
+        public Builder offset(int offset) {
+            if (offset < 0) {
+                throw new IllegalArgumentException("offset must not be negative: " + offset);
+            }
+            this.offset = offset;
+            return this;
+        }
+        
+        public Builder minScore(double minScore) {
+            this.minScore = minScore;
+            return this;
+        }
+        
+        /**
+         * Adds an API-side filter such as {@code filter("minProfit", "10000")}. Reserved
+         * parameter names are rejected so a filter cannot silently override paging.
+         */
+        public Builder filter(String name, String value) {
+            if ("limit".equals(name) || "offset".equals(name) || "minScore".equals(name)) {
+                throw new IllegalArgumentException("Use the dedicated builder method for " + name);
+            }
+            filters.put(Objects.requireNonNull(name), Objects.requireNonNull(value));
+            return this;
+        }
+        
+        public ItemsQuery build() {
+            return new ItemsQuery(this);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes an {@code /items} response body: {@code {"data": [...], "totalItems": n}}.
+ *
+ * The common case is handled by a scanner over the UTF-8 bytes using {@link ItemProperties}:
+ * property names are matched in place, numbers are parsed straight into primitives and unknown
+ * properties are skipped without creating Strings. Anything
+ * the scanner does not handle, such as quoted numbers, comments or other lenient syntax, makes
+ * it give up and decode the body again through a lenient {@link JsonReader} and
+ * {@link GainsItemTypeAdapter}, which accept what the reflective Gson decoding did.
+ */
+@Slf4j
+public final class ItemsResponseDecoder {
+    private static final GainsItemTypeAdapter ITEM_ADAPTER = new GainsItemTypeAdapter();
+    
+    private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOTAL_ITEMS = "totalItems".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final double[] POWERS_OF_TEN = new double[23];
+    
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    
+    private ItemsResponseDecoder() {
+    }
+    
+    /**
+     * @return a successful response, or null if the body has no {@code data} array
+     * @throws IOException if the body is not valid JSON or a value has the wrong type
+     */
+    public static ApiResponse decode(byte[] body) throws IOException {
+        try {
+            return new Scanner(body).readResponse();
+        } catch (Unsupported e) {
+            log.debug("Items response needs the lenient decoder: {} at byte {}", e.getMessage(), e.position);
+        }
+        
+        try (JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body),
+                StandardCharsets.UTF_8))) {
+            in.setLenient(true);
+            return decode(in);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed items response: " + e.getMessage(), e);
+        }
+    }
+    
+    static ApiResponse decode(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        
+        List<GainsItem> data = null;
+        int totalItems = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "data":
+                    data = new ArrayList<>(GainsApiClient.PAGE_SIZE);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        data.add(ITEM_ADAPTER.read(in));
+                    }
+                    in.endArray();
+                    break;
+                case "totalItems":
+                    totalItems = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        
+        return response(data, totalItems);
+    }
+    
+    private static ApiResponse response(List<GainsItem> data, int totalItems) {
+        if (data == null) {
+            return null;
+        }
+        ApiResponse response = new ApiResponse();
+        response.setData(data);
+        response.setTotalItems(totalItems);
+        response.setSuccess(true);
+        return response;
+    }
+    
+    /**
+     * Input the scanner leaves to the lenient decoder. Thrown without a stack trace.
+     */
+    private static final class Unsupported extends RuntimeException {
+        final int position;
+        
+        Unsupported(String message, int position) {
+            super(message, null, false, false);
+            this.position = position;
+        }
+    }
+    
+    /**
+     * Single-use scanner over strict JSON.
+     */
+    private static final class Scanner implements ItemProperties.ValueReader {
+        private final byte[] in;
+        private int pos;
+        
+        Scanner(byte[] in) {
+            this.in = in;
+        }
+        
+        ApiResponse readResponse() throws IOException {
+            if (peek() != '{') {
+                throw unsupported("not an object");
+            }
+            List<GainsItem> data = null;
+            int totalItems = 0;
+            pos++;
+            if (peek() != '}') {
+                do {
+                    int nameStart = readNameStart();
+                    int nameEnd = readNameEnd();
+                    if (isNull()) {
+                        continue;
+                    }
+                    if (ItemProperties.matches(in, nameStart, nameEnd, DATA)) {
+                        data = readItems();
+                    } else if (ItemProperties.matches(in, nameStart, nameEnd, TOTAL_ITEMS)) {
+                        totalItems = (int) readLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    } else {
+                        skipValue();
+                    }
+                } while (next(','));
+            }
+            expect('}');
+            if (peek() != -1) {
+                throw unsupported("trailing data");
+            }
+            return response(data, totalItems);
+        }
+        
+        private List<GainsItem> readItems() throws IOException {
+            expect('[');
+            List<GainsItem> items = new ArrayList<>(GainsApiClient.PAGE_SIZE);
+            if (peek() != ']') {
+                do {
+                    items.add(isNull() ? null : readItem());
+                } while (next(','));
+            }
+            expect(']');
+            return items;
+        }
+        
+        private GainsItem readItem() throws IOException {
+            expect('{');
+            GainsItem.GainsItemBuilder item = GainsItem.builder();
+            int expected = 0;
+            if (peek() != '}') {
+                do {
+                    int nameStart = readNameStart();
+                    int nameEnd = readNameEnd();
+                    int property = ItemProperties.find(in, nameStart, nameEnd, expected);
+                    expected = property + 1;
+                    if (isNull()) {
+                        continue;
+                    }
+                    ItemProperties.read(item, property, this);
+                } while (next(','));
+            }
+            expect('}');
+            return item.build();
+        }
+        
+        @Override
+        public List<Double> readDoubles() {
+            expect('[');
+            List<Double> values = new ArrayList<>(32);
+            if (peek() != ']') {
+                do {
+                    values.add(isNull() ? null : readDouble());
+                } while (next(','));
+            }
+            expect(']');
+            return values;
+        }
+        
+        /**
+         * Start of a property name; names with escapes are left to the lenient decoder.
+         */
+        private int readNameStart() {
+            expect('"');
+            return pos;
+        }
+        
+        private int readNameEnd() {
+            int end = pos;
+            while (end < in.length && in[end] != '"') {
+                if (in[end] == '\\') {
+                    throw unsupported("escaped name");
+                }
+                end++;
+            }
+            if (end == in.length) {
+                throw unsupported("unterminated name");
+            }
+            pos = end + 1;
+            expect(':');
+            return end;
+        }
+        
+        /**
+         * A string value. Like Gson, unquoted numbers and booleans are taken as their text.
+         */
+        @Override
+        public String readText() {
+            int c = peek();
+            if (c != '"') {
+                int start = pos;
+                if (c == 't' || c == 'f') {
+                    skipLiteral();
+                } else {
+                    skipNumber();
+                }
+                return new String(in, start, pos - start, StandardCharsets.US_ASCII);
+            }
+            
+            int start = ++pos;
+            while (pos < in.length) {
+                byte b = in[pos];
+                if (b == '"') {
+                    String text = new String(in, start, pos - start, StandardCharsets.UTF_8);
+                    pos++;
+                    return text;
+                }
+                if (b == '\\' || (b >= 0 && b < 0x20)) {
+                    throw unsupported("escaped string");
+                }
+                pos++;
+            }
+            throw unsupported("unterminated string");
+        }
+        
+        @Override
+        public int readInt() {
+            return (int) readLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        
+        @Override
+        public long readLong() {
+            return readLong(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        
+        /**
+         * A plain integer in range. Fractions and exponents are left to the lenient decoder,
+         * which accepts them when the value is whole, as Gson does.
+         */
+        private long readLong(long min, long max) {
+            int start = skipSpace();
+            boolean negative = start < in.length && in[start] == '-';
+            int p = negative ? start + 1 : start;
+            int digitsStart = p;
+            long value = 0;
+            while (p < in.length && in[p] >= '0' && in[p] <= '9') {
+                value = value * 10 + (in[p] - '0');
+                p++;
+            }
+            int digits = p - digitsStart;
+            if (digits == 0 || digits > 18 || (p < in.length && isNumberPart(in[p]))) {
+                pos = start;
+                throw unsupported("not a plain integer");
+            }
+            value = negative ? -value : value;
+            if (value < min || value > max) {
+                pos = start;
+                throw unsupported("integer out of range");
+            }
+            pos = p;
+            return value;
+        }
+        
+        /**
+         * A number, exactly as Double.parseDouble would round it. Values with up to 15
+         * significant digits and a small exponent are computed from the digits directly: both
+         * operands are exact doubles, so the one multiplication or division rounds correctly.
+         */
+        @Override
+        public double readDouble() {
+            int start = skipSpace();
+            int p = start;
+            boolean negative = p < in.length && in[p] == '-';
+            if (negative) {
+                p++;
+            }
+            // Digits past the 18th are not accumulated; such values take the parseDouble path anyway
+            long mantissa = 0;
+            int significant = 0;
+            int scale = 0;
+            int intStart = p;
+            while (p < in.length && in[p] >= '0' && in[p] <= '9') {
+                if (mantissa != 0 || in[p] != '0') {
+                    significant++;
+                }
+                if (significant <= 18) {
+                    mantissa = mantissa * 10 + (in[p] - '0');
+                }
+                p++;
+            }
+            if (p == intStart) {
+                pos = start;
+                throw unsupported("not a number");
+            }
+            if (p < in.length && in[p] == '.') {
+                p++;
+                int fractionStart = p;
+                while (p < in.length && in[p] >= '0' && in[p] <= '9') {
+                    if (mantissa != 0 || in[p] != '0') {
+                        significant++;
+                    }
+                    if (significant <= 18) {
+                        mantissa = mantissa * 10 + (in[p] - '0');
+                        scale++;
+                    }
+                    p++;
+                }
+                if (p == fractionStart) {
+                    pos = start;
+                    throw unsupported("bad fraction");
+                }
+            }
+            int exponent = 0;
+            if (p < in.length && (in[p] == 'e' || in[p] == 'E')) {
+                p++;
+                boolean negativeExponent = p < in.length && in[p] == '-';
+                if (p < in.length && (in[p] == '-' || in[p] == '+')) {
+                    p++;
+                }
+                int exponentStart = p;
+                while (p < in.length && in[p] >= '0' && in[p] <= '9' && p - exponentStart < 5) {
+                    exponent = exponent * 10 + (in[p] - '0');
+                    p++;
+                }
+                if (p == exponentStart || (p < in.length && in[p] >= '0' && in[p] <= '9')) {
+                    pos = start;
+                    throw unsupported("bad exponent");
+                }
+                exponent = negativeExponent ? -exponent : exponent;
+            }
+            pos = p;
+            
+            int power = exponent - scale;
+            if (significant > 15 || power < -22 || power > 22) {
+                return Double.parseDouble(new String(in, start, p - start, StandardCharsets.US_ASCII));
+            }
+            double value = power < 0 ? mantissa / POWERS_OF_TEN[-power] : mantissa * POWERS_OF_TEN[power];
+            return negative ? -value : value;
+        }
+        
+        private void skipNumber() {
+            int start = skipSpace();
+            int p = start;
+            while (p < in.length && isNumberPart(in[p])) {
+                p++;
+            }
+            if (p == start) {
+                throw unsupported("unexpected value");
+            }
+            pos = p;
+        }
+        
+        private void skipLiteral() {
+            int c = peek();
+            byte[] literal = c == 't' ? TRUE : c == 'f' ? FALSE : NULL;
+            if (!ItemProperties.matches(in, pos, Math.min(in.length, pos + literal.length), literal)) {
+                throw unsupported("bad literal");
+            }
+            pos += literal.length;
+        }
+        
+        @Override
+        public void skipValue() {
+            int c = peek();
+            switch (c) {
+                case '{':
+                    pos++;
+                    if (peek() != '}') {
+                        do {
+                            readNameStart();
+                            readNameEnd();
+                            skipValue();
+                        } while (next(','));
+                    }
+                    expect('}');
+                    break;
+                case '[':
+                    pos++;
+                    if (peek() != ']') {
+                        do {
+                            skipValue();
+                        } while (next(','));
+                    }
+                    expect(']');
+                    break;
+                case '"':
+                    pos++;
+                    while (pos < in.length && in[pos] != '"') {
+                        pos += in[pos] == '\\' ? 2 : 1;
+                    }
+                    if (pos >= in.length) {
+                        throw unsupported("unterminated string");
+                    }
+                    pos++;
+                    break;
+                case 't':
+                case 'f':
+                case 'n':
+                    skipLiteral();
+                    break;
+                default:
+                    skipNumber();
+                    break;
+            }
+        }
+        
+        private boolean isNull() {
+            int p = skipSpace();
+            if (p + 4 <= in.length && in[p] == 'n' && in[p + 1] == 'u' && in[p + 2] == 'l' && in[p + 3] == 'l') {
+                pos = p + 4;
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean next(char separator) {
+            if (peek() == separator) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+        
+        private void expect(char c) {
+            if (peek() != c) {
+                throw unsupported("expected '" + c + "'");
+            }
+            pos++;
+        }
+        
+        /**
+         * The next non-whitespace byte, or -1 at the end.
+         */
+        private int peek() {
+            int p = skipSpace();
+            return p < in.length ? in[p] : -1;
+        }
+        
+        private int skipSpace() {
+            while (pos < in.length) {
+                byte b = in[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    break;
+                }
+                pos++;
+            }
+            return pos;
+        }
+        
+        private static boolean isNumberPart(byte b) {
+            return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+        }
+        
+        private Unsupported unsupported(String message) {
+            return new Unsupported(message, pos);
+        }
+    }
+}
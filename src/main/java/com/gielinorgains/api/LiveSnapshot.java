@@ -0,0 +1,144 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cached snapshot as kept current by the price stream.
+ *
+ * Published items are never written to, since the EDT, the alert checker and the gold planner
+ * all read them without a lock. A batch copies each item it changes instead, and swaps the
+ * copies into a new snapshot that replaces the old one. Recent batches are kept so that a
+ * snapshot fetched while the stream was running can catch up on the batches that arrived after
+ * the server took it.
+ */
+@Slf4j
+final class LiveSnapshot {
+    private final int retainedBatches;
+    
+    // Guarded by this
+    private final ArrayDeque<Batch> recent = new ArrayDeque<>();
+    private ApiResponse snapshot;
+    private ItemIndex index = ItemIndex.EMPTY;
+    
+    private static final class Batch {
+        final long sequence;
+        final List<PriceDelta> deltas;
+        
+        Batch(long sequence, List<PriceDelta> deltas) {
+            this.sequence = sequence;
+            this.deltas = deltas;
+        }
+    }
+    
+    LiveSnapshot(int retainedBatches) {
+        this.retainedBatches = retainedBatches;
+    }
+    
+    /**
+     * Makes a freshly fetched snapshot the one deltas apply to, and replays the retained batches
+     * newer than it. A snapshot without a sequence replays nothing, since the batches may be older.
+     * Returns the snapshot as caught up, which is {@code response} itself if nothing changed.
+     */
+    synchronized ApiResponse reset(ApiResponse response) {
+        snapshot = response;
+        index = ItemIndex.build(response.getData());
+        long sequence = response.getSequence();
+        if (sequence <= 0) {
+            return snapshot;
+        }
+        
+        List<PriceDelta> missed = new ArrayList<>();
+        int replayed = 0;
+        for (Batch batch : recent) {
+            if (batch.sequence > sequence) {
+                missed.addAll(batch.deltas);
+                replayed++;
+            }
+        }
+        applyAll(missed);
+        log.debug("Snapshot at sequence {} caught up with {} retained batches", sequence, replayed);
+        return snapshot;
+    }
+    
+    /**
+     * Applies a batch to the snapshot. Returns the new copies of the items whose prices changed,
+     * in no particular order; {@link #getSnapshot} then holds them in place of the old ones.
+     */
+    synchronized List<GainsItem> apply(long sequence, List<PriceDelta> deltas) {
+        if (sequence >= 0) {
+            recent.addLast(new Batch(sequence, deltas));
+            while (recent.size() > retainedBatches) {
+                recent.removeFirst();
+            }
+        }
+        return applyAll(deltas);
+    }
+    
+    /**
+     * The snapshot with every batch so far applied, or null if there is none
+     */
+    synchronized ApiResponse getSnapshot() {
+        return snapshot;
+    }
+    
+    synchronized void clear() {
+        snapshot = null;
+        index = ItemIndex.EMPTY;
+        recent.clear();
+    }
+    
+    private List<GainsItem> applyAll(List<PriceDelta> deltas) {
+        if (snapshot == null || snapshot.getData() == null) {
+            return Collections.emptyList();
+        }
+        
+        // Published item -> its private copy with the deltas applied
+        Map<GainsItem, GainsItem> copies = new IdentityHashMap<>();
+        for (PriceDelta delta : deltas) {
+            GainsItem item = index.get(delta.getItemId());
+            if (item == null) {
+                continue;
+            }
+            GainsItem copy = copies.get(item);
+            if (copy != null) {
+                delta.applyTo(copy);
+                continue;
+            }
+            // The custom rank was worked out from the old prices
+            copy = item.toBuilder().rankingVersion(0).build();
+            if (delta.applyTo(copy)) {
+                copies.put(item, copy);
+            }
+        }
+        if (copies.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<GainsItem> data = new ArrayList<>(snapshot.getData().size());
+        for (GainsItem item : snapshot.getData()) {
+            GainsItem copy = copies.get(item);
+            data.add(copy != null ? copy : item);
+        }
+        ApiResponse updated = new ApiResponse();
+        updated.setData(data);
+        updated.setTotalItems(snapshot.getTotalItems());
+        updated.setSuccess(snapshot.isSuccess());
+        updated.setError(snapshot.getError());
+        updated.setSequence(snapshot.getSequence());
+        snapshot = updated;
+        
+        List<GainsItem> changed = new ArrayList<>(copies.values());
+        index = index.with(changed);
+        return changed;
+    }
+}
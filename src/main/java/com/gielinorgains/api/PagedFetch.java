@@ -0,0 +1,140 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fetches a query's result set page by page. The first page reveals the total, then up to
+ * {@code maxConcurrent} further pages are in flight at once. Pages are handed to the consumer
+ * strictly in order as soon as every earlier page has arrived, so the UI can fill top-down.
+ */
+@Slf4j
+class PagedFetch {
+    private final ItemsQuery baseQuery;
+    private final int pageSize;
+    private final int maxItems;
+    private final int maxConcurrent;
+    private final Function<ItemsQuery, CompletableFuture<ApiResponse>> pageFetcher;
+    private final Consumer<List<GainsItem>> onPage;
+    private final CompletableFuture<ApiResponse> result = new CompletableFuture<>();
+    
+    // Guarded by this
+    private final List<List<GainsItem>> pages = new ArrayList<>();
+    private final List<GainsItem> merged = new ArrayList<>();
+    private final Set<String> seenIds = new HashSet<>();
+    private int pageCount;
+    private int nextToRequest;
+    private int nextToDeliver;
+    private int inFlight;
+    private long sequence;
+    
+    PagedFetch(ItemsQuery baseQuery, int pageSize, int maxItems, int maxConcurrent,
+               Function<ItemsQuery, CompletableFuture<ApiResponse>> pageFetcher, Consumer<List<GainsItem>> onPage) {
+        this.baseQuery = baseQuery;
+        this.pageSize = pageSize;
+        this.maxItems = maxItems;
+        this.maxConcurrent = maxConcurrent;
+        this.pageFetcher = pageFetcher;
+        this.onPage = onPage;
+    }
+    
+    CompletableFuture<ApiResponse> start() {
+        pageFetcher.apply(pageQuery(0)).whenComplete(this::onFirstPage);
+        return result;
+    }
+    
+    private ItemsQuery pageQuery(int page) {
+        int offset = page * pageSize;
+        return baseQuery.page(offset, Math.min(pageSize, maxItems - offset));
+    }
+    
+    private synchronized void onFirstPage(ApiResponse response, Throwable error) {
+        if (failed(response, error)) {
+            return;
+        }
+        sequence = response.getSequence();
+        
+        List<GainsItem> data = response.getData();
+        int available = response.getTotalItems() > 0 ? response.getTotalItems() : data.size();
+        int target = Math.min(maxItems, available);
+        // A short first page means there is nothing more to fetch, whatever the total claims
+        pageCount = data.size() < pageSize ? 1 : Math.max(1, (target + pageSize - 1) / pageSize);
+        log.debug("Paged fetch: {} items available, fetching {} pages of {}", available, pageCount, pageSize);
+        
+        pages.addAll(Collections.nCopies(pageCount, null));
+        nextToRequest = 1;
+        storePage(0, data);
+    }
+    
+    private synchronized void onPage(int page, ApiResponse response, Throwable error) {
+        inFlight--;
+        if (result.isDone() || failed(response, error)) {
+            return;
+        }
+        // The merged catalog is only as current as its oldest page
+        sequence = Math.min(sequence, response.getSequence());
+        storePage(page, response.getData());
+    }
+    
+    private void storePage(int page, List<GainsItem> data) {
+        pages.set(page, data);
+        
+        while (nextToDeliver < pageCount && pages.get(nextToDeliver) != null) {
+            List<GainsItem> fresh = new ArrayList<>();
+            for (GainsItem item : pages.get(nextToDeliver)) {
+                // Guards against servers that ignore offset and resend the first page
+                if (item.getId() == null || seenIds.add(item.getId())) {
+                    fresh.add(item);
+                }
+            }
+            pages.set(nextToDeliver, Collections.emptyList());
+            nextToDeliver++;
+            merged.addAll(fresh);
+            onPage.accept(Collections.unmodifiableList(fresh));
+        }
+        
+        if (nextToDeliver == pageCount) {
+            ApiResponse complete = new ApiResponse();
+            complete.setData(new ArrayList<>(merged));
+            complete.setTotalItems(merged.size());
+            complete.setSuccess(true);
+            complete.setSequence(sequence);
+            result.complete(complete);
+            return;
+        }
+        
+        while (inFlight < maxConcurrent && nextToRequest < pageCount) {
+            int requested = nextToRequest++;
+            inFlight++;
+            pageFetcher.apply(pageQuery(requested))
+                .whenComplete((response, error) -> onPage(requested, response, error));
+        }
+    }
+    
+    private boolean failed(ApiResponse response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            log.error("Paged fetch failed after {} pages", nextToDeliver, cause);
+            ApiResponse failure = new ApiResponse();
+            failure.setSuccess(false);
+            failure.setError("Network error: " + cause.getMessage());
+            result.complete(failure);
+            return true;
+        }
+        if (!response.isSuccess() || response.getData() == null) {
+            result.complete(response);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * New price values for one item, as pushed by the price stream.
+ *
+ * Values are absolute rather than differences, so applying the same delta twice or replaying
+ * deltas over a snapshot that already contains some of them gives the same result.
+ */
+final class PriceDelta {
+    private static final int LOW = 1;
+    private static final int HIGH = 1 << 1;
+    private static final int ADJUSTED_LOW = 1 << 2;
+    private static final int ADJUSTED_HIGH = 1 << 3;
+    private static final int PROFIT = 1 << 4;
+    private static final int ROI = 1 << 5;
+    private static final int SCORE = 1 << 6;
+    
+    private int itemId;
+    // Which of the values below were sent
+    private int present;
+    private int latestLowPrice;
+    private int latestHighPrice;
+    private int adjustedLowPrice;
+    private int adjustedHighPrice;
+    private int profit;
+    private double adjustedRoi;
+    private double score;
+    
+    private PriceDelta() {
+    }
+    
+    int getItemId() {
+        return itemId;
+    }
+    
+    /**
+     * Parses the data of one stream event: a JSON array of objects with an {@code id} and any of
+     * the price properties of {@link GainsItem}. Entries without a numeric id are dropped.
+     */
+    static List<PriceDelta> parseBatch(String json) throws IOException {
+        List<PriceDelta> deltas = new ArrayList<>();
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            in.beginArray();
+            while (in.hasNext()) {
+                PriceDelta delta = read(in);
+                if (delta != null) {
+                    deltas.add(delta);
+                }
+            }
+            in.endArray();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed price delta: " + e.getMessage(), e);
+        }
+        return deltas;
+    }
+    
+    private static PriceDelta read(JsonReader in) throws IOException {
+        PriceDelta delta = new PriceDelta();
+        int id = -1;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id": id = GainsItem.parseId(in.nextString()); break;
+                case "latestLowPrice": delta.latestLowPrice = in.nextInt(); delta.present |= LOW; break;
+                case "latestHighPrice": delta.latestHighPrice = in.nextInt(); delta.present |= HIGH; break;
+                case "adjustedLowPrice": delta.adjustedLowPrice = in.nextInt(); delta.present |= ADJUSTED_LOW; break;
+                case "adjustedHighPrice": delta.adjustedHighPrice = in.nextInt(); delta.present |= ADJUSTED_HIGH; break;
+                case "profit": delta.profit = in.nextInt(); delta.present |= PROFIT; break;
+                case "adjustedRoi": delta.adjustedRoi = in.nextDouble(); delta.present |= ROI; break;
+                case "score": delta.score = in.nextDouble(); delta.present |= SCORE; break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        if (id < 0) {
+            return null;
+        }
+        delta.itemId = id;
+        return delta;
+    }
+    
+    /**
+     * Writes the sent values into the item. Returns whether any of them differed from what it held.
+     */
+    boolean applyTo(GainsItem item) {
+        boolean changed = false;
+        if ((present & LOW) != 0 && item.getLatestLowPrice() != latestLowPrice) {
+            item.setLatestLowPrice(latestLowPrice);
+            changed = true;
+        }
+        if ((present & HIGH) != 0 && item.getLatestHighPrice() != latestHighPrice) {
+            item.setLatestHighPrice(latestHighPrice);
+            changed = true;
+        }
+        if ((present & ADJUSTED_LOW) != 0 && item.getAdjustedLowPrice() != adjustedLowPrice) {
+            item.setAdjustedLowPrice(adjustedLowPrice);
+            changed = true;
+        }
+        if ((present & ADJUSTED_HIGH) != 0 && item.getAdjustedHighPrice() != adjustedHighPrice) {
+            item.setAdjustedHighPrice(adjustedHighPrice);
+            changed = true;
+        }
+        if ((present & PROFIT) != 0 && item.getProfit() != profit) {
+            item.setProfit(profit);
+            changed = true;
+        }
+        if ((present & ROI) != 0 && Double.compare(item.getAdjustedRoi(), adjustedRoi) != 0) {
+            item.setAdjustedRoi(adjustedRoi);
+            changed = true;
+        }
+        if ((present & SCORE) != 0 && Double.compare(item.getScore(), score) != 0) {
+            item.setScore(score);
+            changed = true;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,268 @@
+package com.gielinorgains.api;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a server-sent events connection to the price stream and hands each batch of deltas to a
+ * listener, on its own daemon thread.
+ *
+ * Every batch carries a sequence number as its event id. The stream reconnects with exponential
+ * backoff and resumes from the last id it saw; when the server can't replay from there, or ids
+ * arrive out of step, the listener is told to resync from a fresh snapshot.
+ */
+@Slf4j
+final class PriceStream {
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    // The server sends a heartbeat comment well within this
+    private static final int READ_TIMEOUT_SECONDS = 60;
+    
+    interface Listener {
+        /**
+         * A batch of deltas, in stream order
+         */
+        void onDeltas(long sequence, List<PriceDelta> deltas);
+        
+        /**
+         * Deltas were missed; the snapshot they apply to should be fetched again
+         */
+        void onResync();
+        
+        void onConnectionChanged(boolean connected);
+    }
+    
+    private final OkHttpClient httpClient;
+    private final String url;
+    private final Listener listener;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Call call;
+    private volatile boolean connected;
+    
+    // Stream thread only
+    private long lastSequence = -1;
+    private long baseBackoffMillis = MIN_BACKOFF_MILLIS;
+    private int failures;
+    
+    PriceStream(OkHttpClient httpClient, String url, Listener listener) {
+        this.httpClient = httpClient.newBuilder()
+            .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .build();
+        this.url = url;
+        this.listener = listener;
+        this.thread = new Thread(this::run, "GielinorGains-PriceStream");
+        this.thread.setDaemon(true);
+    }
+    
+    void start() {
+        thread.start();
+    }
+    
+    boolean isConnected() {
+        return connected;
+    }
+    
+    /**
+     * Closes the connection and waits briefly for the stream thread to finish.
+     */
+    void close() {
+        running = false;
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Price stream closed");
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                if (!connect()) {
+                    return;
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+                log.debug("Price stream dropped: {}", e.getMessage());
+            } finally {
+                setConnected(false);
+            }
+            
+            if (!sleepBeforeReconnect()) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Reads the stream until it ends. Returns false if the server asked not to reconnect.
+     */
+    private boolean connect() throws IOException {
+        Request.Builder request = new Request.Builder()
+            .url(url)
+            .addHeader("User-Agent", "Gielinor-Gains-RuneLite-Plugin/1.0.0")
+            .addHeader("Accept", "text/event-stream")
+            .addHeader("Cache-Control", "no-cache");
+        if (lastSequence >= 0) {
+            request.addHeader("Last-Event-ID", Long.toString(lastSequence));
+        }
+        
+        Call current = httpClient.newCall(request.build());
+        call = current;
+        if (!running) {
+            current.cancel();
+        }
+        try (Response response = current.execute()) {
+            // 204 is how event streams say "don't reconnect"
+            if (response.code() == 204 || response.code() == 404) {
+                log.info("Price stream not available (status {}), giving up", response.code());
+                return false;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Price stream request failed: " + response.code());
+            }
+            
+            log.debug("Price stream connected, resuming after {}", lastSequence);
+            setConnected(true);
+            read(response.body().source());
+            return true;
+        } finally {
+            call = null;
+        }
+    }
+    
+    private void read(BufferedSource source) throws IOException {
+        String event = null;
+        String id = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (running && (line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                dispatch(event, id, data);
+                event = null;
+                id = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                continue; // Heartbeat
+            }
+            
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "event": event = value; break;
+                case "id": id = value; break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                case "retry": setRetry(value); break;
+                default: break;
+            }
+        }
+    }
+    
+    private void dispatch(String event, String id, StringBuilder data) {
+        long sequence = parseSequence(id);
+        if ("resync".equals(event)) {
+            log.debug("Server cannot resume the price stream after {}, resyncing", lastSequence);
+            lastSequence = sequence;
+            listener.onResync();
+            return;
+        }
+        if ((event != null && !"delta".equals(event)) || data.length() == 0) {
+            return;
+        }
+        
+        if (sequence >= 0 && lastSequence >= 0) {
+            if (sequence <= lastSequence) {
+                log.debug("Skipping replayed price batch {}", sequence);
+                return;
+            }
+            if (sequence != lastSequence + 1) {
+                log.debug("Price stream skipped from {} to {}, resyncing", lastSequence, sequence);
+                listener.onResync();
+            }
+        }
+        
+        List<PriceDelta> deltas;
+        try {
+            deltas = PriceDelta.parseBatch(data.toString());
+        } catch (IOException e) {
+            log.warn("Dropping malformed price batch {}: {}", sequence, e.getMessage());
+            lastSequence = sequence;
+            listener.onResync();
+            return;
+        }
+        lastSequence = sequence;
+        failures = 0;
+        listener.onDeltas(sequence, deltas);
+    }
+    
+    private static long parseSequence(String id) {
+        if (id == null || id.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private void setRetry(String value) {
+        try {
+            baseBackoffMillis = Math.max(1, Math.min(MAX_BACKOFF_MILLIS, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring retry field '{}'", value);
+        }
+    }
+    
+    /**
+     * Waits out the backoff for the current failure count. Returns false if the stream was closed meanwhile.
+     */
+    private boolean sleepBeforeReconnect() {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(failures, 5));
+        failures++;
+        // Jitter over the upper half, so clients dropped together don't reconnect together
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        log.debug("Reconnecting price stream in {}ms", delay);
+        try {
+            Thread.sleep(delay);
+            return running;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+    
+    private void setConnected(boolean value) {
+        if (connected != value) {
+            connected = value;
+            listener.onConnectionChanged(value);
+        }
+    }
+}
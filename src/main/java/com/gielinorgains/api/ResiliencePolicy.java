@@ -0,0 +1,117 @@
+package com.gielinorgains.api;
+
+/**
+ * How {@link GainsApiClient} bounds a refresh when the API is slow or failing: an overall
+ * deadline, a hedged second request when the first is slower than usual, and a circuit breaker
+ * that stops calling the API for a while after repeated failures.
+ */
+public final class ResiliencePolicy {
+    private final long refreshDeadlineMillis;
+    private final boolean hedging;
+    private final long minHedgeDelayMillis;
+    private final long defaultHedgeDelayMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private ResiliencePolicy(Builder builder) {
+        this.refreshDeadlineMillis = builder.refreshDeadlineMillis;
+        this.hedging = builder.hedging;
+        this.minHedgeDelayMillis = builder.minHedgeDelayMillis;
+        this.defaultHedgeDelayMillis = builder.defaultHedgeDelayMillis;
+        this.failureThreshold = builder.failureThreshold;
+        this.openMillis = builder.openMillis;
+    }
+    
+    public static ResiliencePolicy defaults() {
+        return builder().build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Longest a refresh may take, all pages included, before cached data or an error is returned
+     */
+    public long getRefreshDeadlineMillis() {
+        return refreshDeadlineMillis;
+    }
+    
+    public boolean isHedging() {
+        return hedging;
+    }
+    
+    /**
+     * Lower bound on the hedge delay, which otherwise follows the p95 of recent fetches
+     */
+    public long getMinHedgeDelayMillis() {
+        return minHedgeDelayMillis;
+    }
+    
+    /**
+     * Hedge delay used until enough fetches have been timed
+     */
+    public long getDefaultHedgeDelayMillis() {
+        return defaultHedgeDelayMillis;
+    }
+    
+    /**
+     * Consecutive failed requests that open the circuit
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+    
+    /**
+     * How long an open circuit rejects requests before letting a trial through
+     */
+    public long getOpenMillis() {
+        return openMillis;
+    }
+    
+    public static final class Builder {
+        private long refreshDeadlineMillis = 20_000;
+        private boolean hedging = true;
+        private long minHedgeDelayMillis = 500;
+        private long defaultHedgeDelayMillis = 3_000;
+        private int failureThreshold = 3;
+        private long openMillis = 30_000;
+        
+        private Builder() {
+        }
+        
+        public Builder refreshDeadlineMillis(long refreshDeadlineMillis) {
+            this.refreshDeadlineMillis = refreshDeadlineMillis;
+            return this;
+        }
+        
+        public Builder hedging(boolean hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+        
+        public Builder minHedgeDelayMillis(long minHedgeDelayMillis) {
+            this.minHedgeDelayMillis = minHedgeDelayMillis;
+            return this;
+        }
+        
+        public Builder defaultHedgeDelayMillis(long defaultHedgeDelayMillis) {
+            this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+            return this;
+        }
+        
+        public Builder failureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+        
+        public Builder openMillis(long openMillis) {
+            this.openMillis = openMillis;
+            return this;
+        }
+        
+        public ResiliencePolicy build() {
+            return new ResiliencePolicy(this);
+        }
+    }
+}
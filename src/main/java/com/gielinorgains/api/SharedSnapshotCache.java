@@ -0,0 +1,462 @@
+package com.gielinorgains.api;
+
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Shares fetched snapshots between RuneLite clients on the same machine, through files in a
+ * common directory coordinated with file locks.
+ *
+ * One client is the leader: whichever holds the lock on {@code leader.lock}. The OS drops the
+ * lock when that client exits, however it exits, and the next follower to poll takes over.
+ * Any client may publish a snapshot it fetched into {@code snapshot.bin}; a follower that finds
+ * no fresh snapshot there posts its query to {@code request.bin} and waits for the leader to
+ * fetch and publish one, rather than calling the API itself.
+ *
+ * Followers watch the snapshot's generation through a mapped view of its header, so checking
+ * for news costs no system call; the payload is read from a mapping under a shared lock.
+ */
+@Slf4j
+public class SharedSnapshotCache implements AutoCloseable {
+    private static final int MAGIC = 0x47475331; // "GGS1"
+    private static final int HEADER_SIZE = 64;
+    private static final int GENERATION = 8;
+    private static final int PUBLISHED_AT = 16;
+    private static final int QUERY_LENGTH = 24;
+    private static final int PAYLOAD_LENGTH = 28;
+    private static final long POLL_MILLIS = 250;
+    private static final long WAIT_STEP_MILLIS = 20;
+    
+    private final File directory;
+    private final long maxAgeMillis;
+    private final long requestWaitMillis;
+    private final ScheduledExecutorService executor;
+    private FileChannel leaderChannel;
+    private FileChannel snapshotChannel;
+    private FileChannel requestChannel;
+    private MappedByteBuffer header;
+    private volatile FileLock leaderLock;
+    private volatile Consumer<ItemsQuery> refresher;
+    // Lookups waiting on the leader, answered with null on close
+    private final Set<CompletableFuture<Snapshot>> waiting = ConcurrentHashMap.newKeySet();
+    
+    // Cache thread only
+    private Snapshot lastRead;
+    private long unreadableGeneration;
+    private long lastRequestHandled;
+    
+    /**
+     * A published snapshot and the query it was fetched for
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final long publishedAt;
+        private final ItemsQuery query;
+        private final ApiResponse response;
+        
+        Snapshot(long generation, long publishedAt, ItemsQuery query, ApiResponse response) {
+            this.generation = generation;
+            this.publishedAt = publishedAt;
+            this.query = query;
+            this.response = response;
+        }
+        
+        public long getGeneration() {
+            return generation;
+        }
+        
+        public long getPublishedAt() {
+            return publishedAt;
+        }
+        
+        public ItemsQuery getQuery() {
+            return query;
+        }
+        
+        public ApiResponse getResponse() {
+            return response;
+        }
+    }
+    
+    /**
+     * @param maxAgeMillis age past which a published snapshot is no longer served
+     * @param requestWaitMillis how long a follower waits for the leader to answer a request
+     */
+    public SharedSnapshotCache(File directory, long maxAgeMillis, long requestWaitMillis) {
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+        this.requestWaitMillis = requestWaitMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GielinorGains-SharedCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Opens the shared files and starts competing for leadership. While this client leads,
+     * {@code refresher} is called on the cache thread with each query followers ask for; it is
+     * expected to fetch the query and {@link #publish} the result.
+     */
+    public void start(Consumer<ItemsQuery> refresher) throws IOException {
+        this.refresher = refresher;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        leaderChannel = open("leader.lock");
+        requestChannel = open("request.bin");
+        snapshotChannel = open("snapshot.bin");
+        try (FileLock lock = snapshotChannel.lock()) {
+            if (snapshotChannel.size() < HEADER_SIZE) {
+                ByteBuffer empty = ByteBuffer.allocate(HEADER_SIZE);
+                empty.putInt(0, MAGIC);
+                snapshotChannel.write(empty, 0);
+            }
+        }
+        header = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        executor.scheduleWithFixedDelay(this::poll, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    public boolean isLeader() {
+        return leaderLock != null;
+    }
+    
+    /**
+     * Finds a fresh snapshot published no earlier than {@code minPublishedAt} for which
+     * {@code usable} holds, on the cache thread. A follower that finds none asks the leader to
+     * fetch {@code query} and waits for it, for at most {@code maxWaitMillis} or the wait given
+     * at construction, whichever is shorter; completes with null if no usable snapshot turns
+     * up, and the caller should fetch for itself.
+     */
+    public CompletableFuture<Snapshot> find(ItemsQuery query, long minPublishedAt, long maxWaitMillis,
+                                            Predicate<Snapshot> usable) {
+        Predicate<Snapshot> wanted = snapshot -> snapshot != null && snapshot.getPublishedAt() >= minPublishedAt
+            && System.currentTimeMillis() - snapshot.getPublishedAt() < maxAgeMillis && usable.test(snapshot);
+        CompletableFuture<Snapshot> result = new CompletableFuture<>();
+        waiting.add(result);
+        result.whenComplete((snapshot, error) -> waiting.remove(result));
+        long waitMillis = Math.min(requestWaitMillis, maxWaitMillis);
+        schedule(() -> {
+            try {
+                Snapshot snapshot = read();
+                if (wanted.test(snapshot)) {
+                    result.complete(snapshot);
+                    return;
+                }
+                if (isLeader() || waitMillis <= 0) {
+                    result.complete(null);
+                    return;
+                }
+                long generation = peekGeneration();
+                postRequest(query);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                awaitLeader(query, wanted, generation, deadline, waitMillis, result);
+            } catch (IOException e) {
+                log.warn("Could not read the shared snapshot", e);
+                result.complete(null);
+            }
+        }, 0, result);
+        return result;
+    }
+    
+    /**
+     * Checks whether the leader has published since {@code generation}, and if not checks again
+     * a little later. Each check is a separate task, so the cache thread stays free in between to
+     * poll for leadership and to serve other lookups.
+     */
+    private void awaitLeader(ItemsQuery query, Predicate<Snapshot> wanted, long generation, long deadline,
+                             long waitMillis, CompletableFuture<Snapshot> result) {
+        long seen = generation;
+        try {
+            if (peekGeneration() != seen) {
+                Snapshot snapshot = read();
+                if (wanted.test(snapshot)) {
+                    log.debug("Leader published generation {} for {}", snapshot.getGeneration(), query);
+                    result.complete(snapshot);
+                    return;
+                }
+                seen = snapshot != null ? snapshot.getGeneration() : seen;
+            }
+        } catch (IOException e) {
+            log.warn("Could not read the shared snapshot", e);
+            result.complete(null);
+            return;
+        }
+        if (result.isDone() || isLeader() || System.nanoTime() >= deadline) {
+            log.debug("No shared snapshot for {} within {}ms", query, waitMillis);
+            result.complete(null);
+            return;
+        }
+        long next = seen;
+        schedule(() -> awaitLeader(query, wanted, next, deadline, waitMillis, result), WAIT_STEP_MILLIS, result);
+    }
+    
+    private void schedule(Runnable task, long delayMillis, CompletableFuture<Snapshot> result) {
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.complete(null);
+        }
+    }
+    
+    /**
+     * Writes a snapshot for the other clients, on the cache thread
+     */
+    public void publish(ItemsQuery query, ApiResponse response) {
+        if (snapshotChannel == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> write(query, response));
+        } catch (RejectedExecutionException e) {
+            log.debug("Shared cache closed, not publishing");
+        }
+    }
+    
+    private void write(ItemsQuery query, ApiResponse response) {
+        try {
+            byte[] queryBytes = encodeQuery(query).getBytes(StandardCharsets.UTF_8);
+            byte[] payload = encodeResponse(response);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + queryBytes.length + payload.length);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(PUBLISHED_AT, System.currentTimeMillis());
+            buffer.putInt(QUERY_LENGTH, queryBytes.length);
+            buffer.putInt(PAYLOAD_LENGTH, payload.length);
+            buffer.position(HEADER_SIZE);
+            buffer.put(queryBytes).put(payload).flip();
+            
+            long generation;
+            try (FileLock lock = snapshotChannel.lock()) {
+                ByteBuffer current = ByteBuffer.allocate(8);
+                snapshotChannel.read(current, GENERATION);
+                generation = current.getLong(0) + 1;
+                buffer.putLong(GENERATION, generation);
+                // Never shrinks: other clients may have it mapped, which some systems won't truncate
+                snapshotChannel.write(buffer, 0);
+            }
+            log.debug("Published shared snapshot {} of {} items ({} bytes)", generation,
+                response.getData().size(), payload.length);
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn("Could not publish the shared snapshot", e);
+        }
+    }
+    
+    private void poll() {
+        try {
+            if (leaderLock == null) {
+                tryLead();
+            }
+            if (leaderLock != null) {
+                serveRequest();
+            }
+        } catch (Exception e) {
+            log.warn("Shared cache poll failed", e);
+        }
+    }
+    
+    private void tryLead() throws IOException {
+        try {
+            leaderLock = leaderChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Another client in this JVM leads; only seen in tests
+            return;
+        }
+        if (leaderLock != null) {
+            log.debug("This client now leads the shared cache in {}", directory);
+        }
+    }
+    
+    private void serveRequest() throws IOException {
+        long requestedAt;
+        String query;
+        try (FileLock lock = requestChannel.lock(0, Long.MAX_VALUE, true)) {
+            if (requestChannel.size() < 12) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) requestChannel.size());
+            requestChannel.read(buffer, 0);
+            requestedAt = buffer.getLong(0);
+            int length = buffer.getInt(8);
+            if (requestedAt <= lastRequestHandled || length > buffer.capacity() - 12) {
+                return;
+            }
+            query = new String(buffer.array(), 12, length, StandardCharsets.UTF_8);
+        }
+        lastRequestHandled = requestedAt;
+        
+        Snapshot snapshot = read();
+        if (snapshot != null && snapshot.getPublishedAt() >= requestedAt) {
+            return; // Someone published since the request was made
+        }
+        Consumer<ItemsQuery> target = refresher;
+        if (target != null) {
+            log.debug("Refreshing {} for a follower", query);
+            target.accept(decodeQuery(query));
+        }
+    }
+    
+    private void postRequest(ItemsQuery query) throws IOException {
+        byte[] queryBytes = encodeQuery(query).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + queryBytes.length);
+        buffer.putLong(System.currentTimeMillis()).putInt(queryBytes.length).put(queryBytes).flip();
+        try (FileLock lock = requestChannel.lock()) {
+            requestChannel.write(buffer, 0);
+        }
+    }
+    
+    private long peekGeneration() {
+        return header.getLong(GENERATION);
+    }
+    
+    /**
+     * The latest published snapshot, or null if none has been. Decoded once per generation.
+     */
+    private Snapshot read() throws IOException {
+        if (lastRead != null && lastRead.getGeneration() == peekGeneration()) {
+            return lastRead;
+        }
+        if (unreadableGeneration != 0 && unreadableGeneration == peekGeneration()) {
+            return null;
+        }
+        byte[] queryBytes;
+        byte[] payload;
+        long generation;
+        long publishedAt;
+        try (FileLock lock = snapshotChannel.lock(0, Long.MAX_VALUE, true)) {
+            generation = header.getLong(GENERATION);
+            publishedAt = header.getLong(PUBLISHED_AT);
+            int queryLength = header.getInt(QUERY_LENGTH);
+            int payloadLength = header.getInt(PAYLOAD_LENGTH);
+            if (generation == 0 || header.getInt(0) != MAGIC) {
+                return null;
+            }
+            MappedByteBuffer body = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                (long) queryLength + payloadLength);
+            queryBytes = new byte[queryLength];
+            payload = new byte[payloadLength];
+            body.get(queryBytes).get(payload);
+        }
+        ApiResponse response = ItemsResponseDecoder.decode(payload);
+        if (response == null) {
+            // Not retried until the next generation is published
+            log.warn("Ignoring shared snapshot {}, it has no item data", generation);
+            unreadableGeneration = generation;
+            return null;
+        }
+        lastRead = new Snapshot(generation, publishedAt, decodeQuery(new String(queryBytes, StandardCharsets.UTF_8)),
+            response);
+        log.debug("Read shared snapshot {} of {} items", generation, lastRead.getResponse().getData().size());
+        return lastRead;
+    }
+    
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(new File(directory, name).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    private static byte[] encodeResponse(ApiResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        GainsItemTypeAdapter adapter = new GainsItemTypeAdapter();
+        try (JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            out.beginObject();
+            out.name("data").beginArray();
+            for (GainsItem item : response.getData()) {
+                adapter.write(out, item);
+            }
+            out.endArray();
+            out.name("totalItems").value(response.getTotalItems());
+            out.endObject();
+        }
+        return bytes.toByteArray();
+    }
+    
+    static String encodeQuery(ItemsQuery query) {
+        StringBuilder text = new StringBuilder()
+            .append("limit=").append(query.getLimit())
+            .append("&minScore=").append(query.getMinScore());
+        for (Map.Entry<String, String> filter : query.getFilters().entrySet()) {
+            text.append('&').append(URLEncoder.encode(filter.getKey(), StandardCharsets.UTF_8))
+                .append('=').append(URLEncoder.encode(filter.getValue(), StandardCharsets.UTF_8));
+        }
+        return text.toString();
+    }
+    
+    static ItemsQuery decodeQuery(String text) {
+        ItemsQuery.Builder query = ItemsQuery.builder();
+        for (String part : text.split("&")) {
+            int equals = part.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(part.substring(0, equals), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(part.substring(equals + 1), StandardCharsets.UTF_8);
+            switch (name) {
+                case "limit": query.limit(Integer.parseInt(value)); break;
+                case "minScore": query.minScore(Double.parseDouble(value)); break;
+                default: query.filter(name, value); break;
+            }
+        }
+        return query.build();
+    }
+    
+    /**
+     * Gives up leadership, letting another client take over, and closes the shared files.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Their next check was dropped with the executor's queue
+        for (CompletableFuture<Snapshot> lookup : waiting) {
+            lookup.complete(null);
+        }
+        FileLock lock = leaderLock;
+        leaderLock = null;
+        closeQuietly(lock);
+        closeQuietly(leaderChannel);
+        closeQuietly(requestChannel);
+        closeQuietly(snapshotChannel);
+        log.debug("Shared cache closed");
+    }
+    
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Error closing shared cache file", e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.gielinorgains.concurrent;
+
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * The plugin's threads, in a few named pools sized for their kind of work:
+ * <ul>
+ * <li>network: blocking I/O such as icon downloads and file writes</li>
+ * <li>decode: turning downloaded bytes into images and stored history into series</li>
+ * <li>compute: CPU-bound work such as planning gold allocation; {@link #forEachIndex} spreads a
+ * loop over it, so nothing in the plugin needs the common ForkJoinPool</li>
+ * <li>scheduler: one thread for timers; anything more than a hand-off belongs in another pool</li>
+ * </ul>
+ * API requests run on OkHttp's dispatcher, which bounds them itself.
+ *
+ * Pools are created on first use or by {@link #start}, and {@link #stop} shuts them all down,
+ * after which work handed to them is rejected until the next {@link #start}. Each pool reports
+ * its active threads, queue length and utilisation to the {@link MetricsRegistry}.
+ */
+@Slf4j
+@Singleton
+public class GainsExecutors {
+    public static final String NETWORK = "network";
+    public static final String DECODE = "decode";
+    public static final String COMPUTE = "compute";
+    
+    private static final int NETWORK_THREADS = 4;
+    private static final long STOP_TIMEOUT_MILLIS = 5_000;
+    
+    private final MetricsRegistry metrics;
+    
+    // Guarded by this
+    private boolean started;
+    private InstrumentedPool network;
+    private InstrumentedPool decode;
+    private InstrumentedPool compute;
+    private ScheduledThreadPoolExecutor scheduler;
+    
+    @Inject
+    public GainsExecutors(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Creates the pools. Does nothing if they are already running.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        int cpus = Runtime.getRuntime().availableProcessors();
+        network = new InstrumentedPool(NETWORK, NETWORK_THREADS, daemonFactory("GielinorGains-Network-"));
+        // Image decoding is serialised on ImageIO anyway, so more than two threads would only queue
+        decode = new InstrumentedPool(DECODE, Math.max(1, Math.min(2, cpus / 2)), daemonFactory("GielinorGains-Decode-"));
+        // Leave a core for the client and the EDT
+        compute = new InstrumentedPool(COMPUTE, Math.max(1, Math.min(4, cpus - 1)), daemonFactory("GielinorGains-Compute-"));
+        scheduler = new ScheduledThreadPoolExecutor(1, daemonFactory("GielinorGains-Timer-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        for (InstrumentedPool pool : pools()) {
+            registerGauges(pool);
+        }
+        started = true;
+        log.debug("Started executors: network {}, decode {}, compute {}", network.getMaximumPoolSize(),
+            decode.getMaximumPoolSize(), compute.getMaximumPoolSize());
+    }
+    
+    /**
+     * Stops accepting work, drops pending timers, and waits up to five seconds in all for
+     * running and queued tasks to finish before interrupting what is left. Returns once every
+     * pool has terminated or the wait ran out.
+     */
+    public void stop() {
+        List<ExecutorService> stopping = new ArrayList<>();
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            started = false;
+            // Timers first, so nothing new is handed to the pools while they drain
+            stopping.add(scheduler);
+            stopping.addAll(pools());
+            for (InstrumentedPool pool : pools()) {
+                removeGauges(pool);
+            }
+        }
+        for (ExecutorService executor : stopping) {
+            executor.shutdown();
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MILLIS);
+        for (ExecutorService executor : stopping) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    List<Runnable> dropped = executor.shutdownNow();
+                    log.warn("Executor did not finish in time, interrupted it and dropped {} queued tasks", dropped.size());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.debug("Stopped executors");
+    }
+    
+    public Executor network() {
+        return running().network;
+    }
+    
+    public Executor decode() {
+        return running().decode;
+    }
+    
+    public Executor compute() {
+        return running().compute;
+    }
+    
+    public ScheduledExecutorService scheduler() {
+        return running().scheduler;
+    }
+    
+    /**
+     * Runs {@code body} for every index from {@code from} up to {@code to} on the compute pool
+     * and returns once all have run, rethrowing the first exception. The calling thread works
+     * through the indices too and only waits for ones a pool thread has already started, so
+     * this is safe to call from a compute task while the pool is busy. Once the pools are
+     * stopped everything runs on the calling thread.
+     */
+    public void forEachIndex(int from, int to, IntConsumer body) {
+        int count = to - from;
+        if (count <= 0) {
+            return;
+        }
+        InstrumentedPool pool = running().compute;
+        int threads = Math.min(pool.getMaximumPoolSize(), count);
+        // A few chunks per thread evens out uneven indices without a claim per index
+        IndexRange range = new IndexRange(from, to, Math.max(1, count / (threads * 4)), body);
+        for (int i = 1; i < threads; i++) {
+            try {
+                pool.execute(range::work);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        range.work();
+        range.await();
+    }
+    
+    /**
+     * Starts the pools on first use. After {@link #stop} the stopped pools are returned, and
+     * reject whatever is handed to them.
+     */
+    private synchronized GainsExecutors running() {
+        if (scheduler == null) {
+            start();
+        }
+        return this;
+    }
+    
+    private List<InstrumentedPool> pools() {
+        List<InstrumentedPool> pools = new ArrayList<>(3);
+        pools.add(network);
+        pools.add(decode);
+        pools.add(compute);
+        return pools;
+    }
+    
+    private void registerGauges(InstrumentedPool pool) {
+        metrics.gauge(activeGauge(pool.getName()), pool::getActiveCount);
+        metrics.gauge(queuedGauge(pool.getName()), () -> pool.getQueue().size());
+        metrics.gauge(utilisationGauge(pool.getName()), pool::sampleUtilisationPercent);
+        metrics.gauge(completedGauge(pool.getName()), pool::getCompletedTaskCount);
+    }
+    
+    private void removeGauges(InstrumentedPool pool) {
+        metrics.removeGauge(activeGauge(pool.getName()));
+        metrics.removeGauge(queuedGauge(pool.getName()));
+        metrics.removeGauge(utilisationGauge(pool.getName()));
+        metrics.removeGauge(completedGauge(pool.getName()));
+    }
+    
+    /**
+     * Threads of the pool running a task right now
+     */
+    public static String activeGauge(String pool) {
+        return "executor." + pool + ".active";
+    }
+    
+    /**
+     * Tasks waiting for a thread
+     */
+    public static String queuedGauge(String pool) {
+        return "executor." + pool + ".queued";
+    }
+    
+    /**
+     * Percentage of the pool's thread time spent running tasks since the gauge was last read
+     */
+    public static String utilisationGauge(String pool) {
+        return "executor." + pool + ".utilisation";
+    }
+    
+    public static String completedGauge(String pool) {
+        return "executor." + pool + ".completed";
+    }
+    
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
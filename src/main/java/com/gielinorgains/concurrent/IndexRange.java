@@ -0,0 +1,83 @@
+package com.gielinorgains.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * A range of indices worked through in chunks by whichever threads call {@link #work}. A thread
+ * that arrives after the last chunk was claimed returns at once, so the caller never has to wait
+ * for a helper that did not get a thread.
+ */
+final class IndexRange {
+    private final AtomicInteger next;
+    private final int end;
+    private final int chunk;
+    private final IntConsumer body;
+    // Indices not yet run, including claimed chunks still running
+    private final AtomicInteger pending;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    
+    IndexRange(int from, int to, int chunk, IntConsumer body) {
+        this.next = new AtomicInteger(from);
+        this.end = to;
+        this.chunk = chunk;
+        this.body = body;
+        this.pending = new AtomicInteger(to - from);
+    }
+    
+    /**
+     * Claims and runs chunks until none are left. Once one index has thrown, the rest are
+     * skipped.
+     */
+    void work() {
+        int start;
+        while ((start = next.getAndAdd(chunk)) < end) {
+            int stop = Math.min(end, start + chunk);
+            try {
+                for (int i = start; i < stop && failure.get() == null; i++) {
+                    body.accept(i);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                if (pending.addAndGet(start - stop) == 0) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Waits for the chunks other threads claimed, then rethrows the first failure. Claimed
+     * chunks always finish, so the wait is not cut short by an interrupt; the interrupt is kept.
+     */
+    void await() {
+        boolean interrupted = false;
+        synchronized (this) {
+            while (pending.get() > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.gielinorgains.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size pool with an unbounded queue that keeps track of how long its threads spend
+ * running tasks, so its utilisation can be reported. Idle threads exit after a while, so a
+ * pool that is not being used costs nothing.
+ */
+final class InstrumentedPool extends ThreadPoolExecutor {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    
+    private final String name;
+    private final LongAdder finishedBusyNanos = new LongAdder();
+    private final Map<Thread, Long> runningSince = new ConcurrentHashMap<>();
+    
+    // Guarded by this; the previous utilisation sample
+    private long sampledAt = System.nanoTime();
+    private long sampledBusyNanos;
+    private long lastPercent;
+    
+    InstrumentedPool(String name, int threads, ThreadFactory threadFactory) {
+        super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        runningSince.put(thread, System.nanoTime());
+        super.beforeExecute(thread, task);
+    }
+    
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        super.afterExecute(task, error);
+        Long start = runningSince.remove(Thread.currentThread());
+        if (start != null) {
+            finishedBusyNanos.add(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Thread time spent running tasks so far, including the part of tasks still running
+     */
+    long busyNanos(long now) {
+        long busy = finishedBusyNanos.sum();
+        for (Long start : runningSince.values()) {
+            busy += now - start;
+        }
+        return busy;
+    }
+    
+    /**
+     * Share of the pool's thread time spent running tasks since the previous call, in percent
+     */
+    synchronized long sampleUtilisationPercent() {
+        long now = System.nanoTime();
+        long elapsed = now - sampledAt;
+        if (elapsed < TimeUnit.MILLISECONDS.toNanos(1)) {
+            return lastPercent;
+        }
+        long busy = busyNanos(now);
+        long percent = (busy - sampledBusyNanos) * 100 / (elapsed * getMaximumPoolSize());
+        sampledAt = now;
+        sampledBusyNanos = busy;
+        lastPercent = Math.max(0, Math.min(100, percent));
+        return lastPercent;
+    }
+}
@@ -0,0 +1,46 @@
+package com.gielinorgains.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering one phase of {@code GainsApiClient.fetchItems}.
+ * A fresh fetch emits "network", "decode" and "filter" events; a cache hit only emits "filter".
+ */
+@Name("com.gielinorgains.ApiFetch")
+@Label("API Fetch")
+@Category({"Gielinor Gains", "Network"})
+@Description("A phase of fetching trading opportunities from the Gielinor Gains API")
+@StackTrace(false)
+public class ApiFetchEvent extends Event {
+    public static final String PHASE_NETWORK = "network";
+    public static final String PHASE_DECODE = "decode";
+    public static final String PHASE_FILTER = "filter";
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Requested Limit")
+    public int limit;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Response Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Forced Refresh")
+    public boolean forceRefresh;
+
+    @Label("Success")
+    public boolean success;
+}
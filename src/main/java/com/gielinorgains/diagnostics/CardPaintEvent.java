@@ -0,0 +1,42 @@
+package com.gielinorgains.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Sampled JFR event for {@code ItemCardPanel.paintComponent}. Only one in
+ * {@link #SAMPLE_INTERVAL} paints is timed, so the per-paint cost stays a counter increment.
+ */
+@Name("com.gielinorgains.CardPaint")
+@Label("Card Paint (sampled)")
+@Category({"Gielinor Gains", "Swing"})
+@Description("Time spent painting a single item card, sampled")
+@StackTrace(false)
+public class CardPaintEvent extends Event {
+    public static final int SAMPLE_INTERVAL = 16;
+
+    private static int paintCounter;
+
+    @Label("Item Id")
+    public String itemId;
+
+    @Label("Icon Cached")
+    public boolean iconCached;
+
+    @Label("Hovered")
+    public boolean hovered;
+
+    @Label("Sample Interval")
+    public int sampleInterval;
+
+    /**
+     * Returns true when the current paint should be timed. Only called from the EDT.
+     */
+    public static boolean sampleNext() {
+        return (++paintCounter & (SAMPLE_INTERVAL - 1)) == 0;
+    }
+}
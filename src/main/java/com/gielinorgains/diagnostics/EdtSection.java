@@ -0,0 +1,45 @@
+package com.gielinorgains.diagnostics;
+
+/**
+ * Marks where plugin code is running on the EDT so {@link EdtWatchdog} only captures stacks
+ * for stalls the plugin can be blamed for. Sections nest; only the outermost one is timed, so
+ * work made of many short pieces, such as painting every card, should be wrapped in one
+ * section around all of it.
+ *
+ * Both methods must be called from the EDT, in a try/finally pair.
+ */
+public final class EdtSection {
+    private static int depth;
+    // Any nanoTime value is possible, so whether a section is open is kept apart from its start
+    private static volatile boolean active;
+    private static volatile long activeSinceNanos;
+
+    private EdtSection() {
+    }
+
+    public static void enter() {
+        if (depth++ == 0) {
+            activeSinceNanos = System.nanoTime();
+            active = true;
+        }
+    }
+
+    public static void exit() {
+        if (--depth <= 0) {
+            depth = 0;
+            active = false;
+        }
+    }
+
+    /**
+     * @return how long the outermost active section had been running at {@code nowNanos}, or -1
+     *         if no plugin code is on the EDT
+     */
+    static long activeNanos(long nowNanos) {
+        if (!active) {
+            return -1;
+        }
+        // A section entered since active was read started after now; count it as just started
+        return Math.max(0, nowNanos - activeSinceNanos);
+    }
+}
@@ -0,0 +1,253 @@
+package com.gielinorgains.diagnostics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects EDT stalls and attributes them to plugin code.
+ *
+ * A daemon thread posts a heartbeat to the EDT and polls whether it ran. If the heartbeat is
+ * late by more than the threshold while an {@link EdtSection} is active, the EDT stack is
+ * sampled on every poll and the stall time is charged to the innermost plugin frame.
+ * Stalls outside plugin code are counted but not sampled.
+ */
+@Slf4j
+@Singleton
+public class EdtWatchdog {
+    private static final String PLUGIN_PACKAGE = "com.gielinorgains.";
+    private static final String OWN_PACKAGE = "com.gielinorgains.diagnostics.";
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final int LOGGED_FRAMES = 8;
+
+    private final MetricsRegistry metrics;
+    private final LatencyHistogram stallTime;
+    private final LongAdder pluginStalls;
+    private final LongAdder otherStalls;
+    private final Map<String, StallStats> stallsByFrame = new ConcurrentHashMap<>();
+
+    private volatile Thread watchdogThread;
+    private volatile Thread edtThread;
+    private volatile long thresholdNanos;
+    private volatile long heartbeatPostedNanos;
+    private volatile boolean heartbeatPending;
+
+    // Watchdog-thread-only state for the stall in progress
+    private boolean stalled;
+    private String stallFrame;
+    private StackTraceElement[] stallStack;
+
+    @Inject
+    public EdtWatchdog(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        this.stallTime = metrics.histogram(MetricsRegistry.EDT_STALL_TIME);
+        this.pluginStalls = metrics.counter(MetricsRegistry.EDT_STALLS);
+        this.otherStalls = metrics.counter(MetricsRegistry.EDT_OTHER_STALLS);
+    }
+
+    /**
+     * Starts watching, or restarts with a new threshold if already watching. A threshold of zero
+     * or less leaves the watchdog stopped.
+     */
+    public synchronized void start(long thresholdMillis) {
+        stop();
+        if (thresholdMillis <= 0) {
+            return;
+        }
+
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        heartbeatPending = false;
+        stalled = false;
+        stallFrame = null;
+        stallStack = null;
+        SwingUtilities.invokeLater(() -> edtThread = Thread.currentThread());
+        metrics.textGauge(MetricsRegistry.EDT_TOP_STALL, this::describeTopStall);
+
+        Thread thread = new Thread(this::run, "gielinor-gains-edt-watchdog");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        watchdogThread = thread;
+        thread.start();
+        log.debug("EDT watchdog started with {}ms threshold", thresholdMillis);
+    }
+
+    public synchronized void stop() {
+        Thread thread = watchdogThread;
+        if (thread == null) {
+            return;
+        }
+        watchdogThread = null;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.removeTextGauge(MetricsRegistry.EDT_TOP_STALL);
+
+        if (!stallsByFrame.isEmpty()) {
+            log.debug("EDT stall summary: {}", getTopStalls(5));
+        }
+    }
+
+    private void run() {
+        while (watchdogThread == Thread.currentThread()) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            poll();
+        }
+    }
+
+    private void poll() {
+        long now = System.nanoTime();
+
+        if (!heartbeatPending) {
+            if (stalled) {
+                finishStall();
+            }
+            heartbeatPending = true;
+            heartbeatPostedNanos = now;
+            SwingUtilities.invokeLater(() -> heartbeatPending = false);
+            return;
+        }
+
+        long waited = now - heartbeatPostedNanos;
+        if (waited < thresholdNanos) {
+            return;
+        }
+
+        stalled = true;
+        Thread edt = edtThread;
+        if (edt == null || EdtSection.activeNanos(now) < thresholdNanos) {
+            return;
+        }
+
+        StackTraceElement[] stack = edt.getStackTrace();
+        String frame = attribute(stack);
+        if (frame == null) {
+            return;
+        }
+        if (stallFrame == null) {
+            stallFrame = frame;
+            stallStack = stack;
+        }
+        stallsByFrame.computeIfAbsent(frame, k -> new StallStats()).sampledNanos.add(TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS));
+    }
+
+    private void finishStall() {
+        // The heartbeat ran somewhere between the last two polls; the poll interval bounds the error
+        long duration = System.nanoTime() - heartbeatPostedNanos - TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS / 2);
+        stallTime.recordNanos(duration);
+
+        if (stallFrame != null) {
+            pluginStalls.increment();
+            StallStats stats = stallsByFrame.computeIfAbsent(stallFrame, k -> new StallStats());
+            stats.count.increment();
+            stats.recordMax(duration);
+            log.warn("EDT stalled for {}ms in {}\n{}", TimeUnit.NANOSECONDS.toMillis(duration), stallFrame,
+                formatStack(stallStack));
+        } else {
+            otherStalls.increment();
+            log.debug("EDT stalled for {}ms outside plugin code", TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+
+        stalled = false;
+        stallFrame = null;
+        stallStack = null;
+    }
+
+    /**
+     * Finds the innermost plugin frame and, if it was entered from a different plugin method,
+     * the outermost one as well, e.g. {@code "ItemCardPanel.drawWrappedText <- CardGridPanel.updateLayout"}.
+     */
+    static String attribute(StackTraceElement[] stack) {
+        StackTraceElement innermost = null;
+        StackTraceElement outermost = null;
+        for (StackTraceElement element : stack) {
+            String className = element.getClassName();
+            if (!className.startsWith(PLUGIN_PACKAGE) || className.startsWith(OWN_PACKAGE)) {
+                continue;
+            }
+            if (innermost == null) {
+                innermost = element;
+            }
+            outermost = element;
+        }
+
+        if (innermost == null) {
+            return null;
+        }
+        String inner = shortName(innermost);
+        String outer = shortName(outermost);
+        return inner.equals(outer) ? inner : inner + " <- " + outer;
+    }
+
+    private static String shortName(StackTraceElement element) {
+        String className = element.getClassName();
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        int lambda = simpleName.indexOf('$');
+        if (lambda > 0) {
+            simpleName = simpleName.substring(0, lambda);
+        }
+        return simpleName + "." + element.getMethodName();
+    }
+
+    private static String formatStack(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder();
+        int limit = Math.min(LOGGED_FRAMES, stack.length);
+        for (int i = 0; i < limit; i++) {
+            sb.append("\tat ").append(stack[i]).append('\n');
+        }
+        if (stack.length > limit) {
+            sb.append("\t... ").append(stack.length - limit).append(" more");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the frames with the most sampled stall time, formatted for logs or display
+     */
+    public List<String> getTopStalls(int limit) {
+        List<Map.Entry<String, StallStats>> entries = new ArrayList<>(stallsByFrame.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, StallStats> e) -> e.getValue().sampledNanos.sum()).reversed());
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            Map.Entry<String, StallStats> entry = entries.get(i);
+            StallStats stats = entry.getValue();
+            result.add(String.format("%s: %d stalls, %dms sampled, %dms max", entry.getKey(),
+                stats.count.sum(), TimeUnit.NANOSECONDS.toMillis(stats.sampledNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(stats.maxNanos)));
+        }
+        return result;
+    }
+
+    private String describeTopStall() {
+        List<String> top = getTopStalls(1);
+        return top.isEmpty() ? "none" : top.get(0);
+    }
+
+    private static class StallStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder sampledNanos = new LongAdder();
+        volatile long maxNanos;
+
+        void recordMax(long nanos) {
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+    }
+}
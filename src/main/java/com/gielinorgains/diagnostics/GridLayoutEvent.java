@@ -0,0 +1,28 @@
+package com.gielinorgains.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted for every {@code CardGridPanel.updateLayout} pass on the EDT.
+ */
+@Name("com.gielinorgains.GridLayout")
+@Label("Card Grid Layout")
+@Category({"Gielinor Gains", "Swing"})
+@Description("Rebuild of the card grid component tree")
+@StackTrace(false)
+public class GridLayoutEvent extends Event {
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Card Count")
+    public int cardCount;
+
+    @Label("State")
+    @Description("Either cards, loading or empty")
+    public String state;
+}
@@ -0,0 +1,46 @@
+package com.gielinorgains.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering one phase of {@code IconCache.loadIcon}: "download", "decode" or "scale".
+ * A "download" served from the icon store shared with other clients is a cache hit.
+ */
+@Name("com.gielinorgains.IconLoad")
+@Label("Icon Load")
+@Category({"Gielinor Gains", "Icons"})
+@Description("A phase of downloading and preparing an item icon")
+@StackTrace(false)
+public class IconLoadEvent extends Event {
+    public static final String PHASE_DOWNLOAD = "download";
+    public static final String PHASE_DECODE = "decode";
+    public static final String PHASE_SCALE = "scale";
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Icon URL")
+    public String url;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,167 @@
+package com.gielinorgains.diagnostics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free, HDR-style latency histogram over a rolling time window.
+ *
+ * Values are bucketed log-linearly (16 sub-buckets per power of two, ~6% precision) and
+ * recorded into one of {@link #SLICES} time slices. Recording is a couple of array
+ * increments; percentiles are computed on read by merging the slices still inside the window.
+ * A slice is never cleared for reuse: the next lap of the ring swaps in a fresh one, so no
+ * recording can land in a slice just before it is wiped.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40; // 2^40 ns is roughly 18 minutes
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+    private static final int SLICES = 8;
+
+    private final long sliceMillis;
+    private final AtomicReferenceArray<Slice> slices = new AtomicReferenceArray<>(SLICES);
+
+    /**
+     * @param windowMillis how far back percentiles look; split into {@value #SLICES} slices
+     */
+    public LatencyHistogram(long windowMillis) {
+        this.sliceMillis = Math.max(1, windowMillis / SLICES);
+        for (int i = 0; i < SLICES; i++) {
+            slices.set(i, new Slice(Long.MIN_VALUE));
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        long value = Math.max(0, Math.min(MAX_VALUE, nanos));
+        long epoch = System.currentTimeMillis() / sliceMillis;
+        int index = (int) (epoch % SLICES);
+        Slice slice = slices.get(index);
+        // A slice from a previous lap of the ring is replaced by a fresh one; whoever loses the
+        // race records into the winner's. A later slice, seen by a thread that stalled, is kept
+        while (slice.epoch < epoch) {
+            Slice fresh = new Slice(epoch);
+            if (slices.compareAndSet(index, slice, fresh)) {
+                slice = fresh;
+            } else {
+                slice = slices.get(index);
+            }
+        }
+
+        slice.counts.incrementAndGet(bucketIndex(value));
+        slice.total.addAndGet(value);
+        slice.count.incrementAndGet();
+    }
+
+    public void recordMillis(long millis) {
+        recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Takes a merged view of all slices inside the window.
+     */
+    public Snapshot snapshot() {
+        long currentEpoch = System.currentTimeMillis() / sliceMillis;
+        long[] merged = new long[BUCKET_COUNT];
+        long count = 0;
+        long total = 0;
+
+        for (int s = 0; s < SLICES; s++) {
+            Slice slice = slices.get(s);
+            long epoch = slice.epoch;
+            if (epoch <= currentEpoch - SLICES || epoch > currentEpoch) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                merged[i] += slice.counts.get(i);
+            }
+            count += slice.count.get();
+            total += slice.total.get();
+        }
+
+        return new Snapshot(merged, count, total);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    private static class Slice {
+        final long epoch;
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong total = new AtomicLong();
+
+        Slice(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Immutable merged view of the histogram, in nanoseconds.
+     */
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long total;
+
+        Snapshot(long[] buckets, long count, long total) {
+            this.buckets = buckets;
+            this.count = count;
+            this.total = total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        /**
+         * @param percentile in the range 0-100
+         */
+        public long getPercentileNanos(double percentile) {
+            long seen = 0;
+            long bucketTotal = 0;
+            for (long bucket : buckets) {
+                bucketTotal += bucket;
+            }
+            if (bucketTotal == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(bucketTotal * percentile / 100.0));
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return bucketMidpoint(i);
+                }
+            }
+            return bucketMidpoint(buckets.length - 1);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return getPercentileNanos(percentile) / 1_000_000.0;
+        }
+    }
+}
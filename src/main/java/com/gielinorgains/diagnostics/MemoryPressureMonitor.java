@@ -0,0 +1,188 @@
+package com.gielinorgains.diagnostics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tells the plugin's caches how tight the heap is, so they can give memory back to the client
+ * before it runs short.
+ *
+ * Pressure is judged by how full the tenured heap pools still are right after a collection,
+ * which is what is actually live; usage before a collection says little. GC notifications
+ * re-check after every collection, so the level rises and drops again as memory fills and frees
+ * up. The pools' collection usage thresholds are left alone: they are JVM-wide and belong to
+ * the client and any other plugin that sets them. The level only falls back once usage is well
+ * below the line it crossed, so caches do not flap around a boundary.
+ *
+ * Listeners are called on the JMX notification thread and should only adjust their limits.
+ */
+@Slf4j
+@Singleton
+public class MemoryPressureMonitor {
+    public enum Level {
+        /** Caches may use their full capacity */
+        NORMAL,
+        /** Caches should shrink to their floor and hold the rest softly */
+        HIGH,
+        /** Caches should drop everything they can fetch again */
+        CRITICAL
+    }
+
+    // Share of a heap pool still in use after a collection
+    static final double HIGH_FRACTION = 0.70;
+    static final double CRITICAL_FRACTION = 0.85;
+    private static final double HYSTERESIS = 0.10;
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private final List<Consumer<Level>> listeners = new CopyOnWriteArrayList<>();
+    private final NotificationListener notificationListener = this::onNotification;
+    private volatile Level level = Level.NORMAL;
+    private volatile double usedFraction;
+
+    // Guarded by this
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+    @Inject
+    public MemoryPressureMonitor(MetricsRegistry metrics) {
+        metrics.gauge(MetricsRegistry.MEMORY_PRESSURE, () -> level.ordinal());
+        metrics.gauge(MetricsRegistry.HEAP_AFTER_GC, () -> Math.round(usedFraction * 100));
+    }
+
+    /**
+     * Finds the tenured heap pools and starts listening for collections. Does nothing if already
+     * started.
+     */
+    public synchronized void start() {
+        if (!pools.isEmpty()) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            // Only the tenured pools take usage thresholds; eden and survivor spaces are meant to fill up
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pools.add(pool);
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            listen(collector);
+        }
+        log.debug("Watching {} heap pools and {} notification sources for memory pressure",
+            pools.size(), emitters.size());
+        check();
+    }
+
+    public synchronized void stop() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(notificationListener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+        emitters.clear();
+        pools.clear();
+        update(0);
+    }
+
+    /**
+     * Registers a listener for level changes. It is not told the current level; use
+     * {@link #getLevel} for that.
+     */
+    public void addListener(Consumer<Level> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Level> listener) {
+        listeners.remove(listener);
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Re-reads how full the watched pools were after their last collection
+     */
+    public void check() {
+        double fraction = 0;
+        synchronized (this) {
+            for (MemoryPoolMXBean pool : pools) {
+                MemoryUsage usage = pool.getCollectionUsage();
+                if (usage != null && usage.getMax() > 0) {
+                    fraction = Math.max(fraction, (double) usage.getUsed() / usage.getMax());
+                }
+            }
+        }
+        update(fraction);
+    }
+
+    /**
+     * Moves to the level for the given share of the fullest heap pool still in use after a
+     * collection, and tells the listeners if it changed. Normally fed by {@link #check}.
+     */
+    public void update(double fraction) {
+        Level changed;
+        synchronized (this) {
+            usedFraction = fraction;
+            Level next = levelFor(level, fraction);
+            if (next == level) {
+                return;
+            }
+            log.debug("Memory pressure {} -> {} at {}% of heap after GC", level, next, Math.round(fraction * 100));
+            level = next;
+            changed = next;
+        }
+        for (Consumer<Level> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (Exception e) {
+                log.warn("Memory pressure listener failed", e);
+            }
+        }
+    }
+
+    static Level levelFor(Level current, double fraction) {
+        if (fraction >= CRITICAL_FRACTION) {
+            return Level.CRITICAL;
+        }
+        if (fraction >= HIGH_FRACTION) {
+            // Stay critical until usage is clearly back under the critical line
+            return current == Level.CRITICAL && fraction >= CRITICAL_FRACTION - HYSTERESIS ? Level.CRITICAL : Level.HIGH;
+        }
+        if (current != Level.NORMAL && fraction >= HIGH_FRACTION - HYSTERESIS) {
+            return Level.HIGH;
+        }
+        return Level.NORMAL;
+    }
+
+    private void listen(Object bean) {
+        if (bean instanceof NotificationEmitter) {
+            NotificationEmitter emitter = (NotificationEmitter) bean;
+            emitter.addNotificationListener(notificationListener, null, null);
+            emitters.add(emitter);
+        }
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (GC_NOTIFICATION.equals(notification.getType())) {
+            check();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.gielinorgains.diagnostics;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Plugin-wide registry of cheap, lock-free metrics.
+ *
+ * Counters are {@link LongAdder}s (striped per contending thread) and latencies go into
+ * {@link LatencyHistogram}s. Callers should look a metric up once and keep the reference;
+ * the lookup itself is a map access and does not belong on a hot path.
+ */
+@Singleton
+public class MetricsRegistry {
+    public static final String FETCH_LATENCY = "api.fetch.latency";
+    public static final String DECODE_TIME = "api.decode.time";
+    public static final String HEDGED_REQUESTS = "api.hedged";
+    public static final String HEDGE_WINS = "api.hedgeWins";
+    public static final String DEADLINE_EXCEEDED = "api.deadlineExceeded";
+    public static final String CIRCUIT_REJECTED = "api.circuitRejected";
+    public static final String TIME_TO_FIRST_CARD = "ui.timeToFirstCard";
+    public static final String EDT_TIME_PER_REFRESH = "ui.edtTimePerRefresh";
+    public static final String PLUGIN_STARTUP_TIME = "plugin.startupTime";
+    public static final String PANEL_BUILD_TIME = "ui.panelBuildTime";
+
+    public static final String ICON_HITS = "icons.hits";
+    public static final String ICON_MISSES = "icons.misses";
+    public static final String ICON_IN_FLIGHT = "icons.inFlight";
+    public static final String ICON_CACHE_BYTES = "icons.cacheBytes";
+    public static final String ICON_CACHE_ENTRIES = "icons.cacheEntries";
+    public static final String ICON_CACHE_SOFT_ENTRIES = "icons.softEntries";
+    public static final String ICON_ATLAS_PAGES = "icons.atlasPages";
+    public static final String ICON_PREFETCH_ISSUED = "icons.prefetch.issued";
+    public static final String ICON_PREFETCH_CANCELLED = "icons.prefetch.cancelled";
+    public static final String ICON_BUNDLE_REQUESTS = "icons.bundle.requests";
+    public static final String ICON_BUNDLED = "icons.bundle.icons";
+
+    public static final String CARD_COUNT = "ui.cardCount";
+    public static final String GRID_COMPONENT_COUNT = "ui.gridComponentCount";
+
+    public static final String EDT_STALLS = "edt.stalls";
+    public static final String EDT_OTHER_STALLS = "edt.otherStalls";
+    public static final String EDT_STALL_TIME = "edt.stallTime";
+    public static final String EDT_TOP_STALL = "edt.topStall";
+
+    public static final String MEMORY_PRESSURE = "memory.pressure";
+    public static final String HEAP_AFTER_GC = "memory.heapAfterGc";
+
+    public static final String ALERT_RULE_CHECKS = "alerts.ruleChecks";
+    public static final String ALERTS_FIRED = "alerts.fired";
+
+    private static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<String>> textGauges = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram(DEFAULT_WINDOW_MILLIS));
+    }
+
+    /**
+     * Registers a gauge that is sampled whenever the metric is read. Replaces any previous gauge of that name.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Reads a gauge, returning -1 if none is registered or it fails.
+     */
+    public long readGauge(String name) {
+        LongSupplier supplier = gauges.get(name);
+        if (supplier == null) {
+            return -1;
+        }
+        try {
+            return supplier.getAsLong();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Registers a descriptive gauge for values that are not numbers, such as the worst EDT stall site.
+     */
+    public void textGauge(String name, Supplier<String> supplier) {
+        textGauges.put(name, supplier);
+    }
+
+    public void removeTextGauge(String name) {
+        textGauges.remove(name);
+    }
+
+    /**
+     * Reads a text gauge, returning null if none is registered or it fails.
+     */
+    public String readTextGauge(String name) {
+        Supplier<String> supplier = textGauges.get(name);
+        if (supplier == null) {
+            return null;
+        }
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public long readCounter(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder.sum() : 0;
+    }
+}
@@ -0,0 +1,262 @@
+package com.gielinorgains.history;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * One memory-mapped history file.
+ *
+ * Layout: a 16 byte header (magic, base time, committed length) followed by blocks of
+ * {@code [int length][flags][varint time - base][varint count][entries sorted by item id]}.
+ * Each entry is the item id and the zigzag deltas of its low/high price, score and volume against
+ * that item's previous entry in the segment. Keyframe blocks restart the deltas from zero so a
+ * read only has to decode from the nearest keyframe. The committed length is written after the
+ * block, so a crash mid-append leaves the previous blocks intact.
+ */
+@Slf4j
+final class HistorySegment {
+    static final int MAGIC = 0x47474831; // "GGH1"
+    static final int HEADER_SIZE = 16;
+    static final int FLAG_KEYFRAME = 1;
+    private static final int END_OFFSET = 12;
+    
+    private final File file;
+    private final long baseTime;
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private boolean writable;
+    private int end;
+    
+    // Block index: time and position of the entry count, so reads can binary search by time
+    private long[] blockTimes = new long[64];
+    private int[] blockOffsets = new int[64];
+    private byte[] blockFlags = new byte[64];
+    private int blockCount;
+    
+    private HistorySegment(File file, long baseTime, ByteBuffer buffer, int capacity, int end, boolean writable) {
+        this.file = file;
+        this.baseTime = baseTime;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.end = end;
+        this.writable = writable;
+    }
+    
+    static HistorySegment create(File file, long baseTime, int capacity) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(capacity);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(4, baseTime);
+        buffer.putInt(END_OFFSET, HEADER_SIZE);
+        return new HistorySegment(file, baseTime, buffer, capacity, HEADER_SIZE, true);
+    }
+    
+    /**
+     * Opens a segment written by an earlier session read-only, trimming any unused mapped tail.
+     * Returns null if the file is not a readable segment.
+     */
+    static HistorySegment open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt(0) != MAGIC) {
+                return null;
+            }
+            long baseTime = header.getLong(4);
+            int end = header.getInt(END_OFFSET);
+            if (end < HEADER_SIZE || end > size) {
+                return null;
+            }
+            if (size > end) {
+                raf.setLength(end);
+            }
+            
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            HistorySegment segment = new HistorySegment(file, baseTime, buffer, end, end, false);
+            segment.scanBlocks();
+            return segment;
+        }
+    }
+    
+    private void scanBlocks() {
+        int position = HEADER_SIZE;
+        ByteBuffer in = buffer.duplicate();
+        while (position + 4 <= end) {
+            int length = in.getInt(position);
+            if (length <= 0 || position + 4 + length > end) {
+                log.debug("Stopping at malformed block {} in {}", position, file.getName());
+                end = position;
+                break;
+            }
+            in.position(position + 5);
+            long time = baseTime + Varint.getUnsigned(in);
+            addToIndex(time, in.position(), in.get(position + 4));
+            position += 4 + length;
+        }
+    }
+    
+    /**
+     * Appends an encoded block (flags onwards, position to limit). Returns false if it does not fit.
+     */
+    synchronized boolean append(long time, ByteBuffer block, boolean keyframe) {
+        int length = block.remaining();
+        if (!writable || end + 4 + length > capacity) {
+            return false;
+        }
+        
+        ByteBuffer out = buffer.duplicate();
+        out.position(end);
+        out.putInt(length);
+        int blockStart = out.position();
+        out.put(block);
+        
+        ByteBuffer in = buffer.duplicate();
+        in.position(blockStart + 1);
+        Varint.skip(in);
+        addToIndex(time, in.position(), keyframe ? (byte) FLAG_KEYFRAME : 0);
+        
+        end = out.position();
+        buffer.putInt(END_OFFSET, end);
+        return true;
+    }
+    
+    private void addToIndex(long time, int offset, byte flags) {
+        if (blockCount == blockTimes.length) {
+            int size = blockCount * 2;
+            blockTimes = Arrays.copyOf(blockTimes, size);
+            blockOffsets = Arrays.copyOf(blockOffsets, size);
+            blockFlags = Arrays.copyOf(blockFlags, size);
+        }
+        blockTimes[blockCount] = time;
+        blockOffsets[blockCount] = offset;
+        blockFlags[blockCount] = flags;
+        blockCount++;
+    }
+    
+    /**
+     * Adds the points for {@code itemId} with {@code from <= time <= to} to {@code out}.
+     */
+    synchronized void read(int itemId, long from, long to, PriceSeries out) {
+        int first = lowerBound(from);
+        if (first == blockCount) {
+            return;
+        }
+        int block = first;
+        while (block > 0 && (blockFlags[block] & FLAG_KEYFRAME) == 0) {
+            block--;
+        }
+        
+        ByteBuffer in = buffer.duplicate();
+        long low = 0;
+        long high = 0;
+        long score = 0;
+        long volume = 0;
+        for (; block < blockCount; block++) {
+            long time = blockTimes[block];
+            if (time > to) {
+                break;
+            }
+            if ((blockFlags[block] & FLAG_KEYFRAME) != 0) {
+                low = high = score = volume = 0;
+            }
+            
+            in.position(blockOffsets[block]);
+            int count = (int) Varint.getUnsigned(in);
+            for (int i = 0; i < count; i++) {
+                int id = (int) Varint.getUnsigned(in);
+                if (id > itemId) {
+                    break; // entries are sorted, the item is not in this block
+                }
+                if (id < itemId) {
+                    Varint.skip(in);
+                    Varint.skip(in);
+                    Varint.skip(in);
+                    Varint.skip(in);
+                    continue;
+                }
+                low += Varint.getSigned(in);
+                high += Varint.getSigned(in);
+                score += Varint.getSigned(in);
+                volume += Varint.getSigned(in);
+                if (time >= from) {
+                    out.add(time, (int) low, (int) high, score / PriceHistoryStore.SCORE_SCALE, volume);
+                }
+                break;
+            }
+        }
+    }
+    
+    private int lowerBound(long time) {
+        int lo = 0;
+        int hi = blockCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blockTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    synchronized void force() {
+        if (writable) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+    
+    /**
+     * Stops appends and gives back the unused tail of the file where the platform allows it.
+     */
+    synchronized void seal() {
+        if (!writable) {
+            return;
+        }
+        ((MappedByteBuffer) buffer).force();
+        writable = false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(end);
+        } catch (IOException e) {
+            // Some platforms refuse while the mapping is alive; open() trims it next session
+            log.debug("Could not trim history segment {}: {}", file.getName(), e.getMessage());
+        }
+    }
+    
+    File getFile() {
+        return file;
+    }
+    
+    long getBaseTime() {
+        return baseTime;
+    }
+    
+    synchronized long getLastTime() {
+        return blockCount == 0 ? baseTime : blockTimes[blockCount - 1];
+    }
+    
+    synchronized int getBlockCount() {
+        return blockCount;
+    }
+    
+    synchronized long getSizeOnDisk() {
+        return writable ? capacity : end;
+    }
+}
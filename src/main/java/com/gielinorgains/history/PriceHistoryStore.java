@@ -0,0 +1,371 @@
+package com.gielinorgains.history;
+
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only history of each item's prices, score and volume across refreshes.
+ *
+ * Snapshots are queued by {@link #record} and written in batches on a single background thread
+ * into memory-mapped {@link HistorySegment} files, one per {@code segmentSpan} or until a segment
+ * is full. Segments older than the retention period, or beyond the total size cap, are deleted
+ * whenever a new segment is started.
+ */
+@Slf4j
+public class PriceHistoryStore {
+    static final double SCORE_SCALE = 1000.0;
+    
+    private static final int SEGMENT_CAPACITY = 8 * 1024 * 1024;
+    private static final long SEGMENT_SPAN_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    private static final int KEYFRAME_INTERVAL = 32;
+    private static final long BATCH_DELAY_MS = 2000;
+    private static final String FILE_PREFIX = "prices-";
+    private static final String FILE_SUFFIX = ".seg";
+    
+    private final File directory;
+    private volatile long retentionMillis;
+    private final int segmentCapacity;
+    private final long segmentSpanMillis;
+    private final ScheduledExecutorService writer;
+    private final Queue<Snapshot> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final List<HistorySegment> segments = new CopyOnWriteArrayList<>();
+    
+    // Writer thread only
+    private final Map<Integer, long[]> lastValues = new HashMap<>();
+    private HistorySegment active;
+    private int blocksSinceKeyframe;
+    private ByteBuffer scratch = ByteBuffer.allocate(16 * 1024);
+    
+    public PriceHistoryStore(File directory, int retentionDays) {
+        this(directory, retentionDays, SEGMENT_CAPACITY, SEGMENT_SPAN_MILLIS);
+    }
+    
+    /**
+     * Creates a store with custom segment limits, e.g. tiny segments in tests.
+     */
+    public PriceHistoryStore(File directory, int retentionDays, int segmentCapacity, long segmentSpanMillis) {
+        this.directory = directory;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(1, retentionDays));
+        this.segmentCapacity = segmentCapacity;
+        this.segmentSpanMillis = segmentSpanMillis;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GielinorGains-History");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Loads the segments of earlier sessions in the background.
+     */
+    public void start() {
+        writer.execute(this::openSegments);
+    }
+    
+    /**
+     * Changes how long history is kept. Segments already past the new period are deleted in the
+     * background.
+     */
+    public void setRetentionDays(int retentionDays) {
+        retentionMillis = TimeUnit.DAYS.toMillis(Math.max(1, retentionDays));
+        try {
+            writer.execute(() -> enforceRetention(System.currentTimeMillis()));
+        } catch (RejectedExecutionException e) {
+            log.debug("History store closed, not applying retention");
+        }
+    }
+    
+    public void record(List<GainsItem> items) {
+        record(items, System.currentTimeMillis());
+    }
+    
+    /**
+     * Queues a snapshot for writing. Items without a numeric id are skipped. Safe on any thread.
+     */
+    public void record(List<GainsItem> items, long timestamp) {
+        Snapshot snapshot = Snapshot.of(items, timestamp);
+        if (snapshot.size == 0) {
+            return;
+        }
+        pending.add(snapshot);
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(this::drain, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("History store closed, dropping snapshot");
+            }
+        }
+    }
+    
+    /**
+     * Writes everything queued so far and waits for it to reach the mapped files.
+     */
+    public void flush() {
+        try {
+            writer.submit(this::drain).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to flush price history", e);
+        }
+    }
+    
+    /**
+     * Reads the points of one item between two timestamps (inclusive). Safe on any thread, but
+     * decodes from disk, so callers should stay off the EDT for long ranges.
+     */
+    public PriceSeries readRange(int itemId, long fromMillis, long toMillis) {
+        PriceSeries series = new PriceSeries(itemId);
+        for (HistorySegment segment : segments) {
+            if (segment.getLastTime() < fromMillis || segment.getBaseTime() > toMillis) {
+                continue;
+            }
+            segment.read(itemId, fromMillis, toMillis, series);
+        }
+        return series;
+    }
+    
+    public int getSegmentCount() {
+        return segments.size();
+    }
+    
+    public void close() {
+        writer.execute(() -> {
+            drain();
+            if (active != null) {
+                active.seal();
+                active = null;
+            }
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Price history writer did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segments.clear();
+    }
+    
+    private void openSegments() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Could not create price history directory {}", directory);
+            return;
+        }
+        
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        
+        List<HistorySegment> loaded = new ArrayList<>();
+        for (File file : files) {
+            try {
+                HistorySegment segment = HistorySegment.open(file);
+                if (segment == null) {
+                    log.warn("Ignoring unreadable price history file {}", file.getName());
+                } else {
+                    loaded.add(segment);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to open price history file {}", file.getName(), e);
+            }
+        }
+        loaded.sort((a, b) -> Long.compare(a.getBaseTime(), b.getBaseTime()));
+        segments.addAll(0, loaded);
+        
+        enforceRetention(System.currentTimeMillis());
+        log.debug("Opened {} price history segments from {}", loaded.size(), directory);
+    }
+    
+    private void drain() {
+        drainScheduled.set(false);
+        int written = 0;
+        Snapshot snapshot;
+        while ((snapshot = pending.poll()) != null) {
+            try {
+                write(snapshot);
+                written++;
+            } catch (IOException e) {
+                log.warn("Failed to write price history snapshot", e);
+            }
+        }
+        if (written > 0 && active != null) {
+            active.force();
+            log.debug("Wrote {} price history snapshots", written);
+        }
+    }
+    
+    private void write(Snapshot snapshot) throws IOException {
+        long time = snapshot.timestamp;
+        if (active != null) {
+            // Blocks must stay in time order for the index; tolerate the clock stepping back
+            time = Math.max(time, active.getLastTime());
+        }
+        if (active == null || time - active.getBaseTime() >= segmentSpanMillis) {
+            rotate(time);
+        }
+        
+        boolean keyframe = blocksSinceKeyframe == 0 || blocksSinceKeyframe >= KEYFRAME_INTERVAL;
+        if (!active.append(time, encode(snapshot, time, keyframe), keyframe)) {
+            rotate(time);
+            keyframe = true;
+            if (!active.append(time, encode(snapshot, time, true), true)) {
+                log.warn("Price history snapshot of {} items does not fit in a segment", snapshot.size);
+                return;
+            }
+        }
+        blocksSinceKeyframe = keyframe ? 1 : blocksSinceKeyframe + 1;
+    }
+    
+    private ByteBuffer encode(Snapshot snapshot, long time, boolean keyframe) {
+        if (keyframe) {
+            lastValues.clear();
+        }
+        
+        // Worst case: flags + time + count, then id and four values per item
+        int maxSize = 1 + 10 + 5 + snapshot.size * (5 + 10 * 4);
+        if (scratch.capacity() < maxSize) {
+            scratch = ByteBuffer.allocate(maxSize);
+        }
+        ByteBuffer out = scratch;
+        out.clear();
+        out.put(keyframe ? (byte) HistorySegment.FLAG_KEYFRAME : 0);
+        Varint.putUnsigned(out, time - active.getBaseTime());
+        Varint.putUnsigned(out, snapshot.size);
+        
+        for (int i = 0; i < snapshot.size; i++) {
+            long[] previous = lastValues.computeIfAbsent(snapshot.ids[i], id -> new long[4]);
+            long[] values = snapshot.values[i];
+            Varint.putUnsigned(out, snapshot.ids[i]);
+            for (int field = 0; field < 4; field++) {
+                Varint.putSigned(out, values[field] - previous[field]);
+                previous[field] = values[field];
+            }
+        }
+        out.flip();
+        return out;
+    }
+    
+    private void rotate(long time) throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File file = new File(directory, FILE_PREFIX + time + FILE_SUFFIX);
+        for (long suffix = time + 1; file.exists(); suffix++) {
+            file = new File(directory, FILE_PREFIX + suffix + FILE_SUFFIX);
+        }
+        
+        active = HistorySegment.create(file, time, segmentCapacity);
+        segments.add(active);
+        lastValues.clear();
+        blocksSinceKeyframe = 0;
+        log.debug("Started price history segment {}", file.getName());
+        
+        enforceRetention(time);
+    }
+    
+    private void enforceRetention(long now) {
+        long cutoff = now - retentionMillis;
+        long totalBytes = 0;
+        for (HistorySegment segment : segments) {
+            totalBytes += segment.getSizeOnDisk();
+        }
+        
+        for (HistorySegment segment : segments) {
+            if (segment == active) {
+                continue;
+            }
+            boolean expired = segment.getLastTime() < cutoff;
+            if (!expired && totalBytes <= MAX_TOTAL_BYTES) {
+                break; // segments are oldest first
+            }
+            segments.remove(segment);
+            totalBytes -= segment.getSizeOnDisk();
+            if (!segment.getFile().delete()) {
+                log.debug("Could not delete expired history segment {}", segment.getFile().getName());
+            } else {
+                log.debug("Deleted history segment {}", segment.getFile().getName());
+            }
+        }
+    }
+    
+    /**
+     * Primitive copy of a refresh, sorted by item id, so the queue does not hold on to items.
+     */
+    private static final class Snapshot {
+        final long timestamp;
+        final int[] ids;
+        final long[][] values;
+        final int size;
+        
+        private Snapshot(long timestamp, int[] ids, long[][] values, int size) {
+            this.timestamp = timestamp;
+            this.ids = ids;
+            this.values = values;
+            this.size = size;
+        }
+        
+        static Snapshot of(List<GainsItem> items, long timestamp) {
+            long[] packed = new long[items.size()];
+            long[][] byIndex = new long[items.size()][];
+            int size = 0;
+            for (GainsItem item : items) {
+                int id = item.numericId();
+                if (id < 0) {
+                    continue;
+                }
+                byIndex[size] = new long[] {
+                    item.getLatestLowPrice(),
+                    item.getLatestHighPrice(),
+                    Math.round(item.getScore() * SCORE_SCALE),
+                    item.getDailyVolume()
+                };
+                // Sort on id with the original index in the low bits
+                packed[size] = ((long) id << 32) | size;
+                size++;
+            }
+            Arrays.sort(packed, 0, size);
+            
+            int[] ids = new int[size];
+            long[][] values = new long[size][];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int id = (int) (packed[i] >>> 32);
+                if (count > 0 && ids[count - 1] == id) {
+                    continue; // duplicate rows across pages
+                }
+                ids[count] = id;
+                values[count] = byIndex[(int) packed[i]];
+                count++;
+            }
+            return new Snapshot(timestamp, ids, values, count);
+        }
+    }
+}
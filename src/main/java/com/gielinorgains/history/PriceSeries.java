@@ -0,0 +1,70 @@
+package com.gielinorgains.history;
+
+import java.util.Arrays;
+
+/**
+ * Points read back for one item, oldest first, held in primitive arrays so a range over weeks of
+ * snapshots stays cheap to build and to draw.
+ */
+public final class PriceSeries {
+    private final int itemId;
+    private long[] times = new long[64];
+    private int[] lowPrices = new int[64];
+    private int[] highPrices = new int[64];
+    private double[] scores = new double[64];
+    private long[] volumes = new long[64];
+    private int size;
+    
+    public PriceSeries(int itemId) {
+        this.itemId = itemId;
+    }
+    
+    void add(long time, int lowPrice, int highPrice, double score, long volume) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            lowPrices = Arrays.copyOf(lowPrices, capacity);
+            highPrices = Arrays.copyOf(highPrices, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+        times[size] = time;
+        lowPrices[size] = lowPrice;
+        highPrices[size] = highPrice;
+        scores[size] = score;
+        volumes[size] = volume;
+        size++;
+    }
+    
+    public int getItemId() {
+        return itemId;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public long getTime(int index) {
+        return times[index];
+    }
+    
+    public int getLowPrice(int index) {
+        return lowPrices[index];
+    }
+    
+    public int getHighPrice(int index) {
+        return highPrices[index];
+    }
+    
+    public double getScore(int index) {
+        return scores[index];
+    }
+    
+    public long getDailyVolume(int index) {
+        return volumes[index];
+    }
+}
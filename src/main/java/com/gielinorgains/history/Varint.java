@@ -0,0 +1,46 @@
+package com.gielinorgains.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128-style variable length integers with zigzag encoding for signed deltas.
+ */
+final class Varint {
+    private Varint() {
+    }
+    
+    static void putUnsigned(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+    
+    static void putSigned(ByteBuffer out, long value) {
+        putUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+    
+    static long getUnsigned(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+    
+    static long getSigned(ByteBuffer in) {
+        long raw = getUnsigned(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+    
+    static void skip(ByteBuffer in) {
+        while (in.get() < 0) {
+            // continuation bit set
+        }
+    }
+}
@@ -9,4 +9,6 @@ public class ApiResponse {
     private int totalItems;
     private boolean success;
     private String error;
+    // Position in the price stream this snapshot reflects, 0 if the server did not say
+    private long sequence;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.gielinorgains.model;
 
+import com.gielinorgains.util.PriceFormatter;
 import lombok.Data;
 import lombok.Builder;
 import java.util.List;
@@ -14,7 +15,7 @@ import java.util.List;
  * - All numeric values are properly typed (Double for decimal values from API)
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class GainsItem {
     private String id;
     private String name;
@@ -42,13 +43,35 @@ public class GainsItem {
     private double sDataCompleteness;
     private Double medianHourlyVolume;
     
+    // Result of the user's ranking expression, cached per expression version; never serialized
+    private transient double customRank;
+    private transient int rankingVersion;
+    
     public String getFormattedPrice(int price) {
-        if (price >= 1000000) {
-            return String.format("%.1fM", price / 1000000.0);
-        } else if (price >= 1000) {
-            return String.format("%.1fK", price / 1000.0);
+        return PriceFormatter.formatAbbreviated(price);
+    }
+    
+    /**
+     * Numeric item id, or -1 if the id is missing or not a number
+     */
+    public int numericId() {
+        return parseId(id);
+    }
+    
+    /**
+     * Parses an item id as the API sends it, ignoring surrounding whitespace. Returns -1 if the
+     * id is missing, not a number or negative.
+     */
+    public static int parseId(String id) {
+        if (id == null) {
+            return -1;
+        }
+        try {
+            int value = Integer.parseInt(id.trim());
+            return value >= 0 ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        return String.valueOf(price);
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.gielinorgains.model;
+
+import java.util.List;
+
+/**
+ * Immutable lookup from numeric item id to the item's row in a snapshot.
+ *
+ * An open addressing table over primitive int keys with linear probing, so {@link #get} neither
+ * boxes nor allocates and is safe to call at render time on the client thread. Build a new
+ * index per snapshot and publish it through a volatile field; readers never see a partly
+ * built table.
+ */
+public final class ItemIndex {
+    public static final ItemIndex EMPTY = build(null);
+    
+    private static final int EMPTY_KEY = 0;
+    
+    private final int[] keys;
+    private final GainsItem[] values;
+    private final int mask;
+    private final int size;
+    
+    private ItemIndex(int[] keys, GainsItem[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+    
+    /**
+     * Indexes the items with a positive numeric id. If an id appears twice the first row wins.
+     */
+    public static ItemIndex build(List<GainsItem> items) {
+        int count = items != null ? items.size() : 0;
+        // Load factor at most 0.5 keeps probe chains short
+        int capacity = Integer.highestOneBit(Math.max(4, count) * 2 - 1) << 1;
+        int[] keys = new int[capacity];
+        GainsItem[] values = new GainsItem[capacity];
+        int mask = capacity - 1;
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            GainsItem item = items.get(i);
+            int id = item.numericId();
+            if (id <= 0) {
+                continue;
+            }
+            int slot = mix(id) & mask;
+            while (keys[slot] != EMPTY_KEY && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY_KEY) {
+                keys[slot] = id;
+                values[slot] = item;
+                size++;
+            }
+        }
+        return new ItemIndex(keys, values, size);
+    }
+    
+    /**
+     * The snapshot row for an item id, or null. Allocation free.
+     */
+    public GainsItem get(int itemId) {
+        int slot = slotOf(itemId);
+        return slot >= 0 ? values[slot] : null;
+    }
+    
+    /**
+     * A copy of this index with each given item in place of the row with the same id. Items
+     * whose id is not indexed are skipped.
+     */
+    public ItemIndex with(List<GainsItem> replacements) {
+        GainsItem[] replaced = values.clone();
+        for (GainsItem item : replacements) {
+            int slot = slotOf(item.numericId());
+            if (slot >= 0) {
+                replaced[slot] = item;
+            }
+        }
+        // The keys never change, so the copy can share them
+        return new ItemIndex(keys, replaced, size);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private int slotOf(int itemId) {
+        if (itemId <= 0) {
+            return -1;
+        }
+        int slot = mix(itemId) & mask;
+        int key;
+        while ((key = keys[slot]) != EMPTY_KEY) {
+            if (key == itemId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Item ids are small and dense; spread them over the table so runs of ids do not cluster.
+     */
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,97 @@
+package com.gielinorgains.overlay;
+
+import com.gielinorgains.GielinorGainsConfig;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import com.gielinorgains.util.PriceFormatter;
+import com.gielinorgains.util.ScoreFormatter;
+import net.runelite.api.Client;
+import net.runelite.api.MenuEntry;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.tooltip.Tooltip;
+import net.runelite.client.ui.overlay.tooltip.TooltipManager;
+import net.runelite.client.util.ColorUtil;
+
+import java.awt.*;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Tooltip with an item's margin and score while the player hovers it in the inventory or the
+ * Grand Exchange.
+ *
+ * Runs on the client thread every frame. The hovered item is read from the top menu entry and
+ * looked up in the {@link ItemIndex}; the tooltip object is reused and its text only rebuilt when
+ * the hovered snapshot row changes, so a steady hover allocates nothing on our side.
+ */
+public class ItemHoverOverlay extends Overlay {
+    // Interface (widget group) ids
+    private static final int INVENTORY_GROUP = 149;
+    private static final int GRAND_EXCHANGE_GROUP = 465;
+    private static final int GRAND_EXCHANGE_INVENTORY_GROUP = 467;
+    private static final Color PROFIT_COLOR = new Color(0, 200, 83);
+    private static final Color LOSS_COLOR = new Color(244, 67, 54);
+    
+    private final Client client;
+    private final ItemManager itemManager;
+    private final TooltipManager tooltipManager;
+    private final GielinorGainsConfig config;
+    private final Supplier<ItemIndex> index;
+    private final Tooltip tooltip = new Tooltip("");
+    private GainsItem shownItem; // Client thread only
+    
+    public ItemHoverOverlay(Client client, ItemManager itemManager, TooltipManager tooltipManager,
+                            GielinorGainsConfig config, Supplier<ItemIndex> index) {
+        this.client = client;
+        this.itemManager = itemManager;
+        this.tooltipManager = tooltipManager;
+        this.config = config;
+        this.index = index;
+        setPosition(OverlayPosition.DYNAMIC);
+    }
+    
+    @Override
+    public Dimension render(Graphics2D graphics) {
+        if (!config.showItemTooltips() || client.isMenuOpen()) {
+            return null;
+        }
+        
+        MenuEntry[] entries = client.getMenuEntries();
+        if (entries.length == 0) {
+            return null;
+        }
+        MenuEntry entry = entries[entries.length - 1];
+        int group = entry.getParam1() >>> 16;
+        if (group != INVENTORY_GROUP && group != GRAND_EXCHANGE_GROUP && group != GRAND_EXCHANGE_INVENTORY_GROUP) {
+            return null;
+        }
+        int itemId = entry.getItemId();
+        if (itemId <= 0) {
+            return null;
+        }
+        
+        // Noted items and placeholders share the unnoted item's row
+        GainsItem item = index.get().get(itemManager.canonicalize(itemId));
+        if (item == null) {
+            return null;
+        }
+        if (item != shownItem) {
+            tooltip.setText(describe(item));
+            shownItem = item;
+        }
+        tooltipManager.add(tooltip);
+        return null;
+    }
+    
+    static String describe(GainsItem item) {
+        int margin = item.getProfit();
+        String marginText = (margin > 0 ? "+" : "") + PriceFormatter.formatGrouped(margin) + " gp";
+        return "Gielinor Gains</br>"
+            + "Margin: " + ColorUtil.wrapWithColorTag(marginText, margin >= 0 ? PROFIT_COLOR : LOSS_COLOR)
+            + String.format(Locale.US, " (%.2f%%)", item.getAdjustedRoi()) + "</br>"
+            + "Score: " + ColorUtil.wrapWithColorTag(ScoreFormatter.getScoreText(item.getScore()),
+                ScoreFormatter.getScoreColor(item.getScore()));
+    }
+}
@@ -0,0 +1,96 @@
+package com.gielinorgains.trading;
+
+import com.gielinorgains.model.GainsItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What to buy with the available gold and GE slots, as worked out by {@link CapitalAllocator}.
+ */
+public final class AllocationPlan {
+    private final List<Allocation> allocations;
+    private final long gold;
+    private final long totalCost;
+    private final long expectedProfit;
+    private final int candidateCount;
+    private final long elapsedNanos;
+    
+    AllocationPlan(List<Allocation> allocations, long gold, int candidateCount, long elapsedNanos) {
+        this.allocations = Collections.unmodifiableList(allocations);
+        this.gold = gold;
+        this.candidateCount = candidateCount;
+        this.elapsedNanos = elapsedNanos;
+        long cost = 0;
+        long profit = 0;
+        for (Allocation allocation : allocations) {
+            cost += allocation.getCost();
+            profit += allocation.getExpectedProfit();
+        }
+        this.totalCost = cost;
+        this.expectedProfit = profit;
+    }
+    
+    /**
+     * One offer per entry, most profitable first
+     */
+    public List<Allocation> getAllocations() {
+        return allocations;
+    }
+    
+    public long getGold() {
+        return gold;
+    }
+    
+    public long getTotalCost() {
+        return totalCost;
+    }
+    
+    public long getExpectedProfit() {
+        return expectedProfit;
+    }
+    
+    /**
+     * Number of items that were worth considering, i.e. profitable, affordable and under their limit
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * A buy offer in the plan
+     */
+    public static final class Allocation {
+        private final GainsItem item;
+        private final int quantity;
+        private final long cost;
+        private final long expectedProfit;
+        
+        Allocation(GainsItem item, int quantity) {
+            this.item = item;
+            this.quantity = quantity;
+            this.cost = (long) quantity * item.getAdjustedLowPrice();
+            this.expectedProfit = (long) quantity * item.getProfit();
+        }
+        
+        public GainsItem getItem() {
+            return item;
+        }
+        
+        public int getQuantity() {
+            return quantity;
+        }
+        
+        public long getCost() {
+            return cost;
+        }
+        
+        public long getExpectedProfit() {
+            return expectedProfit;
+        }
+    }
+}
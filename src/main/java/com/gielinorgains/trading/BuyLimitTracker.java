@@ -0,0 +1,256 @@
+package com.gielinorgains.trading;
+
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how much of each item's Grand Exchange buy limit the player has used in the current
+ * four hour window, from the player's own offer updates.
+ *
+ * Each slot's last seen offer is remembered so only newly filled quantity is counted. An offer
+ * is identified by item, direction, price and total quantity; a drop in the filled quantity
+ * means a new offer was placed in the slot. Empty slot updates are ignored, so the burst of
+ * updates sent on login does not count old fills again.
+ *
+ * State is kept in a small text file so the windows survive restarts. Limits are per account, so
+ * each account has its own file and {@link #setFile} switches between them on login.
+ */
+@Slf4j
+public class BuyLimitTracker {
+    public static final long WINDOW_MILLIS = TimeUnit.HOURS.toMillis(4);
+    public static final int SLOT_COUNT = 8;
+    
+    private File file;
+    private final Map<Integer, Window> windows = new HashMap<>();
+    private final Offer[] slots = new Offer[SLOT_COUNT];
+    private boolean dirty;
+    
+    /**
+     * @param file where the windows are kept between sessions, or null to keep them in memory only
+     */
+    public BuyLimitTracker(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Saves the state to the current file, then switches to another and loads what was saved
+     * there. Null keeps the state in memory only, e.g. while logged out.
+     */
+    public void setFile(File file, long now) {
+        save();
+        synchronized (this) {
+            this.file = file;
+            windows.clear();
+            Arrays.fill(slots, null);
+            dirty = false;
+            load(now);
+        }
+    }
+    
+    /**
+     * Records an offer update for a slot and returns what was newly bought or sold, if anything.
+     * The returned fills are also what the {@link FlipJournal} records, so both count exactly the
+     * same trades. Call {@link #save()} afterwards; it does nothing if no state changed.
+     *
+     * @param itemId       the offer's item, or 0 for an empty slot
+     * @param quantityDone how many have been bought or sold so far
+     * @param spent        gp paid or received for them so far
+     * @return the new fill, or null
+     */
+    public synchronized OfferFill onOffer(int slot, int itemId, boolean buying, int price, int totalQuantity,
+                                          int quantityDone, long spent, long now) {
+        if (slot < 0 || slot >= SLOT_COUNT || itemId <= 0) {
+            return null;
+        }
+        
+        Offer previous = slots[slot];
+        int filled = quantityDone;
+        long gp = spent;
+        if (previous != null && previous.sameOffer(itemId, buying, price, totalQuantity)
+            && quantityDone >= previous.done) {
+            filled = quantityDone - previous.done;
+            gp = spent - previous.spent;
+        }
+        if (previous == null || previous.done != quantityDone
+            || !previous.sameOffer(itemId, buying, price, totalQuantity)) {
+            slots[slot] = new Offer(itemId, buying, price, totalQuantity, quantityDone, spent);
+            dirty = true;
+        }
+        if (filled <= 0) {
+            return null;
+        }
+        
+        OfferFill fill = new OfferFill(itemId, buying, filled, gp, now);
+        if (!buying) {
+            return fill;
+        }
+        Window window = windows.get(itemId);
+        if (window == null || now >= window.start + WINDOW_MILLIS) {
+            window = new Window(now);
+            windows.put(itemId, window);
+        }
+        window.bought += filled;
+        log.debug("Bought {} of item {}, {} in the current window", filled, itemId, window.bought);
+        return fill;
+    }
+    
+    /**
+     * Quantity bought in the item's current window, 0 if no window is open.
+     */
+    public synchronized int getBought(int itemId, long now) {
+        Window window = windows.get(itemId);
+        return window == null || now >= window.start + WINDOW_MILLIS ? 0 : window.bought;
+    }
+    
+    /**
+     * When the item's current window ends and its full limit is available again, or 0 if no
+     * window is open.
+     */
+    public synchronized long getWindowEnd(int itemId, long now) {
+        Window window = windows.get(itemId);
+        return window == null || now >= window.start + WINDOW_MILLIS ? 0 : window.start + WINDOW_MILLIS;
+    }
+    
+    /**
+     * Quantity that can still be bought before the limit is hit. Items without a known limit, or
+     * whose id is not numeric, report {@link Integer#MAX_VALUE}.
+     */
+    public int getRemaining(GainsItem item, long now) {
+        Integer limit = item.getLimit();
+        int itemId = item.numericId();
+        if (limit == null || limit <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return itemId > 0 ? Math.max(0, limit - getBought(itemId, now)) : limit;
+    }
+    
+    /**
+     * Reads the state saved by an earlier session. Windows that have already ended are dropped.
+     */
+    public synchronized void load(long now) {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 4 && parts[0].equals("W")) {
+                    Window window = new Window(Long.parseLong(parts[2]));
+                    window.bought = Integer.parseInt(parts[3]);
+                    if (now < window.start + WINDOW_MILLIS) {
+                        windows.put(Integer.parseInt(parts[1]), window);
+                    }
+                } else if (parts.length == 8 && parts[0].equals("S")) {
+                    int slot = Integer.parseInt(parts[1]);
+                    if (slot >= 0 && slot < SLOT_COUNT) {
+                        slots[slot] = new Offer(Integer.parseInt(parts[2]), parts[3].equals("B"),
+                            Integer.parseInt(parts[4]), Integer.parseInt(parts[5]), Integer.parseInt(parts[6]),
+                            Long.parseLong(parts[7]));
+                    }
+                }
+            }
+            log.debug("Loaded {} buy limit windows", windows.size());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Could not read buy limit state from {}", file, e);
+        }
+    }
+    
+    /**
+     * Writes the state if it changed since the last save. The file is replaced atomically, from a
+     * temporary file of its own so a save that overlaps another cannot write into it.
+     */
+    public void save() {
+        StringBuilder text = new StringBuilder();
+        File target;
+        synchronized (this) {
+            if (file == null || !dirty) {
+                return;
+            }
+            target = file;
+            dirty = false;
+            // Ended windows are dropped on load
+            for (Map.Entry<Integer, Window> entry : windows.entrySet()) {
+                Window window = entry.getValue();
+                text.append("W ").append(entry.getKey()).append(' ').append(window.start).append(' ')
+                    .append(window.bought).append('\n');
+            }
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                Offer offer = slots[slot];
+                if (offer != null) {
+                    text.append("S ").append(slot).append(' ').append(offer.itemId).append(' ')
+                        .append(offer.buying ? 'B' : 'S').append(' ').append(offer.price).append(' ')
+                        .append(offer.total).append(' ').append(offer.done).append(' ').append(offer.spent)
+                        .append('\n');
+                }
+            }
+        }
+        
+        Path temp = null;
+        try {
+            File parent = target.getAbsoluteFile().getParentFile();
+            parent.mkdirs();
+            temp = Files.createTempFile(parent.toPath(), target.getName(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(text.toString());
+            }
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save buy limit state to {}", target, e);
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            synchronized (this) {
+                // Only if the tracker still points at the same account
+                if (file == target) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+    
+    private static final class Window {
+        final long start;
+        int bought;
+        
+        Window(long start) {
+            this.start = start;
+        }
+    }
+    
+    private static final class Offer {
+        final int itemId;
+        final boolean buying;
+        final int price;
+        final int total;
+        final int done;
+        final long spent;
+        
+        Offer(int itemId, boolean buying, int price, int total, int done, long spent) {
+            this.itemId = itemId;
+            this.buying = buying;
+            this.price = price;
+            this.total = total;
+            this.done = done;
+            this.spent = spent;
+        }
+        
+        boolean sameOffer(int itemId, boolean buying, int price, int total) {
+            return this.itemId == itemId && this.buying == buying && this.price == price && this.total == total;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.gielinorgains.trading;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Splits the player's gold over at most one buy offer per free GE slot so the summed expected
+ * profit is as high as possible. Each item can be bought at its buy price up to the smaller of
+ * its suggested quantity and its remaining buy limit, which makes this a bounded knapsack with
+ * an extra limit on the number of items.
+ *
+ * An exact search over every quantity is too slow for a full snapshot, so the allocator
+ * <ol>
+ *     <li>keeps the {@value #MAX_CANDIDATES} items with the best standalone profit (no plan can
+ *     use more than one offer per slot, and items further down would each earn less alone),</li>
+ *     <li>runs a dynamic program over the item count and the budget split into at most
+ *     {@value #BUDGET_BUCKETS} buckets, trying a few quantities per item, and</li>
+ *     <li>spends the gold left over by the bucket rounding on the chosen items, then on new items
+ *     while slots remain.</li>
+ * </ol>
+ * Costs are rounded up to whole buckets, so a plan never costs more than the gold given.
+ * Given the plugin's executors, scoring a large snapshot and the rows of the dynamic program are
+ * spread over the compute pool.
+ */
+@Slf4j
+public final class CapitalAllocator {
+    static final int MAX_CANDIDATES = 256;
+    static final int BUDGET_BUCKETS = 2048;
+    private static final int MAX_VARIANTS = 6;
+    private static final byte FILL = -1;
+    private static final int MAX_IMPROVE_ROUNDS = 4;
+    private static final int PARALLEL_SCAN_THRESHOLD = 4096;
+    
+    private CapitalAllocator() {
+    }
+    
+    /**
+     * Plans on the calling thread alone.
+     *
+     * @see #allocate(List, long, int, ToIntFunction, GainsExecutors)
+     */
+    public static AllocationPlan allocate(List<GainsItem> items, long gold, int slots,
+                                          ToIntFunction<GainsItem> remainingLimit) {
+        return allocate(items, gold, slots, remainingLimit, null);
+    }
+    
+    /**
+     * @param items          the current snapshot
+     * @param gold           gold available to spend
+     * @param slots          free GE slots
+     * @param remainingLimit quantity of an item that can still be bought, e.g. from {@link BuyLimitTracker}
+     * @param executors      whose compute pool shares the work, or null to plan on the calling thread
+     */
+    public static AllocationPlan allocate(List<GainsItem> items, long gold, int slots,
+                                          ToIntFunction<GainsItem> remainingLimit, GainsExecutors executors) {
+        long start = System.nanoTime();
+        if (items == null || gold <= 0 || slots <= 0) {
+            return new AllocationPlan(new ArrayList<>(), Math.max(0, gold), 0, System.nanoTime() - start);
+        }
+        
+        List<Candidate> candidates = score(items, gold, remainingLimit, executors);
+        int candidateCount = candidates.size();
+        if (candidates.size() > MAX_CANDIDATES) {
+            candidates.sort(Comparator.comparingLong((Candidate c) -> c.standaloneProfit).reversed());
+            candidates = new ArrayList<>(candidates.subList(0, MAX_CANDIDATES));
+        }
+        
+        int[] chosen = solve(candidates, gold, Math.min(slots, candidates.size()), executors);
+        topUp(candidates, chosen, gold, slots);
+        improve(candidates, chosen, gold, slots);
+        
+        List<AllocationPlan.Allocation> allocations = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (chosen[i] > 0) {
+                allocations.add(new AllocationPlan.Allocation(candidates.get(i).item, chosen[i]));
+            }
+        }
+        allocations.sort(Comparator.comparingLong(AllocationPlan.Allocation::getExpectedProfit).reversed());
+        
+        AllocationPlan plan = new AllocationPlan(allocations, gold, candidateCount, System.nanoTime() - start);
+        log.debug("Allocated {} of {} gp over {} offers from {} candidates in {}us, expected profit {}",
+            plan.getTotalCost(), gold, allocations.size(), candidateCount,
+            TimeUnit.NANOSECONDS.toMicros(plan.getElapsedNanos()), plan.getExpectedProfit());
+        return plan;
+    }
+    
+    /**
+     * The items that can make a profit with this much gold, in snapshot order
+     */
+    private static List<Candidate> score(List<GainsItem> items, long gold, ToIntFunction<GainsItem> remainingLimit,
+                                         GainsExecutors executors) {
+        Candidate[] scored = new Candidate[items.size()];
+        IntConsumer scoreItem = i -> {
+            GainsItem item = items.get(i);
+            scored[i] = Candidate.of(item, gold, remainingLimit.applyAsInt(item));
+        };
+        if (executors != null && scored.length >= PARALLEL_SCAN_THRESHOLD) {
+            executors.forEachIndex(0, scored.length, scoreItem);
+        } else {
+            for (int i = 0; i < scored.length; i++) {
+                scoreItem.accept(i);
+            }
+        }
+        
+        List<Candidate> candidates = new ArrayList<>();
+        for (Candidate candidate : scored) {
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * Multiple-choice knapsack over (items used, budget buckets). Returns the quantity chosen
+     * per candidate, 0 if not bought.
+     */
+    private static int[] solve(List<Candidate> candidates, long gold, int maxItems, GainsExecutors executors) {
+        int n = candidates.size();
+        int[] chosen = new int[n];
+        if (n == 0 || maxItems == 0) {
+            return chosen;
+        }
+        
+        long unit = Math.max(1, (gold + BUDGET_BUCKETS - 1) / BUDGET_BUCKETS);
+        int buckets = (int) Math.min(BUDGET_BUCKETS, gold / unit);
+        
+        int[][] weights = new int[n][];
+        int[][] quantities = new int[n][];
+        for (int i = 0; i < n; i++) {
+            candidates.get(i).variants(unit, buckets, i, weights, quantities);
+        }
+        
+        long[][] current = new long[maxItems + 1][buckets + 1];
+        long[][] next = new long[maxItems + 1][buckets + 1];
+        byte[][][] choice = new byte[n][maxItems + 1][];
+        boolean parallel = executors != null && maxItems > 1;
+        
+        int[] fillQuantity = new int[buckets + 1];
+        int[] fillWeight = new int[buckets + 1];
+        for (int i = 0; i < n; i++) {
+            Candidate candidate = candidates.get(i);
+            candidate.fill(unit, fillQuantity, fillWeight);
+            int[] w = weights[i];
+            int[] q = quantities[i];
+            long profit = candidate.profit;
+            long[][] from = current;
+            long[][] to = next;
+            byte[][] itemChoice = choice[i];
+            IntConsumer row = j -> {
+                // Row j only reads row j - 1 of the previous item, so rows are independent
+                long[] take = from[j - 1];
+                long[] out = to[j];
+                byte[] picks = new byte[buckets + 1];
+                System.arraycopy(from[j], 0, out, 0, buckets + 1);
+                for (int v = 0; v < w.length; v++) {
+                    long gain = q[v] * profit;
+                    byte pick = (byte) (v + 1);
+                    for (int b = w[v]; b <= buckets; b++) {
+                        long value = take[b - w[v]] + gain;
+                        if (value > out[b]) {
+                            out[b] = value;
+                            picks[b] = pick;
+                        }
+                    }
+                }
+                // As many as bucket b pays for; differs from the cap variant only in the lower buckets
+                for (int b = 1; b <= buckets && fillQuantity[b] < candidate.cap; b++) {
+                    long value = take[b - fillWeight[b]] + fillQuantity[b] * profit;
+                    if (value > out[b]) {
+                        out[b] = value;
+                        picks[b] = FILL;
+                    }
+                }
+                itemChoice[j] = picks;
+            };
+            if (parallel) {
+                executors.forEachIndex(1, maxItems + 1, row);
+            } else {
+                for (int j = 1; j <= maxItems; j++) {
+                    row.accept(j);
+                }
+            }
+            current = to;
+            next = from;
+        }
+        
+        int j = maxItems;
+        int b = buckets;
+        for (int i = n - 1; i >= 0 && j > 0; i--) {
+            int pick = choice[i][j][b];
+            if (pick == FILL) {
+                Candidate candidate = candidates.get(i);
+                chosen[i] = candidate.fillQuantity(b, unit);
+                b -= candidate.weight(chosen[i], unit);
+                j--;
+            } else if (pick > 0) {
+                chosen[i] = quantities[i][pick - 1];
+                b -= weights[i][pick - 1];
+                j--;
+            }
+        }
+        return chosen;
+    }
+    
+    /**
+     * Spends gold the bucket rounding left unused: first on more of the chosen items, best
+     * profit per gp first, then on the best new items while slots remain.
+     */
+    private static void topUp(List<Candidate> candidates, int[] chosen, long gold, int slots) {
+        long left = gold;
+        int used = 0;
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < chosen.length; i++) {
+            if (chosen[i] > 0) {
+                left -= (long) chosen[i] * candidates.get(i).cost;
+                used++;
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> candidates.get(i).profit / (double) candidates.get(i).cost)
+            .reversed());
+        for (int i : order) {
+            Candidate candidate = candidates.get(i);
+            long extra = Math.min(candidate.cap - chosen[i], left / candidate.cost);
+            chosen[i] += (int) extra;
+            left -= extra * candidate.cost;
+        }
+        
+        while (used < slots) {
+            int best = -1;
+            long bestProfit = 0;
+            for (int i = 0; i < chosen.length; i++) {
+                Candidate candidate = candidates.get(i);
+                long profit = Math.min(candidate.cap, left / candidate.cost) * candidate.profit;
+                if (chosen[i] == 0 && profit > bestProfit) {
+                    best = i;
+                    bestProfit = profit;
+                }
+            }
+            if (best < 0) {
+                return;
+            }
+            Candidate candidate = candidates.get(best);
+            chosen[best] = (int) Math.min(candidate.cap, left / candidate.cost);
+            left -= (long) chosen[best] * candidate.cost;
+            used++;
+        }
+    }
+    
+    /**
+     * Local search over the plan: drops one offer and spends the freed gold again, either on the
+     * remaining offers and the best new item or on one specific new item. Catches trades the
+     * bucketed quantities could not express, e.g. two items that together use the budget exactly.
+     */
+    private static void improve(List<Candidate> candidates, int[] chosen, long gold, int slots) {
+        long current = profit(candidates, chosen);
+        for (int round = 0; round < MAX_IMPROVE_ROUNDS; round++) {
+            int[] best = null;
+            long bestProfit = current;
+            for (int i = 0; i < chosen.length; i++) {
+                if (chosen[i] == 0) {
+                    continue;
+                }
+                int[] trial = chosen.clone();
+                trial[i] = 0;
+                topUp(candidates, trial, gold, slots);
+                long profit = profit(candidates, trial);
+                if (profit > bestProfit) {
+                    best = trial;
+                    bestProfit = profit;
+                }
+                
+                long freed = gold - cost(candidates, chosen) + (long) chosen[i] * candidates.get(i).cost;
+                for (int c = 0; c < chosen.length; c++) {
+                    Candidate candidate = candidates.get(c);
+                    if (chosen[c] != 0 || Math.min(candidate.cap, freed / candidate.cost) * candidate.profit
+                        <= (long) chosen[i] * candidates.get(i).profit) {
+                        continue;
+                    }
+                    trial = chosen.clone();
+                    trial[i] = 0;
+                    trial[c] = (int) Math.min(candidate.cap, freed / candidate.cost);
+                    topUp(candidates, trial, gold, slots);
+                    profit = profit(candidates, trial);
+                    if (profit > bestProfit) {
+                        best = trial;
+                        bestProfit = profit;
+                    }
+                }
+            }
+            if (countOffers(chosen) < slots) {
+                // A free slot the leftover cannot fill: try a new item at a few sizes, shrinking other offers to pay for it
+                for (int c = 0; c < chosen.length; c++) {
+                    Candidate candidate = candidates.get(c);
+                    if (chosen[c] != 0) {
+                        continue;
+                    }
+                    for (long quantity = Math.min(candidate.cap, gold / candidate.cost); quantity >= 1; quantity /= 2) {
+                        int[] trial = chosen.clone();
+                        trial[c] = (int) quantity;
+                        makeRoom(candidates, trial, gold, c);
+                        topUp(candidates, trial, gold, slots);
+                        long profit = profit(candidates, trial);
+                        if (profit > bestProfit) {
+                            best = trial;
+                            bestProfit = profit;
+                        }
+                    }
+                }
+            }
+            if (best == null) {
+                return;
+            }
+            System.arraycopy(best, 0, chosen, 0, chosen.length);
+            current = bestProfit;
+        }
+    }
+    
+    /**
+     * Lowers the other offers, least profit per gp first, until the plan fits the gold again.
+     */
+    private static void makeRoom(List<Candidate> candidates, int[] chosen, long gold, int keep) {
+        long over = cost(candidates, chosen) - gold;
+        if (over <= 0) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < chosen.length; i++) {
+            if (chosen[i] > 0 && i != keep) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> candidates.get(i).profit / (double) candidates.get(i).cost));
+        for (int i : order) {
+            long cost = candidates.get(i).cost;
+            long drop = Math.min(chosen[i], (over + cost - 1) / cost);
+            chosen[i] -= (int) drop;
+            over -= drop * cost;
+            if (over <= 0) {
+                return;
+            }
+        }
+        chosen[keep] = 0;
+    }
+    
+    private static int countOffers(int[] chosen) {
+        int count = 0;
+        for (int quantity : chosen) {
+            if (quantity > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static long profit(List<Candidate> candidates, int[] chosen) {
+        long total = 0;
+        for (int i = 0; i < chosen.length; i++) {
+            total += chosen[i] * candidates.get(i).profit;
+        }
+        return total;
+    }
+    
+    private static long cost(List<Candidate> candidates, int[] chosen) {
+        long total = 0;
+        for (int i = 0; i < chosen.length; i++) {
+            total += chosen[i] * candidates.get(i).cost;
+        }
+        return total;
+    }
+    
+    private static final class Candidate {
+        final GainsItem item;
+        final long cost;
+        final long profit;
+        final int cap;
+        final long standaloneProfit;
+        
+        private Candidate(GainsItem item, long cost, long profit, int cap) {
+            this.item = item;
+            this.cost = cost;
+            this.profit = profit;
+            this.cap = cap;
+            this.standaloneProfit = cap * profit;
+        }
+        
+        /**
+         * The item as a candidate, or null if it cannot make a profit with this much gold.
+         */
+        static Candidate of(GainsItem item, long gold, int remaining) {
+            long cost = item.getAdjustedLowPrice();
+            long profit = item.getProfit();
+            if (cost <= 0 || profit <= 0 || remaining <= 0) {
+                return null;
+            }
+            if (item.getQuantity() <= 0 && remaining == Integer.MAX_VALUE) {
+                // Neither a suggested quantity nor a known limit; no way to size the offer
+                return null;
+            }
+            // Suggested quantity reflects what the market can absorb; the limit caps what can be bought
+            long cap = item.getQuantity() > 0 ? Math.min(item.getQuantity(), remaining) : remaining;
+            cap = Math.min(cap, gold / cost);
+            if (cap <= 0) {
+                return null;
+            }
+            return new Candidate(item, cost, profit, (int) cap);
+        }
+        
+        /**
+         * Most that can be bought with {@code buckets} worth of gold, up to the cap
+         */
+        int fillQuantity(int buckets, long unit) {
+            return (int) Math.min(cap, buckets * unit / cost);
+        }
+        
+        /**
+         * Fills in {@link #fillQuantity} and its weight for every bucket count below the one that
+         * reaches the cap
+         */
+        void fill(long unit, int[] quantities, int[] weights) {
+            for (int b = 0; b < quantities.length; b++) {
+                quantities[b] = fillQuantity(b, unit);
+                weights[b] = weight(quantities[b], unit);
+                if (quantities[b] == cap) {
+                    return;
+                }
+            }
+        }
+        
+        int weight(long quantity, long unit) {
+            return (int) ((quantity * cost + unit - 1) / unit);
+        }
+        
+        /**
+         * Fills in a few quantities to try (the cap, then halving) and their weights in buckets.
+         * Each quantity is grown to the most that still fits the same number of buckets.
+         */
+        void variants(long unit, int buckets, int index, int[][] weights, int[][] quantities) {
+            int[] w = new int[MAX_VARIANTS];
+            int[] q = new int[MAX_VARIANTS];
+            int count = 0;
+            long previous = Long.MAX_VALUE;
+            for (long quantity = cap; quantity >= 1 && count < MAX_VARIANTS; quantity /= 2) {
+                long weight = weight(quantity, unit);
+                if (weight > buckets) {
+                    continue;
+                }
+                long fitted = Math.min(cap, weight * unit / cost);
+                if (fitted >= previous) {
+                    continue;
+                }
+                w[count] = (int) weight;
+                q[count] = (int) fitted;
+                previous = fitted;
+                count++;
+            }
+            weights[index] = Arrays.copyOf(w, count);
+            quantities[index] = Arrays.copyOf(q, count);
+        }
+    }
+}
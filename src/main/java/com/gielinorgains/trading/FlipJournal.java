@@ -0,0 +1,406 @@
+package com.gielinorgains.trading;
+
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Journal of the player's Grand Exchange fills, used to measure how the recommendations
+ * actually perform.
+ *
+ * Each fill is matched to the item's recommendation in the latest snapshot through its
+ * {@link ItemIndex}, then appended to a file of fixed-size records. Writes are batched on a background
+ * thread and forced to disk once per batch. Realized profit, hit rate and time in trade are
+ * updated per fill on the same thread, after the records of earlier sessions have been replayed,
+ * so fills are always applied in order.
+ *
+ * Buys are pooled per item at average cost; a sell closes as much of the pool as it can and
+ * counts as one trade. Sells of items bought before the journal existed are not counted.
+ *
+ * Each account has its own journal file, chosen with {@link #setFile}, so results from different
+ * accounts are never mixed. The file is locked while open, so another client on the same machine
+ * cannot append to it at the same time.
+ */
+@Slf4j
+public class FlipJournal {
+    static final int MAGIC = 0x47474a31; // "GGJ1"
+    static final int HEADER_BYTES = 4;
+    static final int RECORD_BYTES = 29;
+    
+    private static final long BATCH_DELAY_MS = 1000;
+    private static final byte FLAG_BUY = 1;
+    private static final byte FLAG_RECOMMENDED = 2;
+    
+    private final ScheduledExecutorService writer;
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile ItemIndex recommendations = ItemIndex.EMPTY;
+    
+    // Guarded by this; only changed on the writer thread
+    private final Map<Integer, Position> positions = new HashMap<>();
+    private TradeStats totals = new TradeStats();
+    private TradeStats recommendedTotals = new TradeStats();
+    
+    // Writer thread only, once started
+    private File file;
+    private FileChannel channel;
+    private ByteBuffer scratch = ByteBuffer.allocate(RECORD_BYTES * 64);
+    
+    /**
+     * @param file the journal file, or null to keep the statistics in memory only
+     */
+    public FlipJournal(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GielinorGains-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Opens the file and replays earlier sessions in the background.
+     */
+    public void start() {
+        writer.execute(this::open);
+    }
+    
+    /**
+     * Writes what is queued to the current file, then switches to another and replays the
+     * records there in the background. Null keeps the statistics in memory only, e.g. while
+     * logged out.
+     */
+    public void setFile(File file) {
+        try {
+            writer.execute(() -> {
+                drain();
+                closeChannel();
+                reset();
+                this.file = file;
+                open();
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Flip journal closed, not switching to {}", file);
+        }
+    }
+    
+    /**
+     * Sets the index of the latest snapshot; later fills are matched to its recommendations.
+     */
+    public void setRecommendations(ItemIndex index) {
+        recommendations = index;
+    }
+    
+    /**
+     * Queues a fill. Safe on any thread.
+     */
+    public void record(OfferFill fill) {
+        GainsItem recommended = recommendations.get(fill.getItemId());
+        pending.add(new Entry(fill.getTime(), fill.getItemId(), fill.isBuy(), recommended != null, fill.getQuantity(),
+            fill.getGp(), recommended != null ? recommended.getProfit() : 0));
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(this::drain, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Flip journal closed, dropping fill");
+            }
+        }
+    }
+    
+    /**
+     * Realized results for one item, or null if it has never been traded.
+     */
+    public synchronized TradeStats getStats(int itemId) {
+        Position position = positions.get(itemId);
+        return position != null ? position.stats.copy() : null;
+    }
+    
+    public synchronized TradeStats getTotals() {
+        return totals.copy();
+    }
+    
+    /**
+     * Totals over trades whose buys were recommended at the time
+     */
+    public synchronized TradeStats getRecommendedTotals() {
+        return recommendedTotals.copy();
+    }
+    
+    /**
+     * Writes and applies everything queued so far.
+     */
+    public void flush() {
+        try {
+            writer.submit(this::drain).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to flush flip journal", e);
+        }
+    }
+    
+    public void close() {
+        writer.execute(() -> {
+            drain();
+            closeChannel();
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Flip journal writer did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void open() {
+        if (file == null) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            log.warn("Could not create flip journal directory {}", parent);
+            return;
+        }
+        
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            // Released when the channel is closed
+            if (!tryLock()) {
+                log.warn("Flip journal {} is in use by another client, fills will not be saved", file);
+                closeChannel();
+                return;
+            }
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC);
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.position(HEADER_BYTES);
+                return;
+            }
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC) {
+                log.warn("Ignoring flip journal {} with an unknown format", file);
+                closeChannel();
+                return;
+            }
+            
+            // A record cut short by a crash is dropped so appends stay aligned
+            long records = (size - HEADER_BYTES) / RECORD_BYTES;
+            long end = HEADER_BYTES + records * RECORD_BYTES;
+            if (end != size) {
+                channel.truncate(end);
+            }
+            replay(records);
+            channel.position(end);
+            log.debug("Replayed {} flip journal records", records);
+        } catch (IOException e) {
+            log.warn("Failed to open flip journal {}", file, e);
+            closeChannel();
+        }
+    }
+    
+    private boolean tryLock() throws IOException {
+        try {
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // Held by another journal in this process
+            return false;
+        }
+    }
+    
+    private void replay(long records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        long offset = HEADER_BYTES;
+        long end = HEADER_BYTES + records * RECORD_BYTES;
+        while (offset < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    return;
+                }
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_BYTES) {
+                apply(Entry.read(buffer));
+            }
+            offset += buffer.limit();
+        }
+    }
+    
+    private void drain() {
+        drainScheduled.set(false);
+        int count = 0;
+        scratch.clear();
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            apply(entry);
+            if (scratch.remaining() < RECORD_BYTES) {
+                ByteBuffer grown = ByteBuffer.allocate(scratch.capacity() * 2);
+                scratch.flip();
+                grown.put(scratch);
+                scratch = grown;
+            }
+            entry.write(scratch);
+            count++;
+        }
+        if (count == 0 || channel == null) {
+            return;
+        }
+        
+        try {
+            scratch.flip();
+            while (scratch.hasRemaining()) {
+                channel.write(scratch);
+            }
+            channel.force(false);
+            log.debug("Journaled {} fills", count);
+        } catch (IOException e) {
+            log.warn("Failed to write {} flip journal records", count, e);
+        }
+    }
+    
+    private synchronized void apply(Entry entry) {
+        Position position = positions.computeIfAbsent(entry.itemId, k -> new Position());
+        if (entry.buy) {
+            position.buy(entry);
+            totals.addBuy(entry.quantity);
+            if (entry.recommended) {
+                recommendedTotals.addBuy(entry.quantity);
+            }
+            return;
+        }
+        
+        int matched = (int) Math.min(entry.quantity, position.held);
+        if (matched <= 0) {
+            return;
+        }
+        long proceeds = entry.gp * matched / entry.quantity;
+        long cost = position.cost * matched / position.held;
+        long heldFor = Math.max(0, entry.time - (long) (position.timeSum / position.held));
+        boolean recommended = position.recommended;
+        position.sell(matched, cost);
+        
+        long profit = proceeds - cost;
+        position.stats.addTrade(matched, profit, heldFor);
+        totals.addTrade(matched, profit, heldFor);
+        if (recommended) {
+            recommendedTotals.addTrade(matched, profit, heldFor);
+        }
+    }
+    
+    private synchronized void reset() {
+        positions.clear();
+        totals = new TradeStats();
+        recommendedTotals = new TradeStats();
+    }
+    
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close flip journal", e);
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * Quantity held of one item, at average cost
+     */
+    private static final class Position {
+        final TradeStats stats = new TradeStats();
+        long held;
+        long cost;
+        double timeSum; // quantity-weighted buy times, for the average time in trade
+        boolean recommended;
+        
+        void buy(Entry entry) {
+            held += entry.quantity;
+            cost += entry.gp;
+            timeSum += (double) entry.quantity * entry.time;
+            recommended |= entry.recommended;
+            stats.addBuy(entry.quantity);
+        }
+        
+        void sell(int quantity, long soldCost) {
+            timeSum -= timeSum * quantity / held;
+            cost -= soldCost;
+            held -= quantity;
+            if (held == 0) {
+                timeSum = 0;
+                cost = 0;
+                recommended = false;
+            }
+        }
+    }
+    
+    /**
+     * One record: time, item id, flags, quantity, gp and the recommended profit per item at the
+     * time of the fill (0 if the item was not in the snapshot).
+     */
+    private static final class Entry {
+        final long time;
+        final int itemId;
+        final boolean buy;
+        final boolean recommended;
+        final int quantity;
+        final long gp;
+        final int expectedProfit;
+        
+        Entry(long time, int itemId, boolean buy, boolean recommended, int quantity, long gp, int expectedProfit) {
+            this.time = time;
+            this.itemId = itemId;
+            this.buy = buy;
+            this.recommended = recommended;
+            this.quantity = quantity;
+            this.gp = gp;
+            this.expectedProfit = expectedProfit;
+        }
+        
+        static Entry read(ByteBuffer buffer) {
+            long time = buffer.getLong();
+            int itemId = buffer.getInt();
+            byte flags = buffer.get();
+            int quantity = buffer.getInt();
+            long gp = buffer.getLong();
+            int expectedProfit = buffer.getInt();
+            return new Entry(time, itemId, (flags & FLAG_BUY) != 0, (flags & FLAG_RECOMMENDED) != 0, quantity, gp,
+                expectedProfit);
+        }
+        
+        void write(ByteBuffer buffer) {
+            buffer.putLong(time)
+                .putInt(itemId)
+                .put((byte) ((buy ? FLAG_BUY : 0) | (recommended ? FLAG_RECOMMENDED : 0)))
+                .putInt(quantity)
+                .putLong(gp)
+                .putInt(expectedProfit);
+        }
+    }
+}
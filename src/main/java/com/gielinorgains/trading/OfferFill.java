@@ -0,0 +1,43 @@
+package com.gielinorgains.trading;
+
+/**
+ * Quantity newly bought or sold by one Grand Exchange offer update.
+ */
+public final class OfferFill {
+    private final int itemId;
+    private final boolean buy;
+    private final int quantity;
+    private final long gp;
+    private final long time;
+    
+    public OfferFill(int itemId, boolean buy, int quantity, long gp, long time) {
+        this.itemId = itemId;
+        this.buy = buy;
+        this.quantity = quantity;
+        this.gp = gp;
+        this.time = time;
+    }
+    
+    public int getItemId() {
+        return itemId;
+    }
+    
+    public boolean isBuy() {
+        return buy;
+    }
+    
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    /**
+     * Gp paid (buy) or received (sell) for this quantity, as reported by the offer
+     */
+    public long getGp() {
+        return gp;
+    }
+    
+    public long getTime() {
+        return time;
+    }
+}
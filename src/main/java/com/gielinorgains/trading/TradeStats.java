@@ -0,0 +1,84 @@
+package com.gielinorgains.trading;
+
+/**
+ * Realized results of closed trades, for one item or in total. A trade is a sell fill matched
+ * against the quantity bought before it; its profit is measured against the average buy cost.
+ */
+public final class TradeStats {
+    private long realizedProfit;
+    private int trades;
+    private int wins;
+    private long holdMillis;
+    private long boughtQuantity;
+    private long soldQuantity;
+    
+    void addBuy(int quantity) {
+        boughtQuantity += quantity;
+    }
+    
+    void addTrade(int quantity, long profit, long heldFor) {
+        soldQuantity += quantity;
+        realizedProfit += profit;
+        trades++;
+        if (profit > 0) {
+            wins++;
+        }
+        holdMillis += heldFor;
+    }
+    
+    TradeStats copy() {
+        TradeStats copy = new TradeStats();
+        copy.realizedProfit = realizedProfit;
+        copy.trades = trades;
+        copy.wins = wins;
+        copy.holdMillis = holdMillis;
+        copy.boughtQuantity = boughtQuantity;
+        copy.soldQuantity = soldQuantity;
+        return copy;
+    }
+    
+    public long getRealizedProfit() {
+        return realizedProfit;
+    }
+    
+    public int getTrades() {
+        return trades;
+    }
+    
+    /**
+     * Share of trades that made a profit, 0 to 1
+     */
+    public double getHitRate() {
+        return trades == 0 ? 0 : wins / (double) trades;
+    }
+    
+    /**
+     * Average time from buying to selling, in milliseconds
+     */
+    public long getAverageHoldMillis() {
+        return trades == 0 ? 0 : holdMillis / trades;
+    }
+    
+    public long getBoughtQuantity() {
+        return boughtQuantity;
+    }
+    
+    public long getSoldQuantity() {
+        return soldQuantity;
+    }
+    
+    /**
+     * Short duration text, e.g. "45m", "2h 10m" or "3d 4h"
+     */
+    public static String formatDuration(long millis) {
+        long minutes = Math.max(0, millis) / 60_000;
+        if (minutes < 60) {
+            return minutes + "m";
+        }
+        long hours = minutes / 60;
+        if (hours < 24) {
+            return hours + "h " + minutes % 60 + "m";
+        }
+        return hours / 24 + "d " + hours % 24 + "h";
+    }
+}
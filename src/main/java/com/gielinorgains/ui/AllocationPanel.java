@@ -0,0 +1,225 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.GielinorGainsConfig;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.trading.AllocationPlan;
+import com.gielinorgains.trading.BuyLimitTracker;
+import com.gielinorgains.trading.CapitalAllocator;
+import com.gielinorgains.trading.FlipJournal;
+import com.gielinorgains.trading.TradeStats;
+import com.gielinorgains.util.PriceFormatter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.ui.ColorScheme;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hidden header section that plans how to spend a given amount of gold over the free GE slots,
+ * using {@link CapitalAllocator} and the buy limits used so far. The plan is worked out off the
+ * EDT; the snapshot is copied on the EDT first. The top line shows the player's realized results
+ * from the {@link FlipJournal}.
+ */
+@Slf4j
+public class AllocationPanel extends JPanel {
+    private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 10);
+    private static final Font VALUE_FONT = new Font("Monospaced", Font.PLAIN, 10);
+    private static final Color PROFIT_COLOR = new Color(0, 200, 83);
+    
+    private final GielinorGainsConfig config;
+    private final BuyLimitTracker buyLimits;
+    private final FlipJournal journal;
+    private final GainsExecutors executors;
+    private final Supplier<List<GainsItem>> snapshot;
+    private final Runnable onResize;
+    private final JTextField goldField;
+    private final JButton planButton;
+    private final JPanel resultPanel;
+    private final JLabel summaryLabel;
+    private final JLabel journalLabel;
+    private int planGeneration; // EDT only
+    
+    /**
+     * @param snapshot copy of the current items, called on the EDT
+     * @param onResize called after the panel's height changed
+     */
+    public AllocationPanel(GielinorGainsConfig config, BuyLimitTracker buyLimits, FlipJournal journal,
+                           GainsExecutors executors, Supplier<List<GainsItem>> snapshot,
+                           Runnable onResize) {
+        this.config = config;
+        this.buyLimits = buyLimits;
+        this.journal = journal;
+        this.executors = executors;
+        this.snapshot = snapshot;
+        this.onResize = onResize;
+        
+        setLayout(new BorderLayout(0, 4));
+        setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createMatteBorder(1, 0, 0, 0, ColorScheme.MEDIUM_GRAY_COLOR),
+            BorderFactory.createEmptyBorder(4, 0, 0, 0)));
+        
+        journalLabel = new JLabel(" ");
+        journalLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        journalLabel.setFont(LABEL_FONT);
+        
+        JPanel inputRow = new JPanel(new BorderLayout(4, 0));
+        inputRow.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        JLabel goldLabel = new JLabel("Gold:");
+        goldLabel.setForeground(Color.WHITE);
+        goldLabel.setFont(goldLabel.getFont().deriveFont(12f));
+        goldField = new JTextField();
+        goldField.setToolTipText("Gold to spend, e.g. 25m or 750k");
+        goldField.addActionListener(e -> plan());
+        planButton = new JButton("Plan");
+        planButton.setFocusPainted(false);
+        planButton.setFont(planButton.getFont().deriveFont(12f));
+        planButton.addActionListener(e -> plan());
+        inputRow.add(goldLabel, BorderLayout.WEST);
+        inputRow.add(goldField, BorderLayout.CENTER);
+        inputRow.add(planButton, BorderLayout.EAST);
+        
+        resultPanel = new JPanel(new GridLayout(0, 2, 4, 2));
+        resultPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        
+        summaryLabel = new JLabel(" ");
+        summaryLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        summaryLabel.setFont(LABEL_FONT);
+        
+        JPanel top = new JPanel(new BorderLayout(0, 4));
+        top.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        top.add(journalLabel, BorderLayout.NORTH);
+        top.add(inputRow, BorderLayout.SOUTH);
+        
+        add(top, BorderLayout.NORTH);
+        add(resultPanel, BorderLayout.CENTER);
+        add(summaryLabel, BorderLayout.SOUTH);
+        setVisible(false);
+    }
+    
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible && journal != null) {
+            showJournalTotals();
+        }
+        super.setVisible(visible);
+    }
+    
+    private void showJournalTotals() {
+        TradeStats totals = journal.getTotals();
+        if (totals.getTrades() == 0) {
+            journalLabel.setText("No completed flips recorded yet");
+            journalLabel.setToolTipText(null);
+            return;
+        }
+        journalLabel.setText(String.format(Locale.US, "Realized %s • %d flips • %.0f%% hit • %s",
+            PriceFormatter.formatAbbreviated(totals.getRealizedProfit()), totals.getTrades(),
+            totals.getHitRate() * 100, TradeStats.formatDuration(totals.getAverageHoldMillis())));
+        TradeStats recommended = journal.getRecommendedTotals();
+        journalLabel.setToolTipText(String.format(Locale.US, "Recommended items: %s over %d flips, %.0f%% hit",
+            PriceFormatter.formatAbbreviated(recommended.getRealizedProfit()), recommended.getTrades(),
+            recommended.getHitRate() * 100));
+    }
+    
+    /**
+     * Parses amounts like "25m", "750k", "1.5b" or "1,000,000"; returns -1 if invalid.
+     */
+    static long parseGold(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT).replace(",", "").replace("gp", "");
+        if (value.isEmpty()) {
+            return -1;
+        }
+        long multiplier = 1;
+        char suffix = value.charAt(value.length() - 1);
+        if (suffix == 'k' || suffix == 'm' || suffix == 'b') {
+            multiplier = suffix == 'k' ? 1_000L : suffix == 'm' ? 1_000_000L : 1_000_000_000L;
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        try {
+            double amount = Double.parseDouble(value) * multiplier;
+            return amount >= 1 && amount < Long.MAX_VALUE ? (long) amount : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private void plan() {
+        long gold = parseGold(goldField.getText());
+        if (gold <= 0) {
+            showSummary("Enter an amount such as 25m");
+            return;
+        }
+        
+        List<GainsItem> items = snapshot.get();
+        int slots = Math.max(1, Math.min(BuyLimitTracker.SLOT_COUNT, config.geSlots()));
+        int generation = ++planGeneration;
+        planButton.setEnabled(false);
+        showSummary("Planning...");
+        try {
+            executors.compute().execute(() -> {
+                long now = System.currentTimeMillis();
+                try {
+                    AllocationPlan plan = CapitalAllocator.allocate(items, gold, slots,
+                        item -> buyLimits.getRemaining(item, now), executors);
+                    SwingUtilities.invokeLater(() -> showPlan(generation, plan));
+                } catch (RuntimeException e) {
+                    log.error("Gold planner failed", e);
+                    SwingUtilities.invokeLater(() -> {
+                        planButton.setEnabled(true);
+                        showSummary("Planner failed: " + e.getMessage());
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            planButton.setEnabled(true);
+            showSummary("Planner unavailable");
+        }
+    }
+    
+    private void showPlan(int generation, AllocationPlan plan) {
+        if (generation != planGeneration) {
+            return;
+        }
+        
+        planButton.setEnabled(true);
+        showJournalTotals();
+        resultPanel.removeAll();
+        for (AllocationPlan.Allocation allocation : plan.getAllocations()) {
+            GainsItem item = allocation.getItem();
+            JLabel name = new JLabel(PriceFormatter.formatGrouped(allocation.getQuantity()) + " x " + item.getName());
+            name.setForeground(Color.WHITE);
+            name.setFont(LABEL_FONT);
+            name.setToolTipText(String.format("%s gp at %s each", PriceFormatter.formatGrouped(allocation.getCost()),
+                PriceFormatter.formatGrouped(item.getAdjustedLowPrice())));
+            resultPanel.add(name);
+            
+            JLabel profit = new JLabel("+" + PriceFormatter.formatAbbreviated(allocation.getExpectedProfit()),
+                SwingConstants.RIGHT);
+            profit.setForeground(PROFIT_COLOR);
+            profit.setFont(VALUE_FONT);
+            resultPanel.add(profit);
+        }
+        
+        if (plan.getAllocations().isEmpty()) {
+            showSummary("Nothing profitable fits this budget");
+        } else {
+            showSummary(String.format("Spend %s of %s for +%s (%d items, %d ms)",
+                PriceFormatter.formatAbbreviated(plan.getTotalCost()), PriceFormatter.formatAbbreviated(plan.getGold()),
+                PriceFormatter.formatAbbreviated(plan.getExpectedProfit()), plan.getCandidateCount(),
+                TimeUnit.NANOSECONDS.toMillis(plan.getElapsedNanos())));
+        }
+    }
+    
+    private void showSummary(String text) {
+        summaryLabel.setText(text);
+        revalidate();
+        repaint();
+        onResize.run();
+    }
+}
@@ -1,17 +1,28 @@
 package com.gielinorgains.ui;
 
 import com.gielinorgains.GielinorGainsConfig;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.EdtSection;
+import com.gielinorgains.diagnostics.GridLayoutEvent;
 import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.util.PartialSorter;
+import com.gielinorgains.util.RankingExpression;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.ui.ColorScheme;
 
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -20,21 +31,35 @@ public class CardGridPanel extends JPanel implements Scrollable {
     private static final int CARD_SPACING = 6;
     private static final int CARD_WIDTH = 190;
     private static final int CARD_HEIGHT = 180;
+    private static final int VISIBLE_BATCH = 50; // Cards built per step; only these are sorted
+    private static final int EXTEND_MARGIN = (CARD_HEIGHT + CARD_SPACING) * 3;
     private final IconCache iconCache;
-    private final ScheduledExecutorService executorService;
+    private final GainsExecutors executors;
     private List<GainsItem> items = new ArrayList<>();
     private final List<ItemCardPanel> cardPanels = new ArrayList<>();
+    private Consumer<GainsItem> onItemSelected;
+    private Consumer<GainsItem> onItemHovered;
     private String sortBy = "score";
     private boolean ascending = false;
+    private RankingExpression rankingExpression;
+    private Set<String> pinnedItems = Collections.emptySet();
+    private PartialSorter<GainsItem> sorter = new PartialSorter<>(items, getComparator());
+    private int visibleLimit = VISIBLE_BATCH;
+    private boolean extendPending;
+    private JViewport viewport;
+    private final ChangeListener viewportListener = e -> onViewportChanged();
+    private final IconPrefetcher iconPrefetcher;
     private JComponent headerComponent;
     private JComponent statusComponent;
     private boolean loading = true;
     private ScheduledFuture<?> loadingTipTask;
     private JLabel loadingTipLabel;
     
-    public CardGridPanel(IconCache iconCache, GielinorGainsConfig config, ScheduledExecutorService executorService) {
+    public CardGridPanel(IconCache iconCache, GielinorGainsConfig config, GainsExecutors executors,
+                         IconPrefetcher iconPrefetcher) {
         this.iconCache = iconCache;
-        this.executorService = executorService;
+        this.executors = executors;
+        this.iconPrefetcher = iconPrefetcher;
         
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
@@ -53,6 +78,24 @@ public class CardGridPanel extends JPanel implements Scrollable {
         updateLayout();
     }
 
+    /**
+     * Re-applies the header and status height caps after either changed size, e.g. when the
+     * diagnostics view is toggled, without rebuilding the cards.
+     */
+    public void refreshHeaderAndStatusSize() {
+        if (headerComponent != null) {
+            headerComponent.setMaximumSize(new Dimension(Integer.MAX_VALUE, headerComponent.getPreferredSize().height));
+        }
+        if (statusComponent != null) {
+            statusComponent.setMaximumSize(new Dimension(Integer.MAX_VALUE, statusComponent.getPreferredSize().height));
+        }
+        revalidate();
+        repaint();
+    }
+    
+    public int getCardCount() {
+        return cardPanels.size();
+    }
     
     @Override
     public Dimension getPreferredSize() {
@@ -69,28 +112,129 @@ public class CardGridPanel extends JPanel implements Scrollable {
         return new Dimension(CARD_WIDTH + CARD_SPACING * 2, height);
     }
     
+    /**
+     * Sets what happens when a card is clicked or hovered. Applies to cards created afterwards.
+     */
+    public void setItemListeners(Consumer<GainsItem> onSelected, Consumer<GainsItem> onHovered) {
+        this.onItemSelected = onSelected;
+        this.onItemHovered = onHovered;
+    }
+    
     /**
      * Updates the items displayed in the grid.
      */
     public void setItems(List<GainsItem> newItems) {
-        this.items = new ArrayList<>(newItems);
-        this.loading = false;
-        sortItems();
-        createCardPanels();
-        updateLayout();
+        EdtSection.enter();
+        try {
+            this.items = new ArrayList<>(newItems);
+            this.loading = false;
+            // A new list starts from one batch again; scrolling extends it as before
+            visibleLimit = VISIBLE_BATCH;
+            sortItems();
+            createCardPanels();
+            updateLayout();
+        } finally {
+            EdtSection.exit();
+        }
         
         log.debug("Set {} items, created {} card panels", items.size(), cardPanels.size());
     }
     
+    /**
+     * Adds a later page of a paged refresh, whose first page went to {@link #setItems}, without
+     * re-sorting what is already shown, so each page costs the EDT about its own size. New items
+     * join the unsorted remainder and only get cards while the visible head has room; pass the
+     * whole list to {@link #setItems} once the refresh is done to sort them into place.
+     */
+    public void appendItems(List<GainsItem> page) {
+        EdtSection.enter();
+        try {
+            items.addAll(page);
+            sorter.extend();
+            int from = cardPanels.size();
+            if (from < visibleLimit) {
+                for (GainsItem item : sorter.sortedRange(from, visibleLimit)) {
+                    cardPanels.add(new ItemCardPanel(item, iconCache, onItemSelected, onItemHovered));
+                }
+                if (cardPanels.size() > from) {
+                    iconPrefetcher.appendIconUrls(iconUrls(cardPanels.subList(from, cardPanels.size())));
+                    updateLayout();
+                }
+            }
+        } finally {
+            EdtSection.exit();
+        }
+        
+        log.debug("Appended {} items, {} in the grid", page.size(), items.size());
+    }
+    
+    /**
+     * The items in the grid, in display order. EDT only; the list is re-sorted in place.
+     */
+    public List<GainsItem> getItems() {
+        return items;
+    }
+    
+    /**
+     * Swaps in updated copies of items, matched by id, and repaints their cards. The order is left
+     * as it is so cards don't move under the cursor; the next sort or refresh brings it up to date.
+     */
+    public void updateItems(List<GainsItem> changed) {
+        Map<String, GainsItem> byId = new HashMap<>();
+        for (GainsItem item : changed) {
+            byId.put(item.getId(), item);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            GainsItem updated = byId.get(items.get(i).getId());
+            if (updated != null) {
+                items.set(i, updated);
+            }
+        }
+        int repainted = 0;
+        for (ItemCardPanel card : cardPanels) {
+            GainsItem updated = byId.get(card.getItem().getId());
+            if (updated != null) {
+                card.setItem(updated);
+                repainted++;
+            }
+        }
+        log.debug("Repainted {} cards for {} updated items", repainted, changed.size());
+    }
+    
     /**
      * Sets the sort criteria and updates the display.
      */
     public void setSorting(String sortBy, boolean ascending) {
-        this.sortBy = sortBy;
-        this.ascending = ascending;
-        sortItems();
-        createCardPanels();
-        updateLayout();
+        EdtSection.enter();
+        try {
+            this.sortBy = sortBy;
+            this.ascending = ascending;
+            sortItems();
+            createCardPanels();
+            updateLayout();
+        } finally {
+            EdtSection.exit();
+        }
+    }
+
+    /**
+     * Sets the expression used by the "custom" sort, or null to make that sort fall back to score.
+     * Re-sorts straight away if the custom sort is active.
+     */
+    public void setRankingExpression(RankingExpression expression) {
+        this.rankingExpression = expression;
+        if ("custom".equalsIgnoreCase(sortBy)) {
+            setSorting(sortBy, ascending);
+        }
+    }
+
+    /**
+     * Sets the pinned items as lower-cased ids or names. Pinned cards come first in either sort
+     * order.
+     */
+    public void setPinnedItems(Set<String> pinnedItems) {
+        this.pinnedItems = pinnedItems;
+        setSorting(sortBy, ascending);
     }
 
     /**
@@ -104,15 +248,36 @@ public class CardGridPanel extends JPanel implements Scrollable {
         updateLayout();
     }
     
+    /**
+     * Prepares the sort order. Only the visible head is ordered here; the rest is sorted lazily
+     * by {@link #showMoreCards()} when the user scrolls towards the end of the built cards.
+     */
     private void sortItems() {
-        if (items.isEmpty()) return;
+        if (rankingExpression != null && "custom".equalsIgnoreCase(sortBy)) {
+            // Only items not yet ranked by this expression are evaluated, so re-sorts are free
+            long start = System.nanoTime();
+            int evaluated = rankingExpression.rankAll(items, executors);
+            if (evaluated > 0) {
+                log.debug("Ranked {} items by '{}' in {}us", evaluated, rankingExpression,
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        }
         
         Comparator<GainsItem> comparator = getComparator();
         if (!ascending) {
             comparator = comparator.reversed();
         }
+        if (!pinnedItems.isEmpty()) {
+            comparator = Comparator.comparingInt((GainsItem item) -> isPinned(item) ? 0 : 1).thenComparing(comparator);
+        }
         
-        items.sort(comparator);
+        sorter = new PartialSorter<>(items, comparator);
+        sorter.ensureSorted(visibleLimit);
+    }
+    
+    private boolean isPinned(GainsItem item) {
+        return pinnedItems.contains(item.getId())
+            || (item.getName() != null && pinnedItems.contains(item.getName().toLowerCase(Locale.ROOT)));
     }
     
     private Comparator<GainsItem> getComparator() {
@@ -125,25 +290,140 @@ public class CardGridPanel extends JPanel implements Scrollable {
                 return Comparator.comparing(GainsItem::getDailyVolume);
             case "name":
                 return Comparator.comparing(GainsItem::getName, String.CASE_INSENSITIVE_ORDER);
+            case "custom":
+                if (rankingExpression != null) {
+                    return Comparator.comparingDouble(GainsItem::getCustomRank);
+                }
+                return Comparator.comparing(GainsItem::getScore);
             default:
                 return Comparator.comparing(GainsItem::getScore); // "score" or default
         }
     }
     
     /**
-     * Creates card panels for all items
+     * Creates card panels for the visible head of the sorted items
      */
     private void createCardPanels() {
         // Clear existing panels
         cardPanels.clear();
         
-        // Create new card panels for all items
-        for (GainsItem item : items) {
-            ItemCardPanel cardPanel = new ItemCardPanel(item, iconCache);
+        // Create new card panels for the items currently in view range
+        for (GainsItem item : sorter.head(visibleLimit)) {
+            ItemCardPanel cardPanel = new ItemCardPanel(item, iconCache, onItemSelected, onItemHovered);
             cardPanels.add(cardPanel);
         }
         
-        log.debug("Created {} card panels", cardPanels.size());
+        iconPrefetcher.setIconUrls(iconUrls(cardPanels));
+        log.debug("Created {} card panels of {} items", cardPanels.size(), items.size());
+    }
+    
+    private static List<String> iconUrls(List<ItemCardPanel> cards) {
+        List<String> urls = new ArrayList<>(cards.size());
+        for (ItemCardPanel card : cards) {
+            urls.add(card.getItem().getIcon());
+        }
+        return urls;
+    }
+    
+    private void onViewportChanged() {
+        if (!loading && !cardPanels.isEmpty()) {
+            Rectangle visible = getVisibleRect();
+            if (visible.height > 0) {
+                int first = firstCardBelow(visible.y);
+                int last = firstCardBelow(visible.y + visible.height) - 1;
+                iconPrefetcher.onVisibleRange(first, Math.max(first, last), System.nanoTime());
+            }
+        }
+        maybeShowMoreCards();
+    }
+    
+    /**
+     * Index of the first card whose bottom edge is below {@code y}, by binary search on the
+     * single-column layout.
+     */
+    private int firstCardBelow(int y) {
+        int lo = 0;
+        int hi = cardPanels.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            ItemCardPanel card = cardPanels.get(mid);
+            if (card.getY() + card.getHeight() <= y) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    private void maybeShowMoreCards() {
+        if (loading || extendPending || cardPanels.isEmpty() || cardPanels.size() >= sorter.size()) {
+            return;
+        }
+        
+        Rectangle visible = getVisibleRect();
+        ItemCardPanel lastCard = cardPanels.get(cardPanels.size() - 1);
+        if (visible.height > 0 && visible.y + visible.height >= lastCard.getY() - EXTEND_MARGIN) {
+            // Defer so the grid is not rebuilt from inside the viewport's change notification
+            extendPending = true;
+            SwingUtilities.invokeLater(this::showMoreCards);
+        }
+    }
+    
+    /**
+     * Sorts the next batch out of the remainder and appends its cards.
+     */
+    private void showMoreCards() {
+        extendPending = false;
+        if (loading || cardPanels.size() >= sorter.size()) {
+            return;
+        }
+        
+        EdtSection.enter();
+        try {
+            int from = cardPanels.size();
+            visibleLimit = from + VISIBLE_BATCH;
+            for (GainsItem item : sorter.sortedRange(from, visibleLimit)) {
+                cardPanels.add(new ItemCardPanel(item, iconCache, onItemSelected, onItemHovered));
+            }
+            iconPrefetcher.appendIconUrls(iconUrls(cardPanels.subList(from, cardPanels.size())));
+            updateLayout();
+            log.debug("Extended grid to {} of {} cards", cardPanels.size(), sorter.size());
+        } finally {
+            EdtSection.exit();
+        }
+    }
+    
+    /**
+     * Paints the cards inside one section, so a repaint of many cards counts as the one stretch
+     * of plugin work it is rather than as many short ones
+     */
+    @Override
+    protected void paintChildren(Graphics g) {
+        EdtSection.enter();
+        try {
+            super.paintChildren(g);
+        } finally {
+            EdtSection.exit();
+        }
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+    
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        super.removeNotify();
     }
     
     private void addComponentWithSpacing(JComponent component) {
@@ -154,6 +434,30 @@ public class CardGridPanel extends JPanel implements Scrollable {
     }
     
     private void updateLayout() {
+        GridLayoutEvent event = new GridLayoutEvent();
+        event.begin();
+        
+        String state;
+        EdtSection.enter();
+        try {
+            state = rebuildComponents();
+        } finally {
+            EdtSection.exit();
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.itemCount = items.size();
+            event.cardCount = cardPanels.size();
+            event.state = state;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Rebuilds the child components for the current state and returns which state was shown.
+     */
+    private String rebuildComponents() {
         removeAll();
         
         if (loading) {
@@ -161,7 +465,7 @@ public class CardGridPanel extends JPanel implements Scrollable {
             showLoadingState();
             revalidate();
             repaint();
-            return;
+            return "loading";
         }
 
         if (cardPanels.isEmpty()) {
@@ -169,7 +473,7 @@ public class CardGridPanel extends JPanel implements Scrollable {
             showEmptyState();
             revalidate();
             repaint();
-            return;
+            return "empty";
         }
         
         log.debug("Updating layout with {} card panels", cardPanels.size());
@@ -207,6 +511,7 @@ public class CardGridPanel extends JPanel implements Scrollable {
         repaint();
         
         log.debug("Updated layout with {} cards", cardPanels.size());
+        return "cards";
     }
     
     
@@ -304,7 +609,7 @@ public class CardGridPanel extends JPanel implements Scrollable {
         final long startTime = System.currentTimeMillis();
         final java.util.concurrent.atomic.AtomicInteger currentTip = new java.util.concurrent.atomic.AtomicInteger(0);
         
-        loadingTipTask = executorService.scheduleAtFixedRate(() -> {
+        loadingTipTask = executors.scheduler().scheduleAtFixedRate(() -> {
             SwingUtilities.invokeLater(() -> {
                 if (loadingTipLabel == null || !loading) {
                     if (loadingTipTask != null) {
@@ -360,10 +665,13 @@ public class CardGridPanel extends JPanel implements Scrollable {
             loadingTipTask = null;
         }
         
+        iconPrefetcher.clear();
+        
         // Clear references
         loadingTipLabel = null;
         cardPanels.clear();
-        items.clear();
+        items = new ArrayList<>();
+        sorter = new PartialSorter<>(items, getComparator());
         
         log.debug("CardGridPanel shutdown completed");
     }
@@ -0,0 +1,186 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.LatencyHistogram;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import net.runelite.client.ui.ColorScheme;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Hidden diagnostics view showing live plugin metrics. Values are sampled from the
+ * {@link MetricsRegistry} once a second, and only while the panel is visible.
+ */
+public class DiagnosticsPanel extends JPanel {
+    private static final int REFRESH_INTERVAL_MS = 1000;
+    private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 10);
+    private static final Font VALUE_FONT = new Font("Monospaced", Font.PLAIN, 10);
+    
+    private final MetricsRegistry metrics;
+    private final Map<String, JLabel> valueLabels = new LinkedHashMap<>();
+    private final Timer refreshTimer;
+    
+    public DiagnosticsPanel(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        
+        setLayout(new GridLayout(0, 2, 4, 2));
+        setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createMatteBorder(1, 0, 0, 0, ColorScheme.MEDIUM_GRAY_COLOR),
+            BorderFactory.createEmptyBorder(4, 0, 0, 0)));
+        
+        addRow("Fetch p50/95/99");
+        addRow("Decode p50/95/99");
+        addRow("Hedged / won");
+        addRow("Timed out / shed");
+        addRow("Startup / build");
+        addRow("First card p50/95");
+        addRow("EDT/refresh p50/95");
+        addRow("Icon hit rate");
+        addRow("Icon cache");
+        addRow("Heap after GC");
+        addRow("Icons in flight");
+        addRow("Icon prefetch");
+        addRow("Icon bundles");
+        addRow("Cards / comps");
+        addRow("Busy net/dec/cpu");
+        addRow("Queued net/dec/cpu");
+        addRow("EDT stalls");
+        addRow("EDT stall p50/95");
+        addRow("Worst stall site");
+        
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        refreshTimer.setInitialDelay(0);
+        setVisible(false);
+    }
+    
+    private void addRow(String name) {
+        JLabel label = new JLabel(name);
+        label.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        label.setFont(LABEL_FONT);
+        add(label);
+        
+        JLabel value = new JLabel("-");
+        value.setForeground(Color.WHITE);
+        value.setFont(VALUE_FONT);
+        add(value);
+        valueLabels.put(name, value);
+    }
+    
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        if (refreshTimer == null) {
+            return;
+        }
+        if (visible) {
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+    }
+    
+    private void refresh() {
+        set("Fetch p50/95/99", percentiles(MetricsRegistry.FETCH_LATENCY, true));
+        set("Decode p50/95/99", percentiles(MetricsRegistry.DECODE_TIME, true));
+        set("Hedged / won", metrics.readCounter(MetricsRegistry.HEDGED_REQUESTS) + " / "
+            + metrics.readCounter(MetricsRegistry.HEDGE_WINS));
+        set("Timed out / shed", metrics.readCounter(MetricsRegistry.DEADLINE_EXCEEDED) + " / "
+            + metrics.readCounter(MetricsRegistry.CIRCUIT_REJECTED));
+        set("Startup / build", median(MetricsRegistry.PLUGIN_STARTUP_TIME) + " / "
+            + median(MetricsRegistry.PANEL_BUILD_TIME));
+        set("First card p50/95", percentiles(MetricsRegistry.TIME_TO_FIRST_CARD, false));
+        set("EDT/refresh p50/95", percentiles(MetricsRegistry.EDT_TIME_PER_REFRESH, false));
+        
+        long hits = metrics.readCounter(MetricsRegistry.ICON_HITS);
+        long misses = metrics.readCounter(MetricsRegistry.ICON_MISSES);
+        long lookups = hits + misses;
+        set("Icon hit rate", lookups == 0 ? "-" : String.format("%.1f%% of %d", hits * 100.0 / lookups, lookups));
+        
+        long entries = metrics.readGauge(MetricsRegistry.ICON_CACHE_ENTRIES);
+        long bytes = metrics.readGauge(MetricsRegistry.ICON_CACHE_BYTES);
+        long softEntries = metrics.readGauge(MetricsRegistry.ICON_CACHE_SOFT_ENTRIES);
+        long atlasPages = metrics.readGauge(MetricsRegistry.ICON_ATLAS_PAGES);
+        set("Icon cache", entries < 0 ? "-" : String.format("%d%s • %.1f KB • %d atlas pages", entries,
+            softEntries > 0 ? " + " + softEntries + " soft" : "", bytes / 1024.0, atlasPages));
+        long heapAfterGc = metrics.readGauge(MetricsRegistry.HEAP_AFTER_GC);
+        long pressure = metrics.readGauge(MetricsRegistry.MEMORY_PRESSURE);
+        set("Heap after GC", heapAfterGc < 0 ? "-" : heapAfterGc + "% • "
+            + MemoryPressureMonitor.Level.values()[(int) Math.max(0, pressure)].name().toLowerCase());
+        set("Icons in flight", String.valueOf(metrics.readCounter(MetricsRegistry.ICON_IN_FLIGHT)));
+        set("Icon prefetch", metrics.readCounter(MetricsRegistry.ICON_PREFETCH_ISSUED) + " sent / "
+            + metrics.readCounter(MetricsRegistry.ICON_PREFETCH_CANCELLED) + " dropped");
+        set("Icon bundles", metrics.readCounter(MetricsRegistry.ICON_BUNDLE_REQUESTS) + " sent / "
+            + metrics.readCounter(MetricsRegistry.ICON_BUNDLED) + " icons");
+        set("Cards / comps", metrics.readGauge(MetricsRegistry.CARD_COUNT) + " / "
+            + metrics.readGauge(MetricsRegistry.GRID_COMPONENT_COUNT));
+        
+        set("Busy net/dec/cpu", pools(GainsExecutors::utilisationGauge, "%"));
+        set("Queued net/dec/cpu", pools(GainsExecutors::queuedGauge, ""));
+        
+        set("EDT stalls", metrics.readCounter(MetricsRegistry.EDT_STALLS) + " plugin / "
+            + metrics.readCounter(MetricsRegistry.EDT_OTHER_STALLS) + " other");
+        set("EDT stall p50/95", percentiles(MetricsRegistry.EDT_STALL_TIME, false));
+        String topStall = metrics.readTextGauge(MetricsRegistry.EDT_TOP_STALL);
+        set("Worst stall site", topStall != null ? topStall : "watchdog off");
+    }
+    
+    /**
+     * One gauge of each executor pool, e.g. "12% / 0% / 3%"
+     */
+    private String pools(UnaryOperator<String> gauge, String unit) {
+        StringBuilder text = new StringBuilder();
+        for (String pool : new String[]{GainsExecutors.NETWORK, GainsExecutors.DECODE, GainsExecutors.COMPUTE}) {
+            long value = metrics.readGauge(gauge.apply(pool));
+            if (text.length() > 0) {
+                text.append(" / ");
+            }
+            text.append(value < 0 ? "-" : value + unit);
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Median of a histogram that only sees a handful of samples, such as startup time
+     */
+    private String median(String histogramName) {
+        LatencyHistogram.Snapshot snapshot = metrics.histogram(histogramName).snapshot();
+        return snapshot.getCount() == 0 ? "-" : ms(snapshot, 50) + " ms";
+    }
+    
+    private String percentiles(String histogramName, boolean withP99) {
+        LatencyHistogram.Snapshot snapshot = metrics.histogram(histogramName).snapshot();
+        if (snapshot.getCount() == 0) {
+            return "-";
+        }
+        if (withP99) {
+            return String.format("%s/%s/%s ms", ms(snapshot, 50), ms(snapshot, 95), ms(snapshot, 99));
+        }
+        return String.format("%s/%s ms", ms(snapshot, 50), ms(snapshot, 95));
+    }
+    
+    private static String ms(LatencyHistogram.Snapshot snapshot, double percentile) {
+        double millis = snapshot.getPercentileMillis(percentile);
+        return millis >= 100 ? String.format("%.0f", millis) : String.format("%.1f", millis);
+    }
+    
+    private void set(String name, String value) {
+        JLabel label = valueLabels.get(name);
+        if (label != null) {
+            label.setText(value);
+            label.setToolTipText(value);
+        }
+    }
+    
+    /**
+     * Stops the refresh timer; called when the owning panel shuts down.
+     */
+    public void shutdown() {
+        refreshTimer.stop();
+    }
+}
@@ -1,9 +1,19 @@
 package com.gielinorgains.ui;
 
 import com.gielinorgains.GielinorGainsConfig;
+import com.gielinorgains.alerts.AlertEngine;
 import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.LatencyHistogram;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.history.PriceHistoryStore;
 import com.gielinorgains.model.GainsItem;
 import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.trading.BuyLimitTracker;
+import com.gielinorgains.trading.FlipJournal;
+import com.gielinorgains.util.RankingExpression;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.PluginPanel;
@@ -14,21 +24,32 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class GainsPanel extends PluginPanel {
-    private static final String[] SORT_OPTIONS = {"Score", "Profit", "ROI", "Volume", "Name"};
+    private static final String[] SORT_OPTIONS = {"Score", "Profit", "ROI", "Volume", "Name", "Custom"};
     
     private final GainsApiClient apiClient;
     private final GielinorGainsConfig config;
     private final IconCache iconCache;
-    private final ScheduledExecutorService executorService;
+    private final GainsExecutors executors;
+    private final MetricsRegistry metrics;
+    private final LatencyHistogram timeToFirstCard;
+    private final LatencyHistogram edtTimePerRefresh;
+    private final ItemDetailLoader detailLoader;
+    private final BuyLimitTracker buyLimits;
+    private final FlipJournal journal;
     
     private CardGridPanel cardGridPanel;
+    private IconPrefetcher iconPrefetcher;
+    private ItemDetailPanel detailPanel;
+    private Point gridScrollPosition;
+    private DiagnosticsPanel diagnosticsPanel;
+    private AllocationPanel allocationPanel;
     private JButton refreshButton;
     private JComboBox<String> sortComboBox;
     private JButton sortOrderButton;
@@ -36,20 +57,43 @@ public class GainsPanel extends PluginPanel {
     private JLabel websiteLink;
     private JProgressBar loadingBar;
     private long loadStartTime;
+    private long refreshEdtNanos; // EDT time spent applying the current refresh, only touched on the EDT
+    private int refreshGeneration; // Lets late pages from a superseded refresh be dropped, EDT only
+    private List<GainsItem> streamedItems = new ArrayList<>();
     private ScheduledFuture<?> progressiveLoadTask;
+    private final GainsApiClient.PriceUpdateListener priceUpdates = new GainsApiClient.PriceUpdateListener() {
+        @Override
+        public void onPricesUpdated(List<GainsItem> changed) {
+            SwingUtilities.invokeLater(() -> cardGridPanel.updateItems(changed));
+        }
+        
+        @Override
+        public void onResyncRequired() {
+            SwingUtilities.invokeLater(() -> refreshData(true));
+        }
+    };
     
     @Inject
-    public GainsPanel(GainsApiClient apiClient, GielinorGainsConfig config, ScheduledExecutorService executorService) {
+    public GainsPanel(GainsApiClient apiClient, GielinorGainsConfig config, GainsExecutors executors,
+                      MetricsRegistry metrics, PriceHistoryStore historyStore, BuyLimitTracker buyLimits,
+                      FlipJournal journal, SharedIconStore sharedIcons, MemoryPressureMonitor memoryPressure) {
         this.apiClient = apiClient;
         this.config = config;
-        this.iconCache = new IconCache();
-        this.executorService = executorService;
+        this.metrics = metrics;
+        this.iconCache = new IconCache(metrics, executors, sharedIcons, memoryPressure, apiClient);
+        this.executors = executors;
+        this.timeToFirstCard = metrics.histogram(MetricsRegistry.TIME_TO_FIRST_CARD);
+        this.edtTimePerRefresh = metrics.histogram(MetricsRegistry.EDT_TIME_PER_REFRESH);
+        this.detailLoader = new ItemDetailLoader(iconCache, historyStore, executors);
+        this.buyLimits = buyLimits;
+        this.journal = journal;
         
         setLayout(new BorderLayout());
         setBackground(ColorScheme.DARK_GRAY_COLOR);
         
         initializeComponents();
         layoutComponents();
+        apiClient.addPriceUpdateListener(priceUpdates);
         loadData();
     }
     
@@ -59,10 +103,17 @@ public class GainsPanel extends PluginPanel {
         JPanel statusPanel = createStatusPanel();
 
         // Card grid panel (will host header + cards + status and scroll as one)
-        cardGridPanel = new CardGridPanel(iconCache, config, executorService);
+        iconPrefetcher = new IconPrefetcher(iconCache, metrics);
+        cardGridPanel = new CardGridPanel(iconCache, config, executors, iconPrefetcher);
         cardGridPanel.setHeaderAndStatus(headerPanel, statusPanel);
+        cardGridPanel.setItemListeners(this::showItemDetail, detailLoader::prefetch);
+        applyRankingExpression();
+        applyPinnedItems();
         // Add directly; let RuneLite's outer scroll handle scrolling
         add(cardGridPanel, BorderLayout.CENTER);
+        
+        metrics.gauge(MetricsRegistry.CARD_COUNT, cardGridPanel::getCardCount);
+        metrics.gauge(MetricsRegistry.GRID_COMPONENT_COUNT, cardGridPanel::getComponentCount);
     }
     
     private JPanel createHeaderPanel() {
@@ -111,6 +162,16 @@ public class GainsPanel extends PluginPanel {
         refreshButton.setFont(refreshButton.getFont().deriveFont(14f));
         refreshButton.setToolTipText("Refresh data");
         refreshButton.addActionListener(e -> refreshData(true));
+        JButton planButton = new JButton("$");
+        planButton.setBackground(ColorScheme.MEDIUM_GRAY_COLOR);
+        planButton.setForeground(Color.WHITE);
+        planButton.setFocusPainted(false);
+        planButton.setPreferredSize(new Dimension(24, 24));
+        planButton.setFont(planButton.getFont().deriveFont(14f));
+        planButton.setToolTipText("Plan what to buy with your gold");
+        planButton.addActionListener(e -> toggleAllocation());
+        refreshPanel.add(planButton);
+        refreshPanel.add(Box.createHorizontalStrut(4));
         refreshPanel.add(refreshButton);
         
         topRow.add(logoPanel, BorderLayout.WEST);
@@ -149,6 +210,11 @@ public class GainsPanel extends PluginPanel {
         
         headerPanel.add(headerContent, BorderLayout.CENTER);
         
+        // Hidden gold planner below the sort controls, toggled by the "$" button
+        allocationPanel = new AllocationPanel(config, buyLimits, journal, executors,
+            () -> new ArrayList<>(cardGridPanel.getItems()), () -> cardGridPanel.refreshHeaderAndStatusSize());
+        headerPanel.add(allocationPanel, BorderLayout.SOUTH);
+        
         return headerPanel;
     }
     
@@ -160,6 +226,15 @@ public class GainsPanel extends PluginPanel {
         statusLabel = new JLabel("Ready");
         statusLabel.setForeground(Color.WHITE);
         statusLabel.setFont(statusLabel.getFont().deriveFont(11f));
+        // Hidden diagnostics view: double-click the status text to toggle
+        statusLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    toggleDiagnostics();
+                }
+            }
+        });
         
         // Website link
         websiteLink = new JLabel("GielinorGains.com");
@@ -189,13 +264,76 @@ public class GainsPanel extends PluginPanel {
         loadingBar.setVisible(false);
         loadingBar.setPreferredSize(new Dimension(0, 15));
         
+        diagnosticsPanel = new DiagnosticsPanel(metrics);
+        
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        southPanel.add(loadingBar, BorderLayout.NORTH);
+        southPanel.add(diagnosticsPanel, BorderLayout.SOUTH);
+        
         statusPanel.add(statusLabel, BorderLayout.WEST);
         statusPanel.add(websiteLink, BorderLayout.EAST);
-        statusPanel.add(loadingBar, BorderLayout.SOUTH);
+        statusPanel.add(southPanel, BorderLayout.SOUTH);
         
         return statusPanel;
     }
     
+    /**
+     * Swaps the card grid for the detail view of one item, remembering the grid's scroll position.
+     */
+    private void showItemDetail(GainsItem item) {
+        if (detailPanel == null) {
+            detailPanel = new ItemDetailPanel(iconCache, detailLoader, journal, this::hideItemDetail);
+        }
+        
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        gridScrollPosition = viewport != null ? viewport.getViewPosition() : null;
+        
+        detailPanel.showItem(item);
+        remove(cardGridPanel);
+        add(detailPanel, BorderLayout.CENTER);
+        revalidate();
+        repaint();
+        if (viewport != null) {
+            viewport.setViewPosition(new Point(0, 0));
+        }
+        log.debug("Showing details for {}", item.getName());
+    }
+    
+    private void hideItemDetail() {
+        if (detailPanel == null || detailPanel.getParent() != this) {
+            return;
+        }
+        
+        remove(detailPanel);
+        add(cardGridPanel, BorderLayout.CENTER);
+        revalidate();
+        repaint();
+        
+        Point restore = gridScrollPosition;
+        if (restore != null) {
+            // Restore once the grid has been laid out again
+            SwingUtilities.invokeLater(() -> {
+                JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+                if (viewport != null) {
+                    viewport.setViewPosition(restore);
+                }
+            });
+        }
+    }
+    
+    private void toggleDiagnostics() {
+        diagnosticsPanel.setVisible(!diagnosticsPanel.isVisible());
+        cardGridPanel.refreshHeaderAndStatusSize();
+        log.debug("Diagnostics view {}", diagnosticsPanel.isVisible() ? "shown" : "hidden");
+    }
+    
+    private void toggleAllocation() {
+        allocationPanel.setVisible(!allocationPanel.isVisible());
+        cardGridPanel.refreshHeaderAndStatusSize();
+        log.debug("Gold planner {}", allocationPanel.isVisible() ? "shown" : "hidden");
+    }
+    
     private void layoutComponents() {
         // Components are already added in initializeComponents
     }
@@ -210,6 +348,36 @@ public class GainsPanel extends PluginPanel {
         }
     }
     
+    /**
+     * Compiles the ranking expression from the config for the "Custom" sort. An empty or invalid
+     * expression makes that sort fall back to score; the reason is shown on the sort box.
+     */
+    public void applyRankingExpression() {
+        String source = config.rankingExpression();
+        RankingExpression expression = null;
+        String tooltip;
+        if (source == null || source.trim().isEmpty()) {
+            tooltip = "Custom sorts by score until a ranking expression is set in the plugin config";
+        } else {
+            try {
+                expression = RankingExpression.compile(source);
+                tooltip = "Custom: " + expression.getSource();
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid ranking expression '{}': {}", source, e.getMessage());
+                tooltip = "Invalid ranking expression: " + e.getMessage();
+            }
+        }
+        sortComboBox.setToolTipText(tooltip);
+        cardGridPanel.setRankingExpression(expression);
+    }
+    
+    /**
+     * Re-reads the pinned items from the config; pinned cards are listed first.
+     */
+    public void applyPinnedItems() {
+        cardGridPanel.setPinnedItems(AlertEngine.parseItemKeys(config.pinnedItems()));
+    }
+    
     private void toggleSortOrder() {
         boolean currentAscending = sortOrderButton.getText().equals("^");
         boolean newAscending = !currentAscending;
@@ -227,6 +395,7 @@ public class GainsPanel extends PluginPanel {
     private void refreshData(boolean forceRefresh) {
         setLoading(true);
         loadStartTime = System.currentTimeMillis();
+        refreshEdtNanos = 0;
         
         if (forceRefresh) {
             statusLabel.setText("Fetching fresh data...");
@@ -242,13 +411,103 @@ public class GainsPanel extends PluginPanel {
         cardGridPanel.setLoading(true);
         refreshButton.setEnabled(false);
         
-        apiClient.fetchItems(200, config.minScore(), forceRefresh)
-            .thenAccept(this::handleApiResponse)
+        // Any paged refresh still streaming is superseded by this one
+        int generation = ++refreshGeneration;
+        int maxItems = Math.max(1, config.maxItems());
+        if (maxItems <= GainsApiClient.PAGE_SIZE) {
+            apiClient.fetchItems(maxItems, config.minScore(), forceRefresh)
+                .thenAccept(this::handleApiResponse)
+                .exceptionally(this::handleApiError);
+            return;
+        }
+        
+        // Larger catalogs are paged; stream each page into the grid as it arrives
+        streamedItems = new ArrayList<>();
+        if (progressiveLoadTask != null && !progressiveLoadTask.isDone()) {
+            progressiveLoadTask.cancel(false);
+        }
+        
+        ItemsQuery query = ItemsQuery.builder()
+            .minScore(config.minScore())
+            .build();
+        apiClient.fetchAllItems(query, maxItems, forceRefresh,
+                page -> SwingUtilities.invokeLater(() -> appendStreamedPage(generation, page)))
+            .thenAccept(response -> handleStreamedResponse(generation, response))
             .exceptionally(this::handleApiError);
     }
     
+    private void appendStreamedPage(int generation, List<GainsItem> page) {
+        if (generation != refreshGeneration) {
+            return;
+        }
+        
+        long edtStart = System.nanoTime();
+        boolean firstPage = streamedItems.isEmpty();
+        if (firstPage) {
+            setLoading(false);
+        }
+        
+        streamedItems.addAll(page);
+        if (firstPage) {
+            cardGridPanel.setItems(page);
+        } else {
+            // Sorted once, when the last page is in
+            cardGridPanel.appendItems(page);
+        }
+        statusLabel.setText(String.format("Loading items... (%d so far)", streamedItems.size()));
+        
+        if (firstPage && !streamedItems.isEmpty()) {
+            timeToFirstCard.recordMillis(System.currentTimeMillis() - loadStartTime);
+        }
+        refreshEdtNanos += System.nanoTime() - edtStart;
+    }
+    
+    private void handleStreamedResponse(int generation, ApiResponse response) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation != refreshGeneration) {
+                return;
+            }
+            
+            long edtStart = System.nanoTime();
+            setLoading(false);
+            refreshButton.setEnabled(true);
+            refreshButton.setText("R");
+            refreshButton.setToolTipText("Refresh data");
+            
+            if (response.isSuccess() && response.getData() != null) {
+                // Pages were appended unsorted; sort the whole catalog once. With no pages
+                // streamed (e.g. an empty catalog) this shows the final state directly
+                cardGridPanel.setItems(response.getData());
+                showLoadedStatus(response.getData().size());
+                log.debug("Streamed loading completed: {} items", response.getData().size());
+            } else {
+                String error = response.getError() != null ? response.getError() : "Unknown error";
+                statusLabel.setText("Error: " + error);
+                log.error("Failed to load items: {}", error);
+            }
+            
+            refreshEdtNanos += System.nanoTime() - edtStart;
+            edtTimePerRefresh.recordNanos(refreshEdtNanos);
+            
+            if (!response.isSuccess()) {
+                showErrorDialog("Failed to load data: " + response.getError());
+            }
+        });
+    }
+    
+    private void showLoadedStatus(int itemCount) {
+        long elapsedMs = System.currentTimeMillis() - loadStartTime;
+        String timeText = elapsedMs > 1000 ? String.format(" (%.1fs)", elapsedMs / 1000.0) : "";
+        String cacheStatus = apiClient.isPriceStreamLive() ? " • Live"
+            : !apiClient.wasLastRequestCached() ? " • Fresh"
+            : apiClient.isApiHealthy() ? " • Cached" : " • Offline";
+        
+        statusLabel.setText(String.format("Loaded %d items%s%s", itemCount, timeText, cacheStatus));
+    }
+    
     private void handleApiResponse(ApiResponse response) {
         SwingUtilities.invokeLater(() -> {
+            long edtStart = System.nanoTime();
             setLoading(false);
             refreshButton.setEnabled(true);
             refreshButton.setText("R");
@@ -256,13 +515,19 @@ public class GainsPanel extends PluginPanel {
             
             if (response.isSuccess() && response.getData() != null) {
                 // Progressive loading: show first batch immediately, then load the rest
-                progressivelyLoadItems(response.getData());
+                boolean morePending = progressivelyLoadItems(response.getData());
                 
+                refreshEdtNanos += System.nanoTime() - edtStart;
+                if (!morePending) {
+                    edtTimePerRefresh.recordNanos(refreshEdtNanos);
+                }
                 log.debug("Successfully started loading {} items", response.getData().size());
             } else {
                 String error = response.getError() != null ? response.getError() : "Unknown error";
                 statusLabel.setText("Error: " + error);
                 log.error("Failed to load items: {}", error);
+                refreshEdtNanos += System.nanoTime() - edtStart;
+                edtTimePerRefresh.recordNanos(refreshEdtNanos);
                 showErrorDialog("Failed to load data: " + error);
             }
         });
@@ -270,25 +535,30 @@ public class GainsPanel extends PluginPanel {
     
     /**
      * Loads items progressively for smooth UI population
+     *
+     * @return true if further batches were scheduled
      */
-    private void progressivelyLoadItems(List<GainsItem> items) {
+    private boolean progressivelyLoadItems(List<GainsItem> items) {
         if (items.isEmpty()) {
             cardGridPanel.setItems(items);
-            return;
+            return false;
         }
         
         // Show first batch immediately for instant feedback
         int firstBatchSize = Math.min(30, items.size());
         List<GainsItem> firstBatch = items.subList(0, firstBatchSize);
         cardGridPanel.setItems(firstBatch);
+        timeToFirstCard.recordMillis(System.currentTimeMillis() - loadStartTime);
         
         // If there are more items, load them progressively
-        if (items.size() > firstBatchSize) {
+        boolean morePending = items.size() > firstBatchSize;
+        if (morePending) {
             loadRemainingItemsProgressively(items, firstBatchSize);
         }
         
         log.debug("Started progressive loading: {} items total, {} shown immediately", 
             items.size(), firstBatchSize);
+        return morePending;
     }
     
     private void loadRemainingItemsProgressively(List<GainsItem> allItems, int startIndex) {
@@ -303,8 +573,9 @@ public class GainsPanel extends PluginPanel {
         // Use AtomicInteger for thread-safe access
         final java.util.concurrent.atomic.AtomicInteger currentIndex = new java.util.concurrent.atomic.AtomicInteger(startIndex);
         
-        progressiveLoadTask = executorService.scheduleAtFixedRate(() -> {
+        progressiveLoadTask = executors.scheduler().scheduleAtFixedRate(() -> {
             SwingUtilities.invokeLater(() -> {
+                long edtStart = System.nanoTime();
                 int index = currentIndex.get();
                 int endIndex = Math.min(index + batchSize, allItems.size());
                 
@@ -323,15 +594,17 @@ public class GainsPanel extends PluginPanel {
                     progressiveLoadTask.cancel(false);
                     
                     // Final status update
-                    long elapsedMs = System.currentTimeMillis() - loadStartTime;
-                    String timeText = elapsedMs > 1000 ? String.format(" (%.1fs)", elapsedMs / 1000.0) : "";
-                    String cacheStatus = apiClient.wasLastRequestCached() ? " • Cached" : " • Fresh";
-                    
-                    statusLabel.setText(String.format("Loaded %d items%s%s", 
-                        allItems.size(), timeText, cacheStatus));
+                    showLoadedStatus(allItems.size());
                     
+                    // A batch queued before the cancel landed can re-run the final step; only count it once
+                    if (index < allItems.size()) {
+                        refreshEdtNanos += System.nanoTime() - edtStart;
+                        edtTimePerRefresh.recordNanos(refreshEdtNanos);
+                    }
                     log.debug("Progressive loading completed: {} items", allItems.size());
+                    return;
                 }
+                refreshEdtNanos += System.nanoTime() - edtStart;
             });
         }, 0, delay, TimeUnit.MILLISECONDS);
     }
@@ -376,6 +649,7 @@ public class GainsPanel extends PluginPanel {
      */
     public void shutdown() {
         log.debug("Shutting down GainsPanel");
+        apiClient.removePriceUpdateListener(priceUpdates);
         
         // Cancel any running progressive load task
         if (progressiveLoadTask != null && !progressiveLoadTask.isDone()) {
@@ -392,6 +666,12 @@ public class GainsPanel extends PluginPanel {
             cardGridPanel.shutdown();
         }
         
+        if (diagnosticsPanel != null) {
+            diagnosticsPanel.shutdown();
+        }
+        metrics.removeGauge(MetricsRegistry.CARD_COUNT);
+        metrics.removeGauge(MetricsRegistry.GRID_COMPONENT_COUNT);
+        
         log.debug("GainsPanel shutdown completed");
     }
     
@@ -0,0 +1,211 @@
+package com.gielinorgains.ui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs same-sized icons, already rendered at the size they are drawn at, into a few shared
+ * page images, so painting a card is a 1:1 blit of a sub-rectangle of one image. Java2D then
+ * keeps one managed surface per page rather than one per icon, and each icon costs a slot
+ * rather than an image of its own.
+ *
+ * Slots are handed out in order and reused once freed; when every slot is taken the least
+ * recently drawn icon is evicted. Pages are created as slots on them are first needed. Pixels
+ * are only ever written through a {@link Graphics2D}, since touching a page's raster directly
+ * would stop Java2D from accelerating it.
+ */
+public class IconAtlas {
+    private static final AffineTransform IDENTITY = new AffineTransform();
+    // Largest page side in pixels; bigger pages may not fit in a texture
+    private static final int MAX_PAGE_SIZE = 1024;
+    
+    private final int logicalSize;
+    private final int cellSize;
+    private final int capacity;
+    private final int columns;
+    private final int slotsPerPage;
+    
+    // Guarded by this
+    private final List<BufferedImage> pages = new ArrayList<>();
+    private final Map<String, Sprite> sprites = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    
+    /**
+     * @param logicalSize side of an icon as laid out, in logical pixels
+     * @param cellSize    side of an icon on the device, e.g. 30 for a 20 pixel icon at 150%
+     * @param capacity    most icons held before the least recently drawn is evicted
+     */
+    public IconAtlas(int logicalSize, int cellSize, int capacity) {
+        this.logicalSize = logicalSize;
+        this.cellSize = cellSize;
+        this.capacity = capacity;
+        // Square pages, as few as fit under the size limit
+        int wanted = (int) Math.ceil(Math.sqrt(capacity));
+        this.columns = Math.max(1, Math.min(wanted, MAX_PAGE_SIZE / cellSize));
+        int rows = Math.min(columns, (capacity + columns - 1) / columns);
+        this.slotsPerPage = columns * rows;
+    }
+    
+    /**
+     * The sprite of an icon, marking it recently drawn; null if it is not in the atlas
+     */
+    public synchronized Sprite get(String key) {
+        return sprites.get(key);
+    }
+    
+    public Sprite put(String key, BufferedImage pixels) {
+        return put(key, pixels, System.currentTimeMillis());
+    }
+    
+    /**
+     * Copies an icon into a free slot, evicting the least recently drawn one if there is none.
+     * The pixels are drawn at {@code cellSize} square. An icon already in the atlas keeps its slot.
+     *
+     * @param loadedAt when the pixels were loaded, for {@link #removeLoadedBefore}
+     */
+    public synchronized Sprite put(String key, BufferedImage pixels, long loadedAt) {
+        Sprite sprite = sprites.get(key);
+        int slot = sprite != null ? sprite.slot : allocate();
+        BufferedImage page = pages.get(slot / slotsPerPage);
+        int cell = slot % slotsPerPage;
+        int x = cell % columns * cellSize;
+        int y = cell / columns * cellSize;
+        
+        Graphics2D g2 = page.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(pixels, x, y, cellSize, cellSize, null);
+        g2.dispose();
+        
+        sprite = new Sprite(page, slot, x, y, loadedAt);
+        sprites.put(key, sprite);
+        return sprite;
+    }
+    
+    public synchronized void remove(String key) {
+        Sprite sprite = sprites.remove(key);
+        if (sprite != null) {
+            freeSlots.push(sprite.slot);
+        }
+    }
+    
+    /**
+     * Drops the icons loaded before {@code cutoff}, freeing their slots
+     */
+    public synchronized void removeLoadedBefore(long cutoff) {
+        Iterator<Sprite> it = sprites.values().iterator();
+        while (it.hasNext()) {
+            Sprite sprite = it.next();
+            if (sprite.loadedAt < cutoff) {
+                it.remove();
+                freeSlots.push(sprite.slot);
+            }
+        }
+    }
+    
+    /**
+     * Drops every icon and page
+     */
+    public synchronized void clear() {
+        sprites.clear();
+        freeSlots.clear();
+        pages.clear();
+        nextSlot = 0;
+    }
+    
+    public synchronized int size() {
+        return sprites.size();
+    }
+    
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+    
+    public synchronized long estimateBytes() {
+        long bytes = 0;
+        for (BufferedImage page : pages) {
+            bytes += (long) page.getWidth() * page.getHeight() * 4;
+        }
+        return bytes;
+    }
+    
+    private int allocate() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (nextSlot < capacity) {
+            int slot = nextSlot++;
+            if (slot / slotsPerPage == pages.size()) {
+                pages.add(newPage(Math.min(slotsPerPage, capacity - slot)));
+            }
+            return slot;
+        }
+        Iterator<Sprite> eldest = sprites.values().iterator();
+        Sprite evicted = eldest.next();
+        eldest.remove();
+        return evicted.slot;
+    }
+    
+    private BufferedImage newPage(int slots) {
+        int rows = (slots + columns - 1) / columns;
+        return new BufferedImage(columns * cellSize, rows * cellSize, BufferedImage.TYPE_INT_ARGB);
+    }
+    
+    /**
+     * One icon's cell in a page. Only valid until the icon is evicted, so look it up for each paint.
+     */
+    public final class Sprite {
+        private final BufferedImage page;
+        private final int slot;
+        private final int x;
+        private final int y;
+        private final long loadedAt;
+        
+        private Sprite(BufferedImage page, int slot, int x, int y, long loadedAt) {
+            this.page = page;
+            this.slot = slot;
+            this.x = x;
+            this.y = y;
+            this.loadedAt = loadedAt;
+        }
+        
+        /**
+         * When the icon's pixels were loaded, in epoch millis
+         */
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+        
+        /**
+         * Draws at logical position {@code (left, top)} by blitting the cell with an identity transform.
+         * Under another scale than the atlas was built for, or a rotation, the cell is scaled instead.
+         */
+        public void drawAligned(Graphics2D g2, int left, int top) {
+            AffineTransform transform = g2.getTransform();
+            double scaleX = transform.getScaleX();
+            double scaleY = transform.getScaleY();
+            boolean aligned = transform.getShearX() == 0 && transform.getShearY() == 0
+                && Math.round(logicalSize * scaleX) == cellSize && Math.round(logicalSize * scaleY) == cellSize;
+            if (!aligned) {
+                g2.drawImage(page, left, top, left + logicalSize, top + logicalSize,
+                    x, y, x + cellSize, y + cellSize, null);
+                return;
+            }
+            
+            int deviceX = (int) Math.round(transform.getTranslateX() + left * scaleX);
+            int deviceY = (int) Math.round(transform.getTranslateY() + top * scaleY);
+            g2.setTransform(IDENTITY);
+            g2.drawImage(page, deviceX, deviceY, deviceX + cellSize, deviceY + cellSize,
+                x, y, x + cellSize, y + cellSize, null);
+            g2.setTransform(transform);
+        }
+    }
+}
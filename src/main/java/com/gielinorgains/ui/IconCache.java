@@ -1,39 +1,121 @@
 package com.gielinorgains.ui;
 
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.IconLoadEvent;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.Set;
 
+/**
+ * Decoded item icons, loaded in the background.
+ *
+ * Icons are held strongly up to a capacity that follows memory pressure: the full
+ * {@value #MAX_CACHE_SIZE} normally, down to a floor of {@value #MIN_CACHE_SIZE} while the heap is
+ * tight. Icons pushed out are kept through soft references, so they are reused if the GC has not
+ * needed the memory yet and cost nothing if it has. Under critical pressure the soft tier is
+ * dropped as well; icons then load again from the shared store on disk, when there is one.
+ *
+ * Card icons are drawn from an {@link IconAtlas} per device scale rather than from images of
+ * their own. An icon is copied into the atlas on its first paint and stays there, within the
+ * atlas's own capacity, even after its decoded source has been evicted. It expires with the
+ * time it was loaded like any cached icon, and a fresh load replaces it.
+ *
+ * A fresh grid's icons can be asked for together with {@link #prefetchIcons}, which fetches them
+ * in bundles where the API offers them instead of one request per icon.
+ */
 @Slf4j
 public class IconCache {
     private static final int ICON_SIZE = 24;
+    public static final int CARD_ICON_SIZE = 20;
+    public static final int DETAIL_ICON_SIZE = 64;
     private static final int MAX_CACHE_SIZE = 500;
+    private static final int MIN_CACHE_SIZE = 50;
     private static final long CACHE_EXPIRY_HOURS = 24;
     private static final int BATCH_REPAINT_DELAY_MS = 50; // Batch repaints within 50ms
+    // One refresh page of icons per bundle; a single icon is not worth a bundle
+    private static final int MAX_BUNDLE_ICONS = 200;
+    private static final int MIN_BUNDLE_ICONS = 2;
     
     private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentHashMap<String, SoftReference<CacheEntry>> softCache = new ConcurrentHashMap<>();
+    // Keyed by the side of a card icon in device pixels
+    private final ConcurrentHashMap<Integer, IconAtlas> cardAtlases = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<CacheEntry>> loading = new ConcurrentHashMap<>();
+    // Loads only a prefetch has asked for and not yet downloading, which the prefetcher may withdraw
+    private final ConcurrentHashMap<String, CompletableFuture<CacheEntry>> withdrawable = new ConcurrentHashMap<>();
+    private final GainsExecutors executors;
+    private final ScheduledFuture<?> cleanupTask;
     
     // Batch repaint optimization
     private final Set<Runnable> pendingCallbacks = ConcurrentHashMap.newKeySet();
     private final Object batchLock = new Object();
     private volatile boolean batchRepaintScheduled = false;
     
-    public IconCache() {
+    private final MetricsRegistry metrics;
+    private final SharedIconStore sharedStore; // Null when icons are not shared between clients
+    private final MemoryPressureMonitor memoryPressure;
+    private final GainsApiClient bundleClient; // Null to fetch every icon on its own
+    private final Consumer<MemoryPressureMonitor.Level> pressureListener = this::onMemoryPressure;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder inFlight;
+    private final LongAdder bundleRequests;
+    private final LongAdder bundledIcons;
+    
+    // Device scale the cards were last painted at, so prefetches render the matching variant
+    private volatile double cardScale = 1.0;
+    // Most icons held strongly; the rest are demoted to the soft tier
+    private volatile int capacity = MAX_CACHE_SIZE;
+    
+    public IconCache(MetricsRegistry metrics) {
+        this(metrics, new GainsExecutors(metrics), null, new MemoryPressureMonitor(metrics), null);
+    }
+    
+    public IconCache(MetricsRegistry metrics, GainsExecutors executors, SharedIconStore sharedStore,
+                     MemoryPressureMonitor memoryPressure, GainsApiClient bundleClient) {
+        this.metrics = metrics;
+        this.executors = executors;
+        this.sharedStore = sharedStore;
+        this.memoryPressure = memoryPressure;
+        this.bundleClient = bundleClient;
+        this.hits = metrics.counter(MetricsRegistry.ICON_HITS);
+        this.misses = metrics.counter(MetricsRegistry.ICON_MISSES);
+        this.inFlight = metrics.counter(MetricsRegistry.ICON_IN_FLIGHT);
+        this.bundleRequests = metrics.counter(MetricsRegistry.ICON_BUNDLE_REQUESTS);
+        this.bundledIcons = metrics.counter(MetricsRegistry.ICON_BUNDLED);
+        metrics.gauge(MetricsRegistry.ICON_CACHE_ENTRIES, cache::size);
+        metrics.gauge(MetricsRegistry.ICON_CACHE_BYTES, this::estimateCacheBytes);
+        metrics.gauge(MetricsRegistry.ICON_CACHE_SOFT_ENTRIES, softCache::size);
+        metrics.gauge(MetricsRegistry.ICON_ATLAS_PAGES, this::countAtlasPages);
+        
+        memoryPressure.addListener(pressureListener);
+        onMemoryPressure(memoryPressure.getLevel());
+        
         // Schedule cleanup every hour
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredEntries, 1, 1, TimeUnit.HOURS);
+        cleanupTask = executors.scheduler().scheduleAtFixedRate(this::cleanupExpiredEntries, 1, 1, TimeUnit.HOURS);
     }
     
     public ImageIcon getIcon(String iconUrl) {
@@ -48,118 +130,420 @@ public class IconCache {
      * Gets an icon with priority support for visible items
      */
     public ImageIcon getIcon(String iconUrl, Runnable onLoadCallback, boolean highPriority) {
+        return getIcon(iconUrl, ICON_SIZE, onLoadCallback, highPriority);
+    }
+    
+    /**
+     * Gets the large icon shown in the item detail view, loading it on first use
+     */
+    public ImageIcon getDetailIcon(String iconUrl, Runnable onLoadCallback) {
+        return getIcon(iconUrl, DETAIL_ICON_SIZE, onLoadCallback, true);
+    }
+    
+    /**
+     * Gets a card icon for painting at the given device scale, as a sprite in the atlas for that
+     * scale that {@link IconAtlas.Sprite#drawAligned} blits 1:1. Look it up for each paint.
+     */
+    public IconAtlas.Sprite getCardIcon(String iconUrl, double deviceScale, Runnable onLoadCallback) {
         if (iconUrl == null || iconUrl.isEmpty()) {
             return null;
         }
+        cardScale = deviceScale;
         
-        CacheEntry entry = cache.get(iconUrl);
+        IconAtlas atlas = cardAtlas(deviceScale);
+        IconAtlas.Sprite sprite = atlas.get(iconUrl);
+        if (sprite != null && !isExpired(sprite.getLoadedAt())) {
+            hits.increment();
+            return sprite;
+        }
+        CacheEntry entry = lookup(iconUrl);
+        if (entry != null && !entry.isExpired()) {
+            hits.increment();
+            return entry.copyToAtlas(atlas, iconUrl, deviceScale);
+        }
+        misses.increment();
+        loadIconAsync(iconUrl, CARD_ICON_SIZE, onLoadCallback, true);
+        // An expired icon is still drawn until the fresh one is in
+        if (sprite != null) {
+            return sprite;
+        }
+        return entry != null ? entry.copyToAtlas(atlas, iconUrl, deviceScale) : null;
+    }
+    
+    /**
+     * Starts loading a card icon ahead of it being painted, rendering the variant for the
+     * current card scale off the EDT so the first paint only has to copy it into the atlas.
+     * Completes with whether the icon is available; already cached icons complete immediately.
+     * Not counted as a hit or miss.
+     */
+    public CompletableFuture<Boolean> prefetchIcon(String iconUrl) {
+        if (iconUrl == null || iconUrl.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        IconAtlas.Sprite sprite = cardAtlas(cardScale).get(iconUrl);
+        if (sprite != null && !isExpired(sprite.getLoadedAt()) || isCached(iconUrl)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        
+        CompletableFuture<CacheEntry> started = new CompletableFuture<>();
+        // Registered first, so a paint joining right after the load starts can still keep it
+        withdrawable.putIfAbsent(iconUrl, started);
+        CompletableFuture<CacheEntry> pending = loading.putIfAbsent(iconUrl, started);
+        if (pending == null) {
+            pending = started;
+            startLoad(iconUrl, CARD_ICON_SIZE, false, started);
+        } else {
+            withdrawable.remove(iconUrl, started);
+        }
+        return pending.thenApply(loaded -> loaded != null);
+    }
+    
+    /**
+     * Withdraws a load started by {@link #prefetchIcon} if it has not begun downloading and
+     * nothing else has asked for the icon since; it then completes with false. Otherwise the load
+     * carries on.
+     */
+    public void cancelPrefetch(String iconUrl) {
+        CompletableFuture<CacheEntry> load = withdrawable.remove(iconUrl);
+        if (load != null) {
+            loading.remove(iconUrl, load);
+            load.complete(null);
+        }
+    }
+    
+    /**
+     * Starts loading the card icons of many cards at once, e.g. a freshly filled grid. Icons not
+     * already cached or loading are fetched in bundles of up to {@value #MAX_BUNDLE_ICONS}, and
+     * each icon goes to the decode pool as soon as it is read off the bundle, while the rest is
+     * still arriving. Icons a bundle lacks, or the rest of them if the bundle request fails, are
+     * downloaded one by one. Completes once every icon
+     * has loaded or failed. Not counted as hits or misses.
+     *
+     * Does nothing while the API offers no bundles; the icons then load one by one as they are
+     * painted or prefetched, as they would without this call.
+     */
+    public CompletableFuture<Void> prefetchIcons(Collection<String> iconUrls) {
+        if (bundleClient == null || !bundleClient.isIconBundleAvailable()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        List<CompletableFuture<CacheEntry>> pending = new ArrayList<>();
+        Map<String, CompletableFuture<CacheEntry>> claimed = new LinkedHashMap<>();
+        for (String iconUrl : iconUrls) {
+            if (iconUrl == null || iconUrl.isEmpty() || claimed.containsKey(iconUrl) || isCached(iconUrl)) {
+                continue;
+            }
+            CompletableFuture<CacheEntry> started = new CompletableFuture<>();
+            CompletableFuture<CacheEntry> existing = loading.putIfAbsent(iconUrl, started);
+            if (existing != null) {
+                pending.add(existing);
+                continue;
+            }
+            claimed.put(iconUrl, started);
+            pending.add(started);
+        }
+        
+        if (!claimed.isEmpty()) {
+            inFlight.add(claimed.size());
+            try {
+                executors.network().execute(() -> loadBundled(claimed));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                claimed.forEach((iconUrl, result) ->
+                    decodeWhenDownloaded(iconUrl, CARD_ICON_SIZE, CompletableFuture.completedFuture(null), result));
+            }
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+    
+    /**
+     * Runs on the network pool: takes what it can from the shared store and the bundles, hands
+     * each icon to the decode pool as soon as its bytes are in, and downloads the rest singly.
+     */
+    private void loadBundled(Map<String, CompletableFuture<CacheEntry>> claimed) {
+        List<String> wanted = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<CacheEntry>> icon : claimed.entrySet()) {
+            IconLoadEvent storeEvent = new IconLoadEvent();
+            storeEvent.begin();
+            byte[] data = sharedStore != null ? sharedStore.load(icon.getKey()) : null;
+            if (data != null) {
+                commitIconPhase(storeEvent, IconLoadEvent.PHASE_DOWNLOAD, icon.getKey(), data.length, 0, 0, true, true);
+                decodeWhenDownloaded(icon.getKey(), CARD_ICON_SIZE, CompletableFuture.completedFuture(data), icon.getValue());
+            } else {
+                wanted.add(icon.getKey());
+            }
+        }
+        
+        int from = 0;
+        while (wanted.size() - from >= MIN_BUNDLE_ICONS) {
+            List<String> chunk = wanted.subList(from, Math.min(wanted.size(), from + MAX_BUNDLE_ICONS));
+            // Handed over on this thread as each icon is read off the response
+            Map<String, byte[]> bundle = new LinkedHashMap<>();
+            boolean complete = bundleClient.fetchIconBundle(chunk, (iconUrl, data) -> {
+                bundle.put(iconUrl, data);
+                decodeWhenDownloaded(iconUrl, CARD_ICON_SIZE, CompletableFuture.completedFuture(data), claimed.get(iconUrl));
+            });
+            if (complete) {
+                bundleRequests.increment();
+            }
+            bundledIcons.add(bundle.size());
+            for (String iconUrl : chunk) {
+                if (!bundle.containsKey(iconUrl)) {
+                    CompletableFuture<byte[]> download = new CompletableFuture<>();
+                    submitDownload(iconUrl, download);
+                    decodeWhenDownloaded(iconUrl, CARD_ICON_SIZE, download, claimed.get(iconUrl));
+                }
+            }
+            // Stored once every icon of the bundle is decoding, so disk writes do not hold them up
+            if (sharedStore != null) {
+                bundle.forEach(sharedStore::store);
+            }
+            from += chunk.size();
+            if (!complete) {
+                break;
+            }
+        }
+        
+        if (from < wanted.size()) {
+            log.debug("Downloading {} icons one by one", wanted.size() - from);
+        }
+        for (String iconUrl : wanted.subList(from, wanted.size())) {
+            CompletableFuture<byte[]> download = new CompletableFuture<>();
+            submitDownload(iconUrl, download);
+            decodeWhenDownloaded(iconUrl, CARD_ICON_SIZE, download, claimed.get(iconUrl));
+        }
+    }
+    
+    private IconAtlas cardAtlas(double deviceScale) {
+        int cellSize = Math.max(1, (int) Math.round(CARD_ICON_SIZE * deviceScale));
+        return cardAtlases.computeIfAbsent(cellSize, size -> new IconAtlas(CARD_ICON_SIZE, size, MAX_CACHE_SIZE));
+    }
+    
+    /**
+     * Starts loading a detail icon in the background so opening the detail view finds it cached
+     */
+    public void prefetchDetailIcon(String iconUrl) {
+        if (iconUrl != null && !iconUrl.isEmpty() && !isCached(iconUrl)) {
+            loadIconAsync(iconUrl, DETAIL_ICON_SIZE, null, false);
+        }
+    }
+    
+    private ImageIcon getIcon(String iconUrl, int size, Runnable onLoadCallback, boolean highPriority) {
+        if (iconUrl == null || iconUrl.isEmpty()) {
+            return null;
+        }
+        
+        CacheEntry entry = lookup(iconUrl);
         
         // Check if we have a valid cached entry
         if (entry != null && !entry.isExpired()) {
-            return entry.icon;
+            hits.increment();
+            return entry.icon(size);
         }
+        misses.increment();
         
         // Start loading the icon asynchronously if not already loading
-        if (entry == null || entry.isExpired()) {
-            loadIconAsync(iconUrl, onLoadCallback, highPriority);
-        }
+        loadIconAsync(iconUrl, size, onLoadCallback, highPriority);
         
         // Return existing icon if available, null otherwise
-        return entry != null ? entry.icon : null;
+        return entry != null ? entry.icon(size) : null;
     }
     
-    private void loadIconAsync(String iconUrl, Runnable onLoadCallback) {
-        loadIconAsync(iconUrl, onLoadCallback, false);
+    /**
+     * Returns true if a non-expired icon is cached for the given URL. Never triggers a load.
+     */
+    public boolean isCached(String iconUrl) {
+        if (iconUrl == null || iconUrl.isEmpty()) {
+            return false;
+        }
+        CacheEntry entry = lookup(iconUrl);
+        return entry != null && !entry.isExpired();
     }
     
-    private void loadIconAsync(String iconUrl, Runnable onLoadCallback, boolean highPriority) {
-        CompletableFuture<ImageIcon> future;
+    private CompletableFuture<CacheEntry> loadIconAsync(String iconUrl, int size, Runnable onLoadCallback, boolean highPriority) {
+        CompletableFuture<CacheEntry> pending = loading.get(iconUrl);
+        if (pending == null) {
+            CompletableFuture<CacheEntry> started = new CompletableFuture<>();
+            pending = loading.putIfAbsent(iconUrl, started);
+            if (pending == null) {
+                pending = started;
+                startLoad(iconUrl, size, highPriority, started);
+            }
+        } else {
+            // Someone other than the prefetcher wants it now
+            withdrawable.remove(iconUrl, pending);
+        }
+        
+        // Joining a load already in flight (e.g. a hover prefetch) just adds the callback
+        if (onLoadCallback != null) {
+            pending.thenAccept(entry -> {
+                if (entry != null) {
+                    scheduleBatchedCallback(onLoadCallback);
+                }
+            });
+        }
+        return pending;
+    }
+    
+    private void startLoad(String iconUrl, int size, boolean highPriority, CompletableFuture<CacheEntry> result) {
+        CompletableFuture<byte[]> download = new CompletableFuture<>();
+        inFlight.increment();
         
         if (highPriority) {
             // High priority - load immediately
-            future = CompletableFuture.supplyAsync(() -> loadIcon(iconUrl));
+            submitDownload(iconUrl, download, result);
         } else {
             // Low priority - add small delay to batch with other requests
-            future = CompletableFuture.supplyAsync(() -> {
+            try {
+                executors.scheduler().schedule(() -> submitDownload(iconUrl, download, result), 5, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                download.complete(null);
+            }
+        }
+        
+        decodeWhenDownloaded(iconUrl, size, download, result);
+    }
+    
+    /**
+     * Decodes the icon on the decode pool once its bytes are in, then completes the load
+     */
+    private void decodeWhenDownloaded(String iconUrl, int size, CompletableFuture<byte[]> download,
+                                      CompletableFuture<CacheEntry> result) {
+        download.thenApplyAsync(data -> data != null ? decodeIcon(iconUrl, data, size) : null, executors.decode())
+            .whenComplete((entry, error) -> {
+                inFlight.decrement();
+                withdrawable.remove(iconUrl, result);
+                if (entry != null) {
+                    // Any sprite is from an earlier load; the next paint copies this one in instead
+                    cardAtlases.values().forEach(atlas -> atlas.remove(iconUrl));
+                }
+                loading.remove(iconUrl, result);
+                result.complete(error == null ? entry : null);
+            });
+    }
+    
+    private void submitDownload(String iconUrl, CompletableFuture<byte[]> download) {
+        submitDownload(iconUrl, download, null);
+    }
+    
+    /**
+     * @param result the load the download is for, or null if it cannot be withdrawn
+     */
+    private void submitDownload(String iconUrl, CompletableFuture<byte[]> download, CompletableFuture<CacheEntry> result) {
+        try {
+            executors.network().execute(() -> {
+                // Past this point a prefetch can no longer be withdrawn
+                if (result != null && !withdrawable.remove(iconUrl, result) && result.isDone()) {
+                    download.complete(null);
+                    return;
+                }
                 try {
-                    Thread.sleep(5); // Small delay for low priority items
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                    download.complete(downloadIcon(iconUrl));
+                } catch (RuntimeException e) {
+                    log.error("Unexpected error loading icon from: {}", iconUrl, e);
+                    download.complete(null);
                 }
-                return loadIcon(iconUrl);
             });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            download.complete(null);
         }
+    }
+    
+    /**
+     * Fetches the source image bytes, from the shared store if another client already has them.
+     * Returns null on failure.
+     */
+    private byte[] downloadIcon(String iconUrl) {
+        log.debug("Loading icon from: {}", iconUrl);
         
-        future.thenAccept(icon -> {
-            if (icon != null && onLoadCallback != null) {
-                scheduleBatchedCallback(onLoadCallback);
+        IconLoadEvent downloadEvent = new IconLoadEvent();
+        downloadEvent.begin();
+        byte[] data = sharedStore != null ? sharedStore.load(iconUrl) : null;
+        boolean cacheHit = data != null;
+        if (data == null) {
+            try (InputStream in = new URL(iconUrl).openStream()) {
+                data = in.readAllBytes();
+            } catch (IOException e) {
+                commitIconPhase(downloadEvent, IconLoadEvent.PHASE_DOWNLOAD, iconUrl, 0, 0, 0, false, false);
+                log.warn("Failed to load icon from: {}", iconUrl, e);
+                return null;
             }
-        });
+            if (sharedStore != null) {
+                sharedStore.store(iconUrl, data);
+            }
+        }
+        commitIconPhase(downloadEvent, IconLoadEvent.PHASE_DOWNLOAD, iconUrl, data.length, 0, 0, cacheHit, true);
+        return data;
     }
     
-    private ImageIcon loadIcon(String iconUrl) {
+    /**
+     * Decodes the source image once per URL, then renders the variant the caller needs so the
+     * first paint does not have to. Other sizes and scales render lazily.
+     */
+    private CacheEntry decodeIcon(String iconUrl, byte[] data, int size) {
         try {
-            log.debug("Loading icon from: {}", iconUrl);
-            
-            URL url = new URL(iconUrl);
-            BufferedImage image;
-            synchronized (ImageIO.class) {
-                image = ImageIO.read(url);
+            IconLoadEvent decodeEvent = new IconLoadEvent();
+            decodeEvent.begin();
+            BufferedImage image = null;
+            try {
+                synchronized (ImageIO.class) {
+                    image = ImageIO.read(new ByteArrayInputStream(data));
+                }
+            } finally {
+                // Committed whether or not the decoder threw, so failed decodes show up too
+                commitIconPhase(decodeEvent, IconLoadEvent.PHASE_DECODE, iconUrl, data.length,
+                    image != null ? image.getWidth() : 0, image != null ? image.getHeight() : 0, false, image != null);
             }
             
             if (image != null) {
-                // Calculate dimensions that preserve aspect ratio within ICON_SIZE bounds
-                int originalWidth = image.getWidth();
-                int originalHeight = image.getHeight();
-                
-                double aspectRatio = (double) originalWidth / originalHeight;
-                int scaledWidth, scaledHeight;
-                
-                if (originalWidth > originalHeight) {
-                    // Wider than tall - constrain by width
-                    scaledWidth = ICON_SIZE;
-                    scaledHeight = (int) (ICON_SIZE / aspectRatio);
-                } else {
-                    // Taller than wide or square - constrain by height
-                    scaledHeight = ICON_SIZE;
-                    scaledWidth = (int) (ICON_SIZE * aspectRatio);
-                }
+                IconLoadEvent scaleEvent = new IconLoadEvent();
+                scaleEvent.begin();
                 
-                // Create transparent canvas at standard icon size
-                BufferedImage resized = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g2d = resized.createGraphics();
-                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                // Center the scaled image within the canvas
-                int x = (ICON_SIZE - scaledWidth) / 2;
-                int y = (ICON_SIZE - scaledHeight) / 2;
-                
-                g2d.drawImage(image, x, y, scaledWidth, scaledHeight, null);
-                g2d.dispose();
-                
-                ImageIcon icon = new ImageIcon(resized);
+                CacheEntry entry = new CacheEntry(image);
+                double scale = size == CARD_ICON_SIZE ? cardScale : 1.0;
+                BufferedImage variant = entry.variants(size).forScale(scale, scale);
+                commitIconPhase(scaleEvent, IconLoadEvent.PHASE_SCALE, iconUrl, data.length,
+                    variant.getWidth(), variant.getHeight(), false, true);
                 
                 // Cache the icon
-                cache.put(iconUrl, new CacheEntry(icon));
+                cache.put(iconUrl, entry);
+                softCache.remove(iconUrl);
                 
                 // Ensure cache doesn't grow too large
-                if (cache.size() > MAX_CACHE_SIZE) {
-                    cleanupOldestEntries();
+                int limit = capacity;
+                if (cache.size() > limit) {
+                    // Demote 20% of the oldest entries when the cache is full
+                    demoteOldest(limit - limit / 5);
                 }
                 
                 log.debug("Successfully cached icon for: {}", iconUrl);
-                return icon;
+                return entry;
             }
         } catch (IOException e) {
-            log.warn("Failed to load icon from: {}", iconUrl, e);
+            log.warn("Failed to decode icon from: {}", iconUrl, e);
         } catch (Exception e) {
-            log.error("Unexpected error loading icon from: {}", iconUrl, e);
+            log.error("Unexpected error decoding icon from: {}", iconUrl, e);
         }
         
         return null;
     }
     
+    private static void commitIconPhase(IconLoadEvent event, String phase, String url, long bytes,
+                                        int width, int height, boolean cacheHit, boolean success) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.url = url;
+            event.bytes = bytes;
+            event.width = width;
+            event.height = height;
+            event.cacheHit = cacheHit;
+            event.success = success;
+            event.commit();
+        }
+    }
+    
     /**
      * Schedule a callback to be executed in a batch to reduce repaint frequency
      */
@@ -173,7 +557,7 @@ public class IconCache {
                 batchRepaintScheduled = true;
                 
                 // Schedule the batch execution using existing executor
-                cleanupExecutor.schedule(() -> {
+                executors.scheduler().schedule(() -> {
                     SwingUtilities.invokeLater(() -> {
                         synchronized (batchLock) {
                             // Execute all pending callbacks
@@ -198,50 +582,171 @@ public class IconCache {
         }
     }
     
+    /**
+     * The cached entry for a URL from either tier. An entry found in the soft tier moves back to
+     * the strong one while there is room.
+     */
+    private CacheEntry lookup(String iconUrl) {
+        CacheEntry entry = cache.get(iconUrl);
+        if (entry != null) {
+            return entry;
+        }
+        SoftReference<CacheEntry> ref = softCache.get(iconUrl);
+        if (ref == null) {
+            return null;
+        }
+        entry = ref.get();
+        if (entry == null) {
+            // Collected since it was demoted
+            softCache.remove(iconUrl, ref);
+            return null;
+        }
+        if (cache.size() < capacity && softCache.remove(iconUrl, ref)) {
+            cache.put(iconUrl, entry);
+        }
+        return entry;
+    }
+    
+    /**
+     * Shrinks the strong tier to its floor while memory is tight and lets it grow back once it
+     * frees up. Called on the thread that noticed the change.
+     */
+    private void onMemoryPressure(MemoryPressureMonitor.Level level) {
+        if (level == MemoryPressureMonitor.Level.NORMAL) {
+            capacity = MAX_CACHE_SIZE;
+            log.debug("Memory pressure eased, icon cache may hold {} icons again", MAX_CACHE_SIZE);
+            return;
+        }
+        capacity = MIN_CACHE_SIZE;
+        demoteOldest(MIN_CACHE_SIZE);
+        if (level == MemoryPressureMonitor.Level.CRITICAL) {
+            int dropped = softCache.size();
+            softCache.clear();
+            // Cards copy their icons back in as they are painted
+            cardAtlases.values().forEach(IconAtlas::clear);
+            log.debug("Memory pressure critical, dropped {} softly held icons and the card atlases", dropped);
+        }
+    }
+    
+    private long estimateCacheBytes() {
+        long bytes = 0;
+        for (CacheEntry entry : cache.values()) {
+            bytes += entry.estimateBytes();
+        }
+        for (IconAtlas atlas : cardAtlases.values()) {
+            bytes += atlas.estimateBytes();
+        }
+        return bytes;
+    }
+    
+    private long countAtlasPages() {
+        long pages = 0;
+        for (IconAtlas atlas : cardAtlases.values()) {
+            pages += atlas.getPageCount();
+        }
+        return pages;
+    }
+    
     private void cleanupExpiredEntries() {
         long now = System.currentTimeMillis();
-        cache.entrySet().removeIf(entry -> 
-            now - entry.getValue().timestamp > TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS));
+        cache.entrySet().removeIf(entry -> isExpired(entry.getValue().timestamp));
+        softCache.entrySet().removeIf(entry -> {
+            CacheEntry soft = entry.getValue().get();
+            return soft == null || isExpired(soft.timestamp);
+        });
+        // By load time, which also covers sprites whose source was already evicted
+        long cutoff = now - TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS);
+        cardAtlases.values().forEach(atlas -> atlas.removeLoadedBefore(cutoff));
         
         log.debug("Cache cleanup completed. Current size: {}", cache.size());
     }
     
-    private void cleanupOldestEntries() {
-        // Remove 20% of oldest entries when cache is full
-        int entriesToRemove = MAX_CACHE_SIZE / 5;
+    private static boolean isExpired(long loadedAt) {
+        return System.currentTimeMillis() - loadedAt > TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS);
+    }
+    
+    /**
+     * Moves the oldest entries to the soft tier until at most {@code keep} are held strongly
+     */
+    private void demoteOldest(int keep) {
+        int entriesToDemote = cache.size() - keep;
+        if (entriesToDemote <= 0) {
+            return;
+        }
         
         cache.entrySet().stream()
             .sorted((e1, e2) -> Long.compare(e1.getValue().timestamp, e2.getValue().timestamp))
-            .limit(entriesToRemove)
-            .forEach(entry -> cache.remove(entry.getKey()));
+            .limit(entriesToDemote)
+            .forEach(entry -> {
+                if (cache.remove(entry.getKey(), entry.getValue())) {
+                    softCache.put(entry.getKey(), new SoftReference<>(entry.getValue()));
+                }
+            });
         
-        log.debug("Removed {} oldest cache entries. Current size: {}", entriesToRemove, cache.size());
+        log.debug("Demoted {} oldest cache entries. Current size: {}", entriesToDemote, cache.size());
     }
     
+    /**
+     * Stops the hourly cleanup and drops the cached icons. The pools belong to the plugin and
+     * are shut down with it.
+     */
     public void shutdown() {
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+        cleanupTask.cancel(false);
+        memoryPressure.removeListener(pressureListener);
         cache.clear();
+        softCache.clear();
+        cardAtlases.clear();
+        metrics.removeGauge(MetricsRegistry.ICON_CACHE_ENTRIES);
+        metrics.removeGauge(MetricsRegistry.ICON_CACHE_BYTES);
+        metrics.removeGauge(MetricsRegistry.ICON_CACHE_SOFT_ENTRIES);
+        metrics.removeGauge(MetricsRegistry.ICON_ATLAS_PAGES);
     }
     
+    /**
+     * The decoded source image of one URL and the scaled variants rendered from it, per logical
+     * size and device scale.
+     */
     private static class CacheEntry {
-        final ImageIcon icon;
+        final BufferedImage source;
         final long timestamp;
+        final ConcurrentHashMap<Integer, ScaledImageVariants> sizes = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, ImageIcon> icons = new ConcurrentHashMap<>();
         
-        CacheEntry(ImageIcon icon) {
-            this.icon = icon;
+        CacheEntry(BufferedImage source) {
+            this.source = source;
             this.timestamp = System.currentTimeMillis();
         }
         
+        ScaledImageVariants variants(int size) {
+            return sizes.computeIfAbsent(size, s -> new ScaledImageVariants(source, s, s, true));
+        }
+        
+        /**
+         * Copies the card variant for a scale into the atlas, then drops it since the atlas
+         * holds the pixels from then on
+         */
+        IconAtlas.Sprite copyToAtlas(IconAtlas atlas, String key, double scale) {
+            ScaledImageVariants card = variants(CARD_ICON_SIZE);
+            IconAtlas.Sprite sprite = atlas.put(key, card.forScale(scale, scale), timestamp);
+            sizes.remove(CARD_ICON_SIZE, card);
+            return sprite;
+        }
+        
+        ImageIcon icon(int size) {
+            return icons.computeIfAbsent(size, s -> new ImageIcon(variants(s)));
+        }
+        
+        long estimateBytes() {
+            // ARGB pixels, 4 bytes each
+            long bytes = (long) source.getWidth() * source.getHeight() * 4;
+            for (ScaledImageVariants variants : sizes.values()) {
+                bytes += variants.estimateVariantBytes();
+            }
+            return bytes;
+        }
+        
         boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS);
+            return IconCache.isExpired(timestamp);
         }
     }
 }
\ No newline at end of file
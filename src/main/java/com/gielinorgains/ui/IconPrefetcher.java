@@ -0,0 +1,203 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warms card icons ahead of the viewport so fast scrolling does not show placeholders.
+ *
+ * The grid reports which cards are visible as it scrolls. From that the prefetcher keeps a
+ * smoothed scroll velocity (cards per second) and queues the icons of the cards the viewport will
+ * reach within {@link #LOOKAHEAD_SECONDS}, nearest first, plus a couple behind. Only a few loads
+ * run at once. Queued icons that fall out of that window are dropped, and loads already running
+ * for them give up their slot to the new window and are withdrawn if they are not downloading yet.
+ */
+@Slf4j
+public class IconPrefetcher {
+    private static final int MIN_AHEAD = 4;
+    private static final int MAX_AHEAD = 40;
+    private static final int BEHIND = 2;
+    private static final double LOOKAHEAD_SECONDS = 0.6;
+    private static final double VELOCITY_SMOOTHING = 0.5;
+    private static final long IDLE_RESET_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MAX_IN_FLIGHT = 6;
+    
+    private final IconCache iconCache;
+    private final LongAdder issued;
+    private final LongAdder cancelled;
+    
+    private List<String> iconUrls = Collections.emptyList();
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new HashMap<>();
+    private int lastFirst = -1;
+    private long lastNanos;
+    private double velocity; // cards per second, negative when scrolling up
+    
+    public IconPrefetcher(IconCache iconCache, MetricsRegistry metrics) {
+        this.iconCache = iconCache;
+        this.issued = metrics.counter(MetricsRegistry.ICON_PREFETCH_ISSUED);
+        this.cancelled = metrics.counter(MetricsRegistry.ICON_PREFETCH_CANCELLED);
+    }
+    
+    /**
+     * Sets the icon URLs of the cards in display order. Pending prefetches are dropped. The icons
+     * are requested together where the API bundles them.
+     */
+    public synchronized void setIconUrls(List<String> urls) {
+        iconUrls = new ArrayList<>(urls);
+        cancelled.add(queue.size());
+        queue.clear();
+        withdrawAll();
+        iconCache.prefetchIcons(urls);
+        lastFirst = -1;
+        velocity = 0;
+    }
+    
+    /**
+     * Adds cards appended to the end of the grid, keeping the current scroll state.
+     */
+    public synchronized void appendIconUrls(List<String> urls) {
+        List<String> combined = new ArrayList<>(iconUrls);
+        combined.addAll(urls);
+        iconUrls = combined;
+        iconCache.prefetchIcons(urls);
+    }
+    
+    /**
+     * Called as the viewport moves with the first and last (inclusive) visible card indices.
+     */
+    public synchronized void onVisibleRange(int first, int last, long nowNanos) {
+        if (iconUrls.isEmpty() || last < first) {
+            return;
+        }
+        updateVelocity(first, nowNanos);
+        
+        int direction = velocity < 0 ? -1 : 1;
+        int ahead = (int) Math.min(MAX_AHEAD, MIN_AHEAD + Math.abs(velocity) * LOOKAHEAD_SECONDS);
+        
+        // Visible cards first (their paint may have lost the race), then ahead, then just behind
+        LinkedHashSet<String> wanted = new LinkedHashSet<>();
+        if (direction > 0) {
+            addRange(wanted, first, last, 1);
+            addRange(wanted, last + 1, last + ahead, 1);
+            addRange(wanted, first - 1, first - BEHIND, -1);
+        } else {
+            addRange(wanted, last, first, -1);
+            addRange(wanted, first - 1, first - ahead, -1);
+            addRange(wanted, last + 1, last + BEHIND, 1);
+        }
+        
+        int dropped = 0;
+        for (String url : queue) {
+            if (!wanted.contains(url)) {
+                dropped++;
+            }
+        }
+        List<String> left = new ArrayList<>();
+        for (String url : inFlight.keySet()) {
+            if (!wanted.contains(url)) {
+                left.add(url);
+            }
+        }
+        inFlight.keySet().removeAll(left);
+        cancelled.add(dropped + left.size());
+        queue.clear();
+        for (String url : wanted) {
+            if (!inFlight.containsKey(url)) {
+                queue.add(url);
+            }
+        }
+        // After the queue is rebuilt, since a withdrawn load completes and dispatches right away
+        for (String url : left) {
+            iconCache.cancelPrefetch(url);
+        }
+        dispatch();
+    }
+    
+    public synchronized void clear() {
+        cancelled.add(queue.size());
+        queue.clear();
+        withdrawAll();
+        iconUrls = Collections.emptyList();
+    }
+    
+    private void withdrawAll() {
+        List<String> left = new ArrayList<>(inFlight.keySet());
+        inFlight.clear();
+        cancelled.add(left.size());
+        for (String url : left) {
+            iconCache.cancelPrefetch(url);
+        }
+    }
+    
+    /**
+     * Updates the velocity when the first visible card changes; small scrolls within a card
+     * accumulate until it does.
+     */
+    private void updateVelocity(int first, long nowNanos) {
+        if (lastFirst < 0) {
+            lastFirst = first;
+            lastNanos = nowNanos;
+            return;
+        }
+        
+        long elapsed = Math.max(1, nowNanos - lastNanos);
+        if (first == lastFirst) {
+            if (elapsed > IDLE_RESET_NANOS) {
+                velocity = 0;
+            }
+            return;
+        }
+        
+        double instant = (first - lastFirst) * 1e9 / elapsed;
+        velocity = elapsed > IDLE_RESET_NANOS
+            ? instant
+            : VELOCITY_SMOOTHING * instant + (1 - VELOCITY_SMOOTHING) * velocity;
+        lastFirst = first;
+        lastNanos = nowNanos;
+    }
+    
+    private void addRange(Set<String> wanted, int from, int to, int step) {
+        for (int i = from; step > 0 ? i <= to : i >= to; i += step) {
+            if (i < 0 || i >= iconUrls.size()) {
+                return;
+            }
+            String url = iconUrls.get(i);
+            if (url != null && !url.isEmpty() && !iconCache.isCached(url)) {
+                wanted.add(url);
+            }
+        }
+    }
+    
+    private void dispatch() {
+        while (inFlight.size() < MAX_IN_FLIGHT && !queue.isEmpty()) {
+            String url = queue.poll();
+            if (iconCache.isCached(url) || inFlight.containsKey(url)) {
+                continue;
+            }
+            issued.increment();
+            CompletableFuture<Boolean> load = iconCache.prefetchIcon(url);
+            inFlight.put(url, load);
+            load.whenComplete((icon, error) -> onLoaded(url, load));
+        }
+    }
+    
+    private synchronized void onLoaded(String url, CompletableFuture<Boolean> load) {
+        // A withdrawn load no longer holds a slot, and the icon may have been issued again since
+        if (inFlight.remove(url, load)) {
+            dispatch();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.gielinorgains.ui;
 
+import com.gielinorgains.diagnostics.CardPaintEvent;
+import com.gielinorgains.diagnostics.EdtSection;
 import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.util.PriceFormatter;
 import com.gielinorgains.util.ScoreFormatter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.ui.ColorScheme;
@@ -13,6 +16,7 @@ import java.awt.event.MouseWheelEvent;
 import javax.swing.SwingUtilities;
 import java.awt.geom.RoundRectangle2D;
 import java.net.URI;
+import java.util.function.Consumer;
 
 @Slf4j
 public class ItemCardPanel extends JPanel {
@@ -30,6 +34,7 @@ public class ItemCardPanel extends JPanel {
     private static final Color PRICE_BG = new Color(55, 55, 65);       // Slightly lighter background
     private static final Color STATS_BG = new Color(55, 55, 65);       // Slightly lighter background
     private static final Color PROFIT_GOLD = new Color(255, 215, 0);   // Brighter gold
+    private static final Color HOVER_OVERLAY = new Color(255, 255, 255, 5);
     
     // Cached fonts for better performance
     private static final Font HEADER_FONT = new Font("SansSerif", Font.BOLD, 11);
@@ -49,25 +54,28 @@ public class ItemCardPanel extends JPanel {
         RENDERING_HINTS.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
     }
     
-    private final GainsItem item;
+    private GainsItem item;
     private final IconCache iconCache;
+    private final Consumer<GainsItem> onSelect;
+    private final Consumer<GainsItem> onHover;
     private boolean isHovered = false;
     
-    // Cache formatted values to avoid repeated computation
-    private final String formattedBuyPrice;
-    private final String formattedSellPrice;
-    private final String formattedProfit;
-    private final String formattedScore;
+    // Numbers are formatted straight into this buffer while painting, which only happens on the EDT
+    private static final char[] PAINT_CHARS = new char[PriceFormatter.MAX_CHARS];
     
     public ItemCardPanel(GainsItem item, IconCache iconCache) {
+        this(item, iconCache, null, null);
+    }
+    
+    /**
+     * @param onSelect called when the card is clicked; null opens the wiki page instead
+     * @param onHover  called when the pointer enters the card, e.g. to prefetch detail data
+     */
+    public ItemCardPanel(GainsItem item, IconCache iconCache, Consumer<GainsItem> onSelect, Consumer<GainsItem> onHover) {
         this.item = item;
         this.iconCache = iconCache;
-        
-        // Pre-compute and cache formatted values
-        this.formattedBuyPrice = formatFullPrice(item.getAdjustedLowPrice());
-        this.formattedSellPrice = formatFullPrice(item.getAdjustedHighPrice());
-        this.formattedProfit = formatPrice(item.getProfit());
-        this.formattedScore = String.format("%.1f", item.getScore());
+        this.onSelect = onSelect;
+        this.onHover = onHover;
         
         setPreferredSize(new Dimension(CARD_WIDTH, CARD_HEIGHT));
         setMinimumSize(new Dimension(CARD_WIDTH, CARD_HEIGHT));
@@ -88,6 +96,9 @@ public class ItemCardPanel extends JPanel {
             public void mouseEntered(MouseEvent e) {
                 isHovered = true;
                 repaint();
+                if (onHover != null) {
+                    onHover.accept(item);
+                }
             }
             
             @Override
@@ -99,7 +110,11 @@ public class ItemCardPanel extends JPanel {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 1) {
-                    openWikiPage();
+                    if (onSelect != null) {
+                        onSelect.accept(item);
+                    } else {
+                        openWikiPage();
+                    }
                 }
             }
             
@@ -124,6 +139,33 @@ public class ItemCardPanel extends JPanel {
     
     @Override
     protected void paintComponent(Graphics g) {
+        EdtSection.enter();
+        try {
+            if (CardPaintEvent.sampleNext()) {
+                paintCardSampled(g);
+            } else {
+                paintCard(g);
+            }
+        } finally {
+            EdtSection.exit();
+        }
+    }
+    
+    private void paintCardSampled(Graphics g) {
+        CardPaintEvent event = new CardPaintEvent();
+        event.begin();
+        paintCard(g);
+        event.end();
+        if (event.shouldCommit()) {
+            event.itemId = item.getId();
+            event.iconCached = iconCache.isCached(item.getIcon());
+            event.hovered = isHovered;
+            event.sampleInterval = CardPaintEvent.SAMPLE_INTERVAL;
+            event.commit();
+        }
+    }
+    
+    private void paintCard(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g.create();
         
@@ -145,7 +187,7 @@ public class ItemCardPanel extends JPanel {
             
             // Draw hover effect (slight elevation simulation)
             if (isHovered) {
-                g2.setColor(new Color(255, 255, 255, 5));
+                g2.setColor(HOVER_OVERLAY);
                 g2.fill(cardShape);
             }
             
@@ -171,14 +213,14 @@ public class ItemCardPanel extends JPanel {
     }
     
     private int drawHeader(Graphics2D g2, int startY) {
-        int iconSize = 20;
+        int iconSize = IconCache.CARD_ICON_SIZE;
         int x = PADDING;
         int y = startY;
         
-        // Draw item icon with callback to repaint when loaded (high priority for visible cards)
-        ImageIcon icon = iconCache.getIcon(item.getIcon(), this::repaint, true);
+        // Draw item icon with callback to repaint when loaded; blitted at device resolution
+        IconAtlas.Sprite icon = iconCache.getCardIcon(item.getIcon(), ScaledImageVariants.deviceScale(g2), this::repaint);
         if (icon != null) {
-            g2.drawImage(icon.getImage(), x, y, iconSize, iconSize, null);
+            icon.drawAligned(g2, x, y);
         } else {
             // Placeholder if icon not loaded
             g2.setColor(ColorScheme.MEDIUM_GRAY_COLOR);
@@ -187,7 +229,7 @@ public class ItemCardPanel extends JPanel {
         
         // Item name with wrapping
         g2.setColor(TEXT_PRIMARY);
-        g2.setFont(new Font("SansSerif", Font.BOLD, 11));
+        g2.setFont(HEADER_FONT);
         FontMetrics fm = g2.getFontMetrics();
         
         // Score indicator (colored dot + score text) - position first to reserve space
@@ -201,7 +243,7 @@ public class ItemCardPanel extends JPanel {
         // Score text
         g2.setColor(TEXT_SECONDARY);
         g2.setFont(SCORE_FONT);
-        g2.drawString(formattedScore, scoreX + 12, y + 12);
+        g2.drawString(ScoreFormatter.getScoreText(item.getScore()), scoreX + 12, y + 12);
         
         // Draw item name with wrapping support
         g2.setColor(TEXT_PRIMARY);
@@ -233,7 +275,7 @@ public class ItemCardPanel extends JPanel {
         
         g2.setColor(TEXT_PRIMARY);
         g2.setFont(PRICE_VALUE_FONT);
-        g2.drawString(formattedBuyPrice, x + sectionWidth - 8 - g2.getFontMetrics().stringWidth(formattedBuyPrice), y + 14);
+        drawRightAligned(g2, PriceFormatter.appendGrouped(PAINT_CHARS, 0, item.getAdjustedLowPrice()), x + sectionWidth - 8, y + 14);
         
         // Sell price
         g2.setColor(TEXT_SECONDARY);
@@ -242,7 +284,7 @@ public class ItemCardPanel extends JPanel {
         
         g2.setColor(TEXT_PRIMARY);
         g2.setFont(PRICE_VALUE_FONT);
-        g2.drawString(formattedSellPrice, x + sectionWidth - 8 - g2.getFontMetrics().stringWidth(formattedSellPrice), y + 30);
+        drawRightAligned(g2, PriceFormatter.appendGrouped(PAINT_CHARS, 0, item.getAdjustedHighPrice()), x + sectionWidth - 8, y + 30);
         
         return y + sectionHeight + 8;
     }
@@ -264,7 +306,7 @@ public class ItemCardPanel extends JPanel {
         
         g2.setColor(TEXT_PRIMARY);
         g2.setFont(PROFIT_FONT);
-        g2.drawString(formattedProfit, x + sectionWidth - 8 - g2.getFontMetrics().stringWidth(formattedProfit), y + 18);
+        drawRightAligned(g2, PriceFormatter.appendAbbreviated(PAINT_CHARS, 0, item.getProfit()), x + sectionWidth - 8, y + 18);
         
         // Quantity
         g2.setColor(TEXT_SECONDARY);
@@ -273,25 +315,17 @@ public class ItemCardPanel extends JPanel {
         
         g2.setColor(TEXT_PRIMARY);
         g2.setFont(STATS_VALUE_FONT);
-        String qtyText = String.valueOf(item.getQuantity());
-        g2.drawString(qtyText, x + sectionWidth - 8 - g2.getFontMetrics().stringWidth(qtyText), y + 38);
+        drawRightAligned(g2, PriceFormatter.appendPlain(PAINT_CHARS, 0, item.getQuantity()), x + sectionWidth - 8, y + 38);
         
         return y + sectionHeight;
     }
     
-    private String formatPrice(int price) {
-        if (price >= 1000000) {
-            return String.format("%.1fM", price / 1000000.0);
-        } else if (price >= 1000) {
-            return String.format("%.1fK", price / 1000.0);
-        }
-        return String.valueOf(price);
-    }
-
-    private String formatFullPrice(int price) {
-        java.text.NumberFormat nf = java.text.NumberFormat.getIntegerInstance(java.util.Locale.US);
-        nf.setGroupingUsed(true);
-        return nf.format(price);
+    /**
+     * Draws the first {@code length} chars of {@link #PAINT_CHARS} ending at {@code rightX}
+     */
+    private static void drawRightAligned(Graphics2D g2, int length, int rightX, int y) {
+        int width = g2.getFontMetrics().charsWidth(PAINT_CHARS, 0, length);
+        g2.drawChars(PAINT_CHARS, 0, length, rightX - width, y);
     }
     
     private String truncateText(String text, FontMetrics fm, int maxWidth) {
@@ -363,6 +397,14 @@ public class ItemCardPanel extends JPanel {
         return item;
     }
     
+    /**
+     * Shows a newer copy of the same item, e.g. after a price update, and repaints
+     */
+    public void setItem(GainsItem item) {
+        this.item = item;
+        repaint();
+    }
+    
     @Override
     public boolean contains(int x, int y) {
         // For macOS touch scrolling, we want to be transparent to scroll events
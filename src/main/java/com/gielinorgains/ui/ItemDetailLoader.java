@@ -0,0 +1,89 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.history.PriceHistoryStore;
+import com.gielinorgains.history.PriceSeries;
+import com.gielinorgains.model.GainsItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads what the item detail view needs beyond the card data: the large icon and the item's
+ * local price history. Hovering a card calls {@link #prefetch} so both are usually ready by the
+ * time the card is clicked. History reads are cached briefly per item.
+ */
+@Slf4j
+class ItemDetailLoader {
+    private static final long HISTORY_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final long HISTORY_CACHE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final int MAX_CACHED_SERIES = 16;
+    
+    private final IconCache iconCache;
+    private final PriceHistoryStore historyStore;
+    private final GainsExecutors executors;
+    private final Map<Integer, CachedSeries> historyCache = new LinkedHashMap<Integer, CachedSeries>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CachedSeries> eldest) {
+            return size() > MAX_CACHED_SERIES;
+        }
+    };
+    
+    ItemDetailLoader(IconCache iconCache, PriceHistoryStore historyStore, GainsExecutors executors) {
+        this.iconCache = iconCache;
+        this.historyStore = historyStore;
+        this.executors = executors;
+    }
+    
+    void prefetch(GainsItem item) {
+        iconCache.prefetchDetailIcon(detailIconUrl(item));
+        loadHistory(item);
+    }
+    
+    /**
+     * Completes with the item's history, or null if there is no store or the id is not numeric.
+     * Completes on a decode thread.
+     */
+    CompletableFuture<PriceSeries> loadHistory(GainsItem item) {
+        int itemId = item.numericId();
+        if (historyStore == null || itemId < 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        long now = System.currentTimeMillis();
+        synchronized (historyCache) {
+            CachedSeries cached = historyCache.get(itemId);
+            if (cached != null && now - cached.loadedAt < HISTORY_CACHE_MILLIS) {
+                return cached.series;
+            }
+            
+            CompletableFuture<PriceSeries> series = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                PriceSeries result = historyStore.readRange(itemId, now - HISTORY_WINDOW_MILLIS, now);
+                log.debug("Read {} history points for item {} in {}us", result.size(), itemId,
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                return result;
+            }, executors.decode());
+            historyCache.put(itemId, new CachedSeries(series, now));
+            return series;
+        }
+    }
+    
+    static String detailIconUrl(GainsItem item) {
+        String url = item.getDetailIcon();
+        return url != null && !url.isEmpty() ? url : item.getIcon();
+    }
+    
+    private static class CachedSeries {
+        final CompletableFuture<PriceSeries> series;
+        final long loadedAt;
+        
+        CachedSeries(CompletableFuture<PriceSeries> series, long loadedAt) {
+            this.series = series;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.history.PriceSeries;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.trading.FlipJournal;
+import com.gielinorgains.trading.TradeStats;
+import com.gielinorgains.util.PriceFormatter;
+import com.gielinorgains.util.ScoreFormatter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.ui.ColorScheme;
+
+import javax.swing.*;
+import java.awt.*;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * In-panel detail view for one item, opened by clicking its card. Shows the fields the cards
+ * leave out, the large icon (loaded on first use) and a price chart built from local history,
+ * or from the API sparkline until enough history has been recorded.
+ */
+@Slf4j
+public class ItemDetailPanel extends JPanel {
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 13);
+    private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 10);
+    private static final Font VALUE_FONT = new Font("Monospaced", Font.BOLD, 10);
+    private static final int ICON_BOX = IconCache.DETAIL_ICON_SIZE;
+    
+    private final IconCache iconCache;
+    private final ItemDetailLoader loader;
+    private final FlipJournal journal;
+    private final JLabel iconLabel = new JLabel();
+    private final JLabel nameLabel = new JLabel();
+    private final JLabel scoreLabel = new JLabel();
+    private final JPanel statsPanel = new JPanel(new GridLayout(0, 2, 4, 2));
+    private final JTextArea reasoningArea = new JTextArea();
+    private final PriceChartPanel chart = new PriceChartPanel();
+    private GainsItem item;
+    
+    public ItemDetailPanel(IconCache iconCache, ItemDetailLoader loader, FlipJournal journal, Runnable onBack) {
+        this.iconCache = iconCache;
+        this.loader = loader;
+        this.journal = journal;
+        
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        setBackground(ColorScheme.DARK_GRAY_COLOR);
+        setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        
+        JPanel topRow = new JPanel(new BorderLayout());
+        topRow.setOpaque(false);
+        JButton backButton = new JButton("< Back");
+        backButton.setFocusPainted(false);
+        backButton.addActionListener(e -> onBack.run());
+        JButton wikiButton = new JButton("Wiki");
+        wikiButton.setFocusPainted(false);
+        wikiButton.setToolTipText("Open the item on the OSRS Wiki");
+        wikiButton.addActionListener(e -> openWikiPage());
+        topRow.add(backButton, BorderLayout.WEST);
+        topRow.add(wikiButton, BorderLayout.EAST);
+        addRow(topRow);
+        add(Box.createVerticalStrut(8));
+        
+        JPanel header = new JPanel(new BorderLayout(8, 0));
+        header.setOpaque(false);
+        iconLabel.setPreferredSize(new Dimension(ICON_BOX, ICON_BOX));
+        iconLabel.setOpaque(true);
+        iconLabel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        nameLabel.setForeground(Color.WHITE);
+        nameLabel.setFont(TITLE_FONT);
+        scoreLabel.setFont(VALUE_FONT);
+        JPanel titles = new JPanel(new GridLayout(2, 1));
+        titles.setOpaque(false);
+        titles.add(nameLabel);
+        titles.add(scoreLabel);
+        header.add(iconLabel, BorderLayout.WEST);
+        header.add(titles, BorderLayout.CENTER);
+        addRow(header);
+        add(Box.createVerticalStrut(8));
+        
+        addRow(chart);
+        add(Box.createVerticalStrut(8));
+        
+        statsPanel.setOpaque(false);
+        addRow(statsPanel);
+        add(Box.createVerticalStrut(6));
+        
+        reasoningArea.setEditable(false);
+        reasoningArea.setLineWrap(true);
+        reasoningArea.setWrapStyleWord(true);
+        reasoningArea.setFont(LABEL_FONT);
+        reasoningArea.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        reasoningArea.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        reasoningArea.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        addRow(reasoningArea);
+    }
+    
+    private void addRow(JComponent component) {
+        component.setAlignmentX(Component.LEFT_ALIGNMENT);
+        add(component);
+    }
+    
+    /**
+     * Shows an item. The large icon and history arrive asynchronously and are only applied if
+     * the same item is still shown.
+     */
+    public void showItem(GainsItem item) {
+        this.item = item;
+        
+        nameLabel.setText(item.getName());
+        scoreLabel.setText(String.format(Locale.US, "Score %.2f", item.getScore()));
+        scoreLabel.setForeground(ScoreFormatter.getScoreColor(item.getScore()));
+        
+        String iconUrl = ItemDetailLoader.detailIconUrl(item);
+        ImageIcon icon = iconCache.getDetailIcon(iconUrl, () -> {
+            if (this.item == item) {
+                iconLabel.setIcon(iconCache.getDetailIcon(iconUrl, null));
+            }
+        });
+        iconLabel.setIcon(icon);
+        
+        populateStats(item);
+        
+        String reasoning = item.getQuantityReasoning();
+        reasoningArea.setText(reasoning != null ? reasoning : "");
+        reasoningArea.setVisible(reasoning != null && !reasoning.isEmpty());
+        
+        showSparkline(item.getSparklineData());
+        loader.loadHistory(item).thenAccept(series -> SwingUtilities.invokeLater(() -> {
+            if (this.item == item && series != null && series.size() >= 2) {
+                showHistory(series);
+            }
+        }));
+        
+        revalidate();
+        repaint();
+    }
+    
+    private void populateStats(GainsItem item) {
+        statsPanel.removeAll();
+        addStat("Buy", formatGp(item.getAdjustedLowPrice()));
+        addStat("Sell", formatGp(item.getAdjustedHighPrice()));
+        addStat("Profit", formatGp(item.getProfit()));
+        addStat("ROI", String.format(Locale.US, "%.2f%%", item.getAdjustedRoi()));
+        addStat("Quantity", item.getQuantityConfidence() != null
+            ? item.getQuantity() + " (" + item.getQuantityConfidence() + ")"
+            : String.valueOf(item.getQuantity()));
+        addStat("Buy limit", item.getLimit() != null ? formatGp(item.getLimit()) : "-");
+        addStat("Daily volume", formatGp(item.getDailyVolume()));
+        addStat("RSI", formatOptional(item.getRsi(), "%.1f"));
+        addStat("ROC", formatOptional(item.getRoc(), "%.2f%%"));
+        addStat("Buy support", formatOptional(item.getBuyVolumeSupport(), "%.2f"));
+        addStat("Sell support", formatOptional(item.getSellVolumeSupport(), "%.2f"));
+        if (item.getLimitingFactor() != null) {
+            addStat("Limited by", item.getLimitingFactor());
+        }
+        if (item.getTimeframe() != null) {
+            addStat("Timeframe", item.getTimeframe());
+        }
+        
+        // The player's own results from the flip journal
+        TradeStats trades = journal.getStats(item.numericId());
+        if (trades != null && trades.getTrades() > 0) {
+            addStat("Your profit", formatGp(trades.getRealizedProfit()));
+            addStat("Your flips", String.format(Locale.US, "%d, %.0f%% hit", trades.getTrades(),
+                trades.getHitRate() * 100));
+            addStat("Time in trade", TradeStats.formatDuration(trades.getAverageHoldMillis()));
+        }
+    }
+    
+    private void addStat(String name, String value) {
+        JLabel label = new JLabel(name);
+        label.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        label.setFont(LABEL_FONT);
+        statsPanel.add(label);
+        
+        JLabel valueLabel = new JLabel(value);
+        valueLabel.setForeground(Color.WHITE);
+        valueLabel.setFont(VALUE_FONT);
+        valueLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+        statsPanel.add(valueLabel);
+    }
+    
+    private void showSparkline(List<Double> sparkline) {
+        if (sparkline == null || sparkline.size() < 2) {
+            chart.clear();
+            return;
+        }
+        double[] xs = new double[sparkline.size()];
+        double[] ys = new double[sparkline.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i;
+            Double value = sparkline.get(i);
+            ys[i] = value != null ? value : Double.NaN;
+        }
+        chart.setSeries(xs, ys, null, false, "Trend");
+    }
+    
+    private void showHistory(PriceSeries series) {
+        int size = series.size();
+        double[] xs = new double[size];
+        double[] lows = new double[size];
+        double[] highs = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = series.getTime(i);
+            lows[i] = series.getLowPrice(i);
+            highs[i] = series.getHighPrice(i);
+        }
+        chart.setSeries(xs, lows, highs, true, "Buy / sell");
+    }
+    
+    private void openWikiPage() {
+        if (item == null) {
+            return;
+        }
+        try {
+            String encodedName = item.getName().replace(" ", "_");
+            Desktop.getDesktop().browse(URI.create("https://oldschool.runescape.wiki/w/" + encodedName));
+        } catch (Exception e) {
+            log.error("Failed to open wiki page for item: {}", item.getName(), e);
+        }
+    }
+    
+    private static String formatGp(long value) {
+        return PriceFormatter.formatGrouped(value);
+    }
+    
+    private static String formatOptional(Double value, String format) {
+        return value != null ? String.format(Locale.US, format, value) : "-";
+    }
+}
@@ -0,0 +1,170 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.PluginPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Sidebar panel that stands in for the real one until it is first opened, so registering the
+ * navigation button costs next to nothing. The content is built on the EDT by {@code factory}
+ * when the panel is first shown (or prefetched), and handed to {@code releaser} once the panel
+ * has stayed hidden for {@code releaseAfterMillis}; opening it again builds a fresh one.
+ *
+ * Everything here runs on the EDT except {@link #isBuilt} and {@link #prefetch}.
+ */
+@Slf4j
+public class LazyPluginPanel<T extends JComponent> extends PluginPanel {
+    private final Supplier<T> factory;
+    private final Consumer<T> releaser;
+    private final GainsExecutors executors;
+    private final long releaseAfterMillis;
+    private final LongConsumer onBuilt;
+    
+    private T content;
+    private boolean active;
+    private ScheduledFuture<?> releaseTask;
+    private volatile boolean built;
+    
+    /**
+     * @param releaseAfterMillis how long the panel may stay hidden before its content is
+     *                           released; zero or less keeps it for good
+     * @param onBuilt            told how many nanoseconds each build took
+     */
+    public LazyPluginPanel(Supplier<T> factory, Consumer<T> releaser, GainsExecutors executors,
+                           long releaseAfterMillis, LongConsumer onBuilt) {
+        this.factory = factory;
+        this.releaser = releaser;
+        this.executors = executors;
+        this.releaseAfterMillis = releaseAfterMillis;
+        this.onBuilt = onBuilt;
+        
+        setLayout(new BorderLayout());
+        setBackground(ColorScheme.DARK_GRAY_COLOR);
+        // The content brings its own padding
+        setBorder(BorderFactory.createEmptyBorder());
+    }
+    
+    @Override
+    public void onActivate() {
+        active = true;
+        cancelRelease();
+        ensureBuilt();
+        if (content instanceof PluginPanel) {
+            ((PluginPanel) content).onActivate();
+        }
+    }
+    
+    @Override
+    public void onDeactivate() {
+        active = false;
+        if (content instanceof PluginPanel) {
+            ((PluginPanel) content).onDeactivate();
+        }
+        scheduleRelease();
+    }
+    
+    /**
+     * Builds the content now if it has not been built yet
+     */
+    public void ensureBuilt() {
+        if (content != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        content = factory.get();
+        add(content, BorderLayout.CENTER);
+        revalidate();
+        repaint();
+        built = true;
+        long nanos = System.nanoTime() - start;
+        log.debug("Built panel content in {}ms", TimeUnit.NANOSECONDS.toMillis(nanos));
+        onBuilt.accept(nanos);
+    }
+    
+    /**
+     * Builds the content ahead of the panel being opened, e.g. once the client has settled after
+     * startup. Content built this way is released like any other if the panel stays closed.
+     * May be called from any thread.
+     */
+    public void prefetch() {
+        SwingUtilities.invokeLater(() -> {
+            if (content != null) {
+                return;
+            }
+            log.debug("Prefetching panel content");
+            ensureBuilt();
+            if (!active) {
+                scheduleRelease();
+            }
+        });
+    }
+    
+    public boolean isBuilt() {
+        return built;
+    }
+    
+    /**
+     * Runs {@code action} on the content if it has been built. A panel built later reads the
+     * config afresh, so changes made before then need not be replayed.
+     */
+    public void ifBuilt(Consumer<T> action) {
+        if (content != null) {
+            action.accept(content);
+        }
+    }
+    
+    /**
+     * Releases the content, if any, and stops any pending release
+     */
+    public void shutdown() {
+        cancelRelease();
+        release();
+    }
+    
+    private void scheduleRelease() {
+        if (releaseAfterMillis <= 0 || content == null) {
+            return;
+        }
+        cancelRelease();
+        try {
+            releaseTask = executors.scheduler().schedule(() -> SwingUtilities.invokeLater(() -> {
+                if (!active) {
+                    log.debug("Panel hidden for {}ms, releasing its content", releaseAfterMillis);
+                    release();
+                }
+            }), releaseAfterMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; shutdown() releases the content
+        }
+    }
+    
+    private void cancelRelease() {
+        if (releaseTask != null) {
+            releaseTask.cancel(false);
+            releaseTask = null;
+        }
+    }
+    
+    private void release() {
+        if (content == null) {
+            return;
+        }
+        T released = content;
+        content = null;
+        built = false;
+        remove(released);
+        revalidate();
+        repaint();
+        releaser.accept(released);
+    }
+}
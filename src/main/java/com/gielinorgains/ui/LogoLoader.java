@@ -11,27 +11,32 @@ import java.io.InputStream;
 
 @Slf4j
 public class LogoLoader {
-    private static BufferedImage cachedLogo = null;
+    private static ScaledImageVariants cachedLogo = null;
     private static final int LOGO_WIDTH = 90;
     private static final int LOGO_HEIGHT = 32;
+    // The fallback text logo is drawn at this multiple so HiDPI variants stay sharp
+    private static final int FALLBACK_SCALE = 3;
     
     /**
-     * Loads and returns the Gielinor Gains logo, scaled appropriately for the UI.
-     * The logo is cached after first load for performance.
+     * Returns the Gielinor Gains logo at its logical 1x size.
      */
     public static BufferedImage getLogo() {
-        if (cachedLogo == null) {
-            cachedLogo = loadLogoFromResources();
-        }
-        return cachedLogo;
+        return getLogoVariants().getResolutionVariant(LOGO_WIDTH, LOGO_HEIGHT);
     }
     
     /**
-     * Returns the logo as an ImageIcon for use in Swing components.
+     * Returns the logo as an ImageIcon for use in Swing components. The icon is multi-resolution:
+     * each display scale gets a variant rendered once from the original image.
      */
     public static ImageIcon getLogoIcon() {
-        BufferedImage logo = getLogo();
-        return logo != null ? new ImageIcon(logo) : null;
+        return new ImageIcon(getLogoVariants());
+    }
+    
+    private static synchronized ScaledImageVariants getLogoVariants() {
+        if (cachedLogo == null) {
+            cachedLogo = new ScaledImageVariants(loadLogoFromResources(), LOGO_WIDTH, LOGO_HEIGHT, false);
+        }
+        return cachedLogo;
     }
     
     private static BufferedImage loadLogoFromResources() {
@@ -46,29 +51,9 @@ public class LogoLoader {
                 logoStream.close();
                 
                 if (originalLogo != null) {
-                    // Scale the logo to appropriate size for the header
-                    BufferedImage scaledLogo = new BufferedImage(LOGO_WIDTH, LOGO_HEIGHT, BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D g2d = scaledLogo.createGraphics();
-                    g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                    g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                    
-                    // Calculate scaling to preserve aspect ratio
-                    double scaleX = (double) LOGO_WIDTH / originalLogo.getWidth();
-                    double scaleY = (double) LOGO_HEIGHT / originalLogo.getHeight();
-                    double scale = Math.min(scaleX, scaleY);
-                    
-                    int scaledWidth = (int) (originalLogo.getWidth() * scale);
-                    int scaledHeight = (int) (originalLogo.getHeight() * scale);
-                    int x = (LOGO_WIDTH - scaledWidth) / 2;
-                    int y = (LOGO_HEIGHT - scaledHeight) / 2;
-                    
-                    // Draw the logo scaled to fit with preserved aspect ratio
-                    g2d.drawImage(originalLogo, x, y, scaledWidth, scaledHeight, null);
-                    g2d.dispose();
-                    
-                    log.debug("Successfully loaded and scaled Gielinor Gains logo");
-                    return scaledLogo;
+                    // Keep the original; variants are scaled from it per display scale
+                    log.debug("Successfully loaded Gielinor Gains logo");
+                    return originalLogo;
                 }
             }
         } catch (IOException e) {
@@ -84,8 +69,10 @@ public class LogoLoader {
      * Creates a simple text-based logo as fallback when the image can't be loaded.
      */
     private static BufferedImage createFallbackLogo() {
-        BufferedImage fallbackLogo = new BufferedImage(LOGO_WIDTH, LOGO_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage fallbackLogo = new BufferedImage(LOGO_WIDTH * FALLBACK_SCALE, LOGO_HEIGHT * FALLBACK_SCALE,
+            BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = fallbackLogo.createGraphics();
+        g2d.scale(FALLBACK_SCALE, FALLBACK_SCALE);
         
         // Enable antialiasing
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -136,7 +123,7 @@ public class LogoLoader {
      * Clears the cached logo, forcing it to be reloaded on next access.
      * Useful for testing or if logo resources change.
      */
-    public static void clearCache() {
+    public static synchronized void clearCache() {
         cachedLogo = null;
     }
 }
\ No newline at end of file
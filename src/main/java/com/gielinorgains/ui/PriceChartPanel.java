@@ -0,0 +1,262 @@
+package com.gielinorgains.ui;
+
+import com.gielinorgains.diagnostics.EdtSection;
+import com.gielinorgains.util.SeriesDownsampler;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+/**
+ * Price chart for the item detail view. Draws up to two series (buy and sell price) downsampled
+ * to one column per pixel. Scroll to zoom around the cursor, drag to pan, double-click to reset.
+ * Scrolling past the closest or widest zoom scrolls the view the chart sits in instead.
+ */
+public class PriceChartPanel extends JComponent {
+    private static final int CHART_HEIGHT = 140;
+    private static final int INSET = 4;
+    private static final int LABEL_HEIGHT = 12;
+    private static final double ZOOM_STEP = 1.25;
+    private static final int MIN_VISIBLE_POINTS = 4;
+    
+    private static final Color CHART_BG = new Color(45, 45, 45);
+    private static final Color GRID_COLOR = new Color(70, 70, 80);
+    private static final Color LOW_COLOR = new Color(0x22, 0xc5, 0x5e);
+    private static final Color HIGH_COLOR = new Color(0xf5, 0x9e, 0x0b);
+    private static final Color TEXT_COLOR = new Color(200, 200, 200);
+    private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 9);
+    
+    private double[] xs = new double[0];
+    private double[] lows = new double[0];
+    private double[] highs;
+    private boolean timeAxis;
+    private String caption = "";
+    private double viewFrom;
+    private double viewTo;
+    private int dragStartX;
+    private double dragStartFrom;
+    
+    public PriceChartPanel() {
+        setPreferredSize(new Dimension(0, CHART_HEIGHT));
+        setOpaque(true);
+        
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (!zoom(e.getPreciseWheelRotation(), e.getX()) && getParent() != null) {
+                    getParent().dispatchEvent(SwingUtilities.convertMouseEvent(PriceChartPanel.this, e, getParent()));
+                }
+            }
+            
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStartX = e.getX();
+                dragStartFrom = viewFrom;
+            }
+            
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                pan(e.getX() - dragStartX);
+            }
+            
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    resetZoom();
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+    
+    /**
+     * Replaces the plotted data. {@code xs} must be ascending; {@code highs} may be null for a
+     * single series. With {@code timeAxis} the x values are epoch millis.
+     */
+    public void setSeries(double[] xs, double[] lows, double[] highs, boolean timeAxis, String caption) {
+        this.xs = xs;
+        this.lows = lows;
+        this.highs = highs;
+        this.timeAxis = timeAxis;
+        this.caption = caption;
+        resetZoom();
+    }
+    
+    public void clear() {
+        setSeries(new double[0], new double[0], null, false, "");
+    }
+    
+    private void resetZoom() {
+        if (xs.length > 0) {
+            viewFrom = xs[0];
+            viewTo = xs[xs.length - 1];
+        }
+        repaint();
+    }
+    
+    /**
+     * @return false if the chart is already zoomed as far as it goes in that direction
+     */
+    private boolean zoom(double rotation, int mouseX) {
+        if (xs.length < 2) {
+            return false;
+        }
+        double fullSpan = xs[xs.length - 1] - xs[0];
+        double minSpan = fullSpan * MIN_VISIBLE_POINTS / xs.length;
+        double span = viewTo - viewFrom;
+        double newSpan = Math.max(minSpan, Math.min(fullSpan, span * Math.pow(ZOOM_STEP, rotation)));
+        // viewTo - viewFrom carries rounding, so a span already at a limit may differ by a few ulps
+        if (Math.abs(newSpan - span) <= minSpan * 1e-9) {
+            return false;
+        }
+        
+        // Keep the value under the cursor where it is
+        double fraction = Math.max(0, Math.min(1, (mouseX - INSET) / (double) plotWidth()));
+        double anchor = viewFrom + span * fraction;
+        setView(anchor - newSpan * fraction, newSpan);
+        return true;
+    }
+    
+    private void pan(int dx) {
+        double span = viewTo - viewFrom;
+        setView(dragStartFrom - dx * span / plotWidth(), span);
+    }
+    
+    private void setView(double from, double span) {
+        if (xs.length == 0) {
+            return;
+        }
+        double min = xs[0];
+        double max = xs[xs.length - 1];
+        from = Math.max(min, Math.min(max - span, from));
+        viewFrom = from;
+        viewTo = from + span;
+        repaint();
+    }
+    
+    private int plotWidth() {
+        return Math.max(1, getWidth() - INSET * 2);
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        EdtSection.enter();
+        try {
+            paintChart((Graphics2D) g);
+        } finally {
+            EdtSection.exit();
+        }
+    }
+    
+    private void paintChart(Graphics2D g2) {
+        g2.setColor(CHART_BG);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        g2.setFont(LABEL_FONT);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        
+        if (xs.length < 2) {
+            g2.setColor(TEXT_COLOR);
+            g2.drawString("No price history yet", INSET + 2, getHeight() / 2);
+            return;
+        }
+        
+        int plotX = INSET;
+        int plotY = INSET + LABEL_HEIGHT;
+        int width = plotWidth();
+        int height = Math.max(1, getHeight() - plotY - LABEL_HEIGHT - INSET);
+        
+        SeriesDownsampler.Columns lowColumns = SeriesDownsampler.downsample(xs, lows, xs.length, viewFrom, viewTo, width);
+        SeriesDownsampler.Columns highColumns = highs != null
+            ? SeriesDownsampler.downsample(xs, highs, xs.length, viewFrom, viewTo, width) : null;
+        
+        double yMin = Double.POSITIVE_INFINITY;
+        double yMax = Double.NEGATIVE_INFINITY;
+        for (SeriesDownsampler.Columns columns : new SeriesDownsampler.Columns[] {lowColumns, highColumns}) {
+            if (columns == null) {
+                continue;
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (!columns.isEmpty(i)) {
+                    yMin = Math.min(yMin, columns.min[i]);
+                    yMax = Math.max(yMax, columns.max[i]);
+                }
+            }
+        }
+        if (yMin > yMax) {
+            return;
+        }
+        if (yMax == yMin) {
+            yMax += 1;
+            yMin -= 1;
+        }
+        
+        g2.setColor(GRID_COLOR);
+        g2.drawLine(plotX, plotY, plotX + width, plotY);
+        g2.drawLine(plotX, plotY + height, plotX + width, plotY + height);
+        
+        drawColumns(g2, lowColumns, LOW_COLOR, plotX, plotY, height, yMin, yMax);
+        if (highColumns != null) {
+            drawColumns(g2, highColumns, HIGH_COLOR, plotX, plotY, height, yMin, yMax);
+        }
+        
+        g2.setColor(TEXT_COLOR);
+        g2.drawString(caption, plotX, plotY - 3);
+        drawRightAligned(g2, formatValue(yMax), plotX + width, plotY - 3);
+        drawRightAligned(g2, formatValue(yMin), plotX + width, plotY + height + LABEL_HEIGHT - 2);
+        g2.drawString(describeWindow(), plotX, plotY + height + LABEL_HEIGHT - 2);
+    }
+    
+    private static void drawColumns(Graphics2D g2, SeriesDownsampler.Columns columns, Color color,
+                                    int plotX, int plotY, int height, double yMin, double yMax) {
+        g2.setColor(color);
+        double scale = height / (yMax - yMin);
+        int previousY = Integer.MIN_VALUE;
+        int previousX = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.isEmpty(i)) {
+                continue;
+            }
+            int x = plotX + i;
+            int firstY = plotY + height - (int) Math.round((columns.first[i] - yMin) * scale);
+            if (previousY != Integer.MIN_VALUE) {
+                g2.drawLine(previousX, previousY, x, firstY);
+            }
+            int top = plotY + height - (int) Math.round((columns.max[i] - yMin) * scale);
+            int bottom = plotY + height - (int) Math.round((columns.min[i] - yMin) * scale);
+            g2.drawLine(x, top, x, bottom);
+            previousX = x;
+            previousY = plotY + height - (int) Math.round((columns.last[i] - yMin) * scale);
+        }
+    }
+    
+    private static void drawRightAligned(Graphics2D g2, String text, int right, int y) {
+        g2.drawString(text, right - g2.getFontMetrics().stringWidth(text), y);
+    }
+    
+    private String describeWindow() {
+        if (!timeAxis) {
+            return "Recent trend";
+        }
+        double hours = (viewTo - viewFrom) / 3_600_000.0;
+        if (hours >= 48) {
+            return String.format("%.1f days", hours / 24);
+        }
+        if (hours >= 1) {
+            return String.format("%.1f hours", hours);
+        }
+        return String.format("%.0f min", hours * 60);
+    }
+    
+    private static String formatValue(double value) {
+        if (Math.abs(value) >= 1_000_000) {
+            return String.format("%.2fM", value / 1_000_000);
+        } else if (Math.abs(value) >= 10_000) {
+            return String.format("%.1fK", value / 1_000);
+        }
+        return String.format("%,.0f", value);
+    }
+}
@@ -0,0 +1,161 @@
+package com.gielinorgains.ui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An image with a fixed logical size whose pixel variants are rendered from the source once per
+ * device scale and then reused.
+ *
+ * As a {@link java.awt.image.MultiResolutionImage} it can be handed to Swing (e.g. in an
+ * {@link javax.swing.ImageIcon}) and Java2D picks the variant for the screen's scale. Custom
+ * painting should use {@link #drawAligned} instead, which draws the matching variant in device
+ * space so the draw is a 1:1 blit with no scaling at paint time.
+ */
+public class ScaledImageVariants extends AbstractMultiResolutionImage {
+    private static final AffineTransform IDENTITY = new AffineTransform();
+    
+    private final BufferedImage source;
+    private final int width;
+    private final int height;
+    private final boolean pixelArt;
+    private final Map<Long, BufferedImage> variants = new ConcurrentHashMap<>();
+    
+    /**
+     * @param pixelArt keep hard edges when enlarging by whole factors (item sprites)
+     */
+    public ScaledImageVariants(BufferedImage source, int width, int height, boolean pixelArt) {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.pixelArt = pixelArt;
+    }
+    
+    /**
+     * Returns the variant for a device scale, rendering it the first time that scale is seen.
+     */
+    public BufferedImage forScale(double scaleX, double scaleY) {
+        return getResolutionVariant(width * scaleX, height * scaleY);
+    }
+    
+    @Override
+    public BufferedImage getResolutionVariant(double destWidth, double destHeight) {
+        int pixelWidth = Math.max(1, (int) Math.round(destWidth));
+        int pixelHeight = Math.max(1, (int) Math.round(destHeight));
+        long key = ((long) pixelWidth << 32) | pixelHeight;
+        return variants.computeIfAbsent(key, k -> render(pixelWidth, pixelHeight));
+    }
+    
+    @Override
+    public List<Image> getResolutionVariants() {
+        List<Image> list = new ArrayList<>(variants.values());
+        if (list.isEmpty()) {
+            list.add(getBaseImage());
+        }
+        return list;
+    }
+    
+    @Override
+    protected Image getBaseImage() {
+        return getResolutionVariant(width, height);
+    }
+    
+    @Override
+    public int getWidth(java.awt.image.ImageObserver observer) {
+        return width;
+    }
+    
+    @Override
+    public int getHeight(java.awt.image.ImageObserver observer) {
+        return height;
+    }
+    
+    public int getLogicalWidth() {
+        return width;
+    }
+    
+    public int getLogicalHeight() {
+        return height;
+    }
+    
+    /**
+     * Approximate memory held by the rendered variants, not counting the shared source.
+     */
+    public long estimateVariantBytes() {
+        long bytes = 0;
+        for (BufferedImage variant : variants.values()) {
+            bytes += (long) variant.getWidth() * variant.getHeight() * 4;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Draws at logical position {@code (x, y)} by blitting the device-resolution variant with an
+     * identity transform. Falls back to a normal draw under rotation or shear.
+     */
+    public void drawAligned(Graphics2D g2, int x, int y) {
+        AffineTransform transform = g2.getTransform();
+        if (transform.getShearX() != 0 || transform.getShearY() != 0) {
+            g2.drawImage(this, x, y, width, height, null);
+            return;
+        }
+        
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        BufferedImage variant = forScale(scaleX, scaleY);
+        int deviceX = (int) Math.round(transform.getTranslateX() + x * scaleX);
+        int deviceY = (int) Math.round(transform.getTranslateY() + y * scaleY);
+        
+        g2.setTransform(IDENTITY);
+        g2.drawImage(variant, deviceX, deviceY, null);
+        g2.setTransform(transform);
+    }
+    
+    /**
+     * Device scale of the graphics, e.g. 1.5 on a 150% display.
+     */
+    public static double deviceScale(Graphics2D g2) {
+        return g2.getTransform().getScaleX();
+    }
+    
+    private BufferedImage render(int pixelWidth, int pixelHeight) {
+        // Fit inside the box preserving aspect ratio, centred
+        double scale = Math.min((double) pixelWidth / source.getWidth(), (double) pixelHeight / source.getHeight());
+        int drawWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int drawHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        
+        BufferedImage image = source;
+        // Halve in steps when shrinking a lot so bilinear filtering does not drop detail
+        while (image.getWidth() / 2 >= drawWidth && image.getHeight() / 2 >= drawHeight) {
+            image = resize(image, image.getWidth() / 2, image.getHeight() / 2, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        
+        boolean wholeFactor = scale >= 1 && scale == Math.rint(scale);
+        Object interpolation = pixelArt && wholeFactor
+            ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+            : RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+        
+        BufferedImage result = new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = result.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.drawImage(image, (pixelWidth - drawWidth) / 2, (pixelHeight - drawHeight) / 2, drawWidth, drawHeight, null);
+        g2.dispose();
+        return result;
+    }
+    
+    private static BufferedImage resize(BufferedImage image, int width, int height, Object interpolation) {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = result.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gielinorgains.ui;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Downloaded icon bytes kept on disk, so clients on the same machine download each icon once
+ * between them. Files are named by a hash of the URL and written under a temporary name, then
+ * moved into place, so a reader never sees a partial file and no locking is needed.
+ */
+@Slf4j
+public class SharedIconStore {
+    private final Path directory;
+    
+    public SharedIconStore(File directory) {
+        this.directory = directory.toPath();
+    }
+    
+    /**
+     * The stored bytes of the icon at {@code url}, or null if no client has stored it yet
+     */
+    public byte[] load(String url) {
+        Path file = directory.resolve(fileName(url));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            log.debug("Could not read shared icon {}", file, e);
+            return null;
+        }
+    }
+    
+    public void store(String url, byte[] data) {
+        Path file = directory.resolve(fileName(url));
+        if (Files.exists(file)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "icon", ".tmp");
+            Files.write(temp, data);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            log.debug("Stored shared icon for {}", url);
+        } catch (IOException e) {
+            log.debug("Could not store shared icon for {}", url, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.debug("Could not delete {}", temp, e);
+                }
+            }
+        }
+    }
+    
+    private static String fileName(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 4);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(".img").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is always available", e);
+        }
+    }
+}
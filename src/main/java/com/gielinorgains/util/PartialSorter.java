@@ -0,0 +1,156 @@
+package com.gielinorgains.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders only as much of a list as is actually shown.
+ *
+ * {@link #ensureSorted(int)} selects the next best items out of the unsorted remainder with a
+ * bounded heap, in O(n log k) rather than the O(n log n) of a full sort. Ties are broken by
+ * original position, so the sorted prefix always matches what a stable full sort would give.
+ */
+public class PartialSorter<T> {
+    private final List<T> items;
+    private final Comparator<? super T> comparator;
+    private int[] order;
+    private int size;
+    private int sortedCount;
+    
+    public PartialSorter(List<T> items, Comparator<? super T> comparator) {
+        this.items = items;
+        this.comparator = comparator;
+        this.order = new int[items.size()];
+        extend();
+    }
+    
+    /**
+     * Takes in items appended to the list since the sorter was made or last extended. They join
+     * the unsorted remainder, so the sorted prefix stays as it is even where a new item would
+     * belong in it; make a new sorter to place them exactly.
+     */
+    public void extend() {
+        int newSize = items.size();
+        if (newSize > order.length) {
+            order = Arrays.copyOf(order, Math.max(newSize, order.length * 2));
+        }
+        for (int i = size; i < newSize; i++) {
+            order[i] = i;
+        }
+        size = newSize;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int getSortedCount() {
+        return sortedCount;
+    }
+    
+    /**
+     * Returns the first {@code count} items in sorted order, sorting more of the list if needed.
+     */
+    public List<T> head(int count) {
+        int n = Math.min(count, size);
+        ensureSorted(n);
+        List<T> head = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            head.add(items.get(order[i]));
+        }
+        return head;
+    }
+    
+    public List<T> sortedRange(int from, int to) {
+        int end = Math.min(to, size);
+        ensureSorted(end);
+        if (from >= end) {
+            return Collections.emptyList();
+        }
+        List<T> range = new ArrayList<>(end - from);
+        for (int i = from; i < end; i++) {
+            range.add(items.get(order[i]));
+        }
+        return range;
+    }
+    
+    /**
+     * Guarantees that the first {@code count} positions hold the best items in order.
+     */
+    public void ensureSorted(int count) {
+        int target = Math.min(count, size);
+        if (target <= sortedCount) {
+            return;
+        }
+        
+        int k = target - sortedCount;
+        int remaining = size - sortedCount;
+        int[] heap = new int[k];
+        int[] rest = new int[remaining - Math.min(k, remaining)];
+        int heapSize = 0;
+        int restSize = 0;
+        
+        // Max-heap of the k best seen so far; the root is the worst of them
+        for (int p = sortedCount; p < size; p++) {
+            int candidate = order[p];
+            if (heapSize < k) {
+                heap[heapSize] = candidate;
+                siftUp(heap, heapSize++);
+            } else if (compare(candidate, heap[0]) < 0) {
+                rest[restSize++] = heap[0];
+                heap[0] = candidate;
+                siftDown(heap, 0, heapSize);
+            } else {
+                rest[restSize++] = candidate;
+            }
+        }
+        
+        // Pop the heap from the back so the best item ends up first
+        for (int end = heapSize - 1; end >= 0; end--) {
+            order[sortedCount + end] = heap[0];
+            heap[0] = heap[end];
+            siftDown(heap, 0, end);
+        }
+        System.arraycopy(rest, 0, order, target, restSize);
+        sortedCount = target;
+    }
+    
+    private int compare(int a, int b) {
+        int result = comparator.compare(items.get(a), items.get(b));
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+    
+    private void siftUp(int[] heap, int index) {
+        int value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(value, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+    
+    private void siftDown(int[] heap, int index, int size) {
+        int value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && compare(heap[right], heap[child]) > 0) {
+                child = right;
+            }
+            if (compare(value, heap[child]) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
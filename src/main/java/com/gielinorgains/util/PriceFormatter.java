@@ -0,0 +1,120 @@
+package com.gielinorgains.util;
+
+/**
+ * Formats gp values into a caller-supplied {@code char[]} without allocating, for use in paint
+ * code. The {@code String} variants allocate only the result.
+ *
+ * Output matches the formats used before: {@code 1,234,567} for grouped values, and
+ * {@code 1.2M} / {@code 12.3K} (one decimal, half-up) for abbreviated values of 1,000 and above.
+ */
+public final class PriceFormatter {
+    /**
+     * Enough for any long: 19 digits, 6 separators and a sign.
+     */
+    public static final int MAX_CHARS = 32;
+    
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[MAX_CHARS]);
+    
+    private PriceFormatter() {
+    }
+    
+    /**
+     * Writes {@code value} with comma grouping at {@code offset}.
+     *
+     * @return the offset after the last written char
+     */
+    public static int appendGrouped(char[] buf, int offset, long value) {
+        if (value < 0) {
+            buf[offset++] = '-';
+        } else {
+            // Work with the negative value so Long.MIN_VALUE needs no special case
+            value = -value;
+        }
+        
+        int digits = digitCount(value);
+        int end = offset + digits + (digits - 1) / 3;
+        int pos = end;
+        int written = 0;
+        do {
+            if (written > 0 && written % 3 == 0) {
+                buf[--pos] = ',';
+            }
+            buf[--pos] = (char) ('0' - (value % 10));
+            value /= 10;
+            written++;
+        } while (value != 0);
+        return end;
+    }
+    
+    /**
+     * Writes {@code value} abbreviated to K or M with one decimal; values under 1,000 are
+     * written as plain integers.
+     *
+     * @return the offset after the last written char
+     */
+    public static int appendAbbreviated(char[] buf, int offset, long value) {
+        long divisor;
+        char suffix;
+        if (value >= 1_000_000) {
+            divisor = 100_000;
+            suffix = 'M';
+        } else if (value >= 1_000) {
+            divisor = 100;
+            suffix = 'K';
+        } else {
+            return appendPlain(buf, offset, value);
+        }
+        
+        long tenths = value / divisor;
+        if (value % divisor * 2 >= divisor) {
+            tenths++;
+        }
+        offset = appendPlain(buf, offset, tenths / 10);
+        buf[offset++] = '.';
+        buf[offset++] = (char) ('0' + tenths % 10);
+        buf[offset++] = suffix;
+        return offset;
+    }
+    
+    public static String formatGrouped(long value) {
+        char[] buf = SCRATCH.get();
+        return new String(buf, 0, appendGrouped(buf, 0, value));
+    }
+    
+    public static String formatAbbreviated(long value) {
+        char[] buf = SCRATCH.get();
+        return new String(buf, 0, appendAbbreviated(buf, 0, value));
+    }
+    
+    /**
+     * Writes {@code value} without grouping, like {@link String#valueOf(long)}.
+     *
+     * @return the offset after the last written char
+     */
+    public static int appendPlain(char[] buf, int offset, long value) {
+        if (value < 0) {
+            buf[offset++] = '-';
+        } else {
+            value = -value;
+        }
+        int end = offset + digitCount(value);
+        int pos = end;
+        do {
+            buf[--pos] = (char) ('0' - (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+    
+    /**
+     * Digits in a value that is zero or negative.
+     */
+    private static int digitCount(long negative) {
+        int digits = 1;
+        while (negative <= -10) {
+            negative /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,471 @@
+package com.gielinorgains.util;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.model.GainsItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A user-defined ranking formula over an item's numeric fields, e.g.
+ * {@code profit * min(quantity, limit) / sqrt(price)}.
+ *
+ * The source is parsed once into a tree of small evaluator nodes with variables bound straight to
+ * getters and constant subtrees folded, so evaluating an item does no parsing or name lookups.
+ * {@link #rankAll} stores the result on each item, which lets the grid sort on it as cheaply as
+ * on a built-in field.
+ *
+ * Supported: numbers, {@link #variableNames() variables}, {@code + - * / %}, unary minus,
+ * comparisons ({@code < <= > >= == !=}, giving 1 or 0), {@code && ||}, parentheses and the
+ * functions min, max, abs, sqrt, log, log10, pow, clamp(x, lo, hi) and if(cond, then, else).
+ * An item whose result is NaN or missing ranks below every other item.
+ */
+public final class RankingExpression {
+    private static final int PARALLEL_THRESHOLD = 2048;
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+    private static final Map<String, ToDoubleFunction<GainsItem>> VARIABLES = new LinkedHashMap<>();
+    
+    static {
+        VARIABLES.put("score", GainsItem::getScore);
+        VARIABLES.put("profit", GainsItem::getProfit);
+        VARIABLES.put("roi", GainsItem::getAdjustedRoi);
+        VARIABLES.put("volume", GainsItem::getDailyVolume);
+        VARIABLES.put("quantity", GainsItem::getQuantity);
+        // No buy limit means unlimited, so min(quantity, limit) still works
+        VARIABLES.put("limit", item -> item.getLimit() != null ? item.getLimit() : Double.POSITIVE_INFINITY);
+        VARIABLES.put("price", GainsItem::getAdjustedLowPrice);
+        VARIABLES.put("buy", GainsItem::getAdjustedLowPrice);
+        VARIABLES.put("sell", GainsItem::getAdjustedHighPrice);
+        VARIABLES.put("low", GainsItem::getLatestLowPrice);
+        VARIABLES.put("high", GainsItem::getLatestHighPrice);
+        VARIABLES.put("rsi", item -> orNaN(item.getRsi()));
+        VARIABLES.put("roc", item -> orNaN(item.getRoc()));
+        VARIABLES.put("buysupport", item -> orNaN(item.getBuyVolumeSupport()));
+        VARIABLES.put("sellsupport", item -> orNaN(item.getSellVolumeSupport()));
+        VARIABLES.put("hourlyvolume", item -> orNaN(item.getMedianHourlyVolume()));
+        VARIABLES.put("completeness", GainsItem::getSDataCompleteness);
+    }
+    
+    private final String source;
+    private final Node root;
+    private final int version;
+    
+    private RankingExpression(String source, Node root) {
+        this.source = source;
+        this.root = root;
+        this.version = VERSIONS.incrementAndGet();
+    }
+    
+    /**
+     * Parses and compiles an expression.
+     *
+     * @throws IllegalArgumentException describing the first problem and its position
+     */
+    public static RankingExpression compile(String source) {
+        if (source == null || source.trim().isEmpty()) {
+            throw new IllegalArgumentException("Ranking expression is empty");
+        }
+        Parser parser = new Parser(source);
+        Node root = parser.parseExpression();
+        parser.expectEnd();
+        return new RankingExpression(source.trim(), root);
+    }
+    
+    public static Set<String> variableNames() {
+        return Collections.unmodifiableSet(VARIABLES.keySet());
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    /**
+     * Evaluates the expression for one item. May return NaN or an infinity.
+     */
+    public double evaluate(GainsItem item) {
+        return root.eval(item);
+    }
+    
+    /**
+     * Ranks on the calling thread alone.
+     *
+     * @see #rankAll(List, GainsExecutors)
+     */
+    public int rankAll(List<GainsItem> items) {
+        return rankAll(items, null);
+    }
+    
+    /**
+     * Stores this expression's rank on every item not already ranked by it, spread over the
+     * compute pool for large lists. NaN results are stored as negative infinity so they sort last.
+     *
+     * @param executors whose compute pool shares the work, or null to rank on the calling thread
+     * @return how many items were evaluated
+     */
+    public int rankAll(List<GainsItem> items, GainsExecutors executors) {
+        int size = items.size();
+        int stale = 0;
+        for (int i = 0; i < size; i++) {
+            if (items.get(i).getRankingVersion() != version) {
+                stale++;
+            }
+        }
+        if (stale == 0) {
+            return 0;
+        }
+        
+        IntConsumer rank = i -> {
+            GainsItem item = items.get(i);
+            if (item.getRankingVersion() != version) {
+                double value = root.eval(item);
+                item.setCustomRank(Double.isNaN(value) ? Double.NEGATIVE_INFINITY : value);
+                item.setRankingVersion(version);
+            }
+        };
+        if (executors != null && stale >= PARALLEL_THRESHOLD) {
+            executors.forEachIndex(0, size, rank);
+        } else {
+            for (int i = 0; i < size; i++) {
+                rank.accept(i);
+            }
+        }
+        return stale;
+    }
+    
+    @Override
+    public String toString() {
+        return source;
+    }
+    
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+    
+    private static double bool(boolean value) {
+        return value ? 1 : 0;
+    }
+    
+    private interface Node {
+        double eval(GainsItem item);
+    }
+    
+    private static final class Constant implements Node {
+        final double value;
+        
+        Constant(double value) {
+            this.value = value;
+        }
+        
+        @Override
+        public double eval(GainsItem item) {
+            return value;
+        }
+    }
+    
+    /**
+     * Recursive-descent parser that builds evaluator nodes directly.
+     */
+    private static final class Parser {
+        private final String text;
+        private int pos;
+        
+        Parser(String text) {
+            this.text = text;
+        }
+        
+        Node parseExpression() {
+            Node left = parseAnd();
+            while (accept("||")) {
+                Node a = left;
+                Node b = parseAnd();
+                left = fold(item -> bool(a.eval(item) != 0 || b.eval(item) != 0), a, b);
+            }
+            return left;
+        }
+        
+        private Node parseAnd() {
+            Node left = parseComparison();
+            while (accept("&&")) {
+                Node a = left;
+                Node b = parseComparison();
+                left = fold(item -> bool(a.eval(item) != 0 && b.eval(item) != 0), a, b);
+            }
+            return left;
+        }
+        
+        private Node parseComparison() {
+            Node left = parseAdditive();
+            while (true) {
+                Node a = left;
+                if (accept("<=")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) <= b.eval(item)), a, b);
+                } else if (accept(">=")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) >= b.eval(item)), a, b);
+                } else if (accept("==")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) == b.eval(item)), a, b);
+                } else if (accept("!=")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) != b.eval(item)), a, b);
+                } else if (accept("<")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) < b.eval(item)), a, b);
+                } else if (accept(">")) {
+                    Node b = parseAdditive();
+                    left = fold(item -> bool(a.eval(item) > b.eval(item)), a, b);
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node parseAdditive() {
+            Node left = parseMultiplicative();
+            while (true) {
+                Node a = left;
+                if (accept("+")) {
+                    Node b = parseMultiplicative();
+                    left = fold(item -> a.eval(item) + b.eval(item), a, b);
+                } else if (accept("-")) {
+                    Node b = parseMultiplicative();
+                    left = fold(item -> a.eval(item) - b.eval(item), a, b);
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node parseMultiplicative() {
+            Node left = parseUnary();
+            while (true) {
+                Node a = left;
+                if (accept("*")) {
+                    Node b = parseUnary();
+                    left = fold(item -> a.eval(item) * b.eval(item), a, b);
+                } else if (accept("/")) {
+                    Node b = parseUnary();
+                    left = fold(item -> a.eval(item) / b.eval(item), a, b);
+                } else if (accept("%")) {
+                    Node b = parseUnary();
+                    left = fold(item -> a.eval(item) % b.eval(item), a, b);
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node parseUnary() {
+            if (accept("-")) {
+                Node a = parseUnary();
+                return fold(item -> -a.eval(item), a);
+            }
+            if (accept("+")) {
+                return parseUnary();
+            }
+            if (accept("!")) {
+                Node a = parseUnary();
+                return fold(item -> bool(a.eval(item) == 0), a);
+            }
+            return parsePrimary();
+        }
+        
+        private Node parsePrimary() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of expression");
+            }
+            
+            char c = text.charAt(pos);
+            if (accept("(")) {
+                Node inner = parseExpression();
+                expect(")");
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return parseNumber();
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = text.substring(start, pos).toLowerCase(Locale.ROOT);
+                if (accept("(")) {
+                    return parseFunction(name, start);
+                }
+                ToDoubleFunction<GainsItem> getter = VARIABLES.get(name);
+                if (getter == null) {
+                    pos = start;
+                    throw error("Unknown variable '" + name + "'");
+                }
+                return getter::applyAsDouble;
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+        
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            // Allow 10k / 2.5m shorthands, matching how prices are displayed
+            double multiplier = 1;
+            if (pos < text.length()) {
+                char suffix = Character.toLowerCase(text.charAt(pos));
+                boolean followedByName = pos + 1 < text.length() && Character.isLetterOrDigit(text.charAt(pos + 1));
+                if (!followedByName && (suffix == 'k' || suffix == 'm')) {
+                    multiplier = suffix == 'k' ? 1_000 : 1_000_000;
+                    pos++;
+                }
+            }
+            try {
+                return new Constant(Double.parseDouble(text.substring(start, multiplier == 1 ? pos : pos - 1)) * multiplier);
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("Invalid number");
+            }
+        }
+        
+        private Node parseFunction(String name, int start) {
+            List<Node> args = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    args.add(parseExpression());
+                } while (accept(","));
+                expect(")");
+            }
+            
+            int count = args.size();
+            switch (name) {
+                case "min":
+                case "max":
+                    if (count < 2) {
+                        break;
+                    }
+                    Node result = args.get(0);
+                    for (int i = 1; i < count; i++) {
+                        Node a = result;
+                        Node b = args.get(i);
+                        result = name.equals("min")
+                            ? fold(item -> Math.min(a.eval(item), b.eval(item)), a, b)
+                            : fold(item -> Math.max(a.eval(item), b.eval(item)), a, b);
+                    }
+                    return result;
+                case "abs":
+                    if (count == 1) {
+                        Node a = args.get(0);
+                        return fold(item -> Math.abs(a.eval(item)), a);
+                    }
+                    break;
+                case "sqrt":
+                    if (count == 1) {
+                        Node a = args.get(0);
+                        return fold(item -> Math.sqrt(a.eval(item)), a);
+                    }
+                    break;
+                case "log":
+                    if (count == 1) {
+                        Node a = args.get(0);
+                        return fold(item -> Math.log(a.eval(item)), a);
+                    }
+                    break;
+                case "log10":
+                    if (count == 1) {
+                        Node a = args.get(0);
+                        return fold(item -> Math.log10(a.eval(item)), a);
+                    }
+                    break;
+                case "pow":
+                    if (count == 2) {
+                        Node a = args.get(0);
+                        Node b = args.get(1);
+                        return fold(item -> Math.pow(a.eval(item), b.eval(item)), a, b);
+                    }
+                    break;
+                case "clamp":
+                    if (count == 3) {
+                        Node x = args.get(0);
+                        Node lo = args.get(1);
+                        Node hi = args.get(2);
+                        return fold(item -> Math.max(lo.eval(item), Math.min(hi.eval(item), x.eval(item))), x, lo, hi);
+                    }
+                    break;
+                case "if":
+                    if (count == 3) {
+                        Node condition = args.get(0);
+                        Node then = args.get(1);
+                        Node otherwise = args.get(2);
+                        if (condition instanceof Constant) {
+                            return ((Constant) condition).value != 0 ? then : otherwise;
+                        }
+                        return item -> condition.eval(item) != 0 ? then.eval(item) : otherwise.eval(item);
+                    }
+                    break;
+                default:
+                    pos = start;
+                    throw error("Unknown function '" + name + "'");
+            }
+            pos = start;
+            throw error("Wrong number of arguments for " + name + "()");
+        }
+        
+        /**
+         * Evaluates a node once at compile time if all its inputs are constant
+         */
+        private static Node fold(Node node, Node... inputs) {
+            for (Node input : inputs) {
+                if (!(input instanceof Constant)) {
+                    return node;
+                }
+            }
+            return new Constant(node.eval(null));
+        }
+        
+        void expectEnd() {
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("Unexpected '" + text.charAt(pos) + "'");
+            }
+        }
+        
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("Expected '" + token + "'");
+            }
+        }
+        
+        private boolean accept(String token) {
+            skipSpaces();
+            if (!text.startsWith(token, pos)) {
+                return false;
+            }
+            // Keep "<" from consuming the start of "<=" and similar
+            if (token.length() == 1 && pos + 1 < text.length() && "<>=!".indexOf(token.charAt(0)) >= 0
+                && text.charAt(pos + 1) == '=') {
+                return false;
+            }
+            pos += token.length();
+            return true;
+        }
+        
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos + 1));
+        }
+    }
+}
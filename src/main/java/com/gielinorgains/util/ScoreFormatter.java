@@ -16,6 +16,11 @@ public class ScoreFormatter {
     
     private static final Color ZERO_SCORE_COLOR = new Color(0xa8, 0xa2, 0x9e); // stone-400 #a8a29e
     
+    // Colours precomputed at 0.01 steps and score texts at 0.1 steps, so painting never allocates
+    private static final int COLOR_STEPS_PER_POINT = 100;
+    private static final Color[] COLOR_LUT = buildColorLut();
+    private static final String[] SCORE_TEXT = buildScoreText();
+    
     private static class ColorStop {
         final double value;
         final Color color;
@@ -35,6 +40,21 @@ public class ScoreFormatter {
             return ZERO_SCORE_COLOR;
         }
         
+        // Any positive score stays off the gray zero slot
+        int index = (int) Math.round(clampedScore * COLOR_STEPS_PER_POINT);
+        return COLOR_LUT[Math.max(1, index)];
+    }
+    
+    private static Color[] buildColorLut() {
+        Color[] lut = new Color[5 * COLOR_STEPS_PER_POINT + 1];
+        lut[0] = ZERO_SCORE_COLOR;
+        for (int i = 1; i < lut.length; i++) {
+            lut[i] = interpolateScoreColor((double) i / COLOR_STEPS_PER_POINT);
+        }
+        return lut;
+    }
+    
+    private static Color interpolateScoreColor(double clampedScore) {
         // Find the appropriate color stops for interpolation
         if (clampedScore <= COLOR_STOPS[0].value) {
             return COLOR_STOPS[0].color;
@@ -75,7 +95,21 @@ public class ScoreFormatter {
     }
     
     public static String getScoreText(double score) {
-        return String.format("%.1f", Math.min(5.0, Math.max(0.0, score)));
+        // NaN clamps to 0.0, as does any negative score
+        double clamped = Math.min(5.0, Math.max(0.0, score));
+        if (!(clamped > 0)) {
+            return SCORE_TEXT[0];
+        }
+        // Nudge so e.g. 1.15 (stored as 1.1499...) rounds half-up like String.format did
+        return SCORE_TEXT[(int) Math.round(clamped * 10 + 1e-9)];
+    }
+    
+    private static String[] buildScoreText() {
+        String[] texts = new String[51];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = (i / 10) + "." + (i % 10);
+        }
+        return texts;
     }
     
     public static String getScoreStars(double score) {
@@ -0,0 +1,79 @@
+package com.gielinorgains.util;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a series to what can actually be drawn: one bucket per pixel column.
+ *
+ * Each column keeps the first, minimum, maximum and last value that falls into it, so a line
+ * drawn from the columns is pixel-identical to drawing every point, however many there are.
+ */
+public final class SeriesDownsampler {
+    private SeriesDownsampler() {
+    }
+    
+    public static final class Columns {
+        public final double[] first;
+        public final double[] min;
+        public final double[] max;
+        public final double[] last;
+        
+        private Columns(int count) {
+            first = new double[count];
+            min = new double[count];
+            max = new double[count];
+            last = new double[count];
+            Arrays.fill(first, Double.NaN);
+        }
+        
+        public int size() {
+            return first.length;
+        }
+        
+        public boolean isEmpty(int column) {
+            return Double.isNaN(first[column]);
+        }
+    }
+    
+    /**
+     * Buckets the points with {@code fromX <= x <= toX} into {@code columns} equal-width columns.
+     * {@code xs} must be ascending; only the first {@code length} points are used.
+     */
+    public static Columns downsample(double[] xs, double[] ys, int length, double fromX, double toX, int columns) {
+        Columns result = new Columns(Math.max(0, columns));
+        if (columns <= 0 || length == 0 || toX < fromX) {
+            return result;
+        }
+        
+        int start = Arrays.binarySearch(xs, 0, length, fromX);
+        if (start < 0) {
+            start = -start - 1;
+        } else {
+            while (start > 0 && xs[start - 1] == fromX) {
+                start--;
+            }
+        }
+        
+        double span = toX - fromX;
+        for (int i = start; i < length && xs[i] <= toX; i++) {
+            double y = ys[i];
+            if (Double.isNaN(y)) {
+                continue;
+            }
+            int column = span == 0 ? 0 : (int) ((xs[i] - fromX) / span * columns);
+            if (column >= columns) {
+                column = columns - 1;
+            }
+            if (result.isEmpty(column)) {
+                result.first[column] = y;
+                result.min[column] = y;
+                result.max[column] = y;
+            } else {
+                result.min[column] = Math.min(result.min[column], y);
+                result.max[column] = Math.max(result.max[column], y);
+            }
+            result.last[column] = y;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.gielinorgains;
+
+import com.gielinorgains.alerts.AlertEngine;
+import com.gielinorgains.alerts.AlertEvent;
+import com.gielinorgains.alerts.AlertRule;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.GainsItem;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlertEngineTest {
+    
+    @Test
+    public void testParsesRules() {
+        AlertRule rule = AlertRule.parse("Abyssal whip: profit ≥ 50k and ROI >= 3%");
+        assertEquals("abyssal whip", rule.getScope());
+        
+        List<String> errors = new ArrayList<>();
+        List<AlertRule> rules = AlertRule.parseAll("profit >= 1m\n\nmargin > 5; score < 2 or roi > 1", errors);
+        assertEquals(1, rules.size());
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("Unknown field 'margin'"));
+    }
+    
+    @Test
+    public void testOnlyChangedItemsAndIndexedRulesAreRechecked() {
+        List<AlertRule> rules = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rules.add(AlertRule.parse("profit >= " + (1000 + i * 10)));
+        }
+        rules.add(AlertRule.parse("roi >= 5"));
+        AlertEngine engine = new AlertEngine(rules, Collections.emptySet(), new MetricsRegistry());
+        
+        List<GainsItem> snapshot = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            snapshot.add(item(i, 500, 1.0));
+        }
+        assertTrue(engine.onSnapshot(snapshot).isEmpty());
+        assertEquals(1000, engine.getLastItemsRechecked());
+        
+        // Unchanged snapshot: nothing re-checked
+        assertTrue(engine.onSnapshot(copy(snapshot)).isEmpty());
+        assertEquals(0, engine.getLastItemsRechecked());
+        assertEquals(0, engine.getLastRuleChecks());
+        
+        // One item's profit crosses 51 thresholds; the roi rule is not consulted
+        List<GainsItem> next = copy(snapshot);
+        next.set(7, item(7, 1500, 1.0));
+        List<AlertEvent> events = engine.onSnapshot(next);
+        assertEquals(1, engine.getLastItemsRechecked());
+        assertEquals(200, engine.getLastRuleChecks());
+        assertEquals(51, events.size());
+        assertTrue(events.get(0).isMatched());
+        
+        // Same value again: no flips. Then back down: every matched rule flips off
+        assertTrue(engine.onSnapshot(copy(next)).isEmpty());
+        events = engine.onSnapshot(copy(snapshot));
+        assertEquals(51, events.size());
+        assertFalse(events.get(0).isMatched());
+    }
+    
+    @Test
+    public void testItemAndPinnedScopes() {
+        List<AlertRule> rules = new ArrayList<>();
+        rules.add(AlertRule.parse("2: profit > 100"));
+        rules.add(AlertRule.parse("item 3: profit > 100"));
+        rules.add(AlertRule.parse("pinned: roi >= 2"));
+        AlertEngine engine = new AlertEngine(rules, AlertEngine.parseItemKeys("4, Item 5"), new MetricsRegistry());
+        
+        List<GainsItem> snapshot = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            snapshot.add(item(i, 200, 3.0));
+        }
+        List<AlertEvent> events = engine.onSnapshot(snapshot);
+        
+        List<String> fired = new ArrayList<>();
+        for (AlertEvent event : events) {
+            fired.add(event.getItem().getId() + " " + event.getRule().getSource());
+        }
+        Collections.sort(fired);
+        assertEquals(List.of("2 2: profit > 100", "3 item 3: profit > 100", "4 pinned: roi >= 2",
+            "5 pinned: roi >= 2"), fired);
+    }
+    
+    private static GainsItem item(int id, int profit, double roi) {
+        return GainsItem.builder()
+            .id(String.valueOf(id))
+            .name("Item " + id)
+            .profit(profit)
+            .adjustedRoi(roi)
+            .build();
+    }
+    
+    private static List<GainsItem> copy(List<GainsItem> items) {
+        List<GainsItem> copy = new ArrayList<>();
+        for (GainsItem item : items) {
+            copy.add(item(Integer.parseInt(item.getId()), item.getProfit(), item.getAdjustedRoi()));
+        }
+        return copy;
+    }
+}
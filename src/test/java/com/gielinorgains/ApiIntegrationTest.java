@@ -2,7 +2,6 @@ package com.gielinorgains;
 
 import com.gielinorgains.api.GainsApiClient;
 import com.gielinorgains.model.ApiResponse;
-import com.google.gson.Gson;
 import okhttp3.OkHttpClient;
 import org.junit.Test;
 
@@ -12,7 +11,7 @@ public class ApiIntegrationTest {
     
     @Test
     public void testApiConnection() throws Exception {
-        GainsApiClient client = new GainsApiClient(new OkHttpClient(), new Gson());
+        GainsApiClient client = new GainsApiClient(new OkHttpClient());
         
         System.out.println("Testing connection to Gielinor Gains API...");
         
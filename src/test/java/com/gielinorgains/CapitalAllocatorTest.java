@@ -0,0 +1,177 @@
+package com.gielinorgains;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.trading.AllocationPlan;
+import com.gielinorgains.trading.BuyLimitTracker;
+import com.gielinorgains.trading.CapitalAllocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CapitalAllocatorTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gg-limits").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testTracksBuyLimitWindowsAcrossRestarts() {
+        File file = new File(directory, "buy-limits");
+        BuyLimitTracker tracker = new BuyLimitTracker(file);
+        long start = 1_000_000L;
+        
+        // Fills count as deltas; sells and repeated updates do not count
+        tracker.onOffer(0, 4151, true, 1_500_000, 10, 0, 0, start);
+        tracker.onOffer(0, 4151, true, 1_500_000, 10, 4, 6_000_000, start + 1000);
+        tracker.onOffer(0, 4151, true, 1_500_000, 10, 4, 6_000_000, start + 2000);
+        tracker.onOffer(1, 4151, false, 1_600_000, 3, 3, 4_800_000, start + 3000);
+        assertEquals(4, tracker.getBought(4151, start + 3000));
+        assertEquals(66, tracker.getRemaining(item(4151, 70), start + 3000));
+        
+        // Restart: the login replay of the same offer adds nothing, empty slots are ignored
+        tracker.save();
+        BuyLimitTracker restarted = new BuyLimitTracker(file);
+        restarted.load(start + HOUR);
+        restarted.onOffer(0, 0, false, 0, 0, 0, 0, start + HOUR);
+        restarted.onOffer(0, 4151, true, 1_500_000, 10, 10, 15_000_000, start + HOUR);
+        assertEquals(10, restarted.getBought(4151, start + HOUR));
+        
+        // A new identical offer in the slot starts again from zero
+        restarted.onOffer(0, 4151, true, 1_500_000, 10, 0, 0, start + 2 * HOUR);
+        restarted.onOffer(0, 4151, true, 1_500_000, 10, 5, 7_500_000, start + 2 * HOUR);
+        assertEquals(15, restarted.getBought(4151, start + 2 * HOUR));
+        assertEquals(start + 1000 + 4 * HOUR, restarted.getWindowEnd(4151, start + 2 * HOUR));
+        
+        // The window closes four hours after the first buy
+        assertEquals(0, restarted.getBought(4151, start + 5 * HOUR));
+        restarted.onOffer(0, 4151, true, 1_500_000, 10, 7, 10_500_000, start + 5 * HOUR);
+        assertEquals(2, restarted.getBought(4151, start + 5 * HOUR));
+        assertEquals(Integer.MAX_VALUE, restarted.getRemaining(item(995, null), start));
+    }
+    
+    @Test
+    public void testCloseToExhaustiveSearchOnSmallInputs() {
+        Random random = new Random(7);
+        double worst = 1.0;
+        for (int trial = 0; trial < 200; trial++) {
+            List<GainsItem> items = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                GainsItem item = item(i + 1, 1 + random.nextInt(12));
+                item.setAdjustedLowPrice(50 + random.nextInt(5000));
+                item.setProfit(1 + random.nextInt(400));
+                item.setQuantity(random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(12));
+                items.add(item);
+            }
+            long gold = 1_000 + random.nextInt(40_000);
+            int slots = 1 + random.nextInt(3);
+            
+            AllocationPlan plan = CapitalAllocator.allocate(items, gold, slots, item -> item.getLimit());
+            assertTrue(plan.getTotalCost() <= gold);
+            assertTrue(plan.getAllocations().size() <= slots);
+            for (AllocationPlan.Allocation allocation : plan.getAllocations()) {
+                GainsItem item = allocation.getItem();
+                int cap = item.getQuantity() > 0 ? Math.min(item.getQuantity(), item.getLimit()) : item.getLimit();
+                assertTrue(allocation.getQuantity() >= 1 && allocation.getQuantity() <= cap);
+            }
+            
+            long best = exhaustive(items, 0, gold, slots);
+            if (best > 0) {
+                worst = Math.min(worst, plan.getExpectedProfit() / (double) best);
+            }
+        }
+        assertTrue("worst ratio to optimum " + worst, worst >= 0.95);
+    }
+    
+    @Test
+    public void testFullSnapshotWithinBudget() {
+        Random random = new Random(11);
+        List<GainsItem> items = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            GainsItem item = item(i + 1, random.nextInt(5) == 0 ? null : 1 + random.nextInt(20_000));
+            item.setAdjustedLowPrice(1 + random.nextInt(2_000_000));
+            item.setProfit(random.nextInt(20_000) - 2_000);
+            item.setQuantity(random.nextInt(5_000));
+            items.add(item);
+        }
+        // The best item by far, but its limit is used up
+        GainsItem limited = items.get(16);
+        limited.setLimit(100);
+        limited.setAdjustedLowPrice(10);
+        limited.setProfit(1_000_000);
+        
+        BuyLimitTracker tracker = new BuyLimitTracker(null);
+        tracker.onOffer(0, 17, true, 10, 100, 100, 1_000, 0);
+        long now = 1000;
+        AllocationPlan plan = null;
+        long fastest = Long.MAX_VALUE;
+        GainsExecutors executors = new GainsExecutors(new MetricsRegistry());
+        try {
+            for (int run = 0; run < 8; run++) {
+                plan = CapitalAllocator.allocate(items, 250_000_000L, 8, item -> tracker.getRemaining(item, now), executors);
+                fastest = Math.min(fastest, plan.getElapsedNanos());
+            }
+        } finally {
+            executors.stop();
+        }
+        // The same plan as on the calling thread alone
+        assertEquals(plan.getExpectedProfit(),
+            CapitalAllocator.allocate(items, 250_000_000L, 8, item -> tracker.getRemaining(item, now)).getExpectedProfit());
+        
+        assertEquals(8, plan.getAllocations().size());
+        assertTrue(plan.getTotalCost() <= 250_000_000L);
+        for (AllocationPlan.Allocation allocation : plan.getAllocations()) {
+            assertTrue(allocation.getItem() != limited);
+        }
+        assertTrue("took " + TimeUnit.NANOSECONDS.toMillis(fastest) + "ms", fastest < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    
+    private static long exhaustive(List<GainsItem> items, int index, long gold, int slots) {
+        if (index == items.size() || slots == 0) {
+            return 0;
+        }
+        GainsItem item = items.get(index);
+        int cap = item.getQuantity() > 0 ? Math.min(item.getQuantity(), item.getLimit()) : item.getLimit();
+        long best = exhaustive(items, index + 1, gold, slots);
+        for (int quantity = 1; quantity <= cap && (long) quantity * item.getAdjustedLowPrice() <= gold; quantity++) {
+            long cost = (long) quantity * item.getAdjustedLowPrice();
+            best = Math.max(best, (long) quantity * item.getProfit() + exhaustive(items, index + 1, gold - cost, slots - 1));
+        }
+        return best;
+    }
+    
+    private static GainsItem item(int id, Integer limit) {
+        return GainsItem.builder()
+            .id(String.valueOf(id))
+            .name("Item " + id)
+            .limit(limit)
+            .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.gielinorgains;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Re-encodes JSON fixtures as CBOR the way a server would: definite lengths, integers as
+ * integers and each float in the shortest width that holds it exactly.
+ */
+public final class CborEncoder {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    
+    private CborEncoder() {
+    }
+    
+    public static byte[] fromJson(byte[] json) {
+        CborEncoder encoder = new CborEncoder();
+        encoder.write(JsonParser.parseString(new String(json, StandardCharsets.UTF_8)));
+        return encoder.out.toByteArray();
+    }
+    
+    private void write(JsonElement element) {
+        if (element.isJsonNull()) {
+            out.write(0xf6);
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            head(5, object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                text(entry.getKey());
+                write(entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            head(4, array.size());
+            for (JsonElement value : array) {
+                write(value);
+            }
+        } else {
+            primitive(element.getAsJsonPrimitive());
+        }
+    }
+    
+    private void primitive(JsonPrimitive value) {
+        if (value.isBoolean()) {
+            out.write(value.getAsBoolean() ? 0xf5 : 0xf4);
+        } else if (value.isString()) {
+            text(value.getAsString());
+        } else {
+            String literal = value.getAsString();
+            if (literal.matches("-?\\d{1,18}")) {
+                long number = Long.parseLong(literal);
+                if (number >= 0) {
+                    head(0, number);
+                } else {
+                    head(1, -1 - number);
+                }
+            } else {
+                real(Double.parseDouble(literal));
+            }
+        }
+    }
+    
+    private void real(double value) {
+        float single = (float) value;
+        if (single == value) {
+            int half = toHalf(single);
+            if (half >= 0) {
+                out.write(0xf9);
+                bigEndian(half, 2);
+            } else {
+                out.write(0xfa);
+                bigEndian(Float.floatToIntBits(single), 4);
+            }
+        } else {
+            out.write(0xfb);
+            bigEndian(Double.doubleToLongBits(value), 8);
+        }
+    }
+    
+    /**
+     * The half-precision bits of a normal value that converts exactly, else -1
+     */
+    private static int toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127;
+        int mantissa = bits & 0x7fffff;
+        if (value == 0) {
+            return sign;
+        }
+        if (exponent < -14 || exponent > 15 || (mantissa & 0x1fff) != 0) {
+            return -1;
+        }
+        return sign | ((exponent + 15) << 10) | (mantissa >>> 13);
+    }
+    
+    private void text(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        head(3, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+    
+    private void head(int major, long argument) {
+        int type = major << 5;
+        if (argument < 24) {
+            out.write(type | (int) argument);
+        } else if (argument < 0x100) {
+            out.write(type | 24);
+            bigEndian(argument, 1);
+        } else if (argument < 0x10000) {
+            out.write(type | 25);
+            bigEndian(argument, 2);
+        } else if (argument < 0x100000000L) {
+            out.write(type | 26);
+            bigEndian(argument, 4);
+        } else {
+            out.write(type | 27);
+            bigEndian(argument, 8);
+        }
+    }
+    
+    private void bigEndian(long value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+}
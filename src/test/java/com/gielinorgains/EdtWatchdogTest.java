@@ -0,0 +1,98 @@
+package com.gielinorgains;
+
+import com.gielinorgains.diagnostics.EdtSection;
+import com.gielinorgains.diagnostics.EdtWatchdog;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import org.junit.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EdtWatchdogTest {
+    
+    @Test
+    public void testStallInPluginCodeIsAttributed() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        EdtWatchdog watchdog = new EdtWatchdog(metrics);
+        watchdog.start(100);
+        try {
+            // Let the watchdog learn the EDT and settle into heartbeats
+            Thread.sleep(200);
+            SwingUtilities.invokeAndWait(this::slowPluginWork);
+            Thread.sleep(300);
+            
+            List<String> top = watchdog.getTopStalls(3);
+            assertFalse("stall should be recorded", top.isEmpty());
+            assertTrue(top.get(0), top.get(0).startsWith("EdtWatchdogTest.slowPluginWork"));
+            assertEquals(1, metrics.readCounter(MetricsRegistry.EDT_STALLS));
+            assertTrue(metrics.readTextGauge(MetricsRegistry.EDT_TOP_STALL).contains("slowPluginWork"));
+        } finally {
+            watchdog.stop();
+        }
+    }
+    
+    @Test
+    public void testManyShortSectionsUnderOneOuterSectionAreAttributed() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        EdtWatchdog watchdog = new EdtWatchdog(metrics);
+        watchdog.start(100);
+        try {
+            Thread.sleep(200);
+            // Like a grid painting its cards: no single piece comes near the threshold
+            SwingUtilities.invokeAndWait(() -> {
+                EdtSection.enter();
+                try {
+                    for (int i = 0; i < 40; i++) {
+                        shortPluginWork();
+                    }
+                } finally {
+                    EdtSection.exit();
+                }
+            });
+            Thread.sleep(300);
+            
+            assertEquals(1, metrics.readCounter(MetricsRegistry.EDT_STALLS));
+            assertEquals(0, metrics.readCounter(MetricsRegistry.EDT_OTHER_STALLS));
+        } finally {
+            watchdog.stop();
+        }
+    }
+    
+    @Test
+    public void testDisabledWatchdogRecordsNothing() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        EdtWatchdog watchdog = new EdtWatchdog(metrics);
+        watchdog.start(0);
+        SwingUtilities.invokeAndWait(this::slowPluginWork);
+        watchdog.stop();
+        
+        assertTrue(watchdog.getTopStalls(1).isEmpty());
+        assertEquals(0, metrics.readCounter(MetricsRegistry.EDT_STALLS));
+    }
+    
+    private void shortPluginWork() {
+        EdtSection.enter();
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            EdtSection.exit();
+        }
+    }
+    
+    private void slowPluginWork() {
+        EdtSection.enter();
+        try {
+            Thread.sleep(400);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            EdtSection.exit();
+        }
+    }
+}
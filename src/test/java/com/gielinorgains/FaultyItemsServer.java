@@ -0,0 +1,119 @@
+package com.gielinorgains;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the {@code /items} endpoint whose failures can be switched on: slow
+ * responses, error statuses and dropped connections.
+ */
+public class FaultyItemsServer implements AutoCloseable {
+    private final byte[] body;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile long slowDelayMillis;
+    private volatile int slowUntil;
+    private volatile int status = 200;
+    private volatile boolean dropConnections;
+    
+    public FaultyItemsServer(int itemCount) throws IOException {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < itemCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(i + 1).append("\",\"name\":\"Item ").append(i + 1)
+                .append("\",\"profit\":").append(100 + i).append(",\"score\":3.0}");
+        }
+        json.append("],\"totalItems\":").append(itemCount).append('}');
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/items", this::handle);
+        server.start();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+    
+    /**
+     * Delays every response by this long
+     */
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+    
+    /**
+     * Delays only the next {@code count} requests, by {@code delayMillis}
+     */
+    public void slowNext(int count, long delayMillis) {
+        this.slowDelayMillis = delayMillis;
+        this.slowUntil = requests.get() + count;
+    }
+    
+    public void setStatus(int status) {
+        this.status = status;
+    }
+    
+    /**
+     * When true, connections are closed without a response
+     */
+    public void setDropConnections(boolean dropConnections) {
+        this.dropConnections = dropConnections;
+    }
+    
+    public void heal() {
+        delayMillis = 0;
+        slowUntil = 0;
+        status = 200;
+        dropConnections = false;
+    }
+    
+    public int getRequests() {
+        return requests.get();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        try {
+            long delay = request <= slowUntil ? slowDelayMillis : delayMillis;
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (dropConnections) {
+                return;
+            }
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
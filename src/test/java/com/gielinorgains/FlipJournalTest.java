@@ -0,0 +1,169 @@
+package com.gielinorgains;
+
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import com.gielinorgains.trading.BuyLimitTracker;
+import com.gielinorgains.trading.FlipJournal;
+import com.gielinorgains.trading.OfferFill;
+import com.gielinorgains.trading.TradeStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FlipJournalTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long T0 = 1_700_000_000_000L;
+    
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gg-journal").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testRealizedProfitHitRateAndTimeInTrade() {
+        File file = new File(directory, "journal.bin");
+        FlipJournal journal = new FlipJournal(file);
+        journal.start();
+        GainsItem whip = GainsItem.builder().id("4151").profit(15).build();
+        journal.setRecommendations(ItemIndex.build(Collections.singletonList(whip)));
+        
+        // Fills come from the offer deltas the buy limit tracker reports
+        BuyLimitTracker tracker = new BuyLimitTracker(null);
+        record(journal, tracker.onOffer(0, 4151, true, 100, 10, 4, 400, T0));
+        record(journal, tracker.onOffer(0, 4151, true, 100, 10, 10, 1000, T0 + HOUR));
+        record(journal, tracker.onOffer(0, 4151, true, 100, 10, 10, 1000, T0 + HOUR));
+        record(journal, tracker.onOffer(1, 4151, false, 120, 6, 6, 720, T0 + 3 * HOUR));
+        record(journal, tracker.onOffer(1, 4151, false, 90, 4, 4, 360, T0 + 4 * HOUR));
+        // Not recommended, and a sell of something bought before the journal existed
+        record(journal, tracker.onOffer(2, 995, true, 10, 5, 5, 50, T0));
+        record(journal, tracker.onOffer(2, 995, false, 12, 5, 5, 60, T0 + HOUR));
+        record(journal, tracker.onOffer(3, 561, false, 200, 3, 3, 600, T0));
+        journal.flush();
+        
+        assertItemStats(journal);
+        journal.close();
+        
+        // A torn record at the end is dropped when the journal is replayed
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        FlipJournal reopened = new FlipJournal(file);
+        reopened.start();
+        reopened.flush();
+        assertItemStats(reopened);
+        
+        reopened.record(new OfferFill(995, true, 2, 20, T0 + 2 * HOUR));
+        reopened.record(new OfferFill(995, false, 2, 18, T0 + 3 * HOUR));
+        reopened.flush();
+        assertEquals(4, reopened.getTotals().getTrades());
+        assertEquals(0.5, reopened.getTotals().getHitRate(), 1e-9);
+        assertEquals(88, reopened.getTotals().getRealizedProfit());
+        reopened.close();
+    }
+    
+    @Test
+    public void testJournalPerAccountIsLockedWhileOpen() {
+        File first = new File(directory, "first.bin");
+        File second = new File(directory, "second.bin");
+        FlipJournal journal = new FlipJournal(first);
+        journal.start();
+        journal.record(new OfferFill(4151, true, 2, 200, T0));
+        journal.record(new OfferFill(4151, false, 2, 260, T0 + HOUR));
+        
+        // Queued fills go to the first account's file before the switch
+        journal.setFile(second);
+        journal.flush();
+        assertEquals(0, journal.getTotals().getTrades());
+        assertNull(journal.getStats(4151));
+        
+        // Another client can't append to a journal that is open
+        FlipJournal other = new FlipJournal(second);
+        other.start();
+        other.record(new OfferFill(995, true, 1, 10, T0));
+        other.flush();
+        other.close();
+        // Just the header
+        assertEquals(4, second.length());
+        
+        journal.setFile(first);
+        journal.flush();
+        assertEquals(1, journal.getTotals().getTrades());
+        assertEquals(60, journal.getTotals().getRealizedProfit());
+        journal.close();
+    }
+    
+    @Test
+    public void testBuyLimitStateIsKeptPerAccount() {
+        File first = new File(directory, "first-limits");
+        File second = new File(directory, "second-limits");
+        BuyLimitTracker tracker = new BuyLimitTracker(null);
+        tracker.setFile(first, T0);
+        tracker.onOffer(0, 4151, true, 100, 10, 6, 600, T0);
+        
+        // Another account has the same offer in the same slot; all of it is its own
+        tracker.setFile(second, T0 + HOUR);
+        assertEquals(0, tracker.getBought(4151, T0 + HOUR));
+        OfferFill other = tracker.onOffer(0, 4151, true, 100, 10, 8, 800, T0 + HOUR);
+        assertEquals(8, other.getQuantity());
+        
+        // Back on the first account, its login burst only counts what filled since
+        tracker.setFile(first, T0 + 2 * HOUR);
+        assertEquals(6, tracker.getBought(4151, T0 + 2 * HOUR));
+        assertNull(tracker.onOffer(0, 4151, true, 100, 10, 6, 600, T0 + 2 * HOUR));
+        assertEquals(2, tracker.onOffer(0, 4151, true, 100, 10, 8, 800, T0 + 2 * HOUR).getQuantity());
+        
+        tracker.setFile(null, T0 + 2 * HOUR);
+        BuyLimitTracker reloaded = new BuyLimitTracker(second);
+        reloaded.load(T0 + 2 * HOUR);
+        assertEquals(8, reloaded.getBought(4151, T0 + 2 * HOUR));
+    }
+    
+    private static void assertItemStats(FlipJournal journal) {
+        TradeStats whip = journal.getStats(4151);
+        assertEquals(2, whip.getTrades());
+        assertEquals(80, whip.getRealizedProfit());
+        assertEquals(0.5, whip.getHitRate(), 1e-9);
+        // Bought on average at T0 + 36m; sold at T0 + 3h and T0 + 4h
+        assertEquals((long) (2.9 * HOUR), whip.getAverageHoldMillis());
+        assertEquals(10, whip.getBoughtQuantity());
+        assertNull(journal.getStats(4152));
+        
+        TradeStats totals = journal.getTotals();
+        assertEquals(3, totals.getTrades());
+        assertEquals(90, totals.getRealizedProfit());
+        assertEquals(2 / 3.0, totals.getHitRate(), 1e-9);
+        assertEquals(80, journal.getRecommendedTotals().getRealizedProfit());
+        assertEquals(2, journal.getRecommendedTotals().getTrades());
+    }
+    
+    private static void record(FlipJournal journal, OfferFill fill) {
+        if (fill != null) {
+            journal.record(fill);
+        }
+    }
+}
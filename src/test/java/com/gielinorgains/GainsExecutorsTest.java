@@ -0,0 +1,199 @@
+package com.gielinorgains;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GainsExecutorsTest {
+    private MetricsRegistry metrics;
+    private GainsExecutors executors;
+    
+    @Before
+    public void setUp() {
+        metrics = new MetricsRegistry();
+        executors = new GainsExecutors(metrics);
+    }
+    
+    @After
+    public void tearDown() {
+        executors.stop();
+    }
+    
+    @Test
+    public void testPoolsRunOnNamedDaemonThreads() throws Exception {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch ran = new CountDownLatch(1);
+        executors.decode().execute(() -> {
+            thread.set(Thread.currentThread());
+            ran.countDown();
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(thread.get().getName(), thread.get().getName().startsWith("GielinorGains-Decode-"));
+        assertTrue(thread.get().isDaemon());
+    }
+    
+    @Test
+    public void testUtilisationAndQueueGauges() throws Exception {
+        executors.start();
+        String utilisation = GainsExecutors.utilisationGauge(GainsExecutors.COMPUTE);
+        String queued = GainsExecutors.queuedGauge(GainsExecutors.COMPUTE);
+        assertEquals(0, metrics.readGauge(utilisation));
+        
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        // More blocked tasks than the pool has threads, so some wait in the queue
+        for (int i = 0; i < 8; i++) {
+            executors.compute().execute(() -> {
+                running.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        // Every thread has picked up a task and the rest are queued
+        awaitGauge(queued, () -> 8 - running.get());
+        assertTrue(metrics.readGauge(queued) > 0);
+        assertEquals(running.get(), metrics.readGauge(GainsExecutors.activeGauge(GainsExecutors.COMPUTE)));
+        // Every compute thread is busy from one sample to the next, however far apart they are
+        metrics.readGauge(utilisation);
+        awaitNextSample();
+        assertEquals(100, metrics.readGauge(utilisation));
+        
+        release.countDown();
+        awaitGauge(GainsExecutors.completedGauge(GainsExecutors.COMPUTE), () -> 8);
+        assertEquals(0, metrics.readGauge(queued));
+        // Nothing runs between these two samples
+        metrics.readGauge(utilisation);
+        awaitNextSample();
+        assertEquals(0, metrics.readGauge(utilisation));
+    }
+    
+    @Test
+    public void testStopDrainsQueuedWorkThenRejects() throws Exception {
+        AtomicBoolean finished = new AtomicBoolean();
+        executors.network().execute(() -> sleep(100));
+        executors.network().execute(() -> {
+            sleep(100);
+            finished.set(true);
+        });
+        executors.stop();
+        assertTrue(finished.get());
+        assertEquals(-1, metrics.readGauge(GainsExecutors.activeGauge(GainsExecutors.NETWORK)));
+        
+        try {
+            executors.network().execute(() -> { });
+            fail("Stopped pool accepted work");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+        
+        // Starting again gives fresh pools
+        executors.start();
+        CountDownLatch ran = new CountDownLatch(1);
+        executors.network().execute(ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testForEachIndexFromEveryComputeThread() throws Exception {
+        executors.start();
+        int tasks = Runtime.getRuntime().availableProcessors() + 4;
+        AtomicInteger[] runs = new AtomicInteger[tasks];
+        CountDownLatch done = new CountDownLatch(tasks);
+        // Each task waits for its loop while the others hold every compute thread
+        for (int t = 0; t < tasks; t++) {
+            AtomicInteger count = new AtomicInteger();
+            runs[t] = count;
+            executors.compute().execute(() -> {
+                executors.forEachIndex(0, 1000, i -> count.incrementAndGet());
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (AtomicInteger count : runs) {
+            assertEquals(1000, count.get());
+        }
+        
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        try {
+            executors.forEachIndex(0, 100, i -> {
+                threads.add(Thread.currentThread().getName());
+                if (i == 42) {
+                    throw new IllegalArgumentException("index " + i);
+                }
+            });
+            fail("Failure was not rethrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("index 42", e.getMessage());
+        }
+        for (String thread : threads) {
+            assertTrue(thread, thread.startsWith("GielinorGains-Compute-") || thread.equals(Thread.currentThread().getName()));
+        }
+        
+        // Stopped pools leave the whole loop to the caller
+        executors.stop();
+        AtomicInteger count = new AtomicInteger();
+        executors.forEachIndex(0, 10, i -> count.incrementAndGet());
+        assertEquals(10, count.get());
+    }
+    
+    @Test
+    public void testStopDropsPendingTimers() throws Exception {
+        AtomicBoolean fired = new AtomicBoolean();
+        ScheduledExecutorService scheduler = executors.scheduler();
+        scheduler.schedule(() -> fired.set(true), 1, TimeUnit.HOURS);
+        executors.stop();
+        // Terminated rather than left waiting for the timer, so it can never fire
+        assertTrue(scheduler.isTerminated());
+        assertFalse(fired.get());
+    }
+    
+    /**
+     * Polls a gauge until it reads {@code expected}, which may change while waiting
+     */
+    private void awaitGauge(String gauge, LongSupplier expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.readGauge(gauge) != expected.getAsLong()) {
+            assertTrue(gauge + " never reached " + expected.getAsLong(), System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+    
+    /**
+     * Utilisation samples taken less than a millisecond apart repeat the previous one
+     */
+    private static void awaitNextSample() throws InterruptedException {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2)) {
+            Thread.sleep(1);
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
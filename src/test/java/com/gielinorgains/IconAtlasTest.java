@@ -0,0 +1,130 @@
+package com.gielinorgains;
+
+import com.gielinorgains.ui.IconAtlas;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class IconAtlasTest {
+    
+    @Test
+    public void testIconsShareOnePage() {
+        IconAtlas atlas = new IconAtlas(20, 20, 500);
+        for (int i = 0; i < 500; i++) {
+            atlas.put("icon-" + i, solid(20, new Color(i % 256, i / 256, 0)));
+        }
+        assertEquals(500, atlas.size());
+        assertEquals(1, atlas.getPageCount());
+        
+        // Each sprite still draws its own pixels
+        assertEquals(new Color(0, 0, 0).getRGB(), drawn(atlas.get("icon-0"), 1).getRGB(0, 0));
+        assertEquals(new Color(255, 0, 0).getRGB(), drawn(atlas.get("icon-255"), 1).getRGB(19, 19));
+    }
+    
+    @Test
+    public void testLargeCellsSpreadOverPages() {
+        // Only two 400 pixel cells fit across a page
+        IconAtlas atlas = new IconAtlas(200, 400, 10);
+        for (int i = 0; i < 10; i++) {
+            atlas.put("icon-" + i, solid(400, Color.BLUE));
+        }
+        assertEquals(3, atlas.getPageCount());
+        assertEquals(Color.BLUE.getRGB(), drawn(atlas.get("icon-9"), 2).getRGB(10, 10));
+    }
+    
+    @Test
+    public void testLeastRecentlyDrawnIsEvicted() {
+        IconAtlas atlas = new IconAtlas(20, 20, 3);
+        atlas.put("a", solid(20, Color.RED));
+        atlas.put("b", solid(20, Color.GREEN));
+        atlas.put("c", solid(20, Color.BLUE));
+        assertNotNull(atlas.get("a"));
+        
+        atlas.put("d", solid(20, Color.YELLOW));
+        assertNull(atlas.get("b"));
+        assertEquals(3, atlas.size());
+        assertEquals(Color.RED.getRGB(), drawn(atlas.get("a"), 1).getRGB(5, 5));
+        // The freed slot took the new icon
+        assertEquals(Color.YELLOW.getRGB(), drawn(atlas.get("d"), 1).getRGB(5, 5));
+        
+        atlas.remove("c");
+        atlas.put("e", solid(20, Color.CYAN));
+        assertNotNull(atlas.get("a"));
+        assertNotNull(atlas.get("d"));
+        assertEquals(1, atlas.getPageCount());
+    }
+    
+    @Test
+    public void testExpiredIconsRemovedByLoadTime() {
+        IconAtlas atlas = new IconAtlas(20, 20, 3);
+        atlas.put("old", solid(20, Color.RED), 1_000);
+        atlas.put("new", solid(20, Color.GREEN), 5_000);
+        assertEquals(1_000, atlas.get("old").getLoadedAt());
+        
+        atlas.removeLoadedBefore(2_000);
+        assertNull(atlas.get("old"));
+        assertNotNull(atlas.get("new"));
+        
+        // A reload replaces the pixels and load time in the same slot
+        atlas.put("new", solid(20, Color.BLUE), 9_000);
+        assertEquals(9_000, atlas.get("new").getLoadedAt());
+        assertEquals(Color.BLUE.getRGB(), drawn(atlas.get("new"), 1).getRGB(5, 5));
+        assertEquals(1, atlas.size());
+    }
+    
+    @Test
+    public void testDrawAlignedBlitsInDeviceSpace() {
+        IconAtlas atlas = new IconAtlas(10, 20, 4);
+        atlas.put("other", solid(20, Color.GREEN));
+        IconAtlas.Sprite sprite = atlas.put("red", solid(20, Color.RED));
+        
+        BufferedImage target = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = target.createGraphics();
+        g2.scale(2, 2);
+        sprite.drawAligned(g2, 5, 5);
+        
+        // Device transform is restored and only the 20x20 cell lands at device (10, 10)
+        assertEquals(2.0, g2.getTransform().getScaleX(), 0);
+        g2.dispose();
+        assertEquals(0, target.getRGB(9, 9));
+        assertEquals(Color.RED.getRGB(), target.getRGB(10, 10));
+        assertEquals(Color.RED.getRGB(), target.getRGB(29, 29));
+        assertEquals(0, target.getRGB(30, 30));
+    }
+    
+    @Test
+    public void testOtherScaleDrawsScaled() {
+        IconAtlas atlas = new IconAtlas(10, 20, 4);
+        IconAtlas.Sprite sprite = atlas.put("red", solid(20, Color.RED));
+        
+        BufferedImage target = drawn(sprite, 1);
+        assertEquals(Color.RED.getRGB(), target.getRGB(9, 9));
+        assertEquals(0, target.getRGB(10, 10));
+    }
+    
+    /**
+     * Draws a sprite at the origin of a 40x40 image at the given scale
+     */
+    private static BufferedImage drawn(IconAtlas.Sprite sprite, double scale) {
+        BufferedImage target = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = target.createGraphics();
+        g2.scale(scale, scale);
+        sprite.drawAligned(g2, 0, 0);
+        g2.dispose();
+        return target;
+    }
+    
+    private static BufferedImage solid(int size, Color color) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(color);
+        g2.fillRect(0, 0, size, size);
+        g2.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,152 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.IconBundle;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.ui.IconCache;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IconBundleTest {
+    private static final int ICONS = 50;
+    
+    private StubIconServer server;
+    private GainsApiClient client;
+    private GainsExecutors executors;
+    private IconCache iconCache;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new StubIconServer(5);
+        MetricsRegistry metrics = new MetricsRegistry();
+        executors = new GainsExecutors(metrics);
+        client = new GainsApiClient(new OkHttpClient(), metrics, server.getBaseUrl());
+        iconCache = new IconCache(metrics, executors, null, new MemoryPressureMonitor(metrics), client);
+    }
+    
+    @After
+    public void tearDown() {
+        iconCache.shutdown();
+        executors.stop();
+        server.close();
+    }
+    
+    @Test
+    public void testBundleLoadsIconsInOneRequest() throws Exception {
+        List<String> urls = urls("a", ICONS);
+        iconCache.prefetchIcons(urls).get(10, TimeUnit.SECONDS);
+        
+        assertEquals(1, server.getBundleRequests());
+        assertEquals(0, server.getIconRequests());
+        for (String url : urls) {
+            assertTrue(iconCache.isCached(url));
+        }
+        
+        // Nothing left to ask for
+        iconCache.prefetchIcons(urls).get(10, TimeUnit.SECONDS);
+        assertEquals(1, server.getBundleRequests());
+    }
+    
+    @Test
+    public void testIconsDecodeWhileBundleArrives() throws Exception {
+        server.setBundleStallMillis(2000);
+        List<String> urls = urls("e", ICONS);
+        CompletableFuture<Void> prefetch = iconCache.prefetchIcons(urls);
+        
+        // The first half of the body is decoded while the rest is held back
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+        while (!iconCache.isCached(urls.get(0)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(iconCache.isCached(urls.get(0)));
+        assertFalse(prefetch.isDone());
+        assertFalse(iconCache.isCached(urls.get(ICONS - 1)));
+        
+        prefetch.get(10, TimeUnit.SECONDS);
+        assertTrue(iconCache.isCached(urls.get(ICONS - 1)));
+        assertEquals(0, server.getIconRequests());
+    }
+    
+    @Test
+    public void testTruncatedBundleKeepsIconsReadBeforeTheCut() throws Exception {
+        Map<String, byte[]> icons = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            icons.put("icon-" + i, new byte[100]);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        IconBundle.write(body, icons);
+        byte[] truncated = Arrays.copyOf(body.toByteArray(), body.size() - 50);
+        
+        List<String> handed = new ArrayList<>();
+        try {
+            IconBundle.read(new ByteArrayInputStream(truncated), icons.keySet(), (url, data) -> handed.add(url));
+            fail("Truncated bundle was read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("truncated after 3 of 4"));
+        }
+        assertEquals(List.of("icon-0", "icon-1", "icon-2"), handed);
+    }
+    
+    @Test
+    public void testIconsMissingFromBundleFetchedSingly() throws Exception {
+        List<String> urls = urls("b", ICONS);
+        urls.add(server.iconUrl("missing-1"));
+        urls.add(server.iconUrl("missing-2"));
+        iconCache.prefetchIcons(urls).get(10, TimeUnit.SECONDS);
+        
+        assertEquals(1, server.getBundleRequests());
+        assertEquals(2, server.getIconRequests());
+        for (String url : urls) {
+            assertTrue(iconCache.isCached(url));
+        }
+    }
+    
+    @Test
+    public void testFallsBackToSingleFetchesWithoutBundles() throws Exception {
+        server.setBundlesEnabled(false);
+        List<String> urls = urls("c", ICONS);
+        iconCache.prefetchIcons(urls).get(10, TimeUnit.SECONDS);
+        
+        // The first refresh still gets its icons, one by one
+        assertEquals(1, server.getBundleRequests());
+        assertEquals(ICONS, server.getIconRequests());
+        for (String url : urls) {
+            assertTrue(iconCache.isCached(url));
+        }
+        
+        // After that bundles are not asked for, and icons load as they are painted
+        assertFalse(client.isIconBundleAvailable());
+        List<String> later = urls("d", ICONS);
+        iconCache.prefetchIcons(later).get(10, TimeUnit.SECONDS);
+        assertEquals(1, server.getBundleRequests());
+        assertFalse(iconCache.isCached(later.get(0)));
+    }
+    
+    private List<String> urls(String run, int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add(server.iconUrl(run + "-" + i));
+        }
+        return urls;
+    }
+}
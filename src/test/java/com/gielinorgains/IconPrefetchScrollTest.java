@@ -0,0 +1,165 @@
+package com.gielinorgains;
+
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.ui.IconCache;
+import com.gielinorgains.ui.IconPrefetcher;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scripted scroll through the grid's icons. Scroll times are passed in rather than read from
+ * the clock, and the local icon server holds every request until the test opens its gate, so
+ * which prefetches are issued and cancelled does not depend on timing.
+ */
+public class IconPrefetchScrollTest {
+    private static final int CARD_COUNT = 240;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    // IconPrefetcher runs at most this many loads at once
+    private static final int MAX_IN_FLIGHT = 6;
+    
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private volatile CountDownLatch gate = new CountDownLatch(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private MetricsRegistry metrics;
+    private IconCache iconCache;
+    private IconPrefetcher prefetcher;
+    private List<String> urls;
+    
+    @Before
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        byte[] png = out.toByteArray();
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/icons/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(png);
+            }
+        });
+        server.start();
+        
+        metrics = new MetricsRegistry();
+        iconCache = new IconCache(metrics);
+        prefetcher = new IconPrefetcher(iconCache, metrics);
+        urls = new ArrayList<>();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/icons/";
+        for (int i = 0; i < CARD_COUNT; i++) {
+            urls.add(base + i + ".png");
+        }
+        prefetcher.setIconUrls(urls);
+    }
+    
+    @After
+    public void tearDown() {
+        gate.countDown();
+        prefetcher.clear();
+        iconCache.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+    
+    @Test
+    public void testPrefetchRunsAheadOfScroll() throws Exception {
+        // At rest: the four visible cards and the next four, as many at once as allowed
+        prefetcher.onVisibleRange(0, 3, 0);
+        assertEquals(MAX_IN_FLIGHT, issued());
+        gate.countDown();
+        awaitCached(0, 7);
+        assertEquals(8, issued());
+        assertEquals(0, cancelled());
+        
+        // One card per frame is about 60 cards a second, which looks further ahead
+        gate = new CountDownLatch(1);
+        prefetcher.onVisibleRange(1, 4, FRAME_NANOS);
+        prefetcher.onVisibleRange(2, 5, 2 * FRAME_NANOS);
+        assertEquals(8 + MAX_IN_FLIGHT, issued());
+        gate.countDown();
+        awaitCached(8, 30);
+        assertTrue(String.valueOf(issued()), issued() > 30);
+    }
+    
+    @Test
+    public void testLoadsForCardsLeftBehindAreCancelled() throws Exception {
+        prefetcher.onVisibleRange(0, 3, 0);
+        assertEquals(MAX_IN_FLIGHT, issued());
+        
+        // A jump far down while every load is still waiting on the server
+        prefetcher.onVisibleRange(150, 153, TimeUnit.SECONDS.toNanos(1));
+        // Six loads withdrawn and two queued cards dropped; their slots go to the new cards
+        assertEquals(MAX_IN_FLIGHT + 2, cancelled());
+        assertEquals(2 * MAX_IN_FLIGHT, issued());
+        
+        gate.countDown();
+        awaitCached(150, 153);
+        
+        // Scrolling back asks for the old cards again, whether or not their loads had begun
+        prefetcher.onVisibleRange(0, 3, TimeUnit.SECONDS.toNanos(2));
+        awaitCached(0, 3);
+    }
+    
+    @Test
+    public void testWithdrawnPrefetchIsNotDownloaded() throws Exception {
+        CompletableFuture<Boolean> withdrawn = iconCache.prefetchIcon(urls.get(0));
+        iconCache.cancelPrefetch(urls.get(0));
+        assertFalse(withdrawn.get(1, TimeUnit.SECONDS));
+        
+        // Started after the withdrawn one, so by the time it is in the other has had its turn
+        CompletableFuture<Boolean> kept = iconCache.prefetchIcon(urls.get(1));
+        gate.countDown();
+        assertTrue(kept.get(10, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertFalse(iconCache.isCached(urls.get(0)));
+    }
+    
+    private long issued() {
+        return metrics.readCounter(MetricsRegistry.ICON_PREFETCH_ISSUED);
+    }
+    
+    private long cancelled() {
+        return metrics.readCounter(MetricsRegistry.ICON_PREFETCH_CANCELLED);
+    }
+    
+    private void awaitCached(int first, int last) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int i = first; i <= last; i++) {
+            while (!iconCache.isCached(urls.get(i))) {
+                assertTrue("card " + i + " not loaded", System.nanoTime() < deadline);
+                Thread.sleep(5);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.gielinorgains;
+
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.model.ItemIndex;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ItemIndexTest {
+    @Test
+    public void testLookups() {
+        GainsItem whip = item("4151");
+        GainsItem coins = item("995");
+        GainsItem duplicate = item("4151");
+        // Parsed the same way here as for the history, limits and journal
+        GainsItem padded = item(" 561 ");
+        ItemIndex index = ItemIndex.build(Arrays.asList(whip, coins, duplicate, item("abc"), item(null), item("0"),
+            padded, item("-5")));
+        
+        assertEquals(3, index.size());
+        assertSame(whip, index.get(4151));
+        assertSame(coins, index.get(995));
+        assertSame(padded, index.get(561));
+        assertNull(index.get(4152));
+        assertNull(index.get(0));
+        assertNull(index.get(-1));
+        assertNull(ItemIndex.EMPTY.get(4151));
+        assertEquals(0, ItemIndex.build(null).size());
+    }
+    
+    @Test
+    public void testDenseAndSparseIds() {
+        List<GainsItem> items = new ArrayList<>();
+        for (int id = 1; id <= 30_000; id++) {
+            items.add(item(Integer.toString(id)));
+        }
+        for (int id = 1 << 20; id < (1 << 20) + 64 * 1024; id += 1024) {
+            items.add(item(Integer.toString(id)));
+        }
+        ItemIndex index = ItemIndex.build(items);
+        
+        assertEquals(items.size(), index.size());
+        for (GainsItem item : items) {
+            assertSame(item, index.get(Integer.parseInt(item.getId())));
+        }
+        assertNull(index.get(30_001));
+        assertNull(index.get((1 << 20) + 1));
+    }
+    
+    @Test
+    public void testLookupDoesNotAllocate() {
+        List<GainsItem> items = new ArrayList<>();
+        for (int id = 2; id <= 20_000; id += 2) {
+            items.add(item(Integer.toString(id)));
+        }
+        ItemIndex index = ItemIndex.build(items);
+        
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long hits = 0;
+        for (int i = 0; i < 50_000; i++) {
+            hits += index.get(i % 20_000) != null ? 1 : 0;
+        }
+        
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000_000; i++) {
+            hits += index.get(i % 20_000) != null ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        
+        assertTrue(hits > 0);
+        // Boxing a key per lookup would allocate megabytes
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+    
+    private static GainsItem item(String id) {
+        return GainsItem.builder().id(id).build();
+    }
+}
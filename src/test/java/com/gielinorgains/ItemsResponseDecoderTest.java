@@ -0,0 +1,138 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsItemTypeAdapter;
+import com.gielinorgains.api.ItemsResponseDecoder;
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ItemsResponseDecoderTest {
+    @Test
+    public void testMatchesReflectiveGson() throws IOException {
+        byte[] body = readFixture("/items-page.json");
+        ApiResponse decoded = ItemsResponseDecoder.decode(body);
+        Gson reflective = new GsonBuilder().setLenient().create();
+        ReflectiveDto expected = reflective.fromJson(new String(body, StandardCharsets.UTF_8), ReflectiveDto.class);
+        
+        assertEquals(200, decoded.getData().size());
+        assertEquals(expected.totalItems, decoded.getTotalItems());
+        // Compared through the reflective serializer so every field is checked
+        assertEquals(reflective.toJson(expected.data), reflective.toJson(decoded.getData()));
+    }
+    
+    @Test
+    public void testLenientValues() throws IOException {
+        String json = "{\"totalItems\": 2, \"extra\": {\"nested\": [1, {\"a\": null}]}, \"data\": ["
+            + "{\"id\": 4151, \"name\": null, \"profit\": null, \"limit\": 70, \"score\": 4.5, \"rsi\": null,"
+            + " \"sparklineData\": [1.5, null, 2], \"unknown\": [true, \"x\"]},"
+            + "{\"id\": \"995\", \"quantityConfidence\": true, \"dailyVolume\": 12345678901}]}";
+        ApiResponse response = ItemsResponseDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+        
+        List<GainsItem> items = response.getData();
+        assertEquals(2, response.getTotalItems());
+        assertEquals("4151", items.get(0).getId());
+        assertNull(items.get(0).getName());
+        assertEquals(0, items.get(0).getProfit());
+        assertEquals(Integer.valueOf(70), items.get(0).getLimit());
+        assertEquals(4.5, items.get(0).getScore(), 0);
+        assertNull(items.get(0).getRsi());
+        assertEquals(Arrays.asList(1.5, null, 2.0), items.get(0).getSparklineData());
+        assertEquals("true", items.get(1).getQuantityConfidence());
+        assertEquals(12345678901L, items.get(1).getDailyVolume());
+        assertNull(items.get(1).getLimit());
+    }
+    
+    @Test
+    public void testNumbersMatchParseDouble() throws IOException {
+        Random random = new Random(42);
+        List<String> literals = new ArrayList<>(Arrays.asList("0", "-0", "0.1", "1e22", "1e23", "-2.5E-3",
+            "9007199254740993", "123456789012345678901234", "4.9e-324", "1.7976931348623157e308", "0.30000000000000004"));
+        for (int i = 0; i < 2000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 6);
+            literals.add(i % 2 == 0 ? Double.toString(value) : String.format(Locale.US, "%.4f", value));
+        }
+        StringBuilder json = new StringBuilder("{\"data\": [");
+        for (int i = 0; i < literals.size(); i++) {
+            json.append(i == 0 ? "" : ",").append("{\"score\": ").append(literals.get(i)).append('}');
+        }
+        json.append("]}");
+        
+        List<GainsItem> items = ItemsResponseDecoder.decode(json.toString().getBytes(StandardCharsets.UTF_8)).getData();
+        for (int i = 0; i < literals.size(); i++) {
+            assertEquals(literals.get(i), Double.doubleToLongBits(Double.parseDouble(literals.get(i))),
+                Double.doubleToLongBits(items.get(i).getScore()));
+        }
+    }
+    
+    @Test
+    public void testLenientSyntaxFallsBack() throws IOException {
+        String json = "{'data': [{\"id\": \"a\\u00e9\", \"profit\": \"12\", \"quantity\": 3.0}], // comment\n"
+            + " \"totalItems\": 1}";
+        ApiResponse response = ItemsResponseDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+        
+        GainsItem item = response.getData().get(0);
+        assertEquals("a\u00e9", item.getId());
+        assertEquals(12, item.getProfit());
+        assertEquals(3, item.getQuantity());
+        assertEquals(1, response.getTotalItems());
+    }
+    
+    @Test
+    public void testInvalidBodies() throws IOException {
+        assertNull(ItemsResponseDecoder.decode("{\"totalItems\": 3}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(ItemsResponseDecoder.decode("[]".getBytes(StandardCharsets.UTF_8)));
+        for (String json : new String[]{"{\"data\": [{\"profit\": \"lots\"}]}", "{\"data\": {}}", "{\"data\": [{"}) {
+            try {
+                ItemsResponseDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+                fail("Expected " + json + " to be rejected");
+            } catch (IOException expected) {
+                // Reported as an invalid response by the client
+            }
+        }
+    }
+    
+    @Test
+    public void testWriteRoundTrip() throws IOException {
+        ApiResponse decoded = ItemsResponseDecoder.decode(readFixture("/items-page.json"));
+        Gson gson = new GsonBuilder().registerTypeAdapter(GainsItem.class, new GainsItemTypeAdapter()).create();
+        Gson reflective = new Gson();
+        for (GainsItem item : decoded.getData()) {
+            GainsItem copy = gson.fromJson(gson.toJson(item), GainsItem.class);
+            assertEquals(reflective.toJson(item), reflective.toJson(copy));
+        }
+    }
+    
+    static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = ItemsResponseDecoderTest.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+    
+    // The response shape the client used to decode reflectively
+    private static class ReflectiveDto {
+        List<GainsItem> data;
+        int totalItems;
+    }
+}
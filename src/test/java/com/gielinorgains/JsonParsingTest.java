@@ -3,7 +3,6 @@ package com.gielinorgains;
 import com.gielinorgains.api.GainsApiClient;
 import com.gielinorgains.model.ApiResponse;
 import com.gielinorgains.model.GainsItem;
-import com.google.gson.Gson;
 import okhttp3.OkHttpClient;
 import org.junit.Test;
 
@@ -13,7 +12,7 @@ public class JsonParsingTest {
     
     @Test
     public void testJsonParsingWithDecimalValues() throws Exception {
-        GainsApiClient client = new GainsApiClient(new OkHttpClient(), new Gson());
+        GainsApiClient client = new GainsApiClient(new OkHttpClient());
         
         System.out.println("Testing JSON parsing with decimal volume support values...");
         
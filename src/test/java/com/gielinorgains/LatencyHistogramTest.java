@@ -0,0 +1,71 @@
+package com.gielinorgains;
+
+import com.gielinorgains.diagnostics.LatencyHistogram;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toMillis(5));
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMillis(ms);
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.0, snapshot.getPercentileMillis(50), 500.0 * 0.07);
+        assertEquals(950.0, snapshot.getPercentileMillis(95), 950.0 * 0.07);
+        assertEquals(990.0, snapshot.getPercentileMillis(99), 990.0 * 0.07);
+    }
+    
+    @Test
+    public void testEmptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram(1000).snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(99));
+    }
+    
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toMillis(5));
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordNanos(1_000_000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40_000, snapshot.getCount());
+        assertEquals(1.0, snapshot.getPercentileMillis(50), 0.07);
+    }
+    
+    @Test
+    public void testRegistryGauges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertEquals(-1, registry.readGauge("missing"));
+        
+        registry.gauge("answer", () -> 42);
+        assertEquals(42, registry.readGauge("answer"));
+        
+        registry.counter("hits").increment();
+        registry.counter("hits").add(2);
+        assertEquals(3, registry.readCounter("hits"));
+        
+        registry.removeGauge("answer");
+        assertTrue(registry.readGauge("answer") < 0);
+    }
+}
@@ -0,0 +1,142 @@
+package com.gielinorgains;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.ui.LazyPluginPanel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyPluginPanelTest {
+    private static final long RELEASE_MS = 150;
+    
+    private GainsExecutors executors;
+    private final AtomicInteger builds = new AtomicInteger();
+    private final List<JPanel> released = new ArrayList<>();
+    private final List<Long> buildNanos = new ArrayList<>();
+    
+    @Before
+    public void setUp() {
+        executors = new GainsExecutors(new MetricsRegistry());
+    }
+    
+    @After
+    public void tearDown() {
+        executors.stop();
+    }
+    
+    @Test
+    public void testNothingBuiltUntilFirstOpen() throws Exception {
+        LazyPluginPanel<JPanel> panel = onEdt(() -> lazy(0));
+        assertFalse(panel.isBuilt());
+        assertEquals(0, builds.get());
+        assertEquals(0, panel.getComponentCount());
+        
+        onEdt(panel::onActivate);
+        assertTrue(panel.isBuilt());
+        assertEquals(1, panel.getComponentCount());
+        assertEquals(1, buildNanos.size());
+        
+        // Closing and reopening keeps the same content
+        onEdt(panel::onDeactivate);
+        onEdt(panel::onActivate);
+        assertEquals(1, builds.get());
+    }
+    
+    @Test
+    public void testReleasedAfterStayingHiddenAndRebuiltOnReopen() throws Exception {
+        LazyPluginPanel<JPanel> panel = onEdt(() -> lazy(RELEASE_MS));
+        onEdt(panel::onActivate);
+        JPanel first = onEdt(() -> (JPanel) panel.getComponent(0));
+        
+        onEdt(panel::onDeactivate);
+        Thread.sleep(RELEASE_MS * 3);
+        onEdt(() -> { });
+        assertFalse(panel.isBuilt());
+        assertEquals(1, released.size());
+        assertSame(first, released.get(0));
+        assertEquals(0, panel.getComponentCount());
+        
+        onEdt(panel::onActivate);
+        assertTrue(panel.isBuilt());
+        assertEquals(2, builds.get());
+    }
+    
+    @Test
+    public void testReopeningCancelsRelease() throws Exception {
+        LazyPluginPanel<JPanel> panel = onEdt(() -> lazy(RELEASE_MS));
+        onEdt(panel::onActivate);
+        onEdt(panel::onDeactivate);
+        Thread.sleep(RELEASE_MS / 3);
+        onEdt(panel::onActivate);
+        Thread.sleep(RELEASE_MS * 3);
+        onEdt(() -> { });
+        assertTrue(panel.isBuilt());
+        assertTrue(released.isEmpty());
+    }
+    
+    @Test
+    public void testPrefetchBuildsWhileClosedAndStillReleases() throws Exception {
+        LazyPluginPanel<JPanel> panel = onEdt(() -> lazy(RELEASE_MS));
+        panel.prefetch();
+        onEdt(() -> { });
+        assertTrue(panel.isBuilt());
+        assertEquals(1, builds.get());
+        
+        Thread.sleep(RELEASE_MS * 3);
+        onEdt(() -> { });
+        assertFalse(panel.isBuilt());
+        assertEquals(1, released.size());
+    }
+    
+    @Test
+    public void testShutdownReleasesContent() throws Exception {
+        LazyPluginPanel<JPanel> panel = onEdt(() -> lazy(0));
+        onEdt(panel::ensureBuilt);
+        onEdt(panel::shutdown);
+        assertFalse(panel.isBuilt());
+        assertEquals(1, released.size());
+        // Nothing to release the second time
+        onEdt(panel::shutdown);
+        assertEquals(1, released.size());
+    }
+    
+    private LazyPluginPanel<JPanel> lazy(long releaseAfterMillis) {
+        return new LazyPluginPanel<>(() -> {
+            builds.incrementAndGet();
+            return new JPanel();
+        }, released::add, executors, releaseAfterMillis, buildNanos::add);
+    }
+    
+    private static void onEdt(Runnable task) throws Exception {
+        SwingUtilities.invokeAndWait(task);
+    }
+    
+    private static <T> T onEdt(java.util.concurrent.Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ResiliencePolicy;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import okhttp3.OkHttpClient;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryPressureTest {
+    private static final int ICONS = 300;
+    // Enough for the icons and little else
+    private static final String CONSTRAINED_HEAP = "-Xmx48m";
+    
+    @Test
+    public void testLevelsFollowHeapAfterGcWithHysteresis() {
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(new MetricsRegistry());
+        List<MemoryPressureMonitor.Level> changes = new ArrayList<>();
+        monitor.addListener(changes::add);
+        
+        monitor.update(0.50);
+        monitor.update(0.72);
+        // Dipping just under the threshold is not enough to ease off
+        monitor.update(0.65);
+        monitor.update(0.90);
+        monitor.update(0.80);
+        monitor.update(0.70);
+        monitor.update(0.55);
+        
+        assertEquals(List.of(MemoryPressureMonitor.Level.HIGH, MemoryPressureMonitor.Level.CRITICAL,
+            MemoryPressureMonitor.Level.HIGH, MemoryPressureMonitor.Level.NORMAL), changes);
+    }
+    
+    @Test
+    public void testSnapshotHeldSoftlyUnderPressure() throws Exception {
+        try (FaultyItemsServer server = new FaultyItemsServer(40)) {
+            GainsApiClient client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(),
+                server.getBaseUrl(), ResiliencePolicy.builder().hedging(false).build());
+            MemoryPressureMonitor monitor = new MemoryPressureMonitor(new MetricsRegistry());
+            monitor.addListener(client::onMemoryPressure);
+            
+            ApiResponse first = client.fetchItems(40, 0).get(10, TimeUnit.SECONDS);
+            assertTrue(first.isSuccess());
+            assertEquals(1, server.getRequests());
+            
+            // The GC has not needed the snapshot, so it is still served from memory
+            monitor.update(0.90);
+            assertTrue(client.hasCachedData());
+            assertEquals(40, client.fetchItems(40, 0).get(10, TimeUnit.SECONDS).getData().size());
+            assertTrue(client.wasLastRequestCached());
+            
+            monitor.update(0.30);
+            assertEquals(40, client.fetchItems(40, 0).get(10, TimeUnit.SECONDS).getData().size());
+            assertTrue(client.wasLastRequestCached());
+            assertEquals(1, server.getRequests());
+        }
+    }
+    
+    @Test
+    public void testIconCacheShrinksAndGrowsBackInConstrainedHeap() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, CONSTRAINED_HEAP, "-Djava.awt.headless=true",
+            "-cp", System.getProperty("java.class.path"), MemoryPressureWorker.class.getName(), String.valueOf(ICONS));
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = builder.start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+            StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        }
+        
+        assertEquals(lines.toString(), 4, lines.size());
+        assertEquals("loaded " + ICONS + " 0", lines.get(0));
+        // Down to the floor, with nothing held softly once pressure turned critical
+        assertEquals("pressure CRITICAL 50 0", lines.get(1));
+        assertEquals("eased NORMAL 50 0", lines.get(2));
+        assertEquals("reloaded " + ICONS + " 0", lines.get(3));
+    }
+}
@@ -0,0 +1,105 @@
+package com.gielinorgains;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.ui.IconCache;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills an {@link IconCache} and then most of the heap in a JVM started with a small
+ * {@code -Xmx}, for {@link MemoryPressureTest}. Prints one line per stage:
+ * <ul>
+ * <li>"loaded strong soft" once the icons are cached</li>
+ * <li>"pressure level strong soft" once the heap is nearly full</li>
+ * <li>"eased level strong soft" once it has been freed again</li>
+ * <li>"reloaded strong soft" after asking for every icon again</li>
+ * </ul>
+ *
+ * Arguments: number of icons.
+ */
+public class MemoryPressureWorker {
+    private static final int ICON_SIZE = 64;
+    private static final int CHUNK_BYTES = 512 * 1024;
+    
+    public static void main(String[] args) throws Exception {
+        int icons = Integer.parseInt(args[0]);
+        MetricsRegistry metrics = new MetricsRegistry();
+        GainsExecutors executors = new GainsExecutors(metrics);
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(metrics);
+        monitor.start();
+        IconCache cache = new IconCache(metrics, executors, null, monitor, null);
+        
+        File directory = Files.createTempDirectory("gg-pressure").toFile();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < icons; i++) {
+            BufferedImage image = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(i % ICON_SIZE, i / ICON_SIZE % ICON_SIZE, 0xFF00FF00);
+            File file = new File(directory, "icon-" + i + ".png");
+            ImageIO.write(image, "png", file);
+            urls.add(file.toURI().toString());
+        }
+        loadAll(cache, urls);
+        report("loaded", metrics, null);
+        
+        // Keep the heap nearly full of live data until the monitor notices
+        List<byte[]> ballast = new ArrayList<>();
+        try {
+            while (monitor.getLevel() != MemoryPressureMonitor.Level.CRITICAL) {
+                ballast.add(new byte[CHUNK_BYTES]);
+                System.gc();
+            }
+        } catch (OutOfMemoryError e) {
+            ballast.clear();
+            System.out.println("oom");
+            return;
+        }
+        awaitLevel(monitor, MemoryPressureMonitor.Level.CRITICAL);
+        report("pressure", metrics, monitor);
+        
+        ballast.clear();
+        System.gc();
+        awaitLevel(monitor, MemoryPressureMonitor.Level.NORMAL);
+        report("eased", metrics, monitor);
+        
+        loadAll(cache, urls);
+        report("reloaded", metrics, null);
+        
+        cache.shutdown();
+        monitor.stop();
+        executors.stop();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+    
+    private static void loadAll(IconCache cache, List<String> urls) throws Exception {
+        for (String url : urls) {
+            cache.prefetchIcon(url).get(10, TimeUnit.SECONDS);
+        }
+    }
+    
+    private static void awaitLevel(MemoryPressureMonitor monitor, MemoryPressureMonitor.Level level)
+        throws InterruptedException {
+        // GC notifications arrive on their own thread shortly after the collection
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (monitor.getLevel() != level && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+    }
+    
+    private static void report(String stage, MetricsRegistry metrics, MemoryPressureMonitor monitor) {
+        System.out.println(stage + (monitor != null ? " " + monitor.getLevel() : "")
+            + " " + metrics.readGauge(MetricsRegistry.ICON_CACHE_ENTRIES)
+            + " " + metrics.readGauge(MetricsRegistry.ICON_CACHE_SOFT_ENTRIES));
+    }
+}
@@ -0,0 +1,201 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises paging and filter pushdown against a local stub of the {@code /items} endpoint.
+ */
+public class PaginatedFetchTest {
+    private static final int CATALOG_SIZE = 1050;
+    
+    private HttpServer server;
+    private GainsApiClient client;
+    private final List<Map<String, Object>> catalog = new ArrayList<>();
+    private final List<String> requestedQueries = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", String.valueOf(i));
+            item.put("name", "Item " + i);
+            // Descending scores so catalog order is also score order
+            item.put("score", 5.0 - i * (5.0 / CATALOG_SIZE));
+            item.put("profit", 1000 + i);
+            catalog.add(item);
+        }
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/api/items", this::handleItems);
+        server.start();
+        
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+        client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(), baseUrl);
+    }
+    
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+    
+    private void handleItems(HttpExchange exchange) throws IOException {
+        requestedQueries.add(exchange.getRequestURI().getRawQuery());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI());
+            int limit = Integer.parseInt(params.getOrDefault("limit", "200"));
+            int offset = Integer.parseInt(params.getOrDefault("offset", "0"));
+            double minScore = Double.parseDouble(params.getOrDefault("minScore", "0"));
+            
+            List<Map<String, Object>> matching = new ArrayList<>();
+            for (Map<String, Object> item : catalog) {
+                if ((double) item.get("score") >= minScore) {
+                    matching.add(item);
+                }
+            }
+            List<Map<String, Object>> page = matching.subList(Math.min(offset, matching.size()),
+                Math.min(offset + limit, matching.size()));
+            
+            // Later pages answer faster so they arrive out of order
+            Thread.sleep(offset == 0 ? 20 : Math.max(5, 80 - offset / 20));
+            
+            Map<String, Object> body = new HashMap<>();
+            body.put("data", page);
+            body.put("totalItems", matching.size());
+            byte[] bytes = new Gson().toJson(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+    
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        if (uri.getRawQuery() == null) {
+            return params;
+        }
+        for (String pair : uri.getRawQuery().split("&")) {
+            String[] kv = pair.split("=", 2);
+            params.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+                kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+        }
+        return params;
+    }
+    
+    @Test
+    public void testFullCatalogIsMergedInOrder() throws Exception {
+        List<List<GainsItem>> pages = Collections.synchronizedList(new ArrayList<>());
+        
+        ApiResponse response = client.fetchAllItems(ItemsQuery.builder().build(), 5000, true, pages::add)
+            .get(30, TimeUnit.SECONDS);
+        
+        assertTrue(response.getError(), response.isSuccess());
+        assertEquals(CATALOG_SIZE, response.getData().size());
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            assertEquals(String.valueOf(i), response.getData().get(i).getId());
+        }
+        
+        // Pages are streamed in catalog order even though later ones finished first
+        assertEquals(6, pages.size());
+        int expectedId = 0;
+        for (List<GainsItem> page : pages) {
+            for (GainsItem item : page) {
+                assertEquals(String.valueOf(expectedId++), item.getId());
+            }
+        }
+        assertTrue("pages should be fetched concurrently, max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+        assertTrue("concurrency should be bounded", maxInFlight.get() <= 4);
+    }
+    
+    @Test
+    public void testMinScoreIsPushedDown() throws Exception {
+        ApiResponse response = client.fetchAllItems(ItemsQuery.builder().minScore(2.5).build(), 5000, true, page -> { })
+            .get(30, TimeUnit.SECONDS);
+        
+        assertTrue(response.isSuccess());
+        assertEquals(525, response.getData().size());
+        for (String query : requestedQueries) {
+            assertTrue(query, query.contains("minScore=2.5"));
+        }
+        // 525 matching rows need three pages, not the six the full catalog would
+        assertEquals(3, requestedQueries.size());
+    }
+    
+    @Test
+    public void testMaxItemsCapsPaging() throws Exception {
+        ApiResponse response = client.fetchAllItems(ItemsQuery.builder().build(), 450, true, page -> { })
+            .get(30, TimeUnit.SECONDS);
+        
+        assertEquals(450, response.getData().size());
+        assertEquals(3, requestedQueries.size());
+        assertTrue(requestedQueries.toString(), requestedQueries.contains("limit=50&offset=400"));
+    }
+    
+    @Test
+    public void testCachedCatalogAnswersNarrowerQuery() throws Exception {
+        client.fetchAllItems(ItemsQuery.builder().build(), 5000, true, page -> { }).get(30, TimeUnit.SECONDS);
+        int requestsAfterFirstFetch = requestedQueries.size();
+        
+        ApiResponse narrowed = client.fetchItems(100, 4.0, false).get(5, TimeUnit.SECONDS);
+        
+        assertTrue(client.wasLastRequestCached());
+        assertEquals(requestsAfterFirstFetch, requestedQueries.size());
+        assertEquals(100, narrowed.getData().size());
+    }
+    
+    @Test
+    public void testSinglePageQueryParameters() throws Exception {
+        ItemsQuery query = ItemsQuery.builder()
+            .limit(25)
+            .minScore(1.5)
+            .filter("minProfit", "1010")
+            .build();
+        
+        ApiResponse response = client.fetchItems(query, true).get(10, TimeUnit.SECONDS);
+        
+        assertTrue(response.isSuccess());
+        assertEquals(25, response.getData().size());
+        assertEquals("limit=25&minScore=1.5&minProfit=1010", requestedQueries.get(0));
+    }
+}
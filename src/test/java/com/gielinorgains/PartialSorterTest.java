@@ -0,0 +1,83 @@
+package com.gielinorgains;
+
+import com.gielinorgains.util.PartialSorter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartialSorterTest {
+    
+    @Test
+    public void testHeadMatchesStableFullSort() {
+        // Few distinct keys so ties are common
+        List<Integer> values = randomValues(5000, 50);
+        Comparator<Integer> comparator = Comparator.<Integer>naturalOrder().reversed();
+        
+        List<Integer> expected = new ArrayList<>(values);
+        expected.sort(comparator);
+        
+        PartialSorter<Integer> sorter = new PartialSorter<>(values, comparator);
+        assertEquals(expected.subList(0, 50), sorter.head(50));
+        assertEquals(50, sorter.getSortedCount());
+    }
+    
+    @Test
+    public void testIncrementalRangesMatchFullSort() {
+        List<Integer> values = randomValues(1000, 1000);
+        List<Integer> expected = new ArrayList<>(values);
+        expected.sort(Comparator.naturalOrder());
+        
+        PartialSorter<Integer> sorter = new PartialSorter<>(values, Comparator.naturalOrder());
+        List<Integer> collected = new ArrayList<>(sorter.head(30));
+        for (int from = 30; from < values.size(); from += 70) {
+            collected.addAll(sorter.sortedRange(from, from + 70));
+        }
+        assertEquals(expected, collected);
+    }
+    
+    @Test
+    public void testBoundsClampToSize() {
+        List<Integer> values = randomValues(10, 100);
+        PartialSorter<Integer> sorter = new PartialSorter<>(values, Comparator.naturalOrder());
+        assertEquals(10, sorter.head(50).size());
+        assertTrue(sorter.sortedRange(10, 60).isEmpty());
+        assertTrue(new PartialSorter<Integer>(new ArrayList<>(), Comparator.naturalOrder()).head(5).isEmpty());
+    }
+    
+    @Test
+    public void testExtendKeepsSortedPrefixAndSortsAppendedRest() {
+        List<Integer> values = new ArrayList<>(randomValues(100, 1000));
+        PartialSorter<Integer> sorter = new PartialSorter<>(values, Comparator.naturalOrder());
+        List<Integer> head = sorter.head(20);
+        
+        // Appended items only compete for positions not yet sorted
+        List<Integer> appended = randomValues(300, 1000);
+        values.addAll(appended);
+        values.add(-1);
+        sorter.extend();
+        assertEquals(401, sorter.size());
+        assertEquals(head, sorter.head(20));
+        
+        List<Integer> rest = new ArrayList<>(values);
+        for (Integer value : head) {
+            rest.remove(value);
+        }
+        rest.sort(Comparator.naturalOrder());
+        assertEquals(rest, sorter.sortedRange(20, 401));
+    }
+    
+    private static List<Integer> randomValues(int count, int bound) {
+        Random random = new Random(7);
+        List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(random.nextInt(bound));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,83 @@
+package com.gielinorgains;
+
+import com.gielinorgains.util.PriceFormatter;
+import com.gielinorgains.util.ScoreFormatter;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriceFormatterTest {
+    
+    @Test
+    public void testMatchesPreviousFormatting() {
+        NumberFormat grouped = NumberFormat.getIntegerInstance(Locale.US);
+        long[] edges = {0, 1, -1, 999, 1000, 1049, 1050, 999_949, 999_950, 1_000_000, 1_050_000,
+            1_249_999, 2_147_483_647, -2_147_483_648, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : edges) {
+            assertEquals(grouped.format(value), PriceFormatter.formatGrouped(value));
+        }
+        
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int price = i < 50_000 ? random.nextInt(5_000_000) : random.nextInt();
+            assertEquals(grouped.format(price), PriceFormatter.formatGrouped(price));
+            assertEquals(legacyAbbreviated(price), PriceFormatter.formatAbbreviated(price));
+        }
+    }
+    
+    @Test
+    public void testScoreTextAndColorTables() {
+        for (int i = 0; i <= 500; i++) {
+            double score = i / 100.0;
+            assertEquals(String.format(Locale.US, "%.1f", score), ScoreFormatter.getScoreText(score));
+        }
+        assertEquals("5.0", ScoreFormatter.getScoreText(7.3));
+        assertEquals("0.0", ScoreFormatter.getScoreText(-1));
+        assertSame(ScoreFormatter.getScoreColor(2.5), ScoreFormatter.getScoreColor(2.5));
+        assertTrue(!ScoreFormatter.getScoreColor(0.001).equals(ScoreFormatter.getScoreColor(0)));
+    }
+    
+    @Test
+    public void testAppendDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        char[] buf = new char[PriceFormatter.MAX_CHARS];
+        long sink = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sink += formatAll(buf, i * 7919L);
+        }
+        
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 200_000; i++) {
+            sink += formatAll(buf, i * 7919L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        
+        assertTrue(sink != 0);
+        // Allow for the measurement calls themselves; 200k iterations of any allocation would be MBs
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+    
+    private static long formatAll(char[] buf, long value) {
+        int length = PriceFormatter.appendGrouped(buf, 0, value);
+        length += PriceFormatter.appendAbbreviated(buf, 0, value);
+        length += ScoreFormatter.getScoreText((value % 60) / 10.0).length();
+        return length + ScoreFormatter.getScoreColor((value % 60) / 10.0).getRGB();
+    }
+    
+    private static String legacyAbbreviated(int price) {
+        if (price >= 1000000) {
+            return String.format("%.1fM", price / 1000000.0);
+        } else if (price >= 1000) {
+            return String.format("%.1fK", price / 1000.0);
+        }
+        return String.valueOf(price);
+    }
+}
@@ -0,0 +1,157 @@
+package com.gielinorgains;
+
+import com.gielinorgains.history.PriceHistoryStore;
+import com.gielinorgains.history.PriceSeries;
+import com.gielinorgains.model.GainsItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriceHistoryStoreTest {
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(90);
+    
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gg-history").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testRoundTripAndRangeBounds() {
+        long start = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        PriceHistoryStore store = new PriceHistoryStore(directory, 30);
+        store.start();
+        for (int i = 0; i < 80; i++) {
+            store.record(snapshot(i), start + i * INTERVAL);
+        }
+        store.flush();
+        
+        PriceSeries all = store.readRange(4151, 0, Long.MAX_VALUE);
+        assertEquals(80, all.size());
+        for (int i = 0; i < 80; i++) {
+            assertEquals(start + i * INTERVAL, all.getTime(i));
+            assertEquals(lowPrice(4151, i), all.getLowPrice(i));
+            assertEquals(lowPrice(4151, i) + 500, all.getHighPrice(i));
+            assertEquals(score(i), all.getScore(i), 0.0005);
+            assertEquals(10_000L + i * 37, all.getDailyVolume(i));
+        }
+        
+        // A window that starts after a keyframe still decodes the right absolute values
+        PriceSeries window = store.readRange(4151, start + 40 * INTERVAL, start + 49 * INTERVAL);
+        assertEquals(10, window.size());
+        assertEquals(lowPrice(4151, 40), window.getLowPrice(0));
+        assertEquals(lowPrice(4151, 49), window.getLowPrice(9));
+        
+        // Item only present in every other snapshot
+        assertEquals(40, store.readRange(11832, 0, Long.MAX_VALUE).size());
+        assertTrue(store.readRange(999999, 0, Long.MAX_VALUE).isEmpty());
+        store.close();
+    }
+    
+    @Test
+    public void testRotationAndReopen() {
+        long start = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        PriceHistoryStore store = new PriceHistoryStore(directory, 30, 4096, TimeUnit.HOURS.toMillis(1));
+        store.start();
+        for (int i = 0; i < 60; i++) {
+            store.record(snapshot(i), start + i * INTERVAL);
+        }
+        store.close();
+        
+        PriceHistoryStore reopened = new PriceHistoryStore(directory, 30, 4096, TimeUnit.HOURS.toMillis(1));
+        reopened.start();
+        reopened.flush();
+        assertTrue(reopened.getSegmentCount() > 1);
+        
+        PriceSeries series = reopened.readRange(4151, 0, Long.MAX_VALUE);
+        assertEquals(60, series.size());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(lowPrice(4151, i), series.getLowPrice(i));
+        }
+        reopened.close();
+    }
+    
+    @Test
+    public void testRetentionDropsOldSegments() {
+        long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10);
+        PriceHistoryStore store = new PriceHistoryStore(directory, 3);
+        store.start();
+        store.record(snapshot(0), old);
+        store.close();
+        
+        PriceHistoryStore reopened = new PriceHistoryStore(directory, 3);
+        reopened.start();
+        reopened.record(snapshot(1));
+        reopened.flush();
+        assertEquals(1, reopened.getSegmentCount());
+        assertTrue(reopened.readRange(4151, 0, old + 1).isEmpty());
+        assertEquals(1, reopened.readRange(4151, 0, Long.MAX_VALUE).size());
+        reopened.close();
+    }
+    
+    @Test
+    public void testShorterRetentionAppliesWhileRunning() {
+        long now = System.currentTimeMillis();
+        PriceHistoryStore store = new PriceHistoryStore(directory, 30, 64 * 1024, TimeUnit.DAYS.toMillis(1));
+        store.start();
+        store.record(snapshot(0), now - TimeUnit.DAYS.toMillis(10));
+        store.record(snapshot(1), now);
+        store.flush();
+        assertEquals(2, store.getSegmentCount());
+        
+        store.setRetentionDays(3);
+        store.flush();
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(1, store.readRange(4151, 0, Long.MAX_VALUE).size());
+        store.close();
+    }
+    
+    private static List<GainsItem> snapshot(int tick) {
+        List<GainsItem> items = new ArrayList<>();
+        for (int id : new int[] {2, 4151, 560, 11832, 12934}) {
+            if (id == 11832 && tick % 2 == 1) {
+                continue;
+            }
+            items.add(GainsItem.builder()
+                .id(String.valueOf(id))
+                .name("Item " + id)
+                .latestLowPrice(lowPrice(id, tick))
+                .latestHighPrice(lowPrice(id, tick) + 500)
+                .score(score(tick))
+                .dailyVolume(10_000L + tick * 37)
+                .build());
+        }
+        items.add(GainsItem.builder().id("not-a-number").name("Ignored").build());
+        return items;
+    }
+    
+    private static int lowPrice(int id, int tick) {
+        return id * 10 + (tick % 7) * 113 - (tick % 3) * 250;
+    }
+    
+    private static double score(int tick) {
+        return 1.5 + (tick % 11) * 0.137;
+    }
+}
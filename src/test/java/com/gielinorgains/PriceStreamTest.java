@@ -0,0 +1,177 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Push mode end to end, against a local server emitting synthetic price ticks.
+ */
+public class PriceStreamTest {
+    private static final int ITEMS = 150;
+    
+    private StubTickServer server;
+    private GainsApiClient client;
+    private final AtomicInteger updatedItems = new AtomicInteger();
+    private final AtomicInteger resyncs = new AtomicInteger();
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTickServer(ITEMS);
+        client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(), server.getBaseUrl());
+        client.addPriceUpdateListener(new GainsApiClient.PriceUpdateListener() {
+            @Override
+            public void onPricesUpdated(List<GainsItem> changed) {
+                updatedItems.addAndGet(changed.size());
+            }
+            
+            @Override
+            public void onResyncRequired() {
+                resyncs.incrementAndGet();
+            }
+        });
+        client.startPriceStream();
+        await("stream connected", client::isPriceStreamLive);
+    }
+    
+    @After
+    public void tearDown() {
+        client.stopPriceStream();
+        server.close();
+    }
+    
+    @Test
+    public void testTicksKeepCachedItemsCurrent() throws Exception {
+        List<GainsItem> items = fetch();
+        int[] lowPrices = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            lowPrices[i] = items.get(i).getLatestLowPrice();
+        }
+        
+        server.startTicking(200, 5);
+        Thread.sleep(1000);
+        server.stopTicking();
+        
+        await("cached items converge", this::cacheMatchesServer);
+        assertTrue(updatedItems.get() > 0);
+        assertEquals(0, resyncs.get());
+        // Served from the cache the stream kept current, not fetched again
+        assertEquals(1, server.getSnapshotRequests());
+        // Items already handed out are replaced, never written to
+        assertFalse(matchesServer(items));
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(lowPrices[i], items.get(i).getLatestLowPrice());
+        }
+    }
+    
+    @Test
+    public void testSnapshotCatchesUpWithTicksReceivedWhileFetching() throws Exception {
+        // Ticks the client saw before its snapshot was taken are older than it; only later ones replay
+        server.startTicking(500, 20);
+        fetch();
+        Thread.sleep(300);
+        server.stopTicking();
+        
+        await("cached items converge", this::cacheMatchesServer);
+        assertEquals(0, resyncs.get());
+    }
+    
+    @Test
+    public void testReconnectReplaysMissedTicks() throws Exception {
+        fetch();
+        
+        server.startTicking(200, 5);
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(250);
+            server.dropConnections();
+        }
+        Thread.sleep(250);
+        server.stopTicking();
+        
+        await("cached items converge", this::cacheMatchesServer);
+        assertTrue(server.getStreamConnections() >= 4);
+        assertEquals(0, resyncs.get());
+        assertEquals(1, server.getSnapshotRequests());
+    }
+    
+    @Test
+    public void testResyncWhenServerCannotReplay() throws Exception {
+        fetch();
+        server.tick(5);
+        await("first tick applied", () -> updatedItems.get() > 0);
+        
+        // Ticks missed while disconnected fall out of the server's history
+        server.setHistorySize(2);
+        server.setAcceptingStreams(false);
+        server.dropConnections();
+        await("stream dropped", () -> !client.isPriceStreamLive());
+        for (int i = 0; i < 20; i++) {
+            server.tick(10);
+        }
+        server.setAcceptingStreams(true);
+        
+        await("resync requested", () -> resyncs.get() == 1);
+        await("stream reconnected", client::isPriceStreamLive);
+        fetch();
+        assertEquals(2, server.getSnapshotRequests());
+        
+        server.startTicking(200, 5);
+        Thread.sleep(300);
+        server.stopTicking();
+        await("cached items converge", this::cacheMatchesServer);
+        assertEquals(1, resyncs.get());
+    }
+    
+    private List<GainsItem> fetch() throws Exception {
+        ApiResponse response = client.fetchItems(ITEMS, 0).get(10, TimeUnit.SECONDS);
+        assertTrue(response.getError(), response.isSuccess());
+        assertEquals(ITEMS, response.getData().size());
+        return response.getData();
+    }
+    
+    private boolean cacheMatchesServer() {
+        try {
+            return matchesServer(fetch());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    private boolean matchesServer(List<GainsItem> items) {
+        for (int i = 0; i < ITEMS; i++) {
+            GainsItem item = items.get(i);
+            int index = Integer.parseInt(item.getId()) - 1;
+            if (item.getLatestLowPrice() != server.getLowPrice(index)
+                || item.getLatestHighPrice() != server.getHighPrice(index)
+                || item.getProfit() != server.getHighPrice(index) - server.getLowPrice(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void await(String condition, BooleanSupplier check) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!check.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + condition);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
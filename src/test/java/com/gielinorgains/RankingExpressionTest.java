@@ -0,0 +1,96 @@
+package com.gielinorgains;
+
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.util.RankingExpression;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RankingExpressionTest {
+    
+    @Test
+    public void testEvaluatesFieldsAndFunctions() {
+        GainsItem item = GainsItem.builder()
+            .profit(1200)
+            .quantity(500)
+            .limit(100)
+            .adjustedLowPrice(10_000)
+            .dailyVolume(800)
+            .build();
+        
+        assertEquals(1200 * 100 / 100.0,
+            RankingExpression.compile("profit * min(quantity, limit) / sqrt(price)").evaluate(item), 1e-9);
+        assertEquals(12_000, RankingExpression.compile("if(volume >= 500, profit * 10, 0)").evaluate(item), 0);
+        assertEquals(0, RankingExpression.compile("if(volume >= 1k, profit, 0)").evaluate(item), 0);
+        assertEquals(7, RankingExpression.compile("1 + 2 * 3").evaluate(item), 0);
+        assertEquals(-9, RankingExpression.compile("-(1 + 2) * 3").evaluate(item), 0);
+        assertEquals(1, RankingExpression.compile("Profit > 1000 && quantity <= 500").evaluate(item), 0);
+        assertEquals(2_500_000, RankingExpression.compile("2.5m").evaluate(item), 0);
+        
+        // A missing buy limit counts as unlimited
+        item.setLimit(null);
+        assertEquals(500, RankingExpression.compile("min(quantity, limit)").evaluate(item), 0);
+        assertTrue(Double.isNaN(RankingExpression.compile("rsi * 2").evaluate(item)));
+    }
+    
+    @Test
+    public void testReportsErrorsWithPosition() {
+        assertCompileError("profit * ", "Unexpected end of expression");
+        assertCompileError("profit + margin", "Unknown variable 'margin' at position 10");
+        assertCompileError("sqrt(profit, 2)", "Wrong number of arguments for sqrt()");
+        assertCompileError("min(profit, volume", "Expected ')'");
+        assertCompileError("profit = 1", "Unexpected '='");
+        assertCompileError("  ", "empty");
+    }
+    
+    @Test
+    public void testRankAllCachesPerExpression() {
+        Random random = new Random(3);
+        List<GainsItem> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(GainsItem.builder()
+                .profit(random.nextInt(10_000))
+                .quantity(1 + random.nextInt(100))
+                .rsi(i % 10 == 0 ? null : random.nextDouble() * 100)
+                .build());
+        }
+        
+        RankingExpression byProfit = RankingExpression.compile("profit * quantity");
+        GainsExecutors executors = new GainsExecutors(new MetricsRegistry());
+        try {
+            assertEquals(5000, byProfit.rankAll(items, executors));
+        } finally {
+            executors.stop();
+        }
+        assertEquals(0, byProfit.rankAll(items));
+        for (GainsItem item : items) {
+            assertEquals(item.getProfit() * (double) item.getQuantity(), item.getCustomRank(), 0);
+        }
+        
+        // A new expression re-ranks everything; NaN results rank below everything else
+        RankingExpression byRsi = RankingExpression.compile("rsi");
+        assertEquals(5000, byRsi.rankAll(items));
+        assertEquals(Double.NEGATIVE_INFINITY, items.get(0).getCustomRank(), 0);
+        assertEquals(items.get(1).getRsi(), items.get(1).getCustomRank(), 0);
+        
+        items.add(GainsItem.builder().rsi(50.0).build());
+        assertEquals(1, byRsi.rankAll(items));
+    }
+    
+    private static void assertCompileError(String source, String expectedMessage) {
+        try {
+            RankingExpression.compile(source);
+            fail("Expected an error for: " + source);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+        }
+    }
+}
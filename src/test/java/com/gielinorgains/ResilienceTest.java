@@ -0,0 +1,191 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.api.ResiliencePolicy;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Deadline, hedging and circuit breaking against a local server with injected faults.
+ */
+public class ResilienceTest {
+    private static final int ITEMS = 50;
+    
+    private FaultyItemsServer server;
+    private MetricsRegistry metrics;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new FaultyItemsServer(ITEMS);
+        metrics = new MetricsRegistry();
+    }
+    
+    @After
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    public void testDeadlineBoundsHangingRefresh() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .refreshDeadlineMillis(300)
+            .hedging(false)
+            .build());
+        server.setDelayMillis(5000);
+        
+        long start = System.nanoTime();
+        ApiResponse response = fetch(client, true);
+        assertFalse(response.isSuccess());
+        assertTrue(response.getError(), response.getError().startsWith("Timed out"));
+        assertTrue(elapsedMillis(start) < 2000);
+        
+        // Once something is cached, a refresh that runs out of time serves it instead
+        server.heal();
+        assertTrue(fetch(client, true).isSuccess());
+        server.setDelayMillis(5000);
+        start = System.nanoTime();
+        response = fetch(client, true);
+        assertTrue(response.isSuccess());
+        assertEquals(ITEMS, response.getData().size());
+        assertTrue(client.wasLastRequestCached());
+        assertTrue(elapsedMillis(start) < 2000);
+        assertEquals(2, metrics.readCounter(MetricsRegistry.DEADLINE_EXCEEDED));
+    }
+    
+    @Test
+    public void testDeadlineCoversEveryPage() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .refreshDeadlineMillis(300)
+            .hedging(false)
+            .build());
+        server.setDelayMillis(5000);
+        
+        long start = System.nanoTime();
+        ApiResponse response = client.fetchAllItems(ItemsQuery.builder().build(), 1000, true, page -> { })
+            .get(10, TimeUnit.SECONDS);
+        assertFalse(response.isSuccess());
+        assertTrue(elapsedMillis(start) < 2000);
+    }
+    
+    @Test
+    public void testHedgedRequestAnswersWhenFirstIsSlow() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .defaultHedgeDelayMillis(100)
+            .build());
+        server.slowNext(1, 3000);
+        
+        long start = System.nanoTime();
+        ApiResponse response = fetch(client, true);
+        assertTrue(response.getError(), response.isSuccess());
+        assertEquals(ITEMS, response.getData().size());
+        assertTrue(elapsedMillis(start) < 2000);
+        assertEquals(2, server.getRequests());
+        assertEquals(1, metrics.readCounter(MetricsRegistry.HEDGED_REQUESTS));
+        assertEquals(1, metrics.readCounter(MetricsRegistry.HEDGE_WINS));
+        
+        // A prompt answer is not hedged
+        assertTrue(fetch(client, true).isSuccess());
+        Thread.sleep(200);
+        assertEquals(3, server.getRequests());
+        assertEquals(1, metrics.readCounter(MetricsRegistry.HEDGED_REQUESTS));
+    }
+    
+    @Test
+    public void testOpenCircuitServesCacheWithoutCallingApi() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .failureThreshold(3)
+            .openMillis(300)
+            .hedging(false)
+            .build());
+        assertTrue(fetch(client, true).isSuccess());
+        
+        server.setStatus(503);
+        for (int i = 0; i < 3; i++) {
+            ApiResponse response = fetch(client, true);
+            // Failed refreshes fall back to what is cached
+            assertTrue(response.isSuccess());
+            assertTrue(client.wasLastRequestCached());
+        }
+        assertEquals(4, server.getRequests());
+        assertFalse(client.isApiHealthy());
+        
+        ApiResponse response = fetch(client, true);
+        assertTrue(response.isSuccess());
+        assertEquals(ITEMS, response.getData().size());
+        assertEquals(4, server.getRequests());
+        assertEquals(1, metrics.readCounter(MetricsRegistry.CIRCUIT_REJECTED));
+        
+        // After the open period one trial goes through and closes the circuit again
+        server.heal();
+        Thread.sleep(350);
+        response = fetch(client, true);
+        assertTrue(response.isSuccess());
+        assertFalse(client.wasLastRequestCached());
+        assertEquals(5, server.getRequests());
+        assertTrue(client.isApiHealthy());
+    }
+    
+    @Test
+    public void testOpenCircuitWithoutCacheFailsFast() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .failureThreshold(2)
+            .openMillis(60_000)
+            .hedging(false)
+            .build());
+        server.setDropConnections(true);
+        
+        assertFalse(fetch(client, true).isSuccess());
+        assertFalse(fetch(client, true).isSuccess());
+        // The HTTP stack may retry a dropped connection itself, so count from here
+        int requests = server.getRequests();
+        
+        long start = System.nanoTime();
+        ApiResponse response = fetch(client, true);
+        assertFalse(response.isSuccess());
+        assertTrue(response.getError(), response.getError().startsWith("API unavailable"));
+        assertTrue(elapsedMillis(start) < 100);
+        assertEquals(requests, server.getRequests());
+    }
+    
+    @Test
+    public void testTrialFailureReopensCircuit() throws Exception {
+        GainsApiClient client = client(ResiliencePolicy.builder()
+            .failureThreshold(1)
+            .openMillis(200)
+            .hedging(false)
+            .build());
+        server.setStatus(500);
+        assertFalse(fetch(client, true).isSuccess());
+        assertFalse(client.isApiHealthy());
+        
+        Thread.sleep(250);
+        assertFalse(fetch(client, true).isSuccess());
+        assertEquals(2, server.getRequests());
+        // Straight back to open: the next refresh is not let through
+        assertTrue(fetch(client, true).getError().startsWith("API unavailable"));
+        assertEquals(2, server.getRequests());
+    }
+    
+    private GainsApiClient client(ResiliencePolicy policy) {
+        return new GainsApiClient(new OkHttpClient(), metrics, server.getBaseUrl(), policy);
+    }
+    
+    private static ApiResponse fetch(GainsApiClient client, boolean forceRefresh) throws Exception {
+        return client.fetchItems(ITEMS, 0, forceRefresh).get(10, TimeUnit.SECONDS);
+    }
+    
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
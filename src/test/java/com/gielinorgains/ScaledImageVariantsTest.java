@@ -0,0 +1,54 @@
+package com.gielinorgains;
+
+import com.gielinorgains.ui.ScaledImageVariants;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ScaledImageVariantsTest {
+    
+    @Test
+    public void testVariantRenderedOncePerScale() {
+        ScaledImageVariants variants = new ScaledImageVariants(solid(36, 32, Color.RED), 20, 20, true);
+        
+        BufferedImage oneX = variants.forScale(1.0, 1.0);
+        BufferedImage oneAndHalf = variants.forScale(1.5, 1.5);
+        assertEquals(20, oneX.getWidth());
+        assertEquals(30, oneAndHalf.getWidth());
+        assertEquals(30, oneAndHalf.getHeight());
+        
+        assertSame(oneX, variants.forScale(1.0, 1.0));
+        assertSame(oneAndHalf, variants.getResolutionVariant(30, 30));
+        assertEquals(2, variants.getResolutionVariants().size());
+    }
+    
+    @Test
+    public void testDrawAlignedBlitsInDeviceSpace() {
+        ScaledImageVariants variants = new ScaledImageVariants(solid(10, 10, Color.RED), 10, 10, true);
+        BufferedImage target = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = target.createGraphics();
+        g2.scale(2, 2);
+        variants.drawAligned(g2, 5, 5);
+        
+        // Device transform is restored and the 20x20 variant lands at device (10, 10)
+        assertEquals(2.0, g2.getTransform().getScaleX(), 0);
+        g2.dispose();
+        assertEquals(0, target.getRGB(9, 9));
+        assertEquals(Color.RED.getRGB(), target.getRGB(10, 10));
+        assertEquals(Color.RED.getRGB(), target.getRGB(29, 29));
+        assertEquals(0, target.getRGB(30, 30));
+    }
+    
+    private static BufferedImage solid(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(color);
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,51 @@
+package com.gielinorgains;
+
+import com.gielinorgains.util.SeriesDownsampler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeriesDownsamplerTest {
+    
+    @Test
+    public void testColumnsKeepExtremesAndEnds() {
+        int n = 10_000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i;
+            ys[i] = Math.sin(i / 50.0) * 100;
+        }
+        ys[4321] = 5000; // a spike must survive downsampling
+        
+        SeriesDownsampler.Columns columns = SeriesDownsampler.downsample(xs, ys, n, 0, n - 1, 200);
+        assertEquals(200, columns.size());
+        
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < columns.size(); i++) {
+            assertTrue(!columns.isEmpty(i));
+            max = Math.max(max, columns.max[i]);
+        }
+        assertEquals(5000, max, 0);
+        assertEquals(ys[0], columns.first[0], 0);
+        assertEquals(ys[n - 1], columns.last[199], 0);
+    }
+    
+    @Test
+    public void testWindowAndSparseColumns() {
+        double[] xs = {0, 10, 20, 30, 40};
+        double[] ys = {1, 2, 3, 4, 5};
+        
+        SeriesDownsampler.Columns columns = SeriesDownsampler.downsample(xs, ys, xs.length, 10, 30, 100);
+        int filled = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columns.isEmpty(i)) {
+                filled++;
+            }
+        }
+        assertEquals(3, filled);
+        assertEquals(2, columns.first[0], 0);
+        assertEquals(4, columns.last[99], 0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ResiliencePolicy;
+import com.gielinorgains.api.SharedSnapshotCache;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import okhttp3.OkHttpClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for one RuneLite client in {@link SharedSnapshotCacheTest}, run in its own JVM. Reads
+ * one command per line from stdin and answers each with one line on stdout.
+ *
+ * Arguments: API base URL, shared directory, item count, snapshot max age and request wait in ms.
+ */
+public class SharedCacheWorker {
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args[0];
+        File directory = new File(args[1]);
+        int items = Integer.parseInt(args[2]);
+        long maxAgeMillis = Long.parseLong(args[3]);
+        long requestWaitMillis = Long.parseLong(args[4]);
+        
+        GainsApiClient client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(), baseUrl,
+            ResiliencePolicy.builder().hedging(false).build());
+        SharedSnapshotCache cache = new SharedSnapshotCache(directory, maxAgeMillis, requestWaitMillis);
+        client.attachSharedCache(cache);
+        System.out.println("ready");
+        
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String command;
+        while ((command = in.readLine()) != null) {
+            switch (command) {
+                case "fetch":
+                case "refresh":
+                    ApiResponse response = client.fetchItems(items, 0, "refresh".equals(command))
+                        .get(30, TimeUnit.SECONDS);
+                    System.out.println(response.isSuccess()
+                        ? "ok " + response.getData().size() + " " + client.wasLastRequestCached()
+                        : "error " + response.getError());
+                    break;
+                case "clear":
+                    client.clearCache();
+                    System.out.println("ok");
+                    break;
+                case "leader":
+                    System.out.println(cache.isLeader());
+                    break;
+                case "exit":
+                    cache.close();
+                    System.out.println("bye");
+                    return;
+                default:
+                    System.out.println("unknown " + command);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.api.SharedSnapshotCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Several clients, each in its own JVM, sharing one directory: only the leader calls the API,
+ * and another client takes over when it exits.
+ */
+public class SharedSnapshotCacheTest {
+    private static final int ITEMS = 40;
+    private static final long MAX_AGE_MS = 1500;
+    private static final long REQUEST_WAIT_MS = 2000;
+    
+    private File shared;
+    private FaultyItemsServer server;
+    private final List<Worker> workers = new ArrayList<>();
+    
+    @Before
+    public void setUp() throws Exception {
+        shared = Files.createTempDirectory("gg-shared").toFile();
+        server = new FaultyItemsServer(ITEMS);
+    }
+    
+    @After
+    public void tearDown() {
+        for (Worker worker : workers) {
+            worker.process.destroyForcibly();
+        }
+        server.close();
+        File[] files = shared.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        shared.delete();
+    }
+    
+    @Test
+    public void testFollowersReadLeaderSnapshotAndTakeOver() throws Exception {
+        Worker a = start();
+        awaitLeader(a);
+        Worker b = start();
+        Worker c = start();
+        assertEquals("false", b.send("leader"));
+        assertEquals("false", c.send("leader"));
+        
+        assertEquals("ok " + ITEMS + " false", a.send("fetch"));
+        assertEquals(1, server.getRequests());
+        
+        // The other clients are served the leader's snapshot without calling the API
+        assertEquals("ok " + ITEMS + " true", b.send("fetch"));
+        assertEquals("ok " + ITEMS + " true", c.send("fetch"));
+        assertEquals(1, server.getRequests());
+        
+        // Killed outright, so nothing but the OS releases its lock
+        a.process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        Worker leader = awaitEitherLeader(b, c);
+        Worker follower = leader == b ? c : b;
+        
+        // Once the snapshot is stale, a follower has the new leader fetch a fresh one
+        Thread.sleep(MAX_AGE_MS + 100);
+        assertEquals("ok", follower.send("clear"));
+        assertEquals("ok " + ITEMS + " true", follower.send("fetch"));
+        assertEquals(2, server.getRequests());
+        
+        // A forced refresh on a follower is also answered by the leader
+        assertEquals("ok " + ITEMS + " true", follower.send("refresh"));
+        assertEquals(3, server.getRequests());
+        assertEquals("false", follower.send("leader"));
+    }
+    
+    @Test
+    public void testFollowerFetchesItselfWhenLeaderIsSlow() throws Exception {
+        Worker a = start();
+        awaitLeader(a);
+        Worker b = start();
+        
+        // The leader's fetch for b hangs, so b stops waiting and calls the API itself
+        server.slowNext(1, REQUEST_WAIT_MS * 3);
+        long start = System.nanoTime();
+        assertEquals("ok " + ITEMS + " false", b.send("fetch"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= REQUEST_WAIT_MS);
+        assertTrue(elapsed < REQUEST_WAIT_MS * 3);
+        assertEquals(2, server.getRequests());
+    }
+    
+    @Test
+    public void testWaitingFollowerStillTakesOver() throws Exception {
+        // Two caches in this JVM: the second can't take the lock while the first holds it
+        SharedSnapshotCache leader = new SharedSnapshotCache(shared, MAX_AGE_MS, REQUEST_WAIT_MS);
+        leader.start(query -> { });
+        awaitLead(leader);
+        SharedSnapshotCache follower = new SharedSnapshotCache(shared, MAX_AGE_MS, REQUEST_WAIT_MS);
+        try {
+            follower.start(query -> { });
+            long start = System.nanoTime();
+            CompletableFuture<SharedSnapshotCache.Snapshot> lookup = follower.find(
+                ItemsQuery.builder().limit(ITEMS).build(), 0, REQUEST_WAIT_MS, snapshot -> true);
+            
+            // The leader never answers and goes away. The follower takes over while its lookup
+            // is still waiting, and the lookup stops waiting for a leader that is now itself
+            leader.close();
+            awaitLead(follower);
+            assertNull(lookup.get(REQUEST_WAIT_MS, TimeUnit.MILLISECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < REQUEST_WAIT_MS);
+        } finally {
+            leader.close();
+            follower.close();
+        }
+    }
+    
+    private static void awaitLead(SharedSnapshotCache cache) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!cache.isLeader()) {
+            assertTrue("No cache took the lead", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+    
+    private Worker start() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            SharedCacheWorker.class.getName(), server.getBaseUrl(), shared.getAbsolutePath(),
+            String.valueOf(ITEMS), String.valueOf(MAX_AGE_MS), String.valueOf(REQUEST_WAIT_MS));
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Worker worker = new Worker(builder.start());
+        workers.add(worker);
+        assertEquals("ready", worker.read());
+        return worker;
+    }
+    
+    private static void awaitLeader(Worker worker) throws Exception {
+        assertTrue(awaitEitherLeader(worker) == worker);
+    }
+    
+    private static Worker awaitEitherLeader(Worker... candidates) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (Worker candidate : candidates) {
+                if ("true".equals(candidate.send("leader"))) {
+                    return candidate;
+                }
+            }
+            Thread.sleep(50);
+        }
+        fail("No client took the lead");
+        return null;
+    }
+    
+    private static final class Worker {
+        private final Process process;
+        private final Writer commands;
+        private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        
+        Worker(Process process) {
+            this.process = process;
+            this.commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            Thread reader = new Thread(() -> {
+                try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = out.readLine()) != null) {
+                        replies.add(line);
+                    }
+                } catch (IOException e) {
+                    // Process gone
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+        }
+        
+        String send(String command) throws Exception {
+            commands.write(command + "\n");
+            commands.flush();
+            return read();
+        }
+        
+        String read() throws InterruptedException {
+            String reply = replies.poll(30, TimeUnit.SECONDS);
+            assertNotNull("No reply from worker", reply);
+            return reply;
+        }
+    }
+}
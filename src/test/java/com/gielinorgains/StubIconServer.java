@@ -0,0 +1,139 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.IconBundle;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for both the icon host and the API's {@code /icons/bundle} endpoint. Every
+ * request takes {@code latencyMillis} before it is answered, standing in for the round trip.
+ * Icons whose URL contains "missing" are left out of bundles, though they can be fetched alone.
+ *
+ * Run with {@code -Dsun.net.httpserver.nodelay=true} when timing: otherwise the JDK server
+ * leaves small responses waiting on delayed ACKs, which swamps the latency being modelled.
+ */
+public class StubIconServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] png;
+    private final long latencyMillis;
+    private final AtomicInteger iconRequests = new AtomicInteger();
+    private final AtomicInteger bundleRequests = new AtomicInteger();
+    private volatile boolean bundlesEnabled = true;
+    private volatile long bundleStallMillis;
+    
+    public StubIconServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        BufferedImage image = new BufferedImage(36, 32, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(10, 10, 0xFFFF0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        png = out.toByteArray();
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/icons/", this::handleIcon);
+        server.createContext("/api/icons/bundle", this::handleBundle);
+        server.start();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+    
+    public String iconUrl(String name) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/icons/" + name + ".png";
+    }
+    
+    /**
+     * With bundles off the endpoint answers 404, as an API without it would
+     */
+    public void setBundlesEnabled(boolean bundlesEnabled) {
+        this.bundlesEnabled = bundlesEnabled;
+    }
+    
+    /**
+     * Pauses this long halfway through each bundle body, as a slow link would
+     */
+    public void setBundleStallMillis(long bundleStallMillis) {
+        this.bundleStallMillis = bundleStallMillis;
+    }
+    
+    public int getIconRequests() {
+        return iconRequests.get();
+    }
+    
+    public int getBundleRequests() {
+        return bundleRequests.get();
+    }
+    
+    private void handleIcon(HttpExchange exchange) throws IOException {
+        iconRequests.incrementAndGet();
+        pause();
+        exchange.getResponseHeaders().add("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, png.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(png);
+        }
+    }
+    
+    private void handleBundle(HttpExchange exchange) throws IOException {
+        bundleRequests.incrementAndGet();
+        byte[] request = exchange.getRequestBody().readAllBytes();
+        pause();
+        if (!bundlesEnabled || !"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        
+        Map<String, byte[]> icons = new LinkedHashMap<>();
+        for (String url : IconBundle.decodeRequest(request)) {
+            if (!url.contains("missing")) {
+                icons.put(url, png);
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        IconBundle.write(body, icons);
+        exchange.getResponseHeaders().add("Content-Type", IconBundle.MEDIA_TYPE);
+        byte[] bytes = body.toByteArray();
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int half = bytes.length / 2;
+            out.write(bytes, 0, half);
+            out.flush();
+            sleep(bundleStallMillis);
+            out.write(bytes, half, bytes.length - half);
+        }
+    }
+    
+    private void pause() {
+        sleep(latencyMillis);
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
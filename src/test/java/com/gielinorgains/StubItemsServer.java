@@ -0,0 +1,117 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.ItemsCborDecoder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the {@code /items} endpoint that serves one recorded page as CBOR or JSON,
+ * depending on the request's {@code Accept} header.
+ */
+public class StubItemsServer implements AutoCloseable {
+    private final byte[] json;
+    private final byte[] cbor;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger cborResponses = new AtomicInteger();
+    private final AtomicInteger jsonResponses = new AtomicInteger();
+    private volatile boolean cborEnabled = true;
+    private volatile String lastAccept;
+    
+    public StubItemsServer(byte[] json) throws IOException {
+        this.json = json;
+        this.cbor = CborEncoder.fromJson(json);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/items", this::handle);
+        server.start();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+    
+    /**
+     * When disabled the stub behaves like a server that only speaks JSON
+     */
+    public void setCborEnabled(boolean cborEnabled) {
+        this.cborEnabled = cborEnabled;
+    }
+    
+    public byte[] getJson() {
+        return json;
+    }
+    
+    public byte[] getCbor() {
+        return cbor;
+    }
+    
+    public int getCborResponses() {
+        return cborResponses.get();
+    }
+    
+    public int getJsonResponses() {
+        return jsonResponses.get();
+    }
+    
+    public String getLastAccept() {
+        return lastAccept;
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            lastAccept = accept;
+            boolean useCbor = cborEnabled && accept != null && accept.contains(ItemsCborDecoder.MEDIA_TYPE);
+            (useCbor ? cborResponses : jsonResponses).incrementAndGet();
+            
+            byte[] body = useCbor ? cbor : json;
+            exchange.getResponseHeaders().add("Content-Type", useCbor ? ItemsCborDecoder.MEDIA_TYPE : "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    /**
+     * Size of a body after gzip, as it would travel with Content-Encoding: gzip
+     */
+    public static int gzippedSize(byte[] body) throws IOException {
+        CountingStream counter = new CountingStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(counter)) {
+            gzip.write(body);
+        }
+        return counter.count;
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private static final class CountingStream extends OutputStream {
+        int count;
+        
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
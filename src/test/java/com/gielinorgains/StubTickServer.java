@@ -0,0 +1,258 @@
+package com.gielinorgains;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the live price API: {@code /items} serves the current prices with the
+ * sequence they reflect, and {@code /items/stream} pushes synthetic ticks as server-sent events
+ * at a configurable rate, replaying missed ticks from a bounded history on reconnect.
+ */
+public class StubTickServer implements AutoCloseable {
+    private static final String CLOSE = "";
+    private static final long HEARTBEAT_MILLIS = 200;
+    
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+    private final List<BlockingQueue<String>> clients = new CopyOnWriteArrayList<>();
+    private final AtomicInteger streamConnections = new AtomicInteger();
+    private final AtomicInteger snapshotRequests = new AtomicInteger();
+    private final Random random = new Random(42);
+    private volatile boolean acceptingStreams = true;
+    private ScheduledFuture<?> tickTask;
+    
+    // Guarded by this
+    private final int[] lowPrices;
+    private final int[] highPrices;
+    private final ArrayDeque<String> history = new ArrayDeque<>();
+    private int historySize = 1000;
+    private long sequence = 1;
+    
+    public StubTickServer(int itemCount) throws IOException {
+        lowPrices = new int[itemCount];
+        highPrices = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            lowPrices[i] = 1000 + i * 10;
+            highPrices[i] = lowPrices[i] + 50;
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/items/stream", this::handleStream);
+        server.createContext("/api/items", this::handleSnapshot);
+        server.start();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+    
+    /**
+     * Emits {@code ticksPerSecond} events, each moving the prices of {@code itemsPerTick} random items
+     */
+    public void startTicking(int ticksPerSecond, int itemsPerTick) {
+        stopTicking();
+        synchronized (this) {
+            tickTask = ticker.scheduleAtFixedRate(() -> tick(itemsPerTick), 0,
+                TimeUnit.SECONDS.toMicros(1) / ticksPerSecond, TimeUnit.MICROSECONDS);
+        }
+    }
+    
+    public void stopTicking() {
+        ScheduledFuture<?> task;
+        synchronized (this) {
+            task = tickTask;
+            tickTask = null;
+        }
+        if (task != null) {
+            task.cancel(false);
+            // Let a tick already running finish before callers read the state
+            try {
+                ticker.submit(() -> { }).get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    
+    public synchronized void tick(int itemsPerTick) {
+        StringBuilder data = new StringBuilder("[");
+        for (int i = 0; i < itemsPerTick; i++) {
+            int item = random.nextInt(lowPrices.length);
+            lowPrices[item] = Math.max(1, lowPrices[item] + random.nextInt(41) - 20);
+            highPrices[item] = lowPrices[item] + 10 + random.nextInt(90);
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append("{\"id\":\"").append(id(item))
+                .append("\",\"latestLowPrice\":").append(lowPrices[item])
+                .append(",\"latestHighPrice\":").append(highPrices[item])
+                .append(",\"profit\":").append(highPrices[item] - lowPrices[item])
+                .append('}');
+        }
+        data.append(']');
+        
+        String event = "id: " + sequence + "\nevent: delta\ndata: " + data + "\n\n";
+        sequence++;
+        history.addLast(event);
+        while (history.size() > historySize) {
+            history.removeFirst();
+        }
+        for (BlockingQueue<String> client : clients) {
+            client.add(event);
+        }
+    }
+    
+    /**
+     * How many past ticks a reconnecting client can be sent; older ones need a resync
+     */
+    public synchronized void setHistorySize(int historySize) {
+        this.historySize = historySize;
+        while (history.size() > historySize) {
+            history.removeFirst();
+        }
+    }
+    
+    /**
+     * When false, stream requests are answered with 503 so clients keep retrying
+     */
+    public void setAcceptingStreams(boolean acceptingStreams) {
+        this.acceptingStreams = acceptingStreams;
+    }
+    
+    /**
+     * Ends every open stream, as a proxy or server restart would
+     */
+    public void dropConnections() {
+        for (BlockingQueue<String> client : clients) {
+            client.add(CLOSE);
+        }
+    }
+    
+    public synchronized int getLowPrice(int item) {
+        return lowPrices[item];
+    }
+    
+    public synchronized int getHighPrice(int item) {
+        return highPrices[item];
+    }
+    
+    public int getItemCount() {
+        return lowPrices.length;
+    }
+    
+    public int getStreamConnections() {
+        return streamConnections.get();
+    }
+    
+    public int getSnapshotRequests() {
+        return snapshotRequests.get();
+    }
+    
+    public static String id(int item) {
+        return Integer.toString(item + 1);
+    }
+    
+    private void handleSnapshot(HttpExchange exchange) throws IOException {
+        snapshotRequests.incrementAndGet();
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        long snapshotSequence;
+        synchronized (this) {
+            for (int i = 0; i < lowPrices.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"id\":\"").append(id(i))
+                    .append("\",\"name\":\"Item ").append(id(i))
+                    .append("\",\"latestLowPrice\":").append(lowPrices[i])
+                    .append(",\"latestHighPrice\":").append(highPrices[i])
+                    .append(",\"profit\":").append(highPrices[i] - lowPrices[i])
+                    .append(",\"score\":3.0}");
+            }
+            snapshotSequence = sequence - 1;
+        }
+        json.append("],\"totalItems\":").append(lowPrices.length).append('}');
+        
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Price-Sequence", Long.toString(snapshotSequence));
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    private void handleStream(HttpExchange exchange) throws IOException {
+        if (!acceptingStreams) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        streamConnections.incrementAndGet();
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        synchronized (this) {
+            // Retry quickly so tests don't wait out the default backoff
+            queue.add("retry: 50\n\n");
+            if (lastEventId != null) {
+                long resumeFrom = Long.parseLong(lastEventId) + 1;
+                long oldest = sequence - history.size();
+                if (resumeFrom < oldest) {
+                    queue.add("id: " + (sequence - 1) + "\nevent: resync\ndata: {}\n\n");
+                } else {
+                    long skip = resumeFrom - oldest;
+                    for (String event : history) {
+                        if (skip-- <= 0) {
+                            queue.add(event);
+                        }
+                    }
+                }
+            }
+            clients.add(queue);
+        }
+        
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (true) {
+                String event = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (CLOSE.equals(event)) {
+                    break;
+                }
+                out.write((event != null ? event : ": heartbeat\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        } finally {
+            clients.remove(queue);
+            exchange.close();
+        }
+    }
+    
+    @Override
+    public void close() {
+        stopTicking();
+        dropConnections();
+        server.stop(0);
+        ticker.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,136 @@
+package com.gielinorgains;
+
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsCborDecoder;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.api.ItemsResponseDecoder;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.model.ApiResponse;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.Gson;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CBOR negotiation against a local stub of the {@code /items} endpoint.
+ */
+public class WireFormatTest {
+    private StubItemsServer server;
+    private GainsApiClient client;
+    private List<GainsItem> expected;
+    
+    @Before
+    public void setUp() throws IOException {
+        byte[] json = ItemsResponseDecoderTest.readFixture("/items-page.json");
+        expected = ItemsResponseDecoder.decode(json).getData();
+        server = new StubItemsServer(json);
+        client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(), server.getBaseUrl());
+    }
+    
+    @After
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    public void testNegotiatesCbor() throws Exception {
+        ApiResponse response = fetch();
+        
+        assertTrue(response.getError(), response.isSuccess());
+        assertEquals(1, server.getCborResponses());
+        assertTrue(server.getLastAccept().startsWith(ItemsCborDecoder.MEDIA_TYPE));
+        assertSameItems(expected, response.getData());
+    }
+    
+    @Test
+    public void testFallsBackToJson() throws Exception {
+        server.setCborEnabled(false);
+        ApiResponse response = fetch();
+        
+        assertTrue(response.getError(), response.isSuccess());
+        assertEquals(0, server.getCborResponses());
+        assertEquals(1, server.getJsonResponses());
+        assertSameItems(expected, response.getData());
+    }
+    
+    @Test
+    public void testCborIsSmaller() throws IOException {
+        byte[] json = server.getJson();
+        byte[] cbor = server.getCbor();
+        // WireFormatBenchmark reports the sizes, plain and gzipped
+        assertTrue(cbor.length < json.length);
+    }
+    
+    @Test
+    public void testCborEncodings() throws IOException {
+        // {_ "data": [_ {"id": 4151, "score": half 2.5, "rsi": undefined, "name": (_ "Abyssal", " whip"),
+        //   "profit": 1(-7), "limit": 70.0, "tags": [1, {"a": h'00'}]}], "totalItems": 24(2)}
+        byte[] body = bytes(0xbf,
+            0x64, 'd', 'a', 't', 'a', 0x9f,
+            0xa7,
+            0x62, 'i', 'd', 0x19, 0x10, 0x37,
+            0x65, 's', 'c', 'o', 'r', 'e', 0xf9, 0x41, 0x00,
+            0x63, 'r', 's', 'i', 0xf7,
+            0x64, 'n', 'a', 'm', 'e', 0x7f, 0x67, 'A', 'b', 'y', 's', 's', 'a', 'l', 0x65, ' ', 'w', 'h', 'i', 'p', 0xff,
+            0x66, 'p', 'r', 'o', 'f', 'i', 't', 0xc1, 0x26,
+            0x65, 'l', 'i', 'm', 'i', 't', 0xfb, 0x40, 0x51, 0x80, 0, 0, 0, 0, 0,
+            0x64, 't', 'a', 'g', 's', 0x82, 0x01, 0xa1, 0x61, 'a', 0x41, 0x00,
+            0xff,
+            0x6a, 't', 'o', 't', 'a', 'l', 'I', 't', 'e', 'm', 's', 0xd8, 0x18, 0x02,
+            0xff);
+        ApiResponse response = ItemsCborDecoder.decode(body);
+        
+        GainsItem item = response.getData().get(0);
+        assertEquals("4151", item.getId());
+        assertEquals(2.5, item.getScore(), 0);
+        assertNull(item.getRsi());
+        assertEquals("Abyssal whip", item.getName());
+        assertEquals(-7, item.getProfit());
+        assertEquals(Integer.valueOf(70), item.getLimit());
+        assertEquals(2, response.getTotalItems());
+        
+        assertNull(ItemsCborDecoder.decode(bytes(0xa1, 0x61, 'x', 0x01)));
+        assertNull(ItemsCborDecoder.decode(bytes(0x80)));
+        for (byte[] bad : Arrays.asList(bytes(0xa1, 0x64, 'd', 'a', 't', 'a'), bytes(0xa1, 0x64, 'd', 'a', 't', 'a', 0x81, 0x01),
+                bytes(0xa1, 0x64, 'd', 'a', 't', 'a', 0x81, 0xa1, 0x65, 's', 'c', 'o', 'r', 'e', 0x61, 'x'), bytes())) {
+            try {
+                ItemsCborDecoder.decode(bad);
+                fail("Expected " + Arrays.toString(bad) + " to be rejected");
+            } catch (IOException e) {
+                // Reported as an invalid response by the client
+            }
+        }
+    }
+    
+    private ApiResponse fetch() throws Exception {
+        return client.fetchItems(ItemsQuery.builder().limit(200).build(), true).get(30, TimeUnit.SECONDS);
+    }
+    
+    private static void assertSameItems(List<GainsItem> expected, List<GainsItem> actual) {
+        Gson gson = new Gson();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(gson.toJson(expected.get(i)), gson.toJson(actual.get(i)));
+        }
+    }
+    
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,92 @@
+package com.gielinorgains.benchmark;
+
+import com.gielinorgains.util.PriceFormatter;
+import com.gielinorgains.util.ScoreFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Color;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting one card's numbers: the previous String.format/NumberFormat code versus the
+ * char[] formatter and score tables. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+    private static final int VALUES = 1024;
+    
+    private final int[] prices = new int[VALUES];
+    private final double[] scores = new double[VALUES];
+    private final char[] buf = new char[PriceFormatter.MAX_CHARS];
+    private int next;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            prices[i] = random.nextInt(20_000_000);
+            scores[i] = random.nextDouble() * 5;
+        }
+    }
+    
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        int i = next++ & (VALUES - 1);
+        NumberFormat nf = NumberFormat.getIntegerInstance(Locale.US);
+        nf.setGroupingUsed(true);
+        bh.consume(nf.format(prices[i]));
+        bh.consume(legacyAbbreviated(prices[i]));
+        bh.consume(String.format("%.1f", Math.min(5.0, Math.max(0.0, scores[i]))));
+        bh.consume(legacyScoreColor(scores[i]));
+    }
+    
+    @Benchmark
+    public void charBuffer(Blackhole bh) {
+        int i = next++ & (VALUES - 1);
+        bh.consume(PriceFormatter.appendGrouped(buf, 0, prices[i]));
+        bh.consume(PriceFormatter.appendAbbreviated(buf, 0, prices[i]));
+        bh.consume(ScoreFormatter.getScoreText(scores[i]));
+        bh.consume(ScoreFormatter.getScoreColor(scores[i]));
+        bh.consume(buf);
+    }
+    
+    private static String legacyAbbreviated(int price) {
+        if (price >= 1000000) {
+            return String.format("%.1fM", price / 1000000.0);
+        } else if (price >= 1000) {
+            return String.format("%.1fK", price / 1000.0);
+        }
+        return String.valueOf(price);
+    }
+    
+    // Same per-call interpolation the colour lookup used to do
+    private static Color legacyScoreColor(double score) {
+        int[][] stops = {{0xdc, 0x26, 0x26}, {0xea, 0x58, 0x0c}, {0xf5, 0x9e, 0x0b},
+            {0x84, 0xcc, 0x16}, {0x22, 0xc5, 0x5e}, {0x16, 0xa3, 0x4a}};
+        double clamped = Math.max(0, Math.min(5, score));
+        int lower = Math.min(4, (int) clamped);
+        double fraction = clamped - lower;
+        return new Color(
+            (int) Math.round(stops[lower][0] + (stops[lower + 1][0] - stops[lower][0]) * fraction),
+            (int) Math.round(stops[lower][1] + (stops[lower + 1][1] - stops[lower][1]) * fraction),
+            (int) Math.round(stops[lower][2] + (stops[lower + 1][2] - stops[lower][2]) * fraction));
+    }
+}
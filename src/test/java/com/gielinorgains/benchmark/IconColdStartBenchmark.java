@@ -0,0 +1,101 @@
+package com.gielinorgains.benchmark;
+
+import com.gielinorgains.StubIconServer;
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.concurrent.GainsExecutors;
+import com.gielinorgains.diagnostics.MemoryPressureMonitor;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import com.gielinorgains.ui.IconCache;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a first page of icons into an empty {@link IconCache} from a local
+ * {@link StubIconServer}: one bundle request, or one request per icon as when the API has no
+ * bundle endpoint. Every request to the stub takes {@code latencyMillis}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Without TCP_NODELAY the JDK server stalls small responses on delayed ACKs, about 40ms each
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class IconColdStartBenchmark {
+    @Param({"bundle", "single"})
+    public String mode;
+    
+    @Param({"0", "20", "50"})
+    public long latencyMillis;
+    
+    @Param({"100"})
+    public int icons;
+    
+    private StubIconServer server;
+    private MetricsRegistry metrics;
+    private GainsExecutors executors;
+    private GainsApiClient client;
+    private IconCache iconCache;
+    private List<String> urls;
+    private int run;
+    
+    @Setup
+    public void setup() throws IOException {
+        server = new StubIconServer(latencyMillis);
+        metrics = new MetricsRegistry();
+        executors = new GainsExecutors(metrics);
+        client = new GainsApiClient(new OkHttpClient(), metrics, server.getBaseUrl());
+    }
+    
+    @Setup(Level.Invocation)
+    public void coldCache() {
+        iconCache = new IconCache(metrics, executors, null, new MemoryPressureMonitor(metrics), client);
+        // Fresh URLs each time so nothing is served from an earlier run
+        urls = new ArrayList<>(icons);
+        run++;
+        for (int i = 0; i < icons; i++) {
+            urls.add(server.iconUrl(run + "-" + i));
+        }
+    }
+    
+    @TearDown(Level.Invocation)
+    public void dropCache() {
+        iconCache.shutdown();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        executors.stop();
+        server.close();
+    }
+    
+    @Benchmark
+    public Object coldStart() throws Exception {
+        if (mode.equals("bundle")) {
+            return iconCache.prefetchIcons(urls).get();
+        }
+        List<CompletableFuture<Boolean>> loads = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            loads.add(iconCache.prefetchIcon(url));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).get();
+    }
+}
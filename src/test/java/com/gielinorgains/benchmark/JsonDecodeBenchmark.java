@@ -0,0 +1,73 @@
+package com.gielinorgains.benchmark;
+
+import com.gielinorgains.api.ItemsResponseDecoder;
+import com.gielinorgains.model.GainsItem;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one 200 item {@code /items} page (src/test/resources/items-page.json): the previous
+ * reflective path, a String copy plus a per-request TypeToken through a lenient Gson, versus
+ * the streaming {@link ItemsResponseDecoder}. Run with {@code -prof gc} to compare allocation
+ * per page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDecodeBenchmark {
+    private byte[] body;
+    private Gson gson;
+    
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = JsonDecodeBenchmark.class.getResourceAsStream("/items-page.json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            body = out.toByteArray();
+        }
+        gson = new Gson().newBuilder().setLenient().create();
+    }
+    
+    @Benchmark
+    public Object reflective() {
+        String responseBody = new String(body, StandardCharsets.UTF_8);
+        Type responseType = new TypeToken<LegacyDto>(){}.getType();
+        LegacyDto dto = gson.fromJson(responseBody, responseType);
+        return dto.data;
+    }
+    
+    @Benchmark
+    public Object streaming() throws IOException {
+        return ItemsResponseDecoder.decode(body).getData();
+    }
+    
+    private static class LegacyDto {
+        List<GainsItem> data;
+        int totalItems;
+    }
+}
@@ -0,0 +1,104 @@
+package com.gielinorgains.benchmark;
+
+import com.gielinorgains.model.GainsItem;
+import com.gielinorgains.util.PartialSorter;
+import com.gielinorgains.util.RankingExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full sort of the catalog versus selecting only the cards the grid builds up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSortBenchmark {
+    private static final Comparator<GainsItem> BY_SCORE_DESC =
+        Comparator.comparing(GainsItem::getScore).reversed();
+    private static final Comparator<GainsItem> BY_CUSTOM_RANK_DESC =
+        Comparator.comparingDouble(GainsItem::getCustomRank).reversed();
+    private static final String RANKING = "if(volume >= 500, profit * min(quantity, limit) / sqrt(price), 0)";
+    
+    @Param({"200", "5000", "50000"})
+    public int catalogSize;
+    
+    @Param({"50"})
+    public int visibleCards;
+    
+    private List<GainsItem> items;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        items = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            items.add(GainsItem.builder()
+                .id(String.valueOf(i))
+                .name("Item " + i)
+                .score(random.nextDouble() * 5.0)
+                .profit(random.nextInt(1_000_000))
+                .quantity(1 + random.nextInt(10_000))
+                .limit(random.nextBoolean() ? 1 + random.nextInt(25_000) : null)
+                .dailyVolume(random.nextInt(100_000))
+                .adjustedLowPrice(1 + random.nextInt(5_000_000))
+                .build());
+        }
+        RankingExpression.compile(RANKING).rankAll(items);
+    }
+    
+    @Benchmark
+    public List<GainsItem> fullSort() {
+        List<GainsItem> copy = new ArrayList<>(items);
+        copy.sort(BY_SCORE_DESC);
+        return copy.subList(0, Math.min(visibleCards, copy.size()));
+    }
+    
+    @Benchmark
+    public List<GainsItem> topK() {
+        return new PartialSorter<>(items, BY_SCORE_DESC).head(visibleCards);
+    }
+    
+    /**
+     * Re-sorting by an already evaluated custom ranking; should match {@link #topK}.
+     */
+    @Benchmark
+    public List<GainsItem> topKByCachedCustomRank() {
+        return new PartialSorter<>(items, BY_CUSTOM_RANK_DESC).head(visibleCards);
+    }
+    
+    /**
+     * A refresh with the custom ranking: evaluate every item, then select the head.
+     */
+    @Benchmark
+    public List<GainsItem> rankAllThenTopK() {
+        RankingExpression.compile(RANKING).rankAll(items);
+        return new PartialSorter<>(items, BY_CUSTOM_RANK_DESC).head(visibleCards);
+    }
+    
+    @Benchmark
+    public List<GainsItem> topKThenScrollThreeBatches() {
+        PartialSorter<GainsItem> sorter = new PartialSorter<>(items, BY_SCORE_DESC);
+        sorter.head(visibleCards);
+        sorter.sortedRange(visibleCards, visibleCards * 2);
+        sorter.sortedRange(visibleCards * 2, visibleCards * 3);
+        return sorter.sortedRange(visibleCards * 3, visibleCards * 4);
+    }
+}
@@ -0,0 +1,86 @@
+package com.gielinorgains.benchmark;
+
+import com.gielinorgains.StubItemsServer;
+import com.gielinorgains.api.GainsApiClient;
+import com.gielinorgains.api.ItemsCborDecoder;
+import com.gielinorgains.api.ItemsQuery;
+import com.gielinorgains.api.ItemsResponseDecoder;
+import com.gielinorgains.diagnostics.MetricsRegistry;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON versus CBOR for one 200 item page (src/test/resources/items-page.json): decoding the
+ * body alone, and a whole fetch from a local {@link StubItemsServer}. Body sizes, plain and
+ * gzipped, are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"json", "cbor"})
+    public String format;
+    
+    private StubItemsServer server;
+    private GainsApiClient client;
+    private byte[] body;
+    private boolean cbor;
+    private ItemsQuery query;
+    
+    @Setup
+    public void setup() throws IOException {
+        byte[] json;
+        try (InputStream in = WireFormatBenchmark.class.getResourceAsStream("/items-page.json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            json = out.toByteArray();
+        }
+        
+        server = new StubItemsServer(json);
+        cbor = format.equals("cbor");
+        server.setCborEnabled(cbor);
+        body = cbor ? server.getCbor() : json;
+        System.out.printf("%n%s body: %d bytes, %d gzipped%n", format, body.length, StubItemsServer.gzippedSize(body));
+        
+        client = new GainsApiClient(new OkHttpClient(), new MetricsRegistry(), server.getBaseUrl());
+        query = ItemsQuery.builder().limit(200).build();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Benchmark
+    public Object decode() throws IOException {
+        return cbor ? ItemsCborDecoder.decode(body) : ItemsResponseDecoder.decode(body);
+    }
+    
+    @Benchmark
+    public Object fetch() throws Exception {
+        return client.fetchItems(query, true).get(10, TimeUnit.SECONDS);
+    }
+}